@@ -27,6 +27,12 @@ public interface ChangeCodeOwners {
   /** Creates a request to retrieve the code owner status for the files in the change. */
   CodeOwnerStatusRequest getCodeOwnerStatus() throws RestApiException;
 
+  /**
+   * Creates a request to suggest code owners as reviewers, so that all files in the change that
+   * still require a code owner approval are covered.
+   */
+  SuggestReviewersRequest suggestReviewers() throws RestApiException;
+
   /** Returns the revision-level code owners API for the current revision. */
   default RevisionCodeOwners current() throws RestApiException {
     return revision("current");
@@ -82,6 +88,37 @@ public interface ChangeCodeOwners {
     public abstract CodeOwnerStatusInfo get() throws RestApiException;
   }
 
+  /**
+   * Request to suggest code owners as reviewers.
+   *
+   * <p>Allows to set parameters on the request before executing it by calling {@link #get()}.
+   */
+  abstract class SuggestReviewersRequest {
+    private Integer limit;
+
+    /**
+     * Sets a limit on the number of reviewers that should be suggested.
+     *
+     * @param limit the limit
+     */
+    public SuggestReviewersRequest withLimit(int limit) {
+      this.limit = limit;
+      return this;
+    }
+
+    /** Returns the limit. */
+    public Optional<Integer> getLimit() {
+      return Optional.ofNullable(limit);
+    }
+
+    /**
+     * Executes this request and retrieves the suggested reviewers.
+     *
+     * @return the suggested reviewers
+     */
+    public abstract CodeOwnerReviewersInfo get() throws RestApiException;
+  }
+
   /**
    * A default implementation which allows source compatibility when adding new methods to the
    * interface.
@@ -92,6 +129,11 @@ public interface ChangeCodeOwners {
       throw new NotImplementedException();
     }
 
+    @Override
+    public SuggestReviewersRequest suggestReviewers() {
+      throw new NotImplementedException();
+    }
+
     @Override
     public RevisionCodeOwners revision(String id) throws RestApiException {
       throw new NotImplementedException();
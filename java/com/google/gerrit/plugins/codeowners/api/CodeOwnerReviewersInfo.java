@@ -0,0 +1,40 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.api;
+
+import java.util.List;
+
+/**
+ * Representation of the code owners that are suggested as reviewers for a change in the REST API.
+ *
+ * <p>This class determines the JSON format for the response of the {@code
+ * com.google.gerrit.plugins.codeowners.restapi.SuggestCodeOwnerReviewers} REST endpoint.
+ */
+public class CodeOwnerReviewersInfo {
+  /**
+   * The code owners that are suggested as reviewers, in the order in which they were selected (the
+   * code owner that covers most of the files that still require a code owner approval comes first).
+   */
+  public List<CodeOwnerInfo> reviewers;
+
+  /**
+   * Paths that still require a code owner approval, but are not covered by any of the suggested
+   * reviewers (e.g. because no code owner can be suggested for them or because the limit was
+   * reached).
+   *
+   * <p>Not set if all paths are covered.
+   */
+  public List<String> uncoveredPaths;
+}
@@ -24,6 +24,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -39,8 +41,8 @@ public interface CodeOwners {
   /**
    * Request to query code owners for a path.
    *
-   * <p>Allows to set parameters on the request before executing it by calling {@link #get(Path)} or
-   * {@link #get(String)}.
+   * <p>Allows to set parameters on the request before executing it by calling {@link #get(Path)},
+   * {@link #get(String)} or {@link #get(List)}.
    */
   abstract class QueryRequest {
     private Set<ListAccountsOption> options = EnumSet.noneOf(ListAccountsOption.class);
@@ -71,6 +73,19 @@ public interface CodeOwners {
       return get(Paths.get(path));
     }
 
+    /**
+     * Lists the code owners for the given files with a single request.
+     *
+     * <p>Only supported for querying code owners for files in a change.
+     *
+     * @param paths the paths of the files for which the code owners should be returned, each path
+     *     must be the path of a file that is touched in the change
+     * @return the code owners for the given files, keyed by the given paths
+     */
+    public Map<String, CodeOwnersInfo> get(List<String> paths) throws RestApiException {
+      throw new NotImplementedException();
+    }
+
     /**
      * Adds {@link ListAccountsOption} options on the request to control which account fields should
      * be populated in the {@link CodeOwnerInfo#account} field of the returned {@link
@@ -0,0 +1,34 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.api;
+
+import java.util.List;
+
+/**
+ * The input for the {@link
+ * com.google.gerrit.plugins.codeowners.restapi.GetCodeOwnersForPathsInChange} REST endpoint.
+ */
+public class GetCodeOwnersForPathsInChangeInput {
+  /**
+   * The paths of the files for which code owners should be suggested.
+   *
+   * <p>Each path must be the path of a file that is touched in the revision (for renamed and
+   * deleted files also the old path is accepted).
+   *
+   * <p>The number of paths is limited to {@link
+   * com.google.gerrit.plugins.codeowners.restapi.GetCodeOwnersForPathsInChange#MAX_PATHS}.
+   */
+  public List<String> paths;
+}
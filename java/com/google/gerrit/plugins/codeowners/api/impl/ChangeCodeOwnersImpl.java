@@ -19,9 +19,11 @@ import static com.google.gerrit.server.api.ApiUtil.asRestApiException;
 import com.google.gerrit.extensions.restapi.IdString;
 import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.plugins.codeowners.api.ChangeCodeOwners;
+import com.google.gerrit.plugins.codeowners.api.CodeOwnerReviewersInfo;
 import com.google.gerrit.plugins.codeowners.api.CodeOwnerStatusInfo;
 import com.google.gerrit.plugins.codeowners.api.RevisionCodeOwners;
 import com.google.gerrit.plugins.codeowners.restapi.GetCodeOwnerStatus;
+import com.google.gerrit.plugins.codeowners.restapi.SuggestCodeOwnerReviewers;
 import com.google.gerrit.server.change.ChangeResource;
 import com.google.gerrit.server.change.RevisionResource;
 import com.google.gerrit.server.restapi.change.Revisions;
@@ -39,16 +41,19 @@ public class ChangeCodeOwnersImpl implements ChangeCodeOwners {
   private final RevisionCodeOwnersImpl.Factory revisionCodeOwnersApi;
   private final ChangeResource changeResource;
   private final Provider<GetCodeOwnerStatus> getCodeOwnerStatusProvider;
+  private final Provider<SuggestCodeOwnerReviewers> suggestCodeOwnerReviewersProvider;
 
   @Inject
   public ChangeCodeOwnersImpl(
       Revisions revisions,
       RevisionCodeOwnersImpl.Factory revisionCodeOwnersApi,
       Provider<GetCodeOwnerStatus> getCodeOwnerStatusProvider,
+      Provider<SuggestCodeOwnerReviewers> suggestCodeOwnerReviewersProvider,
       @Assisted ChangeResource changeResource) {
     this.revisions = revisions;
     this.revisionCodeOwnersApi = revisionCodeOwnersApi;
     this.getCodeOwnerStatusProvider = getCodeOwnerStatusProvider;
+    this.suggestCodeOwnerReviewersProvider = suggestCodeOwnerReviewersProvider;
     this.changeResource = changeResource;
   }
 
@@ -69,6 +74,23 @@ public class ChangeCodeOwnersImpl implements ChangeCodeOwners {
     };
   }
 
+  @Override
+  public SuggestReviewersRequest suggestReviewers() throws RestApiException {
+    return new SuggestReviewersRequest() {
+      @Override
+      public CodeOwnerReviewersInfo get() throws RestApiException {
+        try {
+          SuggestCodeOwnerReviewers suggestCodeOwnerReviewers =
+              suggestCodeOwnerReviewersProvider.get();
+          getLimit().ifPresent(suggestCodeOwnerReviewers::setLimit);
+          return suggestCodeOwnerReviewers.apply(changeResource).value();
+        } catch (Exception e) {
+          throw asRestApiException("Cannot suggest reviewers", e);
+        }
+      }
+    };
+  }
+
   @Override
   public RevisionCodeOwners revision(String id) throws RestApiException {
     try {
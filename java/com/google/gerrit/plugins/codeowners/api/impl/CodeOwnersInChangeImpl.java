@@ -21,13 +21,17 @@ import com.google.gerrit.extensions.restapi.IdString;
 import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.plugins.codeowners.api.CodeOwners;
 import com.google.gerrit.plugins.codeowners.api.CodeOwnersInfo;
+import com.google.gerrit.plugins.codeowners.api.GetCodeOwnersForPathsInChangeInput;
 import com.google.gerrit.plugins.codeowners.restapi.CodeOwnersInChangeCollection;
 import com.google.gerrit.plugins.codeowners.restapi.GetCodeOwnersForPathInChange;
+import com.google.gerrit.plugins.codeowners.restapi.GetCodeOwnersForPathsInChange;
 import com.google.gerrit.server.change.RevisionResource;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.assistedinject.Assisted;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 
 /** Implementation of the {@link CodeOwners} API for a revision in a change. */
 public class CodeOwnersInChangeImpl implements CodeOwners {
@@ -37,15 +41,18 @@ public class CodeOwnersInChangeImpl implements CodeOwners {
 
   private final CodeOwnersInChangeCollection codeOwnersInChangeCollection;
   private final Provider<GetCodeOwnersForPathInChange> getCodeOwnersProvider;
+  private final Provider<GetCodeOwnersForPathsInChange> getCodeOwnersForPathsProvider;
   private final RevisionResource revisionResource;
 
   @Inject
   public CodeOwnersInChangeImpl(
       CodeOwnersInChangeCollection codeOwnersInChangeCollection,
       Provider<GetCodeOwnersForPathInChange> getCodeOwnersProvider,
+      Provider<GetCodeOwnersForPathsInChange> getCodeOwnersForPathsProvider,
       @Assisted RevisionResource revisionResource) {
     this.codeOwnersInChangeCollection = codeOwnersInChangeCollection;
     this.getCodeOwnersProvider = getCodeOwnersProvider;
+    this.getCodeOwnersForPathsProvider = getCodeOwnersForPathsProvider;
     this.revisionResource = revisionResource;
   }
 
@@ -74,6 +81,28 @@ public class CodeOwnersInChangeImpl implements CodeOwners {
           throw asRestApiException("Cannot get code owners", e);
         }
       }
+
+      @Override
+      public Map<String, CodeOwnersInfo> get(List<String> paths) throws RestApiException {
+        try {
+          if (getRevision().isPresent()) {
+            throw new BadRequestException("specifying revision is not supported");
+          }
+
+          GetCodeOwnersForPathsInChange getCodeOwners = getCodeOwnersForPathsProvider.get();
+          getOptions().forEach(getCodeOwners::addOption);
+          getLimit().ifPresent(getCodeOwners::setLimit);
+          getSeed().ifPresent(getCodeOwners::setSeed);
+          getResolveAllUsers().ifPresent(getCodeOwners::setResolveAllUsers);
+          getHighestScoreOnly().ifPresent(getCodeOwners::setHighestScoreOnly);
+          getDebug().ifPresent(getCodeOwners::setDebug);
+          GetCodeOwnersForPathsInChangeInput input = new GetCodeOwnersForPathsInChangeInput();
+          input.paths = paths;
+          return getCodeOwners.apply(revisionResource, input).value();
+        } catch (Exception e) {
+          throw asRestApiException("Cannot get code owners", e);
+        }
+      }
     };
   }
 }
@@ -95,32 +95,31 @@ public abstract class AbstractFileBasedCodeOwnerBackend implements CodeOwnerBack
       return Optional.empty();
     }
 
-    return loadCodeOwnerConfigFile(codeOwnerConfigKey, fileName, revWalk, revision)
-        .getLoadedCodeOwnerConfig();
+    return loadCodeOwnerConfig(codeOwnerConfigKey, fileName, revWalk, revision);
   }
 
-  private CodeOwnerConfigFile loadCodeOwnerConfigFile(
+  private Optional<CodeOwnerConfig> loadCodeOwnerConfig(
       CodeOwnerConfig.Key codeOwnerConfigKey,
       String fileName,
       @Nullable RevWalk revWalk,
       @Nullable ObjectId revision) {
-    try (Repository repository = repoManager.openRepository(codeOwnerConfigKey.project())) {
-      if (revision == null) {
-        return codeOwnerConfigFileFactory.loadCurrent(
-            fileName, codeOwnerConfigParser, repository, codeOwnerConfigKey);
+    try {
+      if (revWalk != null && revision != null) {
+        // The repository is only needed to create a rev walk, hence there is no need to open it.
+        return codeOwnerConfigFileFactory.loadIfExists(
+            fileName, codeOwnerConfigParser, revWalk, revision, codeOwnerConfigKey);
       }
 
-      boolean closeRevWalk = false;
-      if (revWalk == null) {
-        closeRevWalk = true;
-        revWalk = new RevWalk(repository);
-      }
-      try {
-        return codeOwnerConfigFileFactory.load(
-            fileName, codeOwnerConfigParser, revWalk, revision, codeOwnerConfigKey);
-      } finally {
-        if (closeRevWalk) {
-          revWalk.close();
+      try (Repository repository = repoManager.openRepository(codeOwnerConfigKey.project())) {
+        if (revision == null) {
+          return codeOwnerConfigFileFactory
+              .loadCurrent(fileName, codeOwnerConfigParser, repository, codeOwnerConfigKey)
+              .getLoadedCodeOwnerConfig();
+        }
+
+        try (RevWalk newRevWalk = new RevWalk(repository)) {
+          return codeOwnerConfigFileFactory.loadIfExists(
+              fileName, codeOwnerConfigParser, newRevWalk, revision, codeOwnerConfigKey);
         }
       }
     } catch (IOException e) {
@@ -142,6 +141,12 @@ public abstract class AbstractFileBasedCodeOwnerBackend implements CodeOwnerBack
     return codeOwnerConfigKey.filePath(defaultFileName);
   }
 
+  @Override
+  public Optional<String> getDefaultFileName(Project.NameKey project) {
+    requireNonNull(project, "project");
+    return Optional.of(getFileName(project));
+  }
+
   @Override
   public boolean isCodeOwnerConfigFile(Project.NameKey project, String fileName) {
     requireNonNull(project, "project");
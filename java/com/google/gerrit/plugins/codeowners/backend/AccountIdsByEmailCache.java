@@ -0,0 +1,294 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.plugins.codeowners.metrics.CodeOwnerMetrics;
+import com.google.gerrit.server.account.externalids.ExternalId;
+import com.google.gerrit.server.account.externalids.ExternalIds;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.CacheRemovalListener;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-wide cache that maps emails to the IDs of the accounts that own the emails (according to
+ * the external IDs).
+ *
+ * <p>Resolving the code owner emails in code owner config files requires looking up the external
+ * IDs for the emails. The result of this lookup doesn't depend on the calling user, hence it can be
+ * shared across requests, which avoids looking up the external IDs of the same emails again and
+ * again (e.g. on each submit rule run). Emails that are not owned by any account are cached as well
+ * (with an empty set of account IDs).
+ *
+ * <p>Only the visibility-independent mapping from emails to account IDs is cached. Everything else
+ * that is needed to resolve code owner emails, i.e. getting the account states from the account
+ * cache (to filter out inactive accounts and to detect ambiguous emails) and checking the
+ * visibility of the accounts and emails, is still done per request.
+ *
+ * <p>The external IDs of an account can only change by updating the account, and each account
+ * update triggers the reindexing of the account. Hence on reindexing of an account the cache
+ * entries for all emails that are or were owned by the account are invalidated (see {@link
+ * #invalidate(Account.Id)}). To find the emails that were owned by the account without scanning the
+ * whole cache, a reverse index from the accounts to their cached emails is maintained. The reverse
+ * index only contains emails that are owned by accounts, hence its size is bounded by the number of
+ * emails of all accounts. Emails that are evicted from the cache are removed from the reverse
+ * index.
+ */
+@Singleton
+public class AccountIdsByEmailCache
+    implements CacheRemovalListener<String, ImmutableSet<Account.Id>> {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  static final String CACHE_NAME = "account_ids_by_email";
+
+  /** Default for the maximum number of emails that are cached. */
+  private static final long DEFAULT_MAX_ENTRIES = 100000;
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, String.class, new TypeLiteral<ImmutableSet<Account.Id>>() {})
+            .maximumWeight(DEFAULT_MAX_ENTRIES);
+        bind(AccountIdsByEmailCache.class);
+        DynamicSet.bind(binder(), CacheRemovalListener.class).to(AccountIdsByEmailCache.class);
+      }
+    };
+  }
+
+  private final String pluginName;
+  private final Cache<String, ImmutableSet<Account.Id>> cache;
+  private final ExternalIds externalIds;
+  private final CodeOwnerMetrics codeOwnerMetrics;
+
+  /**
+   * Guards checking {@link #invalidations} and updating the cache together with the reverse index
+   * (see {@link #cachedEmailsByAccount}), so that results of external ID lookups cannot be cached
+   * after an invalidation that was done concurrently to the lookup.
+   */
+  private final Object updateLock = new Object();
+
+  /**
+   * Incremented on each invalidation, so that results of external ID lookups that were done
+   * concurrently to an invalidation are not cached (they may have been read before the account
+   * update).
+   */
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /** The number of external ID lookups that are currently in progress. */
+  private final AtomicInteger lookupsInProgress = new AtomicInteger();
+
+  /**
+   * The emails that have been cached for the accounts, so that they can be invalidated when the
+   * account is reindexed. Emails that are evicted from the cache are removed (see {@link
+   * #onRemoval(String, String, RemovalNotification)}).
+   */
+  private final ConcurrentMap<Account.Id, Set<String>> cachedEmailsByAccount =
+      new ConcurrentHashMap<>();
+
+  @Inject
+  AccountIdsByEmailCache(
+      @PluginName String pluginName,
+      @Named(CACHE_NAME) Cache<String, ImmutableSet<Account.Id>> cache,
+      ExternalIds externalIds,
+      CodeOwnerMetrics codeOwnerMetrics) {
+    this.pluginName = pluginName;
+    this.cache = cache;
+    this.externalIds = externalIds;
+    this.codeOwnerMetrics = codeOwnerMetrics;
+  }
+
+  /**
+   * Gets the IDs of the accounts that own the given emails.
+   *
+   * <p>The external IDs for emails that are not cached yet are looked up at once (see {@link
+   * ExternalIds#byEmails(String...)}).
+   *
+   * @param emails the emails for which the account IDs should be returned
+   * @return the IDs of the accounts that own the emails, for each of the given emails, the set of
+   *     account IDs is empty if the email is not owned by any account
+   */
+  public ImmutableMap<String, ImmutableSet<Account.Id>> get(ImmutableSet<String> emails)
+      throws IOException {
+    requireNonNull(emails, "emails");
+
+    ImmutableMap<String, ImmutableSet<Account.Id>> cachedAccountIdsByEmail =
+        cache.getAllPresent(emails);
+    codeOwnerMetrics.countAccountIdsByEmailCacheHits.incrementBy(cachedAccountIdsByEmail.size());
+    if (cachedAccountIdsByEmail.size() == emails.size()) {
+      return cachedAccountIdsByEmail;
+    }
+
+    ImmutableSet<String> emailsToLookup =
+        emails.stream()
+            .filter(email -> !cachedAccountIdsByEmail.containsKey(email))
+            .collect(toImmutableSet());
+    codeOwnerMetrics.countAccountIdsByEmailCacheMisses.incrementBy(emailsToLookup.size());
+    lookupsInProgress.incrementAndGet();
+    try {
+      return lookup(cachedAccountIdsByEmail, emailsToLookup);
+    } finally {
+      lookupsInProgress.decrementAndGet();
+    }
+  }
+
+  private ImmutableMap<String, ImmutableSet<Account.Id>> lookup(
+      ImmutableMap<String, ImmutableSet<Account.Id>> cachedAccountIdsByEmail,
+      ImmutableSet<String> emailsToLookup)
+      throws IOException {
+    long invalidationsBeforeLookup = invalidations.get();
+    Map<String, Collection<ExternalId>> extIdsByEmail =
+        externalIds.byEmails(emailsToLookup.toArray(new String[0])).asMap();
+
+    ImmutableMap.Builder<String, ImmutableSet<Account.Id>> accountIdsByEmail =
+        ImmutableMap.builder();
+    accountIdsByEmail.putAll(cachedAccountIdsByEmail);
+    for (String email : emailsToLookup) {
+      ImmutableSet<Account.Id> accountIds =
+          extIdsByEmail.containsKey(email)
+              ? extIdsByEmail.get(email).stream()
+                  .map(ExternalId::accountId)
+                  .collect(toImmutableSet())
+              : ImmutableSet.of();
+      accountIdsByEmail.put(email, accountIds);
+    }
+    ImmutableMap<String, ImmutableSet<Account.Id>> result = accountIdsByEmail.build();
+
+    synchronized (updateLock) {
+      // Check and update under the lock, so that no invalidation can happen in between.
+      if (invalidations.get() == invalidationsBeforeLookup) {
+        for (String email : emailsToLookup) {
+          ImmutableSet<Account.Id> accountIds = result.get(email);
+          accountIds.forEach(
+              accountId ->
+                  cachedEmailsByAccount
+                      .computeIfAbsent(accountId, k -> ConcurrentHashMap.newKeySet())
+                      .add(email));
+          cache.put(email, accountIds);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Invalidates the cache entries for all emails that are or were owned by the given account.
+   *
+   * <p>Must be invoked whenever the account is reindexed (see {@link
+   * FileCodeOwnerStatusCache#onAccountIndexed(int)}).
+   *
+   * @param accountId the ID of the account that was reindexed
+   * @return whether code owner emails may have been resolved from the previous state of the
+   *     account, i.e. whether any email that is or was owned by the account was cached or whether
+   *     external ID lookups were in progress
+   */
+  public boolean invalidate(Account.Id accountId) {
+    requireNonNull(accountId, "accountId");
+
+    // Invalidate the emails that were owned by the account (and may have been removed).
+    boolean lookupsWereInProgress;
+    Set<String> cachedEmails;
+    synchronized (updateLock) {
+      invalidations.incrementAndGet();
+      lookupsWereInProgress = lookupsInProgress.get() > 0;
+      cachedEmails = cachedEmailsByAccount.remove(accountId);
+    }
+    if (cachedEmails != null) {
+      cache.invalidateAll(cachedEmails);
+    }
+
+    // Invalidate the emails that are owned by the account (and may have been added).
+    ImmutableSet<String> emails;
+    try {
+      emails =
+          externalIds.byAccount(accountId).stream()
+              .map(ExternalId::email)
+              .filter(Objects::nonNull)
+              .collect(toImmutableSet());
+    } catch (IOException e) {
+      // We cannot know which emails have been added to the account, hence invalidate all emails.
+      logger.atWarning().withCause(e).log(
+          "Failed to read external IDs of account %d, invalidating all cached emails.",
+          accountId.get());
+      synchronized (updateLock) {
+        cache.invalidateAll();
+        cachedEmailsByAccount.clear();
+      }
+      return true;
+    }
+    boolean emailsWereCached = !cache.getAllPresent(emails).isEmpty();
+    cache.invalidateAll(emails);
+
+    return lookupsWereInProgress
+        || (cachedEmails != null && !cachedEmails.isEmpty())
+        || emailsWereCached;
+  }
+
+  /** Removes emails that are evicted from the cache from the reverse index. */
+  @Override
+  public void onRemoval(
+      String pluginName,
+      String cacheName,
+      RemovalNotification<String, ImmutableSet<Account.Id>> notification) {
+    if (!this.pluginName.equals(pluginName)
+        || !CACHE_NAME.equals(cacheName)
+        || !notification.wasEvicted()
+        || notification.getKey() == null
+        || notification.getValue() == null) {
+      return;
+    }
+
+    String email = notification.getKey();
+    synchronized (updateLock) {
+      if (cache.getIfPresent(email) != null) {
+        // The email was cached again after it was evicted.
+        return;
+      }
+      notification
+          .getValue()
+          .forEach(
+              accountId ->
+                  cachedEmailsByAccount.computeIfPresent(
+                      accountId,
+                      (k, emails) -> {
+                        emails.remove(email);
+                        return emails.isEmpty() ? null : emails;
+                      }));
+    }
+  }
+}
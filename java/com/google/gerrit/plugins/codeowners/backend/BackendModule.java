@@ -16,6 +16,10 @@ package com.google.gerrit.plugins.codeowners.backend;
 
 import com.google.gerrit.extensions.annotations.Exports;
 import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.extensions.events.AccountIndexedListener;
+import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import com.google.gerrit.extensions.events.GroupIndexedListener;
+import com.google.gerrit.extensions.events.LifecycleListener;
 import com.google.gerrit.extensions.events.ReviewerAddedListener;
 import com.google.gerrit.extensions.registration.DynamicMap;
 import com.google.gerrit.extensions.registration.DynamicSet;
@@ -51,11 +55,27 @@ public class BackendModule extends FactoryModule {
     }
 
     install(new CodeOwnerSubmitRule.Module());
+    install(ParsedCodeOwnerConfigCache.module());
+    install(CodeOwnerConfigFolderIndexCache.module());
+    install(CodeOwnerConfigFileProbe.module());
+    install(AccountIdsByEmailCache.module());
+    install(FileCodeOwnerStatusCache.module());
+    install(PathCodeOwnersCache.module());
 
     DynamicSet.bind(binder(), ExceptionHook.class).to(CodeOwnersExceptionHook.class);
     DynamicSet.bind(binder(), OnPostReview.class).to(OnCodeOwnerApproval.class);
     DynamicSet.bind(binder(), OnPostReview.class).to(OnCodeOwnerOverride.class);
     DynamicSet.bind(binder(), ReviewerAddedListener.class).to(CodeOwnersOnAddReviewer.class);
+    DynamicSet.bind(binder(), LifecycleListener.class).to(FileStatusComputationExecutor.class);
+    DynamicSet.bind(binder(), LifecycleListener.class).to(CodeOwnerConfigCheckExecutor.class);
+    DynamicSet.bind(binder(), LifecycleListener.class).to(RandomAccountPool.class);
+    DynamicSet.bind(binder(), GitReferenceUpdatedListener.class)
+        .to(CodeOwnerConfigFolderIndexUpdater.class);
+    DynamicSet.bind(binder(), GitReferenceUpdatedListener.class)
+        .to(CodeOwnerConfigGenerations.class);
+    DynamicSet.bind(binder(), AccountIndexedListener.class).to(FileCodeOwnerStatusCache.class);
+    DynamicSet.bind(binder(), GroupIndexedListener.class).to(FileCodeOwnerStatusCache.class);
+    DynamicSet.bind(binder(), AccountIndexedListener.class).to(RandomAccountPool.class);
   }
 
   @Provides
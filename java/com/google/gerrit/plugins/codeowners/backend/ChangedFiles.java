@@ -131,6 +131,33 @@ public class ChangedFiles {
     return compute(project, revision);
   }
 
+  /**
+   * Returns the changed files for the given revision.
+   *
+   * <p>Same as {@link #getOrCompute(Project.NameKey, ObjectId)}, with the only difference that the
+   * repository and the rev walk of the given Git context are used to compute the changed files.
+   *
+   * @param project the project
+   * @param revision the revision for which the changed files should be computed
+   * @param gitContext the Git context that should be used to read from the repository
+   * @return the files that have been changed in the given revision, sorted alphabetically by path
+   */
+  public ImmutableList<ChangedFile> getOrCompute(
+      Project.NameKey project, ObjectId revision, TransientGitContext gitContext)
+      throws IOException, PatchListNotAvailableException, DiffNotAvailableException {
+    requireNonNull(project, "project");
+    requireNonNull(revision, "revision");
+    requireNonNull(gitContext, "gitContext");
+
+    if (experimentFeatures.isFeatureEnabled(CodeOwnersExperimentFeaturesConstants.USE_DIFF_CACHE)) {
+      return getFromDiffCache(project, revision);
+    }
+
+    Config repoConfig = gitContext.getRepository(project).getConfig();
+    return gitContext.withRevWalk(
+        project, revWalk -> compute(project, repoConfig, revWalk, revWalk.parseCommit(revision)));
+  }
+
   /**
    * Computes the files that have been changed in the given revision.
    *
@@ -21,6 +21,7 @@ import static java.util.Objects.requireNonNull;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.common.Nullable;
@@ -43,7 +44,6 @@ import com.google.gerrit.plugins.codeowners.common.CodeOwnerStatus;
 import com.google.gerrit.plugins.codeowners.metrics.CodeOwnerMetrics;
 import com.google.gerrit.server.ChangeMessagesUtil;
 import com.google.gerrit.server.approval.ApprovalsUtil;
-import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.PureRevertCache;
 import com.google.gerrit.server.notedb.ChangeNotes;
 import com.google.gerrit.server.notedb.ReviewerStateInternal;
@@ -58,15 +58,17 @@ import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevWalk;
 
 /**
  * Class to check code owner approvals on a change.
@@ -88,7 +90,7 @@ public class CodeOwnerApprovalCheck {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   private final PermissionBackend permissionBackend;
-  private final GitRepositoryManager repoManager;
+  private final Provider<TransientGitContext> gitContextProvider;
   private final CodeOwnersPluginConfiguration codeOwnersPluginConfiguration;
   private final ChangedFiles changedFiles;
   private final PureRevertCache pureRevertCache;
@@ -96,20 +98,27 @@ public class CodeOwnerApprovalCheck {
   private final Provider<CodeOwnerResolver> codeOwnerResolverProvider;
   private final ApprovalsUtil approvalsUtil;
   private final CodeOwnerMetrics codeOwnerMetrics;
+  private final FileStatusComputationExecutor fileStatusComputationExecutor;
+  private final FileCodeOwnerStatusCache fileCodeOwnerStatusCache;
+  private final ComputationCoalescer<
+          FileCodeOwnerStatusCache.Key, ImmutableList<FileCodeOwnerStatus>>
+      fileStatusComputations;
 
   @Inject
   CodeOwnerApprovalCheck(
       PermissionBackend permissionBackend,
-      GitRepositoryManager repoManager,
+      Provider<TransientGitContext> gitContextProvider,
       CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
       ChangedFiles changedFiles,
       PureRevertCache pureRevertCache,
       Provider<CodeOwnerConfigHierarchy> codeOwnerConfigHierarchyProvider,
       Provider<CodeOwnerResolver> codeOwnerResolverProvider,
       ApprovalsUtil approvalsUtil,
-      CodeOwnerMetrics codeOwnerMetrics) {
+      CodeOwnerMetrics codeOwnerMetrics,
+      FileStatusComputationExecutor fileStatusComputationExecutor,
+      FileCodeOwnerStatusCache fileCodeOwnerStatusCache) {
     this.permissionBackend = permissionBackend;
-    this.repoManager = repoManager;
+    this.gitContextProvider = gitContextProvider;
     this.codeOwnersPluginConfiguration = codeOwnersPluginConfiguration;
     this.changedFiles = changedFiles;
     this.pureRevertCache = pureRevertCache;
@@ -117,6 +126,10 @@ public class CodeOwnerApprovalCheck {
     this.codeOwnerResolverProvider = codeOwnerResolverProvider;
     this.approvalsUtil = approvalsUtil;
     this.codeOwnerMetrics = codeOwnerMetrics;
+    this.fileStatusComputationExecutor = fileStatusComputationExecutor;
+    this.fileCodeOwnerStatusCache = fileCodeOwnerStatusCache;
+    this.fileStatusComputations =
+        new ComputationCoalescer<>(codeOwnerMetrics.countCoalescedFileStatusComputations);
   }
 
   /**
@@ -143,25 +156,29 @@ public class CodeOwnerApprovalCheck {
           patchSet.id().get(),
           start,
           limit);
-      Stream<Path> ownedPaths =
-          getFileStatusesForAccount(changeNotes, patchSet, accountId)
-              .flatMap(
-                  fileCodeOwnerStatus ->
-                      Stream.of(
-                              fileCodeOwnerStatus.newPathStatus(),
-                              fileCodeOwnerStatus.oldPathStatus())
-                          .filter(Optional::isPresent)
-                          .map(Optional::get))
-              .filter(
-                  pathCodeOwnerStatus -> pathCodeOwnerStatus.status() == CodeOwnerStatus.APPROVED)
-              .map(PathCodeOwnerStatus::path);
-      if (start > 0) {
-        ownedPaths = ownedPaths.skip(start);
-      }
-      if (limit > 0) {
-        ownedPaths = ownedPaths.limit(limit);
+      try (Stream<FileCodeOwnerStatus> fileStatuses =
+          getFileStatusesForAccount(changeNotes, patchSet, accountId)) {
+        Stream<Path> ownedPaths =
+            fileStatuses
+                .flatMap(
+                    fileCodeOwnerStatus ->
+                        Stream.of(
+                                fileCodeOwnerStatus.newPathStatus(),
+                                fileCodeOwnerStatus.oldPathStatus())
+                            .filter(Optional::isPresent)
+                            .map(Optional::get))
+                .filter(
+                    pathCodeOwnerStatus ->
+                        pathCodeOwnerStatus.status() == CodeOwnerStatus.APPROVED)
+                .map(PathCodeOwnerStatus::path);
+        if (start > 0) {
+          ownedPaths = ownedPaths.skip(start);
+        }
+        if (limit > 0) {
+          ownedPaths = ownedPaths.limit(limit);
+        }
+        return ownedPaths.collect(toImmutableList());
       }
-      return ownedPaths.collect(toImmutableList());
     } catch (IOException | PatchListNotAvailableException | DiffNotAvailableException e) {
       throw new CodeOwnersInternalServerErrorException(
           String.format(
@@ -174,6 +191,10 @@ public class CodeOwnerApprovalCheck {
   /**
    * Whether the given change has sufficient code owner approvals to be submittable.
    *
+   * <p>The result is cached under the same key as the file statuses (see {@link
+   * FileCodeOwnerStatusCache}), so that it can be reused even if not all file statuses were
+   * computed because a file that is not approved was found early.
+   *
    * @param changeNotes the change notes
    * @return whether the given change has sufficient code owner approvals to be submittable
    */
@@ -184,12 +205,31 @@ public class CodeOwnerApprovalCheck {
     logger.atFine().log(
         "checking if change %d in project %s is submittable",
         changeNotes.getChangeId().get(), changeNotes.getProjectName());
-    CodeOwnerConfigHierarchy codeOwnerConfigHierarchy = codeOwnerConfigHierarchyProvider.get();
-    CodeOwnerResolver codeOwnerResolver = codeOwnerResolverProvider.get().enforceVisibility(false);
+    TransientGitContext gitContext = gitContextProvider.get();
+    CodeOwnerConfigHierarchy codeOwnerConfigHierarchy =
+        codeOwnerConfigHierarchyProvider
+            .get()
+            .useGitContext(gitContext)
+            .collectDebugMessages(false);
+    CodeOwnerResolver codeOwnerResolver =
+        codeOwnerResolverProvider.get().enforceVisibility(false).collectDebugMessages(false);
     try {
-      boolean isSubmittable =
-          !getFileStatuses(codeOwnerConfigHierarchy, codeOwnerResolver, changeNotes)
-              .anyMatch(
+      FileStatusComputation fileStatusComputation =
+          prepareFileStatusComputation(
+              codeOwnerConfigHierarchy, codeOwnerResolver, changeNotes, gitContext);
+      Optional<Boolean> cachedIsSubmittable =
+          fileStatusComputation.cacheKey().flatMap(fileCodeOwnerStatusCache::getSubmittability);
+      boolean isSubmittable;
+      if (cachedIsSubmittable.isPresent()) {
+        logger.atFine().log("submittability found in cache");
+        isSubmittable = cachedIsSubmittable.get();
+      } else {
+        // Closing the stream cancels the computation of the file statuses that are not needed
+        // anymore once a file status shows that the change is not submittable.
+        try (Stream<FileCodeOwnerStatus> fileStatuses =
+            fileStatusComputation.compute(/* lazy= */ true)) {
+          isSubmittable =
+              !fileStatuses.anyMatch(
                   fileStatus ->
                       (fileStatus.newPathStatus().isPresent()
                               && fileStatus.newPathStatus().get().status()
@@ -197,6 +237,12 @@ public class CodeOwnerApprovalCheck {
                           || (fileStatus.oldPathStatus().isPresent()
                               && fileStatus.oldPathStatus().get().status()
                                   != CodeOwnerStatus.APPROVED));
+        }
+        if (fileStatusComputation.cacheKey().isPresent()) {
+          fileCodeOwnerStatusCache.putSubmittability(
+              fileStatusComputation.cacheKey().get(), isSubmittable);
+        }
+      }
       logger.atFine().log(
           "change %d in project %s %s submittable",
           changeNotes.getChangeId().get(),
@@ -204,6 +250,7 @@ public class CodeOwnerApprovalCheck {
           isSubmittable ? "is" : "is not");
       return isSubmittable;
     } finally {
+      gitContext.close();
       codeOwnerMetrics.codeOwnerConfigBackendReadsPerChange.record(
           codeOwnerConfigHierarchy.getCodeOwnerConfigCounters().getBackendReadCount());
       codeOwnerMetrics.codeOwnerConfigCacheReadsPerChange.record(
@@ -232,18 +279,62 @@ public class CodeOwnerApprovalCheck {
       logger.atFine().log(
           "compute file statuses (project = %s, change = %d, start = %d, limit = %d)",
           changeNotes.getProjectName(), changeNotes.getChangeId().get(), start, limit);
-      Stream<FileCodeOwnerStatus> fileStatuses =
-          getFileStatuses(
-              codeOwnerConfigHierarchyProvider.get(),
-              codeOwnerResolverProvider.get().enforceVisibility(false),
-              changeNotes);
-      if (start > 0) {
-        fileStatuses = fileStatuses.skip(start);
-      }
-      if (limit > 0) {
-        fileStatuses = fileStatuses.limit(limit);
+      try (TransientGitContext gitContext = gitContextProvider.get();
+          Stream<FileCodeOwnerStatus> allFileStatuses =
+              getFileStatuses(
+                  codeOwnerConfigHierarchyProvider
+                      .get()
+                      .useGitContext(gitContext)
+                      .collectDebugMessages(false),
+                  codeOwnerResolverProvider
+                      .get()
+                      .enforceVisibility(false)
+                      .collectDebugMessages(false),
+                  changeNotes,
+                  gitContext,
+                  /* lazy= */ false)) {
+        Stream<FileCodeOwnerStatus> fileStatuses = allFileStatuses;
+        if (start > 0) {
+          fileStatuses = fileStatuses.skip(start);
+        }
+        if (limit > 0) {
+          fileStatuses = fileStatuses.limit(limit);
+        }
+        return fileStatuses.collect(toImmutableSet());
       }
-      return fileStatuses.collect(toImmutableSet());
+    }
+  }
+
+  /**
+   * Gets the cached resolved code owners of the files/paths that were changed in the current
+   * revision of the given change.
+   *
+   * <p>The resolved code owners are cached when the code owner statuses are computed (e.g. by
+   * {@link #getFileStatusesAsSet(ChangeNotes, int, int)}), so that callers that need the code
+   * owners of the paths that are not approved yet do not need to resolve them again.
+   *
+   * <p>The returned code owners have been resolved without checking their visibility.
+   *
+   * @param changeNotes the change notes
+   * @return the cached resolved code owners by path; paths that are approved and paths for which
+   *     no resolved code owners are cached are missing
+   */
+  public ImmutableMap<Path, ResolvedPathCodeOwners> getCachedResolvedPathCodeOwners(
+      ChangeNotes changeNotes) throws ResourceConflictException, IOException {
+    requireNonNull(changeNotes, "changeNotes");
+    try (TransientGitContext gitContext = gitContextProvider.get()) {
+      return prepareFileStatusComputation(
+              codeOwnerConfigHierarchyProvider
+                  .get()
+                  .useGitContext(gitContext)
+                  .collectDebugMessages(false),
+              codeOwnerResolverProvider.get().enforceVisibility(false).collectDebugMessages(false),
+              changeNotes,
+              gitContext)
+          .cacheKey()
+          .map(FileCodeOwnerStatusCache.Key::revisionKey)
+          .flatMap(fileCodeOwnerStatusCache::getResolvedPathCodeOwners)
+          .orElse(ImmutableMap.of());
     }
   }
 
@@ -270,23 +361,71 @@ public class CodeOwnerApprovalCheck {
    *       approvals that were present on an old revision) would only confuse users
    * </ul>
    *
+   * <p>If parallel file status computation is enabled, the file statuses are computed in parallel
+   * (see {@link FileStatusComputationExecutor}). If {@code lazy} is {@code true} the file statuses
+   * are computed while the returned stream is consumed, callers that do not consume the complete
+   * stream should close it, so that the computation of the remaining file statuses is cancelled.
+   * Otherwise all file statuses are computed before the stream is returned.
+   *
+   * <p>The file statuses are cached (see {@link FileCodeOwnerStatusCache}). Computed file statuses
+   * are only put into the cache if the returned stream was consumed completely before it is closed.
+   * If the file statuses are not cached, but the resolved code owners of the files are (e.g.
+   * because only the approvals or reviewers have changed since the file statuses were computed the
+   * last time), the cached resolved code owners are reused and only the code owner statuses are
+   * computed.
+   *
+   * <p>If the same file statuses are computed concurrently by another request, the computation is
+   * not done again, but the file statuses that are computed by the other request are returned (see
+   * {@link ComputationCoalescer}). Only computations that are not lazy are shared with concurrent
+   * requests.
+   *
    * @param codeOwnerConfigHierarchy {@link CodeOwnerConfigHierarchy} instance that should be used
    *     to iterate over code owner config hierarchies
    * @param changeNotes the notes of the change for which the current code owner statuses should be
    *     returned
+   * @param gitContext the Git context that should be used to read from the repository, must be
+   *     closed by the caller after the returned stream was consumed
+   * @param lazy whether the file statuses should be computed while the returned stream is consumed,
+   *     should be {@code true} if the caller may not need all file statuses
    */
   private Stream<FileCodeOwnerStatus> getFileStatuses(
       CodeOwnerConfigHierarchy codeOwnerConfigHierarchy,
       CodeOwnerResolver codeOwnerResolver,
-      ChangeNotes changeNotes)
+      ChangeNotes changeNotes,
+      TransientGitContext gitContext,
+      boolean lazy)
       throws ResourceConflictException, IOException, PatchListNotAvailableException,
           DiffNotAvailableException {
+    return prepareFileStatusComputation(
+            codeOwnerConfigHierarchy, codeOwnerResolver, changeNotes, gitContext)
+        .compute(lazy);
+  }
+
+  /**
+   * Prepares the computation of the code owner statuses for all files/paths that were changed in
+   * the current revision of the given change (see {@link #getFileStatuses(CodeOwnerConfigHierarchy,
+   * CodeOwnerResolver, ChangeNotes, TransientGitContext, boolean)}).
+   *
+   * <p>Reads the state of the change from which the file statuses are computed and which is part
+   * of the key under which the file statuses are cached. The file statuses are only computed when
+   * {@link FileStatusComputation#compute(boolean)} is invoked, so that callers can look up results
+   * that are derived from the file statuses under the same key first.
+   */
+  private FileStatusComputation prepareFileStatusComputation(
+      CodeOwnerConfigHierarchy codeOwnerConfigHierarchy,
+      CodeOwnerResolver codeOwnerResolver,
+      ChangeNotes changeNotes,
+      TransientGitContext gitContext)
+      throws ResourceConflictException, IOException {
     requireNonNull(changeNotes, "changeNotes");
     try (Timer0.Context ctx = codeOwnerMetrics.prepareFileStatusComputation.start()) {
       logger.atFine().log(
           "prepare stream to compute file statuses (project = %s, change = %d)",
           changeNotes.getProjectName(), changeNotes.getChangeId().get());
 
+      // Must be retrieved before any state is read from which the file statuses are computed.
+      long cacheGeneration = fileCodeOwnerStatusCache.getGeneration(changeNotes.getProjectName());
+
       CodeOwnersPluginProjectConfigSnapshot codeOwnersConfig =
           codeOwnersPluginConfiguration.getProjectConfig(changeNotes.getProjectName());
 
@@ -298,12 +437,15 @@ public class CodeOwnerApprovalCheck {
         logger.atFine().log(
             "patch set uploader %d is exempted from requiring code owner approvals",
             patchSetUploader.get());
-        return getAllPathsAsApproved(
-            changeNotes,
-            changeNotes.getCurrentPatchSet(),
-            String.format(
-                "patch set uploader %s is exempted from requiring code owner approvals",
-                ChangeMessagesUtil.getAccountTemplate(patchSetUploader)));
+        return FileStatusComputation.create(
+            lazy ->
+                getAllPathsAsApproved(
+                    changeNotes,
+                    changeNotes.getCurrentPatchSet(),
+                    gitContext,
+                    String.format(
+                        "patch set uploader %s is exempted from requiring code owner approvals",
+                        ChangeMessagesUtil.getAccountTemplate(patchSetUploader))));
       }
 
       boolean arePureRevertsExempted = codeOwnersConfig.arePureRevertsExempted();
@@ -311,10 +453,14 @@ public class CodeOwnerApprovalCheck {
       if (arePureRevertsExempted && isPureRevert(changeNotes)) {
         logger.atFine().log(
             "change is a pure revert and is exempted from requiring code owner approvals");
-        return getAllPathsAsApproved(
-            changeNotes,
-            changeNotes.getCurrentPatchSet(),
-            "change is a pure revert and is exempted from requiring code owner approvals");
+        return FileStatusComputation.create(
+            lazy ->
+                getAllPathsAsApproved(
+                    changeNotes,
+                    changeNotes.getCurrentPatchSet(),
+                    gitContext,
+                    "change is a pure revert and is exempted from requiring code owner"
+                        + " approvals"));
       }
 
       boolean implicitApprovalConfig = codeOwnersConfig.areImplicitApprovalsEnabled();
@@ -349,38 +495,180 @@ public class CodeOwnerApprovalCheck {
           overrides);
 
       BranchNameKey branch = changeNotes.getChange().getDest();
-      ObjectId revision = getDestBranchRevision(changeNotes.getChange());
+      ObjectId revision = getDestBranchRevision(changeNotes.getChange(), gitContext);
       logger.atFine().log("dest branch %s has revision %s", branch.branch(), revision.name());
 
+      FileCodeOwnerStatusCache.Key cacheKey =
+          FileCodeOwnerStatusCache.Key.create(
+              FileCodeOwnerStatusCache.RevisionKey.create(
+                  changeNotes.getProjectName(),
+                  cacheGeneration,
+                  changeNotes.getCurrentPatchSet(),
+                  revision),
+              currentPatchSetApprovals,
+              changeNotes.getReviewers().byState(ReviewerStateInternal.REVIEWER));
+      return FileStatusComputation.create(
+          cacheKey,
+          lazy ->
+              computeFileStatuses(
+                  codeOwnerConfigHierarchy,
+                  codeOwnerResolver,
+                  changeNotes,
+                  gitContext,
+                  codeOwnersConfig,
+                  enableImplicitApproval,
+                  currentPatchSetApprovals,
+                  overrides,
+                  cacheKey,
+                  lazy));
+    }
+  }
+
+  /**
+   * Computes the code owner statuses for all files/paths that were changed in the current revision
+   * of the given change, or gets them from the cache.
+   *
+   * @param cacheKey the key under which the file statuses are cached, must have been created from
+   *     the given state of the change
+   * @see #getFileStatuses(CodeOwnerConfigHierarchy, CodeOwnerResolver, ChangeNotes,
+   *     TransientGitContext, boolean)
+   */
+  private Stream<FileCodeOwnerStatus> computeFileStatuses(
+      CodeOwnerConfigHierarchy codeOwnerConfigHierarchy,
+      CodeOwnerResolver codeOwnerResolver,
+      ChangeNotes changeNotes,
+      TransientGitContext gitContext,
+      CodeOwnersPluginProjectConfigSnapshot codeOwnersConfig,
+      boolean enableImplicitApproval,
+      ImmutableList<PatchSetApproval> currentPatchSetApprovals,
+      ImmutableSet<PatchSetApproval> overrides,
+      FileCodeOwnerStatusCache.Key cacheKey,
+      boolean lazy)
+      throws IOException, PatchListNotAvailableException, DiffNotAvailableException {
+    Optional<ImmutableList<FileCodeOwnerStatus>> cachedFileStatuses =
+        fileCodeOwnerStatusCache.get(cacheKey);
+    if (cachedFileStatuses.isPresent()) {
+      logger.atFine().log("file statuses found in cache");
+      return cachedFileStatuses.get().stream();
+    }
+
+    // If the same file statuses are computed concurrently (e.g. because several requests for the
+    // same change were triggered at once), wait for that computation instead of doing the same
+    // work again.
+    Optional<ImmutableList<FileCodeOwnerStatus>> coalescedFileStatuses =
+        fileStatusComputations.join(cacheKey);
+    if (coalescedFileStatuses.isPresent()) {
+      logger.atFine().log("file statuses were computed by a concurrent request");
+      return coalescedFileStatuses.get().stream();
+    }
+
+    // Lazily computed file statuses are not shared with concurrent requests, since they would
+    // need to wait until this caller has consumed the stream, which may never happen.
+    Optional<
+            ComputationCoalescer.InFlightComputation<
+                FileCodeOwnerStatusCache.Key, ImmutableList<FileCodeOwnerStatus>>>
+        inFlightComputation =
+            lazy ? Optional.empty() : Optional.of(fileStatusComputations.start(cacheKey));
+    try {
       CodeOwnerResolverResult globalCodeOwners =
           codeOwnerResolver.resolveGlobalCodeOwners(changeNotes.getProjectName());
       logger.atFine().log("global code owners = %s", globalCodeOwners);
 
+      Account.Id changeOwner = changeNotes.getChange().getOwner();
+      Account.Id patchSetUploader = changeNotes.getCurrentPatchSet().uploader();
+      RequiredApproval requiredApproval = codeOwnersConfig.getRequiredApproval();
       ImmutableSet<Account.Id> reviewerAccountIds =
           getReviewerAccountIds(requiredApproval, changeNotes, patchSetUploader);
       ImmutableSet<Account.Id> approverAccountIds =
           getApproverAccountIds(currentPatchSetApprovals, requiredApproval, patchSetUploader);
       logger.atFine().log("reviewers = %s, approvers = %s", reviewerAccountIds, approverAccountIds);
+      CodeOwnerApprovalEvaluator approvalEvaluator =
+          new CodeOwnerApprovalEvaluator(
+              enableImplicitApproval ? changeOwner : null, reviewerAccountIds, approverAccountIds);
+      BitSet globalCodeOwnersBitSet = approvalEvaluator.toBitSet(globalCodeOwners);
 
       FallbackCodeOwners fallbackCodeOwners = codeOwnersConfig.getFallbackCodeOwners();
 
-      return changedFiles
-          .getOrCompute(changeNotes.getProjectName(), changeNotes.getCurrentPatchSet().commitId())
-          .stream()
-          .map(
-              changedFile ->
-                  getFileStatus(
-                      codeOwnerConfigHierarchy,
-                      codeOwnerResolver,
-                      branch,
-                      revision,
-                      globalCodeOwners,
-                      enableImplicitApproval ? changeOwner : null,
-                      reviewerAccountIds,
-                      approverAccountIds,
-                      fallbackCodeOwners,
-                      overrides,
-                      changedFile));
+      BranchNameKey branch = changeNotes.getChange().getDest();
+      FileCodeOwnerStatusCache.RevisionKey revisionKey = cacheKey.revisionKey();
+      ObjectId revision = revisionKey.destBranchRevision();
+      ImmutableList<ChangedFile> changedFilesList =
+          changedFiles.getOrCompute(
+              changeNotes.getProjectName(),
+              changeNotes.getCurrentPatchSet().commitId(),
+              gitContext);
+      // If an override is present, all paths are approved without visiting code owner configs.
+      ImmutableList<Path> paths =
+          overrides.isEmpty() ? getPaths(changedFilesList) : ImmutableList.of();
+      Map<Path, ResolvedPathCodeOwners> resolvedPathCodeOwners = new ConcurrentHashMap<>();
+      Optional<ImmutableMap<Path, ResolvedPathCodeOwners>> cachedResolvedPathCodeOwners =
+          paths.isEmpty()
+              ? Optional.empty()
+              : fileCodeOwnerStatusCache.getResolvedPathCodeOwners(revisionKey);
+      if (cachedResolvedPathCodeOwners.isPresent()) {
+        logger.atFine().log("resolved code owners found in cache");
+        resolvedPathCodeOwners.putAll(cachedResolvedPathCodeOwners.get());
+      } else if (!paths.isEmpty()) {
+        // The lookup of the code owner configs that apply to the paths is prepared here, and the
+        // code owners of the loaded code owner configs are resolved in one batch, so that the
+        // per-file computations look up the resolved code owners from the transient cache of the
+        // code owner resolver.
+        codeOwnerConfigHierarchy.prepareForFiles(branch, revision, paths);
+        codeOwnerResolver.resolveInBatch(codeOwnerConfigHierarchy.getPreparedCodeOwnerReferences());
+      }
+
+      // The file statuses are only cached if the stream was consumed completely. The resolved code
+      // owners are cached in any case, since they are complete for each path that they contain.
+      List<FileCodeOwnerStatus> computedFileStatuses = new ArrayList<>();
+      Stream<FileCodeOwnerStatus> fileStatuses =
+          fileStatusComputationExecutor
+              .map(
+                  changedFilesList,
+                  changedFile ->
+                      getFileStatus(
+                          codeOwnerConfigHierarchy,
+                          codeOwnerResolver,
+                          branch,
+                          revision,
+                          globalCodeOwners,
+                          globalCodeOwnersBitSet,
+                          approvalEvaluator,
+                          fallbackCodeOwners,
+                          overrides,
+                          resolvedPathCodeOwners,
+                          changedFile))
+              .peek(computedFileStatuses::add)
+              .onClose(
+                  () -> {
+                    if (computedFileStatuses.size() == changedFilesList.size()) {
+                      fileCodeOwnerStatusCache.put(
+                          cacheKey, ImmutableList.copyOf(computedFileStatuses));
+                    }
+
+                    // The resolved code owners are only known for the paths for which all code
+                    // owner configs have been resolved (paths that are approved by global code
+                    // owners, by a code owner that is not the most distant code owner or for which
+                    // the file status was not computed are missing). The paths that are missing are
+                    // resolved again when the file statuses are recomputed, hence the resolved code
+                    // owners are cached even if they are incomplete, but only if they have grown.
+                    if (resolvedPathCodeOwners.size()
+                        > cachedResolvedPathCodeOwners.map(Map::size).orElse(0)) {
+                      fileCodeOwnerStatusCache.putResolvedPathCodeOwners(
+                          revisionKey, ImmutableMap.copyOf(resolvedPathCodeOwners));
+                    }
+                  });
+      if (!inFlightComputation.isPresent()) {
+        return fileStatuses;
+      }
+
+      ImmutableList<FileCodeOwnerStatus> allFileStatuses;
+      try (Stream<FileCodeOwnerStatus> stream = fileStatuses) {
+        allFileStatuses = stream.collect(toImmutableList());
+      }
+      inFlightComputation.get().complete(allFileStatuses);
+      return allFileStatuses.stream();
+    } finally {
+      inFlightComputation.ifPresent(ComputationCoalescer.InFlightComputation::close);
     }
   }
 
@@ -396,6 +684,8 @@ public class CodeOwnerApprovalCheck {
    * @param changeNotes the notes of the change for which the code owner statuses should be returned
    * @param patchSet the patch set for which the code owner statuses should be returned
    * @param accountId the ID of the account for which an approval should be assumed
+   * @return the file statuses, the stream must be closed by the caller so that the repositories
+   *     that were opened to compute the file statuses get closed
    */
   @VisibleForTesting
   public Stream<FileCodeOwnerStatus> getFileStatusesForAccount(
@@ -405,6 +695,8 @@ public class CodeOwnerApprovalCheck {
     requireNonNull(changeNotes, "changeNotes");
     requireNonNull(patchSet, "patchSet");
     requireNonNull(accountId, "accountId");
+    TransientGitContext gitContext = gitContextProvider.get();
+    boolean closeGitContext = true;
     try (Timer0.Context ctx = codeOwnerMetrics.prepareFileStatusComputationForAccount.start()) {
       logger.atFine().log(
           "prepare stream to compute file statuses for account %d (project = %s, change = %d,"
@@ -421,7 +713,7 @@ public class CodeOwnerApprovalCheck {
       logger.atFine().log("requiredApproval = %s", requiredApproval);
 
       BranchNameKey branch = changeNotes.getChange().getDest();
-      ObjectId revision = getDestBranchRevision(changeNotes.getChange());
+      ObjectId revision = getDestBranchRevision(changeNotes.getChange(), gitContext);
       logger.atFine().log("dest branch %s has revision %s", branch.branch(), revision.name());
 
       boolean isProjectOwner = isProjectOwner(changeNotes.getProjectName(), accountId);
@@ -429,29 +721,51 @@ public class CodeOwnerApprovalCheck {
       logger.atFine().log(
           "fallbackCodeOwner = %s, isProjectOwner = %s", fallbackCodeOwners, isProjectOwner);
 
-      CodeOwnerConfigHierarchy codeOwnerConfigHierarchy = codeOwnerConfigHierarchyProvider.get();
+      ImmutableList<ChangedFile> changedFilesList =
+          changedFiles.getOrCompute(changeNotes.getProjectName(), patchSet.commitId(), gitContext);
+      ImmutableList<Path> paths = getPaths(changedFilesList);
+      CodeOwnerConfigHierarchy codeOwnerConfigHierarchy =
+          codeOwnerConfigHierarchyProvider
+              .get()
+              .useGitContext(gitContext)
+              .collectDebugMessages(false)
+              .prepareForFiles(branch, revision, paths);
       CodeOwnerResolver codeOwnerResolver =
-          codeOwnerResolverProvider.get().enforceVisibility(false);
-      return changedFiles.getOrCompute(changeNotes.getProjectName(), patchSet.commitId()).stream()
-          .map(
-              changedFile ->
-                  getFileStatus(
-                      codeOwnerConfigHierarchy,
-                      codeOwnerResolver,
-                      branch,
-                      revision,
-                      /* globalCodeOwners= */ CodeOwnerResolverResult.createEmpty(),
-                      // Do not check for implicit approvals since implicit approvals of other users
-                      // should be ignored. For the given account we do not need to check for
-                      // implicit approvals since all owned files are already covered by the
-                      // explicit approval.
-                      /* implicitApprover= */ null,
-                      /* reviewerAccountIds= */ ImmutableSet.of(),
-                      // Assume an explicit approval of the given account.
-                      /* approverAccountIds= */ ImmutableSet.of(accountId),
-                      fallbackCodeOwners,
-                      /* overrides= */ ImmutableSet.of(),
-                      changedFile));
+          codeOwnerResolverProvider.get().enforceVisibility(false).collectDebugMessages(false);
+      codeOwnerResolver.resolveInBatch(codeOwnerConfigHierarchy.getPreparedCodeOwnerReferences());
+      CodeOwnerApprovalEvaluator approvalEvaluator =
+          new CodeOwnerApprovalEvaluator(
+              // Do not check for implicit approvals since implicit approvals of other users
+              // should be ignored. For the given account we do not need to check for implicit
+              // approvals since all owned files are already covered by the explicit approval.
+              /* implicitApprover= */ null,
+              /* reviewerAccountIds= */ ImmutableSet.of(),
+              // Assume an explicit approval of the given account.
+              /* approverAccountIds= */ ImmutableSet.of(accountId));
+      Stream<FileCodeOwnerStatus> fileStatuses =
+          fileStatusComputationExecutor
+              .map(
+                  changedFilesList,
+                  changedFile ->
+                      getFileStatus(
+                          codeOwnerConfigHierarchy,
+                          codeOwnerResolver,
+                          branch,
+                          revision,
+                          /* globalCodeOwners= */ CodeOwnerResolverResult.createEmpty(),
+                          /* globalCodeOwnersBitSet= */ new BitSet(),
+                          approvalEvaluator,
+                          fallbackCodeOwners,
+                          /* overrides= */ ImmutableSet.of(),
+                          /* resolvedPathCodeOwners= */ new ConcurrentHashMap<>(),
+                          changedFile))
+              .onClose(gitContext::close);
+      closeGitContext = false;
+      return fileStatuses;
+    } finally {
+      if (closeGitContext) {
+        gitContext.close();
+      }
     }
   }
 
@@ -469,10 +783,12 @@ public class CodeOwnerApprovalCheck {
   }
 
   private Stream<FileCodeOwnerStatus> getAllPathsAsApproved(
-      ChangeNotes changeNotes, PatchSet patchSet, String reason)
+      ChangeNotes changeNotes, PatchSet patchSet, TransientGitContext gitContext, String reason)
       throws IOException, PatchListNotAvailableException, DiffNotAvailableException {
     logger.atFine().log("all paths are approved (reason = %s)", reason);
-    return changedFiles.getOrCompute(changeNotes.getProjectName(), patchSet.commitId()).stream()
+    return changedFiles
+        .getOrCompute(changeNotes.getProjectName(), patchSet.commitId(), gitContext)
+        .stream()
         .map(
             changedFile ->
                 FileCodeOwnerStatus.create(
@@ -491,17 +807,36 @@ public class CodeOwnerApprovalCheck {
                                     oldPath, CodeOwnerStatus.APPROVED, reason))));
   }
 
+  /**
+   * Gets the paths of the given changed files for which the code owner status is computed.
+   *
+   * <p>These are the new paths, and the old paths of deleted and renamed files (see {@link
+   * #getFileStatus(CodeOwnerConfigHierarchy, CodeOwnerResolver, BranchNameKey, ObjectId,
+   * CodeOwnerResolverResult, BitSet, CodeOwnerApprovalEvaluator, FallbackCodeOwners, ImmutableSet,
+   * Map, ChangedFile)}).
+   */
+  private static ImmutableList<Path> getPaths(ImmutableList<ChangedFile> changedFiles) {
+    ImmutableList.Builder<Path> paths = ImmutableList.builder();
+    for (ChangedFile changedFile : changedFiles) {
+      changedFile.newPath().ifPresent(paths::add);
+      if (changedFile.isDeletion() || changedFile.isRename()) {
+        changedFile.oldPath().ifPresent(paths::add);
+      }
+    }
+    return paths.build();
+  }
+
   private FileCodeOwnerStatus getFileStatus(
       CodeOwnerConfigHierarchy codeOwnerConfigHierarchy,
       CodeOwnerResolver codeOwnerResolver,
       BranchNameKey branch,
       ObjectId revision,
       CodeOwnerResolverResult globalCodeOwners,
-      @Nullable Account.Id implicitApprover,
-      ImmutableSet<Account.Id> reviewerAccountIds,
-      ImmutableSet<Account.Id> approverAccountIds,
+      BitSet globalCodeOwnersBitSet,
+      CodeOwnerApprovalEvaluator approvalEvaluator,
       FallbackCodeOwners fallbackCodeOwners,
       ImmutableSet<PatchSetApproval> overrides,
+      Map<Path, ResolvedPathCodeOwners> resolvedPathCodeOwners,
       ChangedFile changedFile) {
     try (Timer0.Context ctx = codeOwnerMetrics.computeFileStatus.start()) {
       logger.atFine().log("computing file status for %s", changedFile);
@@ -518,11 +853,11 @@ public class CodeOwnerApprovalCheck {
                           branch,
                           revision,
                           globalCodeOwners,
-                          implicitApprover,
-                          reviewerAccountIds,
-                          approverAccountIds,
+                          globalCodeOwnersBitSet,
+                          approvalEvaluator,
                           fallbackCodeOwners,
                           overrides,
+                          resolvedPathCodeOwners,
                           newPath));
 
       // Compute the code owner status for the old path, if the file was deleted or renamed.
@@ -541,11 +876,11 @@ public class CodeOwnerApprovalCheck {
                     branch,
                     revision,
                     globalCodeOwners,
-                    implicitApprover,
-                    reviewerAccountIds,
-                    approverAccountIds,
+                    globalCodeOwnersBitSet,
+                    approvalEvaluator,
                     fallbackCodeOwners,
                     overrides,
+                    resolvedPathCodeOwners,
                     changedFile.oldPath().get()));
       }
 
@@ -562,11 +897,11 @@ public class CodeOwnerApprovalCheck {
       BranchNameKey branch,
       ObjectId revision,
       CodeOwnerResolverResult globalCodeOwners,
-      @Nullable Account.Id implicitApprover,
-      ImmutableSet<Account.Id> reviewerAccountIds,
-      ImmutableSet<Account.Id> approverAccountIds,
+      BitSet globalCodeOwnersBitSet,
+      CodeOwnerApprovalEvaluator approvalEvaluator,
       FallbackCodeOwners fallbackCodeOwners,
       ImmutableSet<PatchSetApproval> overrides,
+      Map<Path, ResolvedPathCodeOwners> resolvedPathCodeOwners,
       Path absolutePath) {
     logger.atFine().log("computing path status for %s", absolutePath);
 
@@ -591,82 +926,78 @@ public class CodeOwnerApprovalCheck {
 
     if (isApproved(
         globalCodeOwners,
+        globalCodeOwnersBitSet,
         CodeOwnerKind.GLOBAL_CODE_OWNER,
-        approverAccountIds,
-        implicitApprover,
+        approvalEvaluator,
         reason)) {
       codeOwnerStatus.set(CodeOwnerStatus.APPROVED);
     } else {
       logger.atFine().log("%s was not approved by a global code owner", absolutePath);
 
       if (isPending(
-          globalCodeOwners, CodeOwnerKind.GLOBAL_CODE_OWNER, reviewerAccountIds, reason)) {
+          globalCodeOwners,
+          globalCodeOwnersBitSet,
+          CodeOwnerKind.GLOBAL_CODE_OWNER,
+          approvalEvaluator,
+          reason)) {
         codeOwnerStatus.set(CodeOwnerStatus.PENDING);
       }
 
-      AtomicBoolean hasRevelantCodeOwnerDefinitions = new AtomicBoolean(false);
-      AtomicBoolean parentCodeOwnersAreIgnored = new AtomicBoolean(false);
-      codeOwnerConfigHierarchy.visitForFile(
-          branch,
-          revision,
-          absolutePath,
-          (PathCodeOwnersVisitor)
-              pathCodeOwners -> {
-                CodeOwnerKind codeOwnerKind =
-                    RefNames.REFS_CONFIG.equals(pathCodeOwners.getCodeOwnerConfig().key().ref())
-                        ? CodeOwnerKind.DEFAULT_CODE_OWNER
-                        : CodeOwnerKind.REGULAR_CODE_OWNER;
-
-                CodeOwnerResolverResult codeOwners =
-                    resolveCodeOwners(codeOwnerResolver, pathCodeOwners);
-                logger.atFine().log(
-                    "code owners = %s (code owner kind = %s, code owner config folder path = %s,"
-                        + " file name = %s)",
-                    codeOwners,
-                    codeOwnerKind,
-                    pathCodeOwners.getCodeOwnerConfig().key().folderPath(),
-                    pathCodeOwners.getCodeOwnerConfig().key().fileName().orElse("<default>"));
-
-                if (codeOwners.hasRevelantCodeOwnerDefinitions()) {
-                  hasRevelantCodeOwnerDefinitions.set(true);
-                }
-
-                if (isApproved(
-                    codeOwners, codeOwnerKind, approverAccountIds, implicitApprover, reason)) {
-                  codeOwnerStatus.set(CodeOwnerStatus.APPROVED);
-                  return false;
-                } else if (isPending(codeOwners, codeOwnerKind, reviewerAccountIds, reason)) {
-                  codeOwnerStatus.set(CodeOwnerStatus.PENDING);
-
-                  // We need to continue to check if any of the higher-level code owners approved
-                  // the change.
-                  return true;
-                }
-
-                // We need to continue to check if any of the higher-level code owners approved the
-                // change or is a reviewer.
-                return true;
-              },
-          codeOwnerConfigKey -> {
-            logger.atFine().log(
-                "code owner config %s ignores parent code owners for %s",
-                codeOwnerConfigKey, absolutePath);
-            parentCodeOwnersAreIgnored.set(true);
-          });
+      ResolvedPathCodeOwners resolvedCodeOwners = resolvedPathCodeOwners.get(absolutePath);
+      if (resolvedCodeOwners != null) {
+        for (ResolvedPathCodeOwners.ResolvedCodeOwnerConfig resolvedCodeOwnerConfig :
+            resolvedCodeOwners.codeOwnerConfigs()) {
+          if (checkCodeOwnerConfig(
+              resolvedCodeOwnerConfig, approvalEvaluator, codeOwnerStatus, reason)) {
+            break;
+          }
+        }
+      } else {
+        // Resolve the code owners level by level while the code owner configs are visited, so that
+        // the code owners of the more distant code owner configs are not resolved if the path is
+        // already approved by a code owner that is nearer to the path.
+        ImmutableList.Builder<ResolvedPathCodeOwners.ResolvedCodeOwnerConfig> codeOwnerConfigs =
+            ImmutableList.builder();
+        AtomicBoolean parentCodeOwnersAreIgnored = new AtomicBoolean(false);
+        codeOwnerConfigHierarchy.visitForFile(
+            branch,
+            revision,
+            absolutePath,
+            (PathCodeOwnersVisitor)
+                pathCodeOwners -> {
+                  ResolvedPathCodeOwners.ResolvedCodeOwnerConfig resolvedCodeOwnerConfig =
+                      resolveCodeOwnerConfig(codeOwnerResolver, pathCodeOwners);
+                  codeOwnerConfigs.add(resolvedCodeOwnerConfig);
+                  return !checkCodeOwnerConfig(
+                      resolvedCodeOwnerConfig, approvalEvaluator, codeOwnerStatus, reason);
+                },
+            codeOwnerConfigKey -> {
+              logger.atFine().log(
+                  "code owner config %s ignores parent code owners for %s",
+                  codeOwnerConfigKey, absolutePath);
+              parentCodeOwnersAreIgnored.set(true);
+            });
+        resolvedCodeOwners =
+            ResolvedPathCodeOwners.create(
+                codeOwnerConfigs.build(), parentCodeOwnersAreIgnored.get());
+
+        // The resolved code owners can only be reused if all code owner configs have been visited.
+        if (codeOwnerStatus.get() != CodeOwnerStatus.APPROVED) {
+          resolvedPathCodeOwners.put(absolutePath, resolvedCodeOwners);
+        }
+      }
 
       // If no code owners have been defined for the file and if parent code owners are not ignored,
       // the fallback code owners apply if they are configured. We can skip checking them if we
       // already found that the file was approved.
       if (codeOwnerStatus.get() != CodeOwnerStatus.APPROVED
-          && !hasRevelantCodeOwnerDefinitions.get()
-          && !parentCodeOwnersAreIgnored.get()) {
+          && !resolvedCodeOwners.hasRevelantCodeOwnerDefinitions()
+          && !resolvedCodeOwners.parentCodeOwnersIgnored()) {
         CodeOwnerStatus codeOwnerStatusForFallbackCodeOwners =
             getCodeOwnerStatusForFallbackCodeOwners(
                 codeOwnerStatus.get(),
                 branch,
-                implicitApprover,
-                reviewerAccountIds,
-                approverAccountIds,
+                approvalEvaluator,
                 fallbackCodeOwners,
                 absolutePath,
                 reason);
@@ -704,6 +1035,60 @@ public class CodeOwnerApprovalCheck {
     return pathCodeOwnerStatus;
   }
 
+  /**
+   * Resolves the code owners of the given path code owners.
+   *
+   * <p>The resolved code owners do not depend on the approvals and reviewers of the change, hence
+   * they can be reused when the code owner status of the path is computed again for different
+   * approvals or reviewers (see {@link FileCodeOwnerStatusCache}).
+   */
+  private ResolvedPathCodeOwners.ResolvedCodeOwnerConfig resolveCodeOwnerConfig(
+      CodeOwnerResolver codeOwnerResolver, PathCodeOwners pathCodeOwners) {
+    CodeOwnerKind codeOwnerKind =
+        RefNames.REFS_CONFIG.equals(pathCodeOwners.getCodeOwnerConfig().key().ref())
+            ? CodeOwnerKind.DEFAULT_CODE_OWNER
+            : CodeOwnerKind.REGULAR_CODE_OWNER;
+    return ResolvedPathCodeOwners.ResolvedCodeOwnerConfig.create(
+        pathCodeOwners.getCodeOwnerConfig().key(),
+        codeOwnerKind,
+        resolveCodeOwners(codeOwnerResolver, pathCodeOwners));
+  }
+
+  /**
+   * Checks whether the code owners of the given code owner config approved the path or are
+   * reviewers, and updates the given code owner status accordingly.
+   *
+   * @return whether the path is approved by the code owners of the given code owner config, in this
+   *     case the code owners of the more distant code owner configs need not be checked
+   */
+  private boolean checkCodeOwnerConfig(
+      ResolvedPathCodeOwners.ResolvedCodeOwnerConfig resolvedCodeOwnerConfig,
+      CodeOwnerApprovalEvaluator approvalEvaluator,
+      AtomicReference<CodeOwnerStatus> codeOwnerStatus,
+      AtomicReference<String> reason) {
+    CodeOwnerKind codeOwnerKind = resolvedCodeOwnerConfig.codeOwnerKind();
+    CodeOwnerResolverResult codeOwners = resolvedCodeOwnerConfig.codeOwners();
+    logger.atFine().log(
+        "code owners = %s (code owner kind = %s, code owner config folder path = %s,"
+            + " file name = %s)",
+        codeOwners,
+        codeOwnerKind,
+        resolvedCodeOwnerConfig.key().folderPath(),
+        resolvedCodeOwnerConfig.key().fileName().orElse("<default>"));
+
+    BitSet codeOwnersBitSet = approvalEvaluator.toBitSet(resolvedCodeOwnerConfig);
+    if (isApproved(codeOwners, codeOwnersBitSet, codeOwnerKind, approvalEvaluator, reason)) {
+      codeOwnerStatus.set(CodeOwnerStatus.APPROVED);
+      return true;
+    } else if (isPending(codeOwners, codeOwnersBitSet, codeOwnerKind, approvalEvaluator, reason)) {
+      codeOwnerStatus.set(CodeOwnerStatus.PENDING);
+    }
+
+    // We need to continue to check if any of the higher-level code owners approved the change or
+    // is a reviewer.
+    return false;
+  }
+
   /**
    * Gets the code owner status for the given path when project owners are configured as fallback
    * code owners.
@@ -719,6 +1104,10 @@ public class CodeOwnerApprovalCheck {
         "computing code owner status for %s with project owners as fallback code owners",
         absolutePath);
 
+    // The computed file status depends on the project owners now, hence it must be invalidated if
+    // group memberships change.
+    fileCodeOwnerStatusCache.recordProjectOwnersLookup(branch.project());
+
     CodeOwnerStatus codeOwnerStatus = CodeOwnerStatus.INSUFFICIENT_REVIEWERS;
     if (isApprovedByProjectOwner(branch.project(), approverAccountIds, implicitApprover, reason)) {
       codeOwnerStatus = CodeOwnerStatus.APPROVED;
@@ -807,9 +1196,7 @@ public class CodeOwnerApprovalCheck {
   private CodeOwnerStatus getCodeOwnerStatusForFallbackCodeOwners(
       CodeOwnerStatus codeOwnerStatus,
       BranchNameKey branch,
-      @Nullable Account.Id implicitApprover,
-      ImmutableSet<Account.Id> reviewerAccountIds,
-      ImmutableSet<Account.Id> approverAccountIds,
+      CodeOwnerApprovalEvaluator approvalEvaluator,
       FallbackCodeOwners fallbackCodeOwners,
       Path absolutePath,
       AtomicReference<String> reason) {
@@ -822,10 +1209,19 @@ public class CodeOwnerApprovalCheck {
         return codeOwnerStatus;
       case PROJECT_OWNERS:
         return getCodeOwnerStatusForProjectOwnersAsFallbackCodeOwners(
-            branch, implicitApprover, reviewerAccountIds, approverAccountIds, absolutePath, reason);
+            branch,
+            approvalEvaluator.implicitApprover(),
+            approvalEvaluator.reviewerAccountIds(),
+            approvalEvaluator.approverAccountIds(),
+            absolutePath,
+            reason);
       case ALL_USERS:
         return getCodeOwnerStatusIfAllUsersAreCodeOwners(
-            implicitApprover, reviewerAccountIds, approverAccountIds, absolutePath, reason);
+            approvalEvaluator.implicitApprover(),
+            approvalEvaluator.reviewerAccountIds(),
+            approvalEvaluator.approverAccountIds(),
+            absolutePath,
+            reason);
     }
 
     throw new CodeOwnersInternalServerErrorException(
@@ -883,22 +1279,23 @@ public class CodeOwnerApprovalCheck {
    * Checks whether the given path was implicitly or explicitly approved.
    *
    * @param codeOwners users that own the path
+   * @param codeOwnersBitSet the given {@code codeOwners} as bit set (see {@link
+   *     CodeOwnerApprovalEvaluator#toBitSet(CodeOwnerResolverResult)} and {@link
+   *     CodeOwnerApprovalEvaluator#toBitSet(ResolvedPathCodeOwners.ResolvedCodeOwnerConfig)})
    * @param codeOwnerKind the kind of the given {@code codeOwners}
-   * @param approverAccountIds the IDs of the accounts that have approved the change
-   * @param implicitApprover the ID of the account the could be an implicit approver (aka last patch
-   *     set uploader)
+   * @param approvalEvaluator the evaluator that knows the approvers and the implicit approver
    * @param reason {@link AtomicReference} on which the reason is being set if the path is approved
    * @return whether the path was approved
    */
   private boolean isApproved(
       CodeOwnerResolverResult codeOwners,
+      BitSet codeOwnersBitSet,
       CodeOwnerKind codeOwnerKind,
-      ImmutableSet<Account.Id> approverAccountIds,
-      @Nullable Account.Id implicitApprover,
+      CodeOwnerApprovalEvaluator approvalEvaluator,
       AtomicReference<String> reason) {
+    Account.Id implicitApprover = approvalEvaluator.implicitApprover();
     if (implicitApprover != null) {
-      if (codeOwners.codeOwnersAccountIds().contains(implicitApprover)
-          || codeOwners.ownedByAllUsers()) {
+      if (approvalEvaluator.isImplicitApprover(codeOwnersBitSet) || codeOwners.ownedByAllUsers()) {
         // If the uploader of the patch set owns the path, there is an implicit code owner
         // approval from the patch set uploader so that the path is automatically approved.
         reason.set(
@@ -913,16 +1310,12 @@ public class CodeOwnerApprovalCheck {
       }
     }
 
-    if (!Collections.disjoint(approverAccountIds, codeOwners.codeOwnersAccountIds())
-        || (codeOwners.ownedByAllUsers() && !approverAccountIds.isEmpty())) {
+    Optional<Account.Id> approver =
+        codeOwners.ownedByAllUsers()
+            ? approvalEvaluator.getAnyApprover()
+            : approvalEvaluator.getApprover(codeOwnersBitSet);
+    if (approver.isPresent()) {
       // At least one of the code owners approved the change.
-      Optional<Account.Id> approver =
-          codeOwners.ownedByAllUsers()
-              ? approverAccountIds.stream().findAny()
-              : approverAccountIds.stream()
-                  .filter(accountId -> codeOwners.codeOwnersAccountIds().contains(accountId))
-                  .findAny();
-      checkState(approver.isPresent(), "no approver found");
       reason.set(
           String.format(
               "approved by %s who is a %s%s",
@@ -941,26 +1334,26 @@ public class CodeOwnerApprovalCheck {
    * Checks whether any of the reviewers is a code owner of the path.
    *
    * @param codeOwners users that own the path
+   * @param codeOwnersBitSet the given {@code codeOwners} as bit set (see {@link
+   *     CodeOwnerApprovalEvaluator#toBitSet(CodeOwnerResolverResult)} and {@link
+   *     CodeOwnerApprovalEvaluator#toBitSet(ResolvedPathCodeOwners.ResolvedCodeOwnerConfig)})
    * @param codeOwnerKind the kind of the given {@code codeOwners}
-   * @param reviewerAccountIds the IDs of the accounts that are reviewer of the change
+   * @param approvalEvaluator the evaluator that knows the reviewers
    * @param reason {@link AtomicReference} on which the reason is being set if the status for the
    *     path is {@code PENDING}
    * @return whether the path was approved
    */
   private boolean isPending(
       CodeOwnerResolverResult codeOwners,
+      BitSet codeOwnersBitSet,
       CodeOwnerKind codeOwnerKind,
-      ImmutableSet<Account.Id> reviewerAccountIds,
+      CodeOwnerApprovalEvaluator approvalEvaluator,
       AtomicReference<String> reason) {
-    if (!Collections.disjoint(codeOwners.codeOwnersAccountIds(), reviewerAccountIds)
-        || (codeOwners.ownedByAllUsers() && !reviewerAccountIds.isEmpty())) {
-      Optional<Account.Id> reviewer =
-          codeOwners.ownedByAllUsers()
-              ? reviewerAccountIds.stream().findAny()
-              : reviewerAccountIds.stream()
-                  .filter(accountId -> codeOwners.codeOwnersAccountIds().contains(accountId))
-                  .findAny();
-      checkState(reviewer.isPresent(), "no reviewer found");
+    Optional<Account.Id> reviewer =
+        codeOwners.ownedByAllUsers()
+            ? approvalEvaluator.getAnyReviewer()
+            : approvalEvaluator.getReviewer(codeOwnersBitSet);
+    if (reviewer.isPresent()) {
       reason.set(
           String.format(
               "reviewer %s is a %s%s",
@@ -1128,15 +1521,65 @@ public class CodeOwnerApprovalCheck {
    * @throws ResourceConflictException thrown if the destination branch is not found, e.g. when the
    *     branch got deleted after the change was created
    */
-  private ObjectId getDestBranchRevision(Change change)
+  private ObjectId getDestBranchRevision(Change change, TransientGitContext gitContext)
       throws IOException, ResourceConflictException {
-    try (Repository repository = repoManager.openRepository(change.getProject());
-        RevWalk rw = new RevWalk(repository)) {
-      Ref ref = repository.exactRef(change.getDest().branch());
-      if (ref == null) {
-        throw new ResourceConflictException("destination branch not found");
-      }
-      return rw.parseCommit(ref.getObjectId());
+    Ref ref = gitContext.getRepository(change.getProject()).exactRef(change.getDest().branch());
+    if (ref == null) {
+      throw new ResourceConflictException("destination branch not found");
+    }
+    return gitContext.withRevWalk(change.getProject(), rw -> rw.parseCommit(ref.getObjectId()));
+  }
+
+  /**
+   * Computation of the code owner statuses of the files in a change that was prepared by {@link
+   * #prepareFileStatusComputation(CodeOwnerConfigHierarchy, CodeOwnerResolver, ChangeNotes,
+   * TransientGitContext)}.
+   */
+  private static class FileStatusComputation {
+    @FunctionalInterface
+    interface Computation {
+      Stream<FileCodeOwnerStatus> compute(boolean lazy)
+          throws IOException, PatchListNotAvailableException, DiffNotAvailableException;
+    }
+
+    /** Creates a computation of file statuses that are not cached. */
+    static FileStatusComputation create(Computation computation) {
+      return new FileStatusComputation(Optional.empty(), computation);
+    }
+
+    /** Creates a computation of file statuses that are cached under the given key. */
+    static FileStatusComputation create(
+        FileCodeOwnerStatusCache.Key cacheKey, Computation computation) {
+      return new FileStatusComputation(Optional.of(cacheKey), computation);
+    }
+
+    private final Optional<FileCodeOwnerStatusCache.Key> cacheKey;
+    private final Computation computation;
+
+    private FileStatusComputation(
+        Optional<FileCodeOwnerStatusCache.Key> cacheKey, Computation computation) {
+      this.cacheKey = cacheKey;
+      this.computation = computation;
+    }
+
+    /**
+     * The key under which the file statuses are cached, {@link Optional#empty()} if the file
+     * statuses are not cached (e.g. because the change is exempted from requiring code owner
+     * approvals).
+     */
+    Optional<FileCodeOwnerStatusCache.Key> cacheKey() {
+      return cacheKey;
+    }
+
+    /**
+     * Computes the file statuses.
+     *
+     * @param lazy whether the file statuses should be computed while the returned stream is
+     *     consumed, should be {@code true} if the caller may not need all file statuses
+     */
+    Stream<FileCodeOwnerStatus> compute(boolean lazy)
+        throws IOException, PatchListNotAvailableException, DiffNotAvailableException {
+      return computation.compute(lazy);
     }
   }
 }
@@ -0,0 +1,247 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Account;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Evaluates whether the code owners of a path have approved a change or are reviewers of the
+ * change.
+ *
+ * <p>All accounts that are relevant for the evaluation (the approvers, the reviewers and the
+ * implicit approver) are mapped to dense int IDs when the evaluator is created. This allows to
+ * represent the code owners of a path, the approvers and the reviewers as {@link BitSet}s, so that
+ * checking whether a path is approved or pending only requires to intersect bit sets. Code owners
+ * that are neither approver, reviewer nor implicit approver are irrelevant for the evaluation and
+ * are not included into the bit sets.
+ *
+ * <p>The code owners of code owner configs are converted to bit sets by looking up the relevant
+ * accounts in the sorted account IDs of the code owners, which are computed once when the code
+ * owners are resolved (see {@link ResolvedPathCodeOwners.ResolvedCodeOwnerConfig}). This way
+ * the costs of the conversion only depend on the number of relevant accounts, but not on the
+ * number of code owners.
+ *
+ * <p>If several approvers (or reviewers) are code owners, the approver (or reviewer) that comes
+ * first in the order in which the approvers (or reviewers) were given is returned, which is the
+ * same approver (or reviewer) that is found by iterating over the given sets.
+ *
+ * <p>This class is immutable and thread-safe.
+ */
+class CodeOwnerApprovalEvaluator {
+  @Nullable private final Account.Id implicitApprover;
+  private final ImmutableSet<Account.Id> reviewerAccountIds;
+  private final ImmutableSet<Account.Id> approverAccountIds;
+
+  /**
+   * Dense int IDs of the relevant accounts. The approvers have the IDs {@code 0} to {@code
+   * approverAccountIds.size() - 1} in the order of {@link #approverAccountIds}.
+   */
+  private final ImmutableMap<Account.Id, Integer> denseIds;
+
+  /** Accounts by dense int ID. */
+  private final ImmutableList<Account.Id> accounts;
+
+  /** The account IDs of the relevant accounts, sorted in ascending order. */
+  private final int[] sortedAccountIds;
+
+  /** The dense int IDs of the accounts in {@link #sortedAccountIds}, at the same positions. */
+  private final int[] sortedDenseIds;
+
+  /** The dense int IDs of the reviewers, in the order of {@link #reviewerAccountIds}. */
+  private final int[] reviewerDenseIds;
+
+  private final BitSet approvers;
+  private final BitSet reviewers;
+
+  /** The dense int ID of the {@link #implicitApprover}, {@code -1} if there is none. */
+  private final int implicitApproverDenseId;
+
+  /**
+   * Creates a {@link CodeOwnerApprovalEvaluator}.
+   *
+   * @param implicitApprover the ID of the account the could be an implicit approver (aka last patch
+   *     set uploader), {@code null} if implicit approvals are disabled
+   * @param reviewerAccountIds the IDs of the accounts that are reviewer of the change
+   * @param approverAccountIds the IDs of the accounts that have approved the change
+   */
+  CodeOwnerApprovalEvaluator(
+      @Nullable Account.Id implicitApprover,
+      ImmutableSet<Account.Id> reviewerAccountIds,
+      ImmutableSet<Account.Id> approverAccountIds) {
+    this.implicitApprover = implicitApprover;
+    this.reviewerAccountIds = requireNonNull(reviewerAccountIds, "reviewerAccountIds");
+    this.approverAccountIds = requireNonNull(approverAccountIds, "approverAccountIds");
+
+    Map<Account.Id, Integer> denseIds = new HashMap<>();
+    ImmutableList.Builder<Account.Id> accounts = ImmutableList.builder();
+    this.approvers = new BitSet();
+    for (Account.Id approver : approverAccountIds) {
+      approvers.set(assignDenseId(denseIds, accounts, approver));
+    }
+    this.reviewers = new BitSet();
+    this.reviewerDenseIds = new int[reviewerAccountIds.size()];
+    int i = 0;
+    for (Account.Id reviewer : reviewerAccountIds) {
+      int denseId = assignDenseId(denseIds, accounts, reviewer);
+      reviewers.set(denseId);
+      reviewerDenseIds[i++] = denseId;
+    }
+    this.implicitApproverDenseId =
+        implicitApprover != null ? assignDenseId(denseIds, accounts, implicitApprover) : -1;
+    this.denseIds = ImmutableMap.copyOf(denseIds);
+    this.accounts = accounts.build();
+    this.sortedAccountIds = this.accounts.stream().mapToInt(Account.Id::get).sorted().toArray();
+    this.sortedDenseIds = new int[sortedAccountIds.length];
+    for (int j = 0; j < sortedAccountIds.length; j++) {
+      sortedDenseIds[j] = this.denseIds.get(Account.id(sortedAccountIds[j]));
+    }
+  }
+
+  private static int assignDenseId(
+      Map<Account.Id, Integer> denseIds,
+      ImmutableList.Builder<Account.Id> accounts,
+      Account.Id accountId) {
+    Integer denseId = denseIds.get(accountId);
+    if (denseId == null) {
+      denseId = denseIds.size();
+      denseIds.put(accountId, denseId);
+      accounts.add(accountId);
+    }
+    return denseId;
+  }
+
+  /** Returns the ID of the account that could be an implicit approver, if any. */
+  @Nullable
+  Account.Id implicitApprover() {
+    return implicitApprover;
+  }
+
+  /** Returns the IDs of the accounts that are reviewer of the change. */
+  ImmutableSet<Account.Id> reviewerAccountIds() {
+    return reviewerAccountIds;
+  }
+
+  /** Returns the IDs of the accounts that have approved the change. */
+  ImmutableSet<Account.Id> approverAccountIds() {
+    return approverAccountIds;
+  }
+
+  /**
+   * Converts the given code owners to a bit set.
+   *
+   * <p>Only code owners that are relevant for the evaluation (approvers, reviewers and the implicit
+   * approver) are included.
+   *
+   * <p>The returned bit set should be computed once per {@link CodeOwnerResolverResult} and then be
+   * reused for all checks. For the code owners of code owner configs {@link
+   * #toBitSet(ResolvedPathCodeOwners.ResolvedCodeOwnerConfig)} should be used, since it doesn't
+   * need to look up each code owner.
+   *
+   * @param codeOwners the code owners that should be converted to a bit set
+   * @return the code owners as bit set
+   */
+  BitSet toBitSet(CodeOwnerResolverResult codeOwners) {
+    BitSet codeOwnerBitSet = new BitSet(accounts.size());
+    if (denseIds.isEmpty()) {
+      return codeOwnerBitSet;
+    }
+    for (CodeOwner codeOwner : codeOwners.codeOwners()) {
+      Integer denseId = denseIds.get(codeOwner.accountId());
+      if (denseId != null) {
+        codeOwnerBitSet.set(denseId);
+      }
+    }
+    return codeOwnerBitSet;
+  }
+
+  /**
+   * Converts the code owners of the given code owner config to a bit set.
+   *
+   * <p>Same as {@link #toBitSet(CodeOwnerResolverResult)}, but only the relevant accounts are
+   * looked up in the sorted account IDs of the code owners.
+   *
+   * @param resolvedCodeOwnerConfig the code owner config of which the code owners should be
+   *     converted to a bit set
+   * @return the code owners as bit set
+   */
+  BitSet toBitSet(ResolvedPathCodeOwners.ResolvedCodeOwnerConfig resolvedCodeOwnerConfig) {
+    BitSet codeOwnerBitSet = new BitSet(accounts.size());
+    int[] codeOwnerAccountIds = resolvedCodeOwnerConfig.sortedCodeOwnerAccountIds();
+    if (codeOwnerAccountIds.length == 0) {
+      return codeOwnerBitSet;
+    }
+    for (int j = 0; j < sortedAccountIds.length; j++) {
+      if (Arrays.binarySearch(codeOwnerAccountIds, sortedAccountIds[j]) >= 0) {
+        codeOwnerBitSet.set(sortedDenseIds[j]);
+      }
+    }
+    return codeOwnerBitSet;
+  }
+
+  /** Whether the implicit approver is contained in the given code owners. */
+  boolean isImplicitApprover(BitSet codeOwners) {
+    return implicitApproverDenseId >= 0 && codeOwners.get(implicitApproverDenseId);
+  }
+
+  /** Returns the first approver, if there is any approver. */
+  Optional<Account.Id> getAnyApprover() {
+    return getAccount(approvers.nextSetBit(0));
+  }
+
+  /** Returns the first approver that is contained in the given code owners, if any. */
+  Optional<Account.Id> getApprover(BitSet codeOwners) {
+    if (!approvers.intersects(codeOwners)) {
+      return Optional.empty();
+    }
+    // The approvers have the lowest dense IDs in the order in which they were given, hence the
+    // lowest set bit of the intersection is the first approver that is a code owner.
+    BitSet approvingCodeOwners = (BitSet) approvers.clone();
+    approvingCodeOwners.and(codeOwners);
+    return getAccount(approvingCodeOwners.nextSetBit(0));
+  }
+
+  /** Returns the first reviewer, if there is any reviewer. */
+  Optional<Account.Id> getAnyReviewer() {
+    return reviewerDenseIds.length > 0 ? getAccount(reviewerDenseIds[0]) : Optional.empty();
+  }
+
+  /** Returns the first reviewer that is contained in the given code owners, if any. */
+  Optional<Account.Id> getReviewer(BitSet codeOwners) {
+    if (!reviewers.intersects(codeOwners)) {
+      return Optional.empty();
+    }
+    for (int reviewerDenseId : reviewerDenseIds) {
+      if (codeOwners.get(reviewerDenseId)) {
+        return getAccount(reviewerDenseId);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private Optional<Account.Id> getAccount(int denseId) {
+    return denseId >= 0 ? Optional.of(accounts.get(denseId)) : Optional.empty();
+  }
+}
@@ -85,6 +85,24 @@ public interface CodeOwnerBackend {
    */
   Path getFilePath(CodeOwnerConfig.Key codeOwnerConfigKey);
 
+  /**
+   * Returns the name of the code owner config files that are looked up by folder, i.e. the file
+   * name that is used if the {@link CodeOwnerConfig.Key#fileName()} in the code owner config key is
+   * not set.
+   *
+   * <p>Backends that store code owner configs in files in the branch should return the file name,
+   * so that the folders that contain code owner config files can be indexed (see {@link
+   * CodeOwnerConfigFolderIndex}). If {@link Optional#empty()} is returned, each folder is checked
+   * individually for a code owner config.
+   *
+   * @param project the project in which the code owner config files are stored
+   * @return the name of the code owner config files that are looked up by folder, {@link
+   *     Optional#empty()} if code owner configs are not stored as files in the branch
+   */
+  default Optional<String> getDefaultFileName(Project.NameKey project) {
+    return Optional.empty();
+  }
+
   /**
    * Updates/Creates a code owner config.
    *
@@ -0,0 +1,56 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginConfiguration;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Executor to check the code owner config files of multiple branches in parallel (by the {@code
+ * code_owners.check_config} REST endpoint).
+ *
+ * <p>Checking the code owner config files of a branch is expensive, hence the check uses own
+ * threads, so that it doesn't occupy the threads that compute the file statuses for the code
+ * owners submit rule (see {@link FileStatusComputationExecutor}).
+ *
+ * <p>The number of threads is configured by {@code
+ * plugin.code-owners.maxThreadsForCodeOwnerConfigCheck} in {@code gerrit.config}. If it is set to
+ * {@code 1}, no threads are started and the branches are checked sequentially on the request
+ * thread.
+ */
+@Singleton
+public class CodeOwnerConfigCheckExecutor extends ParallelComputationExecutor {
+  private static final String QUEUE_NAME = "CodeOwnersConfigCheck";
+
+  private final CodeOwnersPluginConfiguration codeOwnersPluginConfiguration;
+
+  @Inject
+  CodeOwnerConfigCheckExecutor(
+      WorkQueue workQueue,
+      CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
+      ThreadLocalRequestContext threadLocalRequestContext) {
+    super(workQueue, threadLocalRequestContext, QUEUE_NAME);
+    this.codeOwnersPluginConfiguration = codeOwnersPluginConfiguration;
+  }
+
+  @Override
+  protected int getMaxThreads() {
+    return codeOwnersPluginConfiguration.getGlobalConfig().getMaxThreadsForCodeOwnerConfigCheck();
+  }
+}
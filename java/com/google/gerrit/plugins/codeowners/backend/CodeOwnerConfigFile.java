@@ -27,6 +27,7 @@ import com.google.gerrit.server.git.meta.MetaDataUpdate;
 import com.google.gerrit.server.git.meta.VersionedMetaData;
 import com.google.inject.Inject;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Optional;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.CommitBuilder;
@@ -52,10 +53,58 @@ import org.eclipse.jgit.treewalk.TreeWalk;
 public class CodeOwnerConfigFile extends VersionedMetaData {
   public static class Factory {
     private final CodeOwnerMetrics codeOwnerMetrics;
+    private final ParsedCodeOwnerConfigCache parsedCodeOwnerConfigCache;
+    private final CodeOwnerConfigFileProbe codeOwnerConfigFileProbe;
 
     @Inject
-    Factory(CodeOwnerMetrics codeOwnerMetrics) {
+    Factory(
+        CodeOwnerMetrics codeOwnerMetrics,
+        ParsedCodeOwnerConfigCache parsedCodeOwnerConfigCache,
+        CodeOwnerConfigFileProbe codeOwnerConfigFileProbe) {
       this.codeOwnerMetrics = codeOwnerMetrics;
+      this.parsedCodeOwnerConfigCache = parsedCodeOwnerConfigCache;
+      this.codeOwnerConfigFileProbe = codeOwnerConfigFileProbe;
+    }
+
+    /**
+     * Loads the code owner config with the given key from the given revision, if it exists.
+     *
+     * <p>Other than {@link #load(String, CodeOwnerConfigParser, RevWalk, ObjectId,
+     * CodeOwnerConfig.Key)} this method first checks whether the code owner config file exists (see
+     * {@link CodeOwnerConfigFileProbe}) and only loads it if it does. This is cheaper for
+     * non-existing code owner configs, which is the common case when code owner configs are looked
+     * up for folders.
+     *
+     * @param defaultFileName the name of the code owner configuration files that should be used if
+     *     none is specified in the code owner config key
+     * @param codeOwnerConfigParser the parser that should be used to parse code owner config files
+     * @param revWalk the revWalk that should be used to load the revision
+     * @param revision the branch revision from which the code owner config file should be loaded
+     * @param codeOwnerConfigKey the key of the code owner config
+     * @return the loaded code owner config, {@link Optional#empty()} if it doesn't exist
+     * @throws IOException if the repository can't be accessed for some reason
+     * @throws ConfigInvalidException if the code owner config exists but can't be read due to an
+     *     invalid format
+     */
+    public Optional<CodeOwnerConfig> loadIfExists(
+        String defaultFileName,
+        CodeOwnerConfigParser codeOwnerConfigParser,
+        RevWalk revWalk,
+        ObjectId revision,
+        CodeOwnerConfig.Key codeOwnerConfigKey)
+        throws IOException, ConfigInvalidException {
+      requireNonNull(defaultFileName, "defaultFileName");
+      requireNonNull(revWalk, "revWalk");
+      requireNonNull(revision, "revision");
+      requireNonNull(codeOwnerConfigKey, "codeOwnerConfigKey");
+
+      Path filePath = codeOwnerConfigKey.filePath(defaultFileName);
+      if (!codeOwnerConfigFileProbe.exists(revWalk, revision, filePath)) {
+        return Optional.empty();
+      }
+
+      return load(defaultFileName, codeOwnerConfigParser, revWalk, revision, codeOwnerConfigKey)
+          .getLoadedCodeOwnerConfig();
     }
 
     /**
@@ -99,7 +148,11 @@ public class CodeOwnerConfigFile extends VersionedMetaData {
 
       CodeOwnerConfigFile codeOwnerConfigFile =
           new CodeOwnerConfigFile(
-              codeOwnerMetrics, defaultFileName, codeOwnerConfigParser, codeOwnerConfigKey);
+              codeOwnerMetrics,
+              parsedCodeOwnerConfigCache,
+              defaultFileName,
+              codeOwnerConfigParser,
+              codeOwnerConfigKey);
       codeOwnerConfigFile.load(codeOwnerConfigKey.project(), revWalk, revision);
       return codeOwnerConfigFile;
     }
@@ -132,13 +185,18 @@ public class CodeOwnerConfigFile extends VersionedMetaData {
 
       CodeOwnerConfigFile codeOwnerConfigFile =
           new CodeOwnerConfigFile(
-              codeOwnerMetrics, defaultFileName, codeOwnerConfigParser, codeOwnerConfigKey);
+              codeOwnerMetrics,
+              parsedCodeOwnerConfigCache,
+              defaultFileName,
+              codeOwnerConfigParser,
+              codeOwnerConfigKey);
       codeOwnerConfigFile.load(codeOwnerConfigKey.project(), repository);
       return codeOwnerConfigFile;
     }
   }
 
   private final CodeOwnerMetrics codeOwnerMetrics;
+  private final ParsedCodeOwnerConfigCache parsedCodeOwnerConfigCache;
   private final String defaultFileName;
   private final CodeOwnerConfigParser codeOwnerConfigParser;
   private final CodeOwnerConfig.Key codeOwnerConfigKey;
@@ -149,10 +207,12 @@ public class CodeOwnerConfigFile extends VersionedMetaData {
 
   private CodeOwnerConfigFile(
       CodeOwnerMetrics codeOwnerMetrics,
+      ParsedCodeOwnerConfigCache parsedCodeOwnerConfigCache,
       String defaultFileName,
       CodeOwnerConfigParser codeOwnerConfigParser,
       CodeOwnerConfig.Key codeOwnerConfigKey) {
     this.codeOwnerMetrics = codeOwnerMetrics;
+    this.parsedCodeOwnerConfigCache = parsedCodeOwnerConfigCache;
     this.defaultFileName = defaultFileName;
     this.codeOwnerConfigParser = codeOwnerConfigParser;
     this.codeOwnerConfigKey = codeOwnerConfigKey;
@@ -215,23 +275,10 @@ public class CodeOwnerConfigFile extends VersionedMetaData {
     if (revision != null) {
       String codeOwnerConfigFilePath =
           JgitPath.of(codeOwnerConfigKey.filePath(defaultFileName)).get();
-      Optional<String> codeOwnerConfigFileContent = getFileIfItExists(codeOwnerConfigFilePath);
-      if (codeOwnerConfigFileContent.isPresent()) {
-        try (Timer1.Context<String> ctx =
-            codeOwnerMetrics.parseCodeOwnerConfig.start(
-                codeOwnerConfigParser.getClass().getSimpleName())) {
-          loadedCodeOwnersConfig =
-              Optional.of(
-                  codeOwnerConfigParser.parse(
-                      revision, codeOwnerConfigKey, codeOwnerConfigFileContent.get()));
-        } catch (CodeOwnerConfigParseException e) {
-          throw new InvalidCodeOwnerConfigException(
-              e.getFullMessage(defaultFileName),
-              projectName,
-              getRefName(),
-              codeOwnerConfigFilePath,
-              e);
-        }
+      Optional<ObjectId> codeOwnerConfigFileBlobId = getBlobIdIfFileExists(codeOwnerConfigFilePath);
+      if (codeOwnerConfigFileBlobId.isPresent()) {
+        loadedCodeOwnersConfig =
+            Optional.of(parse(codeOwnerConfigFilePath, codeOwnerConfigFileBlobId.get()));
       }
     }
 
@@ -239,15 +286,47 @@ public class CodeOwnerConfigFile extends VersionedMetaData {
   }
 
   /**
-   * Loads the file with the given path and returns the file content if the file exists.
+   * Parses the code owner config file with the given path.
+   *
+   * <p>If the blob of the code owner config file was already parsed before (by the same parser),
+   * the parsed code owner config is taken from the {@link ParsedCodeOwnerConfigCache}.
+   *
+   * @param filePath the path of the code owner config file
+   * @param blobId the ID of the blob that contains the code owner config file
+   * @return the parsed code owner config
+   */
+  private CodeOwnerConfig parse(String filePath, ObjectId blobId)
+      throws IOException, ConfigInvalidException {
+    Optional<CodeOwnerConfig> cachedCodeOwnerConfig =
+        parsedCodeOwnerConfigCache.get(codeOwnerConfigParser, blobId, codeOwnerConfigKey, revision);
+    if (cachedCodeOwnerConfig.isPresent()) {
+      return cachedCodeOwnerConfig.get();
+    }
+
+    String codeOwnerConfigFileContent = readUTF8(filePath);
+    try (Timer1.Context<String> ctx =
+        codeOwnerMetrics.parseCodeOwnerConfig.start(
+            codeOwnerConfigParser.getClass().getSimpleName())) {
+      CodeOwnerConfig codeOwnerConfig =
+          codeOwnerConfigParser.parse(revision, codeOwnerConfigKey, codeOwnerConfigFileContent);
+      parsedCodeOwnerConfigCache.put(codeOwnerConfigParser, blobId, codeOwnerConfig);
+      return codeOwnerConfig;
+    } catch (CodeOwnerConfigParseException e) {
+      throw new InvalidCodeOwnerConfigException(
+          e.getFullMessage(defaultFileName), projectName, getRefName(), filePath, e);
+    }
+  }
+
+  /**
+   * Looks up the file with the given path and returns the ID of its blob if the file exists.
    *
-   * @param filePath the path of the file that should be loaded
-   * @return the content of the file if it exists, otherwise {@link Optional#empty()}.
+   * @param filePath the path of the file that should be looked up
+   * @return the ID of the blob of the file if it exists, otherwise {@link Optional#empty()}.
    */
-  private Optional<String> getFileIfItExists(String filePath) throws IOException {
+  private Optional<ObjectId> getBlobIdIfFileExists(String filePath) throws IOException {
     try (TreeWalk tw = TreeWalk.forPath(rw.getObjectReader(), filePath, revision.getTree())) {
       if (tw != null) {
-        return Optional.of(readUTF8(filePath));
+        return Optional.of(tw.getObjectId(0));
       }
     }
     return Optional.empty();
@@ -0,0 +1,163 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.cache.Cache;
+import com.google.gerrit.plugins.codeowners.util.JgitPath;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Checks whether a code owner config file exists, without loading it.
+ *
+ * <p>Loading a code owner config file via {@link CodeOwnerConfigFile} is comparatively expensive,
+ * even if the file doesn't exist. Most lookups of code owner config files are negative (most
+ * folders do not contain a code owner config file), hence it pays off to check the existence of the
+ * file first and only load it if it exists.
+ *
+ * <p>To check the existence of a code owner config file, the tree of its folder is resolved and the
+ * entries of the folder tree are checked for the file name. Since trees are immutable, the result
+ * only depends on the ID of the folder tree and the file name. Negative results are cached
+ * server-wide by these, so that they can be reused across requests and revisions (the tree of a
+ * folder only changes when a file in the folder is changed). In addition negative results are
+ * cached by the revision and the file path, so that repeated lookups in the same revision do not
+ * need to resolve the folder tree (which requires reading the trees of all parent folders).
+ */
+@Singleton
+public class CodeOwnerConfigFileProbe {
+  static final String CACHE_NAME = "folders_without_code_owner_config_file";
+
+  /** Default for the maximum number of negative results that are cached. */
+  private static final long DEFAULT_MAX_ENTRIES = 100000;
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, Key.class, Boolean.class).maximumWeight(DEFAULT_MAX_ENTRIES);
+        bind(CodeOwnerConfigFileProbe.class);
+      }
+    };
+  }
+
+  private final Cache<Key, Boolean> foldersWithoutCodeOwnerConfigFile;
+
+  @Inject
+  CodeOwnerConfigFileProbe(
+      @Named(CACHE_NAME) Cache<Key, Boolean> foldersWithoutCodeOwnerConfigFile) {
+    this.foldersWithoutCodeOwnerConfigFile = foldersWithoutCodeOwnerConfigFile;
+  }
+
+  /**
+   * Checks whether the given file exists in the given revision.
+   *
+   * @param revWalk the rev walk that should be used to read the revision
+   * @param revision the revision in which the existence of the file should be checked
+   * @param absoluteFilePath the absolute path of the file for which the existence should be checked
+   * @return whether the given file exists in the given revision
+   */
+  public boolean exists(RevWalk revWalk, ObjectId revision, Path absoluteFilePath)
+      throws IOException {
+    requireNonNull(revWalk, "revWalk");
+    requireNonNull(revision, "revision");
+    requireNonNull(absoluteFilePath, "absoluteFilePath");
+    checkState(absoluteFilePath.isAbsolute(), "path %s must be absolute", absoluteFilePath);
+
+    // Check the revision first, so that for repeated lookups of a non-existing file in the same
+    // revision the folder tree doesn't need to be resolved.
+    Key revisionKey = Key.forRevision(revision, absoluteFilePath);
+    if (foldersWithoutCodeOwnerConfigFile.getIfPresent(revisionKey) != null) {
+      return false;
+    }
+
+    ObjectReader reader = revWalk.getObjectReader();
+    RevTree rootTree = revWalk.parseCommit(revision).getTree();
+    String folderPath = JgitPath.of(absoluteFilePath.getParent()).get();
+    ObjectId folderTreeId;
+    if (folderPath.isEmpty()) {
+      folderTreeId = rootTree;
+    } else {
+      try (TreeWalk treeWalk = TreeWalk.forPath(reader, folderPath, rootTree)) {
+        if (treeWalk == null || !FileMode.TREE.equals(treeWalk.getRawMode(0))) {
+          // the folder doesn't exist
+          foldersWithoutCodeOwnerConfigFile.put(revisionKey, Boolean.TRUE);
+          return false;
+        }
+        folderTreeId = treeWalk.getObjectId(0);
+      }
+    }
+
+    String fileName = absoluteFilePath.getFileName().toString();
+    Key folderTreeKey = Key.forFolderTree(folderTreeId, fileName);
+    if (foldersWithoutCodeOwnerConfigFile.getIfPresent(folderTreeKey) != null) {
+      foldersWithoutCodeOwnerConfigFile.put(revisionKey, Boolean.TRUE);
+      return false;
+    }
+
+    CanonicalTreeParser folderTreeParser = new CanonicalTreeParser();
+    folderTreeParser.reset(reader, folderTreeId);
+    for (; !folderTreeParser.eof(); folderTreeParser.next()) {
+      if (fileName.equals(folderTreeParser.getEntryPathString())) {
+        return true;
+      }
+    }
+
+    foldersWithoutCodeOwnerConfigFile.put(folderTreeKey, Boolean.TRUE);
+    foldersWithoutCodeOwnerConfigFile.put(revisionKey, Boolean.TRUE);
+    return false;
+  }
+
+  /**
+   * Key for a negative result.
+   *
+   * <p>Negative results are cached by folder tree (the object ID is the ID of the folder tree and
+   * the path is the file name) and by revision (the object ID is the ID of the revision and the
+   * path is the absolute file path). Since file names never start with a slash and absolute file
+   * paths always do, the two kinds of keys cannot collide.
+   */
+  @AutoValue
+  abstract static class Key {
+    /** The ID of the tree of the folder, or the ID of the revision. */
+    abstract ObjectId objectId();
+
+    /** The name of the file in the folder, or the absolute path of the file in the revision. */
+    abstract String path();
+
+    static Key forFolderTree(ObjectId folderTreeId, String fileName) {
+      return new AutoValue_CodeOwnerConfigFileProbe_Key(folderTreeId.copy(), fileName);
+    }
+
+    static Key forRevision(ObjectId revision, Path absoluteFilePath) {
+      return new AutoValue_CodeOwnerConfigFileProbe_Key(
+          revision.copy(), absoluteFilePath.toString());
+    }
+  }
+}
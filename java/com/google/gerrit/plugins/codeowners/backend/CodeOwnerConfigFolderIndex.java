@@ -0,0 +1,88 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Index of the folders in a branch revision that contain a code owner config file with the default
+ * file name of the code owner backend (e.g. {@code OWNERS}).
+ *
+ * <p>Allows to check whether a folder contains a code owner config file without loading the code
+ * owner config from the backend. Code owner config files with other file names (e.g. {@code
+ * OWNERS_<extension>}) are not indexed since they are never looked up by folder, but only imported
+ * by their full path.
+ *
+ * <p>Indexes are cached per project, revision and file name (see {@link
+ * CodeOwnerConfigFolderIndexCache}). When a branch is updated, the index for the new revision is
+ * derived from the index of the previous revision (see {@link
+ * CodeOwnerConfigFolderIndexUpdater}).
+ */
+@AutoValue
+public abstract class CodeOwnerConfigFolderIndex {
+  /**
+   * The absolute paths of the folders that contain a code owner config file.
+   *
+   * <p>The root folder is represented as {@code /}.
+   */
+  abstract ImmutableSet<Path> folders();
+
+  /**
+   * Checks whether the given folder contains a code owner config file.
+   *
+   * @param absoluteFolderPath the absolute path of the folder for which it should be checked
+   *     whether it contains a code owner config file
+   * @return whether the given folder contains a code owner config file
+   */
+  public boolean containsCodeOwnerConfigFile(Path absoluteFolderPath) {
+    requireNonNull(absoluteFolderPath, "absoluteFolderPath");
+    checkState(absoluteFolderPath.isAbsolute(), "path %s must be absolute", absoluteFolderPath);
+    return folders().contains(absoluteFolderPath);
+  }
+
+  /** Returns the number of folders that contain a code owner config file. */
+  public int size() {
+    return folders().size();
+  }
+
+  /**
+   * Creates a copy of this index with the given changes applied.
+   *
+   * @param addedFolders absolute paths of the folders in which a code owner config file was added
+   * @param removedFolders absolute paths of the folders from which a code owner config file was
+   *     removed
+   * @return the updated index
+   */
+  CodeOwnerConfigFolderIndex update(Set<Path> addedFolders, Set<Path> removedFolders) {
+    requireNonNull(addedFolders, "addedFolders");
+    requireNonNull(removedFolders, "removedFolders");
+    if (addedFolders.isEmpty() && removedFolders.isEmpty()) {
+      return this;
+    }
+    return create(
+        Sets.union(Sets.difference(folders(), removedFolders), addedFolders).immutableCopy());
+  }
+
+  static CodeOwnerConfigFolderIndex create(ImmutableSet<Path> folders) {
+    return new AutoValue_CodeOwnerConfigFolderIndex(folders);
+  }
+}
@@ -0,0 +1,192 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+
+/**
+ * Server-wide cache for {@link CodeOwnerConfigFolderIndex}es.
+ *
+ * <p>The folders that contain code owner config files only depend on the tree of a branch
+ * revision, hence the index is computed once per project, revision and file name by walking the
+ * tree of the revision, and is then shared across requests.
+ *
+ * <p>Indexes are weighed by the number of indexed folders, so that the cache doesn't grow unbounded
+ * for repositories that contain many code owner config files.
+ */
+@Singleton
+public class CodeOwnerConfigFolderIndexCache {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  static final String CACHE_NAME = "code_owner_config_folder_indexes";
+
+  /** Default for the maximum number of folders that are cached over all indexes. */
+  private static final long DEFAULT_MAX_WEIGHT = 100000;
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, Key.class, CodeOwnerConfigFolderIndex.class)
+            .maximumWeight(DEFAULT_MAX_WEIGHT)
+            .weigher(IndexWeigher.class);
+        bind(CodeOwnerConfigFolderIndexCache.class);
+      }
+    };
+  }
+
+  private final Cache<Key, CodeOwnerConfigFolderIndex> cache;
+  private final GitRepositoryManager repoManager;
+
+  @Inject
+  CodeOwnerConfigFolderIndexCache(
+      @Named(CACHE_NAME) Cache<Key, CodeOwnerConfigFolderIndex> cache,
+      GitRepositoryManager repoManager) {
+    this.cache = cache;
+    this.repoManager = repoManager;
+  }
+
+  /**
+   * Gets the index of the folders that contain a code owner config file with the given file name.
+   *
+   * <p>If the index is not cached yet, it is computed by walking the tree of the given revision.
+   *
+   * @param project the project for which the index should be returned
+   * @param revision the branch revision for which the index should be returned
+   * @param fileName the name of the code owner config files that should be indexed
+   * @return the index, {@link Optional#empty()} if the index cannot be computed (e.g. because the
+   *     revision doesn't exist), in this case callers must check each folder individually
+   */
+  public Optional<CodeOwnerConfigFolderIndex> get(
+      Project.NameKey project, ObjectId revision, String fileName) {
+    Key key = Key.create(project, revision, fileName);
+    try {
+      return Optional.of(cache.get(key, () -> computeIndex(key)));
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      logger.atWarning().withCause(e.getCause()).log(
+          "failed to compute code owner config folder index for %s", key);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Gets the index of the folders that contain a code owner config file with the given file name,
+   * if it is cached.
+   *
+   * @param project the project for which the index should be returned
+   * @param revision the branch revision for which the index should be returned
+   * @param fileName the name of the code owner config files that were indexed
+   * @return the cached index, {@link Optional#empty()} if the index is not cached
+   */
+  public Optional<CodeOwnerConfigFolderIndex> getIfPresent(
+      Project.NameKey project, ObjectId revision, String fileName) {
+    return Optional.ofNullable(cache.getIfPresent(Key.create(project, revision, fileName)));
+  }
+
+  /**
+   * Puts an index of the folders that contain a code owner config file with the given file name
+   * into the cache.
+   *
+   * <p>Allows to cache indexes that were computed incrementally from the index of another revision
+   * (see {@link CodeOwnerConfigFolderIndexUpdater}).
+   *
+   * @param project the project for which the index was computed
+   * @param revision the branch revision for which the index was computed
+   * @param fileName the name of the code owner config files that were indexed
+   * @param index the index
+   */
+  public void put(
+      Project.NameKey project,
+      ObjectId revision,
+      String fileName,
+      CodeOwnerConfigFolderIndex index) {
+    requireNonNull(index, "index");
+    cache.put(Key.create(project, revision, fileName), index);
+  }
+
+  private CodeOwnerConfigFolderIndex computeIndex(Key key) throws IOException {
+    logger.atFine().log("computing code owner config folder index for %s", key);
+    ImmutableSet.Builder<Path> folders = ImmutableSet.builder();
+    try (Repository repository = repoManager.openRepository(key.project());
+        RevWalk revWalk = new RevWalk(repository);
+        TreeWalk treeWalk = new TreeWalk(repository)) {
+      treeWalk.addTree(revWalk.parseTree(key.revision()));
+      treeWalk.setRecursive(true);
+      treeWalk.setFilter(PathSuffixFilter.create(key.fileName()));
+      while (treeWalk.next()) {
+        // The suffix filter also matches files whose name ends with the file name (e.g.
+        // 'FOO_OWNERS' for 'OWNERS'), hence we must check the file name.
+        if (key.fileName().equals(treeWalk.getNameString())) {
+          folders.add(Paths.get("/" + treeWalk.getPathString()).getParent());
+        }
+      }
+    }
+    CodeOwnerConfigFolderIndex index = CodeOwnerConfigFolderIndex.create(folders.build());
+    logger.atFine().log("found %d folders with code owner config files", index.size());
+    return index;
+  }
+
+  @AutoValue
+  abstract static class Key {
+    /** The project for which the index was computed. */
+    abstract Project.NameKey project();
+
+    /** The branch revision for which the index was computed. */
+    abstract ObjectId revision();
+
+    /** The name of the code owner config files that were indexed. */
+    abstract String fileName();
+
+    static Key create(Project.NameKey project, ObjectId revision, String fileName) {
+      requireNonNull(project, "project");
+      requireNonNull(revision, "revision");
+      requireNonNull(fileName, "fileName");
+      return new AutoValue_CodeOwnerConfigFolderIndexCache_Key(project, revision.copy(), fileName);
+    }
+  }
+
+  /** Weighs indexes by the number of indexed folders. */
+  static class IndexWeigher implements Weigher<Key, CodeOwnerConfigFolderIndex> {
+    @Override
+    public int weigh(Key key, CodeOwnerConfigFolderIndex index) {
+      return 1 + index.size();
+    }
+  }
+}
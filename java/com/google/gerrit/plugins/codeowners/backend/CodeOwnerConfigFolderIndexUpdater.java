@@ -0,0 +1,262 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginConfiguration;
+import com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginProjectConfigSnapshot;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.OrTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Callback that is invoked when a ref is updated.
+ *
+ * <p>If a branch is updated, the files that differ between the old and the new revision are
+ * inspected once, in order to:
+ *
+ * <ul>
+ *   <li>invalidate the code owner configuration of the project if any code owner config file was
+ *       updated (see {@link CodeOwnerConfigGenerations})
+ *   <li>derive the {@link CodeOwnerConfigFolderIndex} for the new revision from the cached index of
+ *       the old revision, so that it doesn't need to be computed by walking the complete tree of
+ *       the new revision
+ * </ul>
+ *
+ * <p>Subtrees that are the same in both revisions are skipped, hence the cost of inspecting the
+ * update is proportional to the size of the update and not to the size of the tree.
+ */
+@Singleton
+public class CodeOwnerConfigFolderIndexUpdater implements GitReferenceUpdatedListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final CodeOwnersPluginConfiguration codeOwnersPluginConfiguration;
+  private final CodeOwnerConfigFolderIndexCache codeOwnerConfigFolderIndexCache;
+  private final CodeOwnerConfigGenerations codeOwnerConfigGenerations;
+  private final GitRepositoryManager repoManager;
+
+  @Inject
+  CodeOwnerConfigFolderIndexUpdater(
+      CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
+      CodeOwnerConfigFolderIndexCache codeOwnerConfigFolderIndexCache,
+      CodeOwnerConfigGenerations codeOwnerConfigGenerations,
+      GitRepositoryManager repoManager) {
+    this.codeOwnersPluginConfiguration = codeOwnersPluginConfiguration;
+    this.codeOwnerConfigFolderIndexCache = codeOwnerConfigFolderIndexCache;
+    this.codeOwnerConfigGenerations = codeOwnerConfigGenerations;
+    this.repoManager = repoManager;
+  }
+
+  @Override
+  public void onGitReferenceUpdated(Event event) {
+    if (!event.getRefName().startsWith(RefNames.REFS_HEADS)) {
+      return;
+    }
+
+    ObjectId oldRevision = ObjectId.fromString(event.getOldObjectId());
+    ObjectId newRevision = ObjectId.fromString(event.getNewObjectId());
+    if (oldRevision.equals(ObjectId.zeroId()) || newRevision.equals(ObjectId.zeroId())) {
+      // The branch was created or deleted (handled by CodeOwnerConfigGenerations).
+      return;
+    }
+
+    Project.NameKey project = Project.nameKey(event.getProjectName());
+    try {
+      CodeOwnersPluginProjectConfigSnapshot codeOwnersConfig =
+          codeOwnersPluginConfiguration.getProjectConfig(project);
+      if (codeOwnersConfig.isDisabled(event.getRefName())) {
+        return;
+      }
+
+      CodeOwnerBackend codeOwnerBackend = codeOwnersConfig.getBackend(event.getRefName());
+
+      // The index is only updated if the index of the old revision is cached and the index of the
+      // new revision is not cached yet.
+      Optional<String> fileName = codeOwnerBackend.getDefaultFileName(project);
+      Optional<CodeOwnerConfigFolderIndex> oldIndex = Optional.empty();
+      if (fileName.isPresent()
+          && !codeOwnerConfigFolderIndexCache
+              .getIfPresent(project, newRevision, fileName.get())
+              .isPresent()) {
+        oldIndex =
+            codeOwnerConfigFolderIndexCache.getIfPresent(project, oldRevision, fileName.get());
+      }
+
+      UpdatedCodeOwnerConfigFiles updatedCodeOwnerConfigFiles =
+          inspectUpdate(
+              project,
+              codeOwnerBackend,
+              fileName,
+              oldIndex.isPresent(),
+              oldRevision,
+              newRevision);
+      if (updatedCodeOwnerConfigFiles.any) {
+        logger.atFine().log(
+            "code owner config files in branch %s of project %s were updated",
+            event.getRefName(), project);
+        codeOwnerConfigGenerations.invalidate(project);
+      }
+
+      if (oldIndex.isPresent()) {
+        logger.atFine().log(
+            "updating code owner config folder index for %s in project %s"
+                + " (added folders = %s, removed folders = %s)",
+            newRevision.name(),
+            project,
+            updatedCodeOwnerConfigFiles.addedFolders,
+            updatedCodeOwnerConfigFiles.removedFolders);
+        codeOwnerConfigFolderIndexCache.put(
+            project,
+            newRevision,
+            fileName.get(),
+            oldIndex
+                .get()
+                .update(
+                    updatedCodeOwnerConfigFiles.addedFolders,
+                    updatedCodeOwnerConfigFiles.removedFolders));
+      }
+    } catch (Exception e) {
+      // We cannot know whether code owner config files were updated, hence invalidate the code
+      // owner configuration of the project. The index for the new revision will be computed from
+      // scratch when it is needed.
+      logger.atWarning().withCause(e).log(
+          "Failed to inspect update of %s in project %s (%s -> %s),"
+              + " invalidating the code owner configuration of the project.",
+          event.getRefName(), project, oldRevision.name(), newRevision.name());
+      codeOwnerConfigGenerations.invalidate(project);
+    }
+  }
+
+  /**
+   * Inspects which code owner config files differ between the given revisions.
+   *
+   * @param defaultFileName the default file name of code owner config files, {@link
+   *     Optional#empty()} if the backend doesn't have a default file name
+   * @param collectFolders whether the folders in which a code owner config file with the default
+   *     file name was added or removed should be collected, if {@code false} the inspection stops
+   *     at the first updated code owner config file
+   */
+  private UpdatedCodeOwnerConfigFiles inspectUpdate(
+      Project.NameKey project,
+      CodeOwnerBackend codeOwnerBackend,
+      Optional<String> defaultFileName,
+      boolean collectFolders,
+      ObjectId oldRevision,
+      ObjectId newRevision)
+      throws IOException {
+    UpdatedCodeOwnerConfigFiles updatedCodeOwnerConfigFiles = new UpdatedCodeOwnerConfigFiles();
+    try (Repository repository = repoManager.openRepository(project);
+        RevWalk revWalk = new RevWalk(repository);
+        TreeWalk treeWalk = new TreeWalk(repository)) {
+      treeWalk.addTree(revWalk.parseTree(oldRevision));
+      treeWalk.addTree(revWalk.parseTree(newRevision));
+      treeWalk.setRecursive(true);
+      treeWalk.setFilter(
+          AndTreeFilter.create(
+              TreeFilter.ANY_DIFF,
+              createCodeOwnerConfigFileFilter(project, codeOwnerBackend, defaultFileName)));
+      while (treeWalk.next()) {
+        updatedCodeOwnerConfigFiles.any = true;
+
+        if (!collectFolders) {
+          break;
+        }
+
+        // Only code owner config files with the default file name are indexed.
+        if (!defaultFileName.get().equals(treeWalk.getNameString())) {
+          continue;
+        }
+
+        Path folder = Paths.get("/" + treeWalk.getPathString()).getParent();
+        boolean existsInOldRevision = treeWalk.getRawMode(0) != 0;
+        boolean existsInNewRevision = treeWalk.getRawMode(1) != 0;
+        if (!existsInOldRevision && existsInNewRevision) {
+          updatedCodeOwnerConfigFiles.addedFolders.add(folder);
+        } else if (existsInOldRevision && !existsInNewRevision) {
+          updatedCodeOwnerConfigFiles.removedFolders.add(folder);
+        }
+      }
+    }
+    return updatedCodeOwnerConfigFiles;
+  }
+
+  /**
+   * Creates a {@link TreeFilter} that matches code owner config files.
+   *
+   * <p>Files whose path ends with the default file name are matched by a {@link PathSuffixFilter}
+   * which compares the raw path bytes, so that the file name doesn't need to be matched against
+   * the file name patterns of the backend. The suffix filter also matches files with a pre-fix
+   * extension (e.g. 'FOO_OWNERS' for 'OWNERS'). All other files (e.g. files with a post-fix
+   * extension, such as 'OWNERS_FOO') are checked by the backend. The suffix filter may match
+   * files that are not code owner config files (e.g. 'MYOWNERS'), which only results in the code
+   * owner configuration being invalidated unnecessarily.
+   */
+  private static TreeFilter createCodeOwnerConfigFileFilter(
+      Project.NameKey project,
+      CodeOwnerBackend codeOwnerBackend,
+      Optional<String> defaultFileName) {
+    TreeFilter backendFilter =
+        new TreeFilter() {
+          @Override
+          public boolean shouldBeRecursive() {
+            return false;
+          }
+
+          @Override
+          public boolean include(TreeWalk walker) {
+            return walker.isSubtree()
+                || codeOwnerBackend.isCodeOwnerConfigFile(project, walker.getNameString());
+          }
+
+          @Override
+          public TreeFilter clone() {
+            return this;
+          }
+        };
+    if (!defaultFileName.isPresent()) {
+      return backendFilter;
+    }
+    return OrTreeFilter.create(PathSuffixFilter.create(defaultFileName.get()), backendFilter);
+  }
+
+  /** The code owner config files that differ between two revisions of a branch. */
+  private static class UpdatedCodeOwnerConfigFiles {
+    /** Whether any code owner config file differs. */
+    boolean any;
+
+    /** Folders in which a code owner config file with the indexed file name was added. */
+    final Set<Path> addedFolders = new HashSet<>();
+
+    /** Folders from which a code owner config file with the indexed file name was removed. */
+    final Set<Path> removedFolders = new HashSet<>();
+  }
+}
@@ -0,0 +1,182 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the generation of the code owner configuration of each project.
+ *
+ * <p>Server-wide caches that store data which is derived from code owner config files and from the
+ * code owners configuration (e.g. {@link FileCodeOwnerStatusCache}) include the generation of the
+ * project in their cache keys. When the code owner configuration of a project changes, the
+ * generation of the project is increased, so that the cache entries of the project are no longer
+ * found (they are evicted from the caches once they are the least recently used entries). This
+ * way no cache needs to be flushed and the cache entries of other projects stay valid.
+ *
+ * <p>The generation of a project is increased if:
+ *
+ * <ul>
+ *   <li>the {@code refs/meta/config} branch of the project is updated (the code owners
+ *       configuration, e.g. the fallback code owners, and the project owners may have changed)
+ *   <li>code owner config files are updated in any branch of the project (code owner config files
+ *       from other branches may be imported), this is detected by the {@link
+ *       CodeOwnerConfigFolderIndexUpdater} which inspects the updated files anyway
+ *   <li>a branch of the project is created or deleted (imports of code owner config files from this
+ *       branch may have become resolvable or unresolvable)
+ * </ul>
+ *
+ * <p>The code owners configuration is inherited from parent projects, hence the generation of a
+ * project also changes when the generation of any of its parent projects changes.
+ *
+ * <p>Code owner config files may import code owner config files from other projects. If the code
+ * owner configuration of a project from which code owner config files have been imported by other
+ * projects changes, the generations of all projects are increased.
+ *
+ * <p>Changes of the global code owners configuration require a restart of the plugin, which resets
+ * the generations.
+ */
+@Singleton
+public class CodeOwnerConfigGenerations implements GitReferenceUpdatedListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final ProjectCache projectCache;
+
+  /**
+   * Source for new generations.
+   *
+   * <p>Each invalidation takes a new generation from this sequence, hence a generation is never
+   * assigned twice. This allows to compute the generation of a project as the maximum over the
+   * generations of the project, its parent projects and the global generation: whenever any of
+   * these is increased, the maximum changes to a value that has never been returned before.
+   */
+  private final AtomicLong sequence = new AtomicLong();
+
+  /** Generation that applies to all projects. */
+  private final AtomicLong globalGeneration = new AtomicLong();
+
+  /** Generations of the projects that have been invalidated. */
+  private final ConcurrentMap<Project.NameKey, Long> projectGenerations = new ConcurrentHashMap<>();
+
+  /** Projects from which code owner config files are imported by other projects. */
+  private final Set<Project.NameKey> importedProjects = ConcurrentHashMap.newKeySet();
+
+  @Inject
+  CodeOwnerConfigGenerations(ProjectCache projectCache) {
+    this.projectCache = projectCache;
+  }
+
+  /**
+   * Gets the current generation of the code owner configuration of the given project.
+   *
+   * <p>Must be retrieved before data is computed from the code owner configuration, so that data
+   * that was computed concurrently to an invalidation is cached under the outdated generation.
+   *
+   * @param project the project for which the generation should be returned
+   * @return the current generation of the code owner configuration of the given project
+   */
+  public long get(Project.NameKey project) {
+    requireNonNull(project, "project");
+    long generation = Math.max(globalGeneration.get(), getProjectGeneration(project));
+    Optional<ProjectState> projectState = projectCache.get(project);
+    if (projectState.isPresent()) {
+      for (ProjectState parent : projectState.get().parents()) {
+        generation = Math.max(generation, getProjectGeneration(parent.getNameKey()));
+      }
+    }
+    return generation;
+  }
+
+  /**
+   * Takes a new generation that has never been assigned before.
+   *
+   * <p>Allows caches that must be invalidated for further reasons (e.g. account updates) to track
+   * the generations for these reasons in the same sequence, so that they can combine them with the
+   * generation of the code owner configuration by taking the maximum.
+   */
+  public long newGeneration() {
+    return sequence.incrementAndGet();
+  }
+
+  /**
+   * Records that code owner config files from the given project are imported by code owner config
+   * files in another project.
+   *
+   * <p>Changes of the code owner configuration of the given project invalidate the code owner
+   * configuration of all projects from then on.
+   *
+   * @param importedProject the project from which code owner config files are imported
+   */
+  public void recordImportFromOtherProject(Project.NameKey importedProject) {
+    requireNonNull(importedProject, "importedProject");
+    importedProjects.add(importedProject);
+  }
+
+  /**
+   * Invalidates the code owner configuration of the given project.
+   *
+   * @param project the project for which the code owner configuration has changed
+   */
+  public void invalidate(Project.NameKey project) {
+    requireNonNull(project, "project");
+    long generation = newGeneration();
+    if (importedProjects.contains(project)) {
+      logger.atFine().log(
+          "code owner config files of project %s are imported by other projects,"
+              + " invalidating the code owner configuration of all projects",
+          project);
+      globalGeneration.accumulateAndGet(generation, Math::max);
+    } else {
+      logger.atFine().log("invalidating the code owner configuration of project %s", project);
+      projectGenerations.merge(project, generation, Math::max);
+    }
+  }
+
+  @Override
+  public void onGitReferenceUpdated(Event event) {
+    if (RefNames.REFS_CONFIG.equals(event.getRefName())) {
+      logger.atFine().log(
+          "%s in project %s was updated", event.getRefName(), event.getProjectName());
+      invalidate(Project.nameKey(event.getProjectName()));
+      return;
+    }
+
+    if (event.getRefName().startsWith(RefNames.REFS_HEADS)
+        && (event.isCreate() || event.isDelete())) {
+      logger.atFine().log(
+          "branch %s in project %s was %s",
+          event.getRefName(), event.getProjectName(), event.isCreate() ? "created" : "deleted");
+      invalidate(Project.nameKey(event.getProjectName()));
+    }
+  }
+
+  private long getProjectGeneration(Project.NameKey project) {
+    return projectGenerations.getOrDefault(project, 0L);
+  }
+}
@@ -15,17 +15,29 @@
 package com.google.gerrit.plugins.codeowners.backend;
 
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.BranchNameKey;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginConfiguration;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.inject.Inject;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
@@ -42,22 +54,261 @@ import org.eclipse.jgit.revwalk.RevWalk;
  * config in the root folder of the branch. The same as any other parent it can be ignored (e.g. by
  * using {@code set noparent} in the root code owner config if the {@code find-owners} backend is
  * used).
+ *
+ * <p>If the code owner backend stores code owner configs as files in the branch, only folders that
+ * contain a code owner config file are inspected (see {@link CodeOwnerConfigFolderIndex}). This
+ * avoids probing the backend for each folder in the path hierarchy, which matters for deep folder
+ * hierarchies in which most folders do not contain a code owner config file.
+ *
+ * <p>If the code owner configs need to be visited for many files (e.g. for all files of a change),
+ * the hierarchy can be prepared for all files at once (see {@link #prepareForFiles(BranchNameKey,
+ * ObjectId, Collection)}). In this case the code owner configs that apply to each folder are
+ * computed once per folder, and visiting the code owner configs for a file only needs to iterate
+ * over the code owner configs of its folder, instead of walking up the folder hierarchy again.
  */
 public class CodeOwnerConfigHierarchy {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  private static final Path ROOT_FOLDER = Paths.get("/");
+
   private final GitRepositoryManager repoManager;
+  private final CodeOwnersPluginConfiguration codeOwnersPluginConfiguration;
+  private final CodeOwnerConfigFolderIndexCache codeOwnerConfigFolderIndexCache;
   private final PathCodeOwners.Factory pathCodeOwnersFactory;
   private final TransientCodeOwnerConfigCache transientCodeOwnerConfigCache;
+  private final TransientPathCodeOwnersResultCache transientPathCodeOwnersResultCache;
+
+  @Nullable private TransientGitContext gitContext;
+
+  // Collect debug messages by default.
+  private boolean collectDebugMessages = true;
+
+  /**
+   * The code owner configs that apply to the folders that have been prepared by {@link
+   * #prepareForFiles(BranchNameKey, ObjectId, Collection)}, ordered from the folder up to the root
+   * folder.
+   *
+   * <p>Only set if the hierarchy has been prepared, and only valid for {@link #preparedBranch} and
+   * {@link #preparedRevision}.
+   */
+  @Nullable private ImmutableMap<Path, ImmutableList<CodeOwnerConfig.Key>> preparedFolders;
+
+  @Nullable private BranchNameKey preparedBranch;
+  @Nullable private ObjectId preparedRevision;
 
   @Inject
   CodeOwnerConfigHierarchy(
       GitRepositoryManager repoManager,
+      CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
+      CodeOwnerConfigFolderIndexCache codeOwnerConfigFolderIndexCache,
       PathCodeOwners.Factory pathCodeOwnersFactory,
-      TransientCodeOwnerConfigCache transientCodeOwnerConfigCache) {
+      TransientCodeOwnerConfigCache transientCodeOwnerConfigCache,
+      TransientPathCodeOwnersResultCache transientPathCodeOwnersResultCache) {
     this.repoManager = repoManager;
+    this.codeOwnersPluginConfiguration = codeOwnersPluginConfiguration;
+    this.codeOwnerConfigFolderIndexCache = codeOwnerConfigFolderIndexCache;
     this.pathCodeOwnersFactory = pathCodeOwnersFactory;
     this.transientCodeOwnerConfigCache = transientCodeOwnerConfigCache;
+    this.transientPathCodeOwnersResultCache = transientPathCodeOwnersResultCache;
+  }
+
+  /**
+   * Sets the Git context that should be used to read from the repositories.
+   *
+   * <p>If set, repositories are opened only once and rev walks are reused for all code owner
+   * configs that are visited by this {@code CodeOwnerConfigHierarchy} instance (including imported
+   * code owner configs from other projects). If not set, the repository is opened for each code
+   * owner config that is loaded.
+   *
+   * <p>Must be invoked before any code owner config is visited. The caller stays responsible for
+   * closing the Git context.
+   *
+   * @param gitContext the Git context that should be used to read from the repositories
+   * @return this {@code CodeOwnerConfigHierarchy} instance to allow chaining calls
+   */
+  public CodeOwnerConfigHierarchy useGitContext(TransientGitContext gitContext) {
+    this.gitContext = requireNonNull(gitContext, "gitContext");
+    transientCodeOwnerConfigCache.useGitContext(gitContext);
+    return this;
+  }
+
+  /**
+   * Whether debug messages should be collected when resolving the visited code owner configs (see
+   * {@link PathCodeOwners#collectDebugMessages(boolean)}).
+   *
+   * <p>Callers that do not use the debug messages (e.g. the submit rule) should disable the
+   * collection of debug messages, so that the debug messages are not formatted at all.
+   *
+   * @param collectDebugMessages whether debug messages should be collected
+   * @return this {@code CodeOwnerConfigHierarchy} instance to allow chaining calls
+   */
+  public CodeOwnerConfigHierarchy collectDebugMessages(boolean collectDebugMessages) {
+    this.collectDebugMessages = collectDebugMessages;
+    return this;
+  }
+
+  /**
+   * Prepares the hierarchy for visiting the code owner configs of the given files.
+   *
+   * <p>The parent folders of the given files are arranged in a trie, which is traversed top-down
+   * from the root folder. Each folder is inspected exactly once, and the code owner configs that
+   * apply to a folder are derived from the code owner configs that apply to its parent folder
+   * (which are inherited, unless the code owner config in the folder ignores parent code owners).
+   * This means the work for looking up the code owner configs is proportional to the number of
+   * distinct folders, rather than to the number of files multiplied by the folder depth.
+   *
+   * <p>Afterwards, {@link #visitForFile(BranchNameKey, ObjectId, Path, PathCodeOwnersVisitor,
+   * Consumer)} visits the path code owners of the prepared files without walking up the folder
+   * hierarchy. Path code owners are still computed per file, since code owner configs may contain
+   * per-file code owner sets. The visit order and the handling of the visitor's return value and of
+   * ignored parent code owners is the same as without preparation.
+   *
+   * <p>Must be invoked before the code owner configs are visited concurrently.
+   *
+   * @param branchNameKey project and branch from which the code owner configs will be visited
+   * @param revision the branch revision from which the code owner configs will be loaded
+   * @param absoluteFilePaths the paths of the files for which the code owner configs will be
+   *     visited; the paths must be absolute; must be paths of files; the paths may or may not exist
+   * @return this {@code CodeOwnerConfigHierarchy} instance to allow chaining calls
+   */
+  public CodeOwnerConfigHierarchy prepareForFiles(
+      BranchNameKey branchNameKey, ObjectId revision, Collection<Path> absoluteFilePaths) {
+    requireNonNull(branchNameKey, "branch");
+    requireNonNull(revision, "revision");
+    requireNonNull(absoluteFilePaths, "absoluteFilePaths");
+
+    FolderTrieNode root = new FolderTrieNode(ROOT_FOLDER);
+    for (Path absoluteFilePath : absoluteFilePaths) {
+      checkState(absoluteFilePath.isAbsolute(), "path %s must be absolute", absoluteFilePath);
+      root.add(absoluteFilePath.getParent());
+    }
+
+    logger.atFine().log(
+        "preparing code owner config hierarchy for %d files in branch '%s' in project '%s'"
+            + " (revision = '%s')",
+        absoluteFilePaths.size(),
+        branchNameKey.shortName(),
+        branchNameKey.project(),
+        revision.name());
+
+    Optional<CodeOwnerConfigFolderIndex> codeOwnerConfigFolderIndex =
+        getCodeOwnerConfigFolderIndex(branchNameKey, revision);
+    Map<Path, ImmutableList<CodeOwnerConfig.Key>> folders = new HashMap<>();
+    prepareFolder(
+        branchNameKey,
+        revision,
+        codeOwnerConfigFolderIndex,
+        root,
+        /* inheritedCodeOwnerConfigKeys= */ ImmutableList.of(),
+        folders);
+    logger.atFine().log("prepared %d folders", folders.size());
+
+    this.preparedFolders = ImmutableMap.copyOf(folders);
+    this.preparedBranch = branchNameKey;
+    this.preparedRevision = revision.copy();
+    return this;
+  }
+
+  /**
+   * Gets the code owner references of the code owner configs that have been loaded by {@link
+   * #prepareForFiles(BranchNameKey, ObjectId, Collection)}, including the code owner references of
+   * the default code owner config in {@code refs/meta/config}.
+   *
+   * <p>Allows callers to resolve the code owners of all prepared files in one batch (see {@link
+   * CodeOwnerResolver#resolveInBatch(Set)}), without visiting the code owner configs again. The
+   * code owner configs are looked up from the transient cache into which they were loaded when the
+   * hierarchy was prepared.
+   *
+   * <p>Code owner references from imported code owner configs are not included, since imports are
+   * only resolved when the path code owners of a file are computed.
+   *
+   * @return the code owner references of the prepared code owner configs, empty set if the
+   *     hierarchy has not been prepared
+   */
+  public ImmutableSet<CodeOwnerReference> getPreparedCodeOwnerReferences() {
+    if (preparedFolders == null) {
+      return ImmutableSet.of();
+    }
+
+    ImmutableSet<CodeOwnerConfig.Key> codeOwnerConfigKeys =
+        preparedFolders.values().stream().flatMap(ImmutableList::stream).collect(toImmutableSet());
+    ImmutableSet.Builder<CodeOwnerReference> codeOwnerReferences = ImmutableSet.builder();
+    for (CodeOwnerConfig.Key codeOwnerConfigKey : codeOwnerConfigKeys) {
+      transientCodeOwnerConfigCache
+          .get(codeOwnerConfigKey, preparedRevision)
+          .ifPresent(
+              codeOwnerConfig -> addCodeOwnerReferences(codeOwnerReferences, codeOwnerConfig));
+    }
+
+    if (!RefNames.REFS_CONFIG.equals(preparedBranch.branch())) {
+      CodeOwnerConfig.Key metaCodeOwnerConfigKey =
+          CodeOwnerConfig.Key.create(preparedBranch.project(), RefNames.REFS_CONFIG, "/");
+      try {
+        Optional<RevCommit> metaRevision = getRefsMetaConfigRevision(preparedBranch.project());
+        if (metaRevision.isPresent()) {
+          transientCodeOwnerConfigCache
+              .get(metaCodeOwnerConfigKey, metaRevision.get())
+              .ifPresent(
+                  codeOwnerConfig -> addCodeOwnerReferences(codeOwnerReferences, codeOwnerConfig));
+        }
+      } catch (IOException e) {
+        throw new CodeOwnersInternalServerErrorException(
+            String.format("failed to read %s", metaCodeOwnerConfigKey), e);
+      }
+    }
+    return codeOwnerReferences.build();
+  }
+
+  private static void addCodeOwnerReferences(
+      ImmutableSet.Builder<CodeOwnerReference> codeOwnerReferences,
+      CodeOwnerConfig codeOwnerConfig) {
+    codeOwnerConfig
+        .codeOwnerSets()
+        .forEach(codeOwnerSet -> codeOwnerReferences.addAll(codeOwnerSet.codeOwners()));
+  }
+
+  /**
+   * Computes the code owner configs that apply to the folder of the given trie node and
+   * recursively to the folders of its child nodes.
+   *
+   * @param inheritedCodeOwnerConfigKeys the code owner configs that apply to the parent folder,
+   *     ordered from the parent folder up to the root folder
+   * @param folders map to which the code owner configs that apply to the folders of the trie nodes
+   *     that have files are added
+   */
+  private void prepareFolder(
+      BranchNameKey branchNameKey,
+      ObjectId revision,
+      Optional<CodeOwnerConfigFolderIndex> codeOwnerConfigFolderIndex,
+      FolderTrieNode node,
+      ImmutableList<CodeOwnerConfig.Key> inheritedCodeOwnerConfigKeys,
+      Map<Path, ImmutableList<CodeOwnerConfig.Key>> folders) {
+    ImmutableList<CodeOwnerConfig.Key> codeOwnerConfigKeys = inheritedCodeOwnerConfigKeys;
+    if (!codeOwnerConfigFolderIndex.isPresent()
+        || codeOwnerConfigFolderIndex.get().containsCodeOwnerConfigFile(node.folder)) {
+      CodeOwnerConfig.Key codeOwnerConfigKey =
+          CodeOwnerConfig.Key.create(branchNameKey, node.folder);
+      Optional<CodeOwnerConfig> codeOwnerConfig =
+          transientCodeOwnerConfigCache.get(codeOwnerConfigKey, revision);
+      if (codeOwnerConfig.isPresent()) {
+        codeOwnerConfigKeys =
+            codeOwnerConfig.get().ignoreParentCodeOwners()
+                ? ImmutableList.of(codeOwnerConfigKey)
+                : ImmutableList.<CodeOwnerConfig.Key>builder()
+                    .add(codeOwnerConfigKey)
+                    .addAll(inheritedCodeOwnerConfigKeys)
+                    .build();
+      }
+    }
+
+    if (node.hasFiles) {
+      folders.put(node.folder, codeOwnerConfigKeys);
+    }
+
+    for (FolderTrieNode child : node.children.values()) {
+      prepareFolder(
+          branchNameKey, revision, codeOwnerConfigFolderIndex, child, codeOwnerConfigKeys, folders);
+    }
   }
 
   /**
@@ -193,41 +444,55 @@ public class CodeOwnerConfigHierarchy {
         "visiting code owner configs for '%s' in branch '%s' in project '%s' (revision = '%s')",
         absolutePath, branchNameKey.shortName(), branchNameKey.project(), revision.name());
 
+    Optional<ImmutableList<CodeOwnerConfig.Key>> preparedCodeOwnerConfigKeys =
+        getPreparedCodeOwnerConfigKeys(branchNameKey, revision, startFolder);
+    if (preparedCodeOwnerConfigKeys.isPresent()) {
+      logger.atFine().log("folder %s was prepared", startFolder);
+      for (CodeOwnerConfig.Key codeOwnerConfigKey : preparedCodeOwnerConfigKeys.get()) {
+        if (!visitCodeOwnerConfig(
+            codeOwnerConfigKey,
+            revision,
+            absolutePath,
+            pathCodeOwnersVisitor,
+            parentCodeOwnersIgnoredCallback)) {
+          return;
+        }
+      }
+      if (!RefNames.REFS_CONFIG.equals(branchNameKey.branch())) {
+        visitCodeOwnerConfigInRefsMetaConfig(
+            branchNameKey.project(), absolutePath, pathCodeOwnersVisitor);
+      }
+      return;
+    }
+
+    // Index of the folders that contain code owner config files. If not available, we need to
+    // check each folder in the parent hierarchy for a code owner config.
+    Optional<CodeOwnerConfigFolderIndex> codeOwnerConfigFolderIndex =
+        getCodeOwnerConfigFolderIndex(branchNameKey, revision);
+
     // Next path in which we look for a code owner configuration. We start at the given folder and
     // then go up the parent hierarchy.
     Path ownerConfigFolder = startFolder;
 
     // Iterate over the parent code owner configurations.
     while (ownerConfigFolder != null) {
+      if (codeOwnerConfigFolderIndex.isPresent()
+          && !codeOwnerConfigFolderIndex.get().containsCodeOwnerConfigFile(ownerConfigFolder)) {
+        logger.atFine().log("no code owner config file in %s", ownerConfigFolder);
+        ownerConfigFolder = ownerConfigFolder.getParent();
+        continue;
+      }
+
       // Read code owner config and invoke the codeOwnerConfigVisitor if the code owner config
       // exists.
       logger.atFine().log("inspecting code owner config for %s", ownerConfigFolder);
-      CodeOwnerConfig.Key codeOwnerConfigKey =
-          CodeOwnerConfig.Key.create(branchNameKey, ownerConfigFolder);
-      Optional<PathCodeOwners> pathCodeOwners =
-          pathCodeOwnersFactory.create(
-              transientCodeOwnerConfigCache, codeOwnerConfigKey, revision, absolutePath);
-      if (pathCodeOwners.isPresent()) {
-        logger.atFine().log("visit code owner config for %s", ownerConfigFolder);
-        boolean visitFurtherCodeOwnerConfigs = pathCodeOwnersVisitor.visit(pathCodeOwners.get());
-        boolean ignoreParentCodeOwners =
-            pathCodeOwners.get().resolveCodeOwnerConfig().get().ignoreParentCodeOwners();
-        if (ignoreParentCodeOwners) {
-          parentCodeOwnersIgnoredCallback.accept(codeOwnerConfigKey);
-        }
-        logger.atFine().log(
-            "visitFurtherCodeOwnerConfigs = %s, ignoreParentCodeOwners = %s",
-            visitFurtherCodeOwnerConfigs, ignoreParentCodeOwners);
-        if (!visitFurtherCodeOwnerConfigs || ignoreParentCodeOwners) {
-          // If no further code owner configs should be visited or if all parent code owner configs
-          // are ignored, we are done.
-          // No need to check further parent code owner configs (including the default code owner
-          // config in refs/meta/config which is the parent of the root code owner config), hence we
-          // can return here.
-          return;
-        }
-      } else {
-        logger.atFine().log("no code owner config found in %s", ownerConfigFolder);
+      if (!visitCodeOwnerConfig(
+          CodeOwnerConfig.Key.create(branchNameKey, ownerConfigFolder),
+          revision,
+          absolutePath,
+          pathCodeOwnersVisitor,
+          parentCodeOwnersIgnoredCallback)) {
+        return;
       }
 
       // Continue the loop with the next parent folder.
@@ -240,6 +505,82 @@ public class CodeOwnerConfigHierarchy {
     }
   }
 
+  /**
+   * Visits the code owner config with the given key if it exists.
+   *
+   * @return whether further code owner configs should be visited, {@code false} if the visitor
+   *     requested to stop or if the code owner config ignores parent code owners
+   */
+  private boolean visitCodeOwnerConfig(
+      CodeOwnerConfig.Key codeOwnerConfigKey,
+      ObjectId revision,
+      Path absolutePath,
+      PathCodeOwnersVisitor pathCodeOwnersVisitor,
+      Consumer<CodeOwnerConfig.Key> parentCodeOwnersIgnoredCallback) {
+    Optional<PathCodeOwners> pathCodeOwners =
+        pathCodeOwnersFactory.create(
+            transientCodeOwnerConfigCache,
+            transientPathCodeOwnersResultCache,
+            codeOwnerConfigKey,
+            revision,
+            absolutePath);
+    if (!pathCodeOwners.isPresent()) {
+      logger.atFine().log("no code owner config found in %s", codeOwnerConfigKey.folderPath());
+      return true;
+    }
+    pathCodeOwners.get().collectDebugMessages(collectDebugMessages);
+
+    logger.atFine().log("visit code owner config for %s", codeOwnerConfigKey.folderPath());
+    boolean visitFurtherCodeOwnerConfigs = pathCodeOwnersVisitor.visit(pathCodeOwners.get());
+    boolean ignoreParentCodeOwners =
+        pathCodeOwners.get().resolveCodeOwnerConfig().get().ignoreParentCodeOwners();
+    if (ignoreParentCodeOwners) {
+      parentCodeOwnersIgnoredCallback.accept(codeOwnerConfigKey);
+    }
+    logger.atFine().log(
+        "visitFurtherCodeOwnerConfigs = %s, ignoreParentCodeOwners = %s",
+        visitFurtherCodeOwnerConfigs, ignoreParentCodeOwners);
+    // If no further code owner configs should be visited or if all parent code owner configs are
+    // ignored, we are done. No need to check further parent code owner configs (including the
+    // default code owner config in refs/meta/config which is the parent of the root code owner
+    // config).
+    return visitFurtherCodeOwnerConfigs && !ignoreParentCodeOwners;
+  }
+
+  /**
+   * Gets the code owner configs that apply to the given folder, if the folder was prepared by
+   * {@link #prepareForFiles(BranchNameKey, ObjectId, Collection)} for the given branch revision.
+   */
+  private Optional<ImmutableList<CodeOwnerConfig.Key>> getPreparedCodeOwnerConfigKeys(
+      BranchNameKey branchNameKey, ObjectId revision, Path folder) {
+    if (preparedFolders == null
+        || !branchNameKey.equals(preparedBranch)
+        || !revision.equals(preparedRevision)) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(preparedFolders.get(folder));
+  }
+
+  /**
+   * Gets the index of the folders that contain code owner config files in the given branch
+   * revision.
+   *
+   * @param branchNameKey project and branch for which the index should be returned
+   * @param revision the branch revision for which the index should be returned
+   * @return the index, {@link Optional#empty()} if the code owner backend doesn't store code owner
+   *     configs as files or if the index cannot be computed
+   */
+  private Optional<CodeOwnerConfigFolderIndex> getCodeOwnerConfigFolderIndex(
+      BranchNameKey branchNameKey, ObjectId revision) {
+    return codeOwnersPluginConfiguration
+        .getProjectConfig(branchNameKey.project())
+        .getBackend(branchNameKey.branch())
+        .getDefaultFileName(branchNameKey.project())
+        .flatMap(
+            fileName ->
+                codeOwnerConfigFolderIndexCache.get(branchNameKey.project(), revision, fileName));
+  }
+
   /**
    * Visits the code owner config file at the root of the {@code refs/meta/config} branch in the
    * given project.
@@ -262,19 +603,22 @@ public class CodeOwnerConfigHierarchy {
     CodeOwnerConfig.Key metaCodeOwnerConfigKey =
         CodeOwnerConfig.Key.create(project, RefNames.REFS_CONFIG, "/");
     logger.atFine().log("visiting code owner config %s", metaCodeOwnerConfigKey);
-    try (Repository repository = repoManager.openRepository(project);
-        RevWalk rw = new RevWalk(repository)) {
-      Ref ref = repository.exactRef(RefNames.REFS_CONFIG);
-      if (ref == null) {
+    try {
+      Optional<RevCommit> metaRevision = getRefsMetaConfigRevision(project);
+      if (!metaRevision.isPresent()) {
         logger.atFine().log("%s not found", RefNames.REFS_CONFIG);
         return;
       }
-      RevCommit metaRevision = rw.parseCommit(ref.getObjectId());
       Optional<PathCodeOwners> pathCodeOwners =
           pathCodeOwnersFactory.create(
-              transientCodeOwnerConfigCache, metaCodeOwnerConfigKey, metaRevision, absolutePath);
+              transientCodeOwnerConfigCache,
+              transientPathCodeOwnersResultCache,
+              metaCodeOwnerConfigKey,
+              metaRevision.get(),
+              absolutePath);
       if (pathCodeOwners.isPresent()) {
         logger.atFine().log("visit code owner config %s", metaCodeOwnerConfigKey);
+        pathCodeOwners.get().collectDebugMessages(collectDebugMessages);
         pathCodeOwnersVisitor.visit(pathCodeOwners.get());
       } else {
         logger.atFine().log("code owner config %s not found", metaCodeOwnerConfigKey);
@@ -285,8 +629,61 @@ public class CodeOwnerConfigHierarchy {
     }
   }
 
+  private Optional<RevCommit> getRefsMetaConfigRevision(Project.NameKey project)
+      throws IOException {
+    if (gitContext != null) {
+      return gitContext.withRevWalk(
+          project, rw -> getRefsMetaConfigRevision(gitContext.getRepository(project), rw));
+    }
+    try (Repository repository = repoManager.openRepository(project);
+        RevWalk rw = new RevWalk(repository)) {
+      return getRefsMetaConfigRevision(repository, rw);
+    }
+  }
+
+  private static Optional<RevCommit> getRefsMetaConfigRevision(Repository repository, RevWalk rw)
+      throws IOException {
+    Ref ref = repository.exactRef(RefNames.REFS_CONFIG);
+    if (ref == null) {
+      return Optional.empty();
+    }
+    return Optional.of(rw.parseCommit(ref.getObjectId()));
+  }
+
   /** Returns the counters for cache and backend reads of code owner config files. */
   public TransientCodeOwnerConfigCache.Counters getCodeOwnerConfigCounters() {
     return transientCodeOwnerConfigCache.getCounters();
   }
+
+  /** Node of a trie of folders. */
+  private static class FolderTrieNode {
+    final Path folder;
+    final Map<String, FolderTrieNode> children = new TreeMap<>();
+
+    /** Whether files in this folder should be visited. */
+    boolean hasFiles;
+
+    FolderTrieNode(Path folder) {
+      this.folder = folder;
+    }
+
+    /**
+     * Adds the given folder to the trie below this node and marks it as a folder that contains
+     * files.
+     */
+    void add(Path absoluteFolderPath) {
+      FolderTrieNode node = this;
+      for (Path name : node.folder.relativize(absoluteFolderPath)) {
+        if (name.toString().isEmpty()) {
+          // relativize returns an empty path if the folder is this node's folder
+          continue;
+        }
+        FolderTrieNode parent = node;
+        node =
+            parent.children.computeIfAbsent(
+                name.toString(), n -> new FolderTrieNode(parent.folder.resolve(n)));
+      }
+      node.hasFiles = true;
+    }
+  }
 }
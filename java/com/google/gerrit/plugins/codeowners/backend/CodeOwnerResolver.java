@@ -15,6 +15,7 @@
 package com.google.gerrit.plugins.codeowners.backend;
 
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static java.util.Objects.requireNonNull;
@@ -37,8 +38,6 @@ import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.account.AccountCache;
 import com.google.gerrit.server.account.AccountControl;
 import com.google.gerrit.server.account.AccountState;
-import com.google.gerrit.server.account.externalids.ExternalId;
-import com.google.gerrit.server.account.externalids.ExternalIds;
 import com.google.gerrit.server.permissions.GlobalPermission;
 import com.google.gerrit.server.permissions.PermissionBackend;
 import com.google.gerrit.server.permissions.PermissionBackendException;
@@ -54,6 +53,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -105,7 +105,7 @@ public class CodeOwnerResolver {
   private final CodeOwnersPluginConfiguration codeOwnersPluginConfiguration;
   private final PermissionBackend permissionBackend;
   private final Provider<CurrentUser> currentUser;
-  private final ExternalIds externalIds;
+  private final AccountIdsByEmailCache accountIdsByEmailCache;
   private final AccountCache accountCache;
   private final AccountControl.Factory accountControlFactory;
   private final PathCodeOwners.Factory pathCodeOwnersFactory;
@@ -116,17 +116,32 @@ public class CodeOwnerResolver {
   // Enforce visibility by default.
   private boolean enforceVisibility = true;
 
+  // Collect debug messages by default.
+  private boolean collectDebugMessages = true;
+
   // The the user that should be used to check the account visibility (whether this user can see the
   // accounts of the code owners).
   // If unset, the current user is used.
   private IdentifiedUser user;
 
+  // The account control for the user that is used to check the account visibility, created lazily.
+  // Reset when the user is changed.
+  private volatile AccountControl accountControl;
+
+  // Whether the user that is used to check the account visibility can see secondary emails (has the
+  // 'Modify Account' global capability), computed lazily. Reset when the user is changed.
+  private volatile Boolean canSeeSecondaryEmails;
+
+  // Whether the user that is used to check the account visibility can see the accounts. Reset when
+  // the user is changed.
+  private final Map<Account.Id, Boolean> visibleAccounts = new ConcurrentHashMap<>();
+
   @Inject
   CodeOwnerResolver(
       CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
       PermissionBackend permissionBackend,
       Provider<CurrentUser> currentUser,
-      ExternalIds externalIds,
+      AccountIdsByEmailCache accountIdsByEmailCache,
       AccountCache accountCache,
       AccountControl.Factory accountControlFactory,
       PathCodeOwners.Factory pathCodeOwnersFactory,
@@ -136,7 +151,7 @@ public class CodeOwnerResolver {
     this.codeOwnersPluginConfiguration = codeOwnersPluginConfiguration;
     this.permissionBackend = permissionBackend;
     this.currentUser = currentUser;
-    this.externalIds = externalIds;
+    this.accountIdsByEmailCache = accountIdsByEmailCache;
     this.accountCache = accountCache;
     this.accountControlFactory = accountControlFactory;
     this.pathCodeOwnersFactory = pathCodeOwnersFactory;
@@ -159,6 +174,20 @@ public class CodeOwnerResolver {
     return this;
   }
 
+  /**
+   * Whether debug messages should be collected and returned with the results.
+   *
+   * <p>Callers that do not use the debug messages (e.g. the submit rule) should disable the
+   * collection of debug messages, so that the debug messages are not formatted at all.
+   *
+   * @param collectDebugMessages whether debug messages should be collected
+   * @return the {@link CodeOwnerResolver} instance for chaining calls
+   */
+  public CodeOwnerResolver collectDebugMessages(boolean collectDebugMessages) {
+    this.collectDebugMessages = collectDebugMessages;
+    return this;
+  }
+
   /**
    * Sets the user that should be used to check the account visibility (whether this user can see
    * the accounts of the code owners).
@@ -177,6 +206,9 @@ public class CodeOwnerResolver {
   public CodeOwnerResolver forUser(IdentifiedUser user) {
     logger.atFine().log("user = %s", user.getLoggableName());
     this.user = user;
+    this.accountControl = null;
+    this.canSeeSecondaryEmails = null;
+    visibleAccounts.clear();
     transientCodeOwnerCache.clear();
     return this;
   }
@@ -187,6 +219,35 @@ public class CodeOwnerResolver {
     return !result.codeOwners().isEmpty() || result.ownedByAllUsers();
   }
 
+  /**
+   * Filters out the code owners whose accounts are not visible to the {@link #user} or the calling
+   * user (if {@link #user} is unset).
+   *
+   * <p>Allows to check the visibility of code owners that have been resolved without enforcing
+   * visibility (e.g. code owners that were cached when computing the code owner statuses of a
+   * change). If {@link #enforceVisibility} is {@code false} all code owners are returned.
+   *
+   * @param codeOwners the code owners that should be filtered
+   * @return the code owners whose accounts are visible
+   */
+  public ImmutableSet<CodeOwner> filterVisible(ImmutableSet<CodeOwner> codeOwners) {
+    requireNonNull(codeOwners, "codeOwners");
+    if (!enforceVisibility || codeOwners.isEmpty()) {
+      return codeOwners;
+    }
+
+    Map<Account.Id, AccountState> accounts =
+        accountCache.get(
+            codeOwners.stream().map(CodeOwner::accountId).collect(toImmutableSet()));
+    return codeOwners.stream()
+        .filter(
+            codeOwner -> {
+              AccountState accountState = accounts.get(codeOwner.accountId());
+              return accountState != null && canSee(accountState);
+            })
+        .collect(toImmutableSet());
+  }
+
   /**
    * Resolves the code owners from the given code owner config for the given path from {@link
    * CodeOwnerReference}s to a {@link CodeOwner}s.
@@ -209,7 +270,9 @@ public class CodeOwnerResolver {
     requireNonNull(absolutePath, "absolutePath");
     checkState(absolutePath.isAbsolute(), "path %s must be absolute", absolutePath);
     return resolvePathCodeOwners(
-        pathCodeOwnersFactory.createWithoutCache(codeOwnerConfig, absolutePath));
+        pathCodeOwnersFactory
+            .createWithoutCache(codeOwnerConfig, absolutePath)
+            .collectDebugMessages(collectDebugMessages));
   }
 
   /**
@@ -238,6 +301,97 @@ public class CodeOwnerResolver {
     }
   }
 
+  /**
+   * Resolves the code owners of an already resolved code owner config from {@link
+   * CodeOwnerReference}s to {@link CodeOwner}s.
+   *
+   * <p>Since the {@link PathCodeOwnersResult} doesn't depend on the calling user, it can be reused
+   * across requests, while the code owners are always resolved for the user of this resolver (e.g.
+   * code owners that are not visible to the user are filtered out if visibility is enforced).
+   *
+   * <p>Non-resolvable code owners are filtered out.
+   *
+   * @param pathCodeOwnersResult the resolved code owner config of which the code owners should be
+   *     resolved
+   * @return the resolved code owners
+   */
+  public CodeOwnerResolverResult resolvePathCodeOwners(PathCodeOwnersResult pathCodeOwnersResult) {
+    requireNonNull(pathCodeOwnersResult, "pathCodeOwnersResult");
+    return resolve(
+        pathCodeOwnersResult.getPathCodeOwners(),
+        pathCodeOwnersResult.getAnnotations(),
+        pathCodeOwnersResult.unresolvedImports(),
+        /* pathCodeOwnersMessages= */ ImmutableList.of());
+  }
+
+  /**
+   * Resolves the given path code owners from {@link CodeOwnerReference}s to {@link CodeOwner}s.
+   *
+   * <p>Same as invoking {@link #resolvePathCodeOwners(PathCodeOwners)} for each of the given path
+   * code owners, but the code owner references of all path code owners are resolved at once. This
+   * means the external IDs and the accounts for the code owner emails are looked up in one batch,
+   * rather than in one batch per path code owners, which is more efficient if the code owners for
+   * many paths need to be resolved (e.g. for all files in a change).
+   *
+   * <p>Non-resolvable code owners are filtered out.
+   *
+   * @param pathCodeOwnersList the path code owners that should be resolved
+   * @return the resolved code owners, in the same order as the given path code owners
+   */
+  public ImmutableList<CodeOwnerResolverResult> resolvePathCodeOwners(
+      List<PathCodeOwners> pathCodeOwnersList) {
+    requireNonNull(pathCodeOwnersList, "pathCodeOwnersList");
+
+    ImmutableList<OptionalResultWithMessages<PathCodeOwnersResult>> pathCodeOwnersResults =
+        pathCodeOwnersList.stream()
+            .map(PathCodeOwners::resolveCodeOwnerConfig)
+            .collect(toImmutableList());
+    resolveInBatch(
+        pathCodeOwnersResults.stream()
+            .flatMap(result -> result.get().getPathCodeOwners().stream())
+            .collect(toImmutableSet()));
+
+    return pathCodeOwnersResults.stream()
+        .map(
+            pathCodeOwnersResult ->
+                resolve(
+                    pathCodeOwnersResult.get().getPathCodeOwners(),
+                    pathCodeOwnersResult.get().getAnnotations(),
+                    pathCodeOwnersResult.get().unresolvedImports(),
+                    pathCodeOwnersResult.messages()))
+        .collect(toImmutableList());
+  }
+
+  /**
+   * Resolves the given {@link CodeOwnerReference}s in one batch, so that subsequent resolutions of
+   * these code owner references by this {@code CodeOwnerResolver} are served from the transient
+   * cache.
+   *
+   * <p>This means the external IDs and the accounts for the code owner emails are looked up in one
+   * batch, rather than in one batch per resolution, which is more efficient if the code owners for
+   * many paths need to be resolved (e.g. for all files in a change).
+   *
+   * <p>No debug messages are collected for the batch resolution, since the debug messages of the
+   * subsequent resolutions cannot be separated from them.
+   *
+   * @param codeOwnerReferences the code owner references that should be resolved
+   */
+  public void resolveInBatch(Set<CodeOwnerReference> codeOwnerReferences) {
+    requireNonNull(codeOwnerReferences, "codeOwnerReferences");
+
+    try (Timer0.Context ctx = codeOwnerMetrics.resolveCodeOwnerReferences.start()) {
+      logger.atFine().log("resolve %d code owner references in batch", codeOwnerReferences.size());
+      // The resolved code owners and the non-resolvable emails are cached in the
+      // transientCodeOwnerCache.
+      resolve(
+          DebugMessages.create(/* enabled= */ false),
+          new AtomicBoolean(false),
+          new AtomicBoolean(false),
+          codeOwnerReferences,
+          /* annotations= */ ImmutableMultimap.of());
+    }
+  }
+
   /**
    * Resolves the global code owners for the given project.
    *
@@ -285,17 +439,18 @@ public class CodeOwnerResolver {
     requireNonNull(pathCodeOwnersMessages, "pathCodeOwnersMessages");
 
     try (Timer0.Context ctx = codeOwnerMetrics.resolveCodeOwnerReferences.start()) {
-      ImmutableList.Builder<String> messageBuilder = ImmutableList.builder();
-      messageBuilder.addAll(pathCodeOwnersMessages);
-      unresolvedImports.forEach(
-          unresolvedImport ->
-              messageBuilder.add(unresolvedImportFormatter.format(unresolvedImport)));
+      DebugMessages messages = DebugMessages.create(collectDebugMessages);
+      messages.addAll(pathCodeOwnersMessages);
+      if (messages.isEnabled()) {
+        unresolvedImports.forEach(
+            unresolvedImport -> messages.add(unresolvedImportFormatter.format(unresolvedImport)));
+      }
 
       AtomicBoolean ownedByAllUsers = new AtomicBoolean(false);
       AtomicBoolean hasUnresolvedCodeOwners = new AtomicBoolean(false);
       ImmutableMap<CodeOwner, ImmutableSet<CodeOwnerAnnotation>> codeOwnersWithAnnotations =
           resolve(
-              messageBuilder,
+              messages,
               ownedByAllUsers,
               hasUnresolvedCodeOwners,
               codeOwnerReferences,
@@ -313,7 +468,7 @@ public class CodeOwnerResolver {
               ownedByAllUsers.get(),
               hasUnresolvedCodeOwners.get(),
               !unresolvedImports.isEmpty(),
-              messageBuilder.build());
+              messages.build());
       logger.atFine().log("resolve result = %s", codeOwnerResolverResult);
       return codeOwnerResolverResult;
     }
@@ -357,7 +512,7 @@ public class CodeOwnerResolver {
               CodeOwnerResolver.ALL_USERS_WILDCARD));
     }
 
-    ImmutableList.Builder<String> messageBuilder = ImmutableList.builder();
+    DebugMessages messageBuilder = DebugMessages.create(collectDebugMessages);
     AtomicBoolean ownedByAllUsers = new AtomicBoolean(false);
     AtomicBoolean hasUnresolvedCodeOwners = new AtomicBoolean(false);
     ImmutableMap<CodeOwner, ImmutableSet<CodeOwnerAnnotation>> codeOwnersWithAnnotations =
@@ -393,7 +548,7 @@ public class CodeOwnerResolver {
    *     owners without annotations and Multimap doesn't store keys for which no values are stored)
    */
   private ImmutableMap<CodeOwner, ImmutableSet<CodeOwnerAnnotation>> resolve(
-      ImmutableList.Builder<String> messages,
+      DebugMessages messages,
       AtomicBoolean ownedByAllUsers,
       AtomicBoolean hasUnresolvedCodeOwners,
       Set<CodeOwnerReference> codeOwnerReferences,
@@ -415,11 +570,11 @@ public class CodeOwnerResolver {
             .filter(filterOutEmailsWithNonAllowedDomains(messages))
             .collect(toImmutableSet());
 
-    ImmutableMap<String, Collection<ExternalId>> externalIdsByEmail =
-        lookupExternalIds(messages, emailsToLookup);
+    ImmutableMap<String, ImmutableSet<Account.Id>> accountIdsByEmail =
+        lookupAccountIds(messages, emailsToLookup);
 
     Stream<Pair<String, AccountState>> accountsByEmail =
-        lookupAccounts(messages, externalIdsByEmail)
+        lookupAccounts(messages, accountIdsByEmail)
             .map(removeInactiveAccounts(messages))
             .filter(filterOutEmailsWithoutAccounts(messages))
             .filter(filterOutAmbiguousEmails(messages))
@@ -496,8 +651,7 @@ public class CodeOwnerResolver {
    *
    * @param messages builder to which debug messages are added
    */
-  private Predicate<String> filterOutEmailsWithNonAllowedDomains(
-      ImmutableList.Builder<String> messages) {
+  private Predicate<String> filterOutEmailsWithNonAllowedDomains(DebugMessages messages) {
     return email -> {
       boolean isEmailDomainAllowed = isEmailDomainAllowed(messages, email);
       if (!isEmailDomainAllowed) {
@@ -521,7 +675,7 @@ public class CodeOwnerResolver {
    *     contains {@code false}
    */
   public OptionalResultWithMessages<Boolean> isEmailDomainAllowed(String email) {
-    ImmutableList.Builder<String> messages = ImmutableList.builder();
+    DebugMessages messages = DebugMessages.create(collectDebugMessages);
     boolean isEmailDomainAllowed = isEmailDomainAllowed(messages, email);
     return OptionalResultWithMessages.create(isEmailDomainAllowed, messages.build());
   }
@@ -537,7 +691,7 @@ public class CodeOwnerResolver {
    * @return {@code true} if the domain of the given email is allowed for code owners, otherwise
    *     {@code false}
    */
-  private boolean isEmailDomainAllowed(ImmutableList.Builder<String> messages, String email) {
+  private boolean isEmailDomainAllowed(DebugMessages messages, String email) {
     requireNonNull(messages, "messages");
     requireNonNull(email, "email");
 
@@ -558,42 +712,41 @@ public class CodeOwnerResolver {
       String emailDomain = email.substring(emailAtIndex + 1);
       boolean isEmailDomainAllowed = allowedEmailDomains.contains(emailDomain);
       messages.add(
-          String.format(
-              "domain %s of email %s is %s",
-              emailDomain, email, isEmailDomainAllowed ? "allowed" : "not allowed"));
+          "domain %s of email %s is %s",
+          emailDomain, email, isEmailDomainAllowed ? "allowed" : "not allowed");
       return isEmailDomainAllowed;
     }
 
-    messages.add(String.format("email %s has no domain", email));
+    messages.add("email %s has no domain", email);
     return false;
   }
 
   /**
-   * Looks up the external IDs for the given emails.
+   * Looks up the IDs of the accounts that own the given emails.
    *
-   * <p>Looks up all emails from the external ID cache at once, which is more efficient than looking
-   * up external IDs for emails one by one (see {@link ExternalIds#byEmails(String...)}).
+   * <p>The account IDs are looked up from the {@link AccountIdsByEmailCache}, which looks up the
+   * external IDs for all emails that are not cached yet at once.
    *
    * @param messages builder to which debug messages are added
-   * @param emails the emails for which the external IDs should be looked up
-   * @return external IDs per email
+   * @param emails the emails for which the account IDs should be looked up
+   * @return account IDs per email, emails that are not owned by any account are omitted
    */
-  private ImmutableMap<String, Collection<ExternalId>> lookupExternalIds(
-      ImmutableList.Builder<String> messages, ImmutableSet<String> emails) {
+  private ImmutableMap<String, ImmutableSet<Account.Id>> lookupAccountIds(
+      DebugMessages messages, ImmutableSet<String> emails) {
     try {
-      ImmutableMap<String, Collection<ExternalId>> extIdsByEmail =
-          externalIds.byEmails(emails.toArray(new String[0])).asMap();
+      ImmutableMap<String, ImmutableSet<Account.Id>> accountIdsByEmail =
+          accountIdsByEmailCache.get(emails);
       emails.stream()
-          .filter(email -> !extIdsByEmail.containsKey(email))
+          .filter(email -> accountIdsByEmail.get(email).isEmpty())
           .forEach(
               email -> {
                 transientCodeOwnerCache.cacheNonResolvable(email);
                 messages.add(
-                    String.format(
-                        "cannot resolve code owner email %s: no account with this email exists",
-                        email));
+                    "cannot resolve code owner email %s: no account with this email exists", email);
               });
-      return extIdsByEmail;
+      return accountIdsByEmail.entrySet().stream()
+          .filter(e -> !e.getValue().isEmpty())
+          .collect(toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
     } catch (IOException e) {
       throw new CodeOwnersInternalServerErrorException(
           String.format("cannot resolve code owner emails: %s", emails), e);
@@ -601,40 +754,34 @@ public class CodeOwnerResolver {
   }
 
   /**
-   * Looks up the accounts for the given external IDs.
+   * Looks up the accounts for the given account IDs.
    *
    * <p>Looks up all accounts from the account cache at once, which is more efficient than looking
    * up accounts one by one (see {@link AccountCache#get(Set)}).
    *
    * @param messages builder to which debug messages are added
-   * @param externalIdsByEmail external IDs for which the accounts should be looked up
+   * @param accountIdsByEmail account IDs for which the accounts should be looked up
    * @return account states per email
    */
   private Stream<Pair<String, Collection<AccountState>>> lookupAccounts(
-      ImmutableList.Builder<String> messages,
-      ImmutableMap<String, Collection<ExternalId>> externalIdsByEmail) {
+      DebugMessages messages, ImmutableMap<String, ImmutableSet<Account.Id>> accountIdsByEmail) {
     ImmutableSet<Account.Id> accountIds =
-        externalIdsByEmail.values().stream()
-            .flatMap(Collection::stream)
-            .map(ExternalId::accountId)
-            .collect(toImmutableSet());
+        accountIdsByEmail.values().stream().flatMap(Collection::stream).collect(toImmutableSet());
     Map<Account.Id, AccountState> accounts = accountCache.get(accountIds);
-    return externalIdsByEmail.entrySet().stream()
+    return accountIdsByEmail.entrySet().stream()
         .map(
             e ->
                 Pair.of(
                     e.getKey(),
                     e.getValue().stream()
                         .map(
-                            extId -> {
-                              Account.Id accountId = extId.accountId();
+                            accountId -> {
                               AccountState accountState = accounts.get(accountId);
                               if (accountState == null) {
                                 messages.add(
-                                    String.format(
-                                        "cannot resolve account %s for email %s: account does not"
-                                            + " exists",
-                                        accountId, e.getKey()));
+                                    "cannot resolve account %s for email %s: account does not"
+                                        + " exists",
+                                    accountId, e.getKey());
                               }
                               return accountState;
                             })
@@ -652,7 +799,7 @@ public class CodeOwnerResolver {
    * @param messages builder to which debug messages are added
    */
   private Function<Pair<String, Collection<AccountState>>, Pair<String, Collection<AccountState>>>
-      removeInactiveAccounts(ImmutableList.Builder<String> messages) {
+      removeInactiveAccounts(DebugMessages messages) {
     return e -> Pair.of(e.key(), removeInactiveAccounts(messages, e.key(), e.value()));
   }
 
@@ -665,17 +812,14 @@ public class CodeOwnerResolver {
    * @return the account states that belong to active accounts
    */
   private ImmutableSet<AccountState> removeInactiveAccounts(
-      ImmutableList.Builder<String> messages,
-      String email,
-      Collection<AccountState> accountStates) {
+      DebugMessages messages, String email, Collection<AccountState> accountStates) {
     return accountStates.stream()
         .filter(
             accountState -> {
               if (!accountState.account().isActive()) {
                 messages.add(
-                    String.format(
-                        "ignoring inactive account %s for email %s",
-                        accountState.account().id(), email));
+                    "ignoring inactive account %s for email %s",
+                    accountState.account().id(), email);
                 return false;
               }
               return true;
@@ -692,15 +836,13 @@ public class CodeOwnerResolver {
    * @param messages builder to which debug messages are added
    */
   private Predicate<Pair<String, Collection<AccountState>>> filterOutEmailsWithoutAccounts(
-      ImmutableList.Builder<String> messages) {
+      DebugMessages messages) {
     return e -> {
       if (e.value().isEmpty()) {
         String email = e.key();
         transientCodeOwnerCache.cacheNonResolvable(email);
         messages.add(
-            String.format(
-                "cannot resolve code owner email %s: no active account with this email found",
-                email));
+            "cannot resolve code owner email %s: no active account with this email found", email);
         return false;
       }
       return true;
@@ -717,13 +859,12 @@ public class CodeOwnerResolver {
    * @param messages builder to which debug messages are added
    */
   private Predicate<Pair<String, Collection<AccountState>>> filterOutAmbiguousEmails(
-      ImmutableList.Builder<String> messages) {
+      DebugMessages messages) {
     return e -> {
       if (e.value().size() > 1) {
         String email = e.key();
         transientCodeOwnerCache.cacheNonResolvable(email);
-        messages.add(
-            String.format("cannot resolve code owner email %s: email is ambiguous", email));
+        messages.add("cannot resolve code owner email %s: email is ambiguous", email);
         return false;
       }
       return true;
@@ -741,12 +882,11 @@ public class CodeOwnerResolver {
    * @param messages builder to which debug messages are added
    */
   private Function<Pair<String, Collection<AccountState>>, Pair<String, AccountState>>
-      mapToOnlyAccount(ImmutableList.Builder<String> messages) {
+      mapToOnlyAccount(DebugMessages messages) {
     return e -> {
       String email = e.key();
       AccountState accountState = Iterables.getOnlyElement(e.value());
-      messages.add(
-          String.format("resolved email %s to account %s", email, accountState.account().id()));
+      messages.add("resolved email %s to account %s", email, accountState.account().id());
       return Pair.of(email, accountState);
     };
   }
@@ -757,18 +897,17 @@ public class CodeOwnerResolver {
    * @param messages builder to which debug messages are added
    */
   private Predicate<Pair<String, AccountState>> filterOutEmailsOfNonVisibleAccounts(
-      ImmutableList.Builder<String> messages) {
+      DebugMessages messages) {
     return e -> {
       String email = e.key();
       AccountState accountState = e.value();
       if (!canSee(accountState)) {
         transientCodeOwnerCache.cacheNonResolvable(email);
         messages.add(
-            String.format(
-                "cannot resolve code owner email %s: account %s is not visible to user %s",
-                email,
-                accountState.account().id(),
-                user != null ? user.getLoggableName() : currentUser.get().getLoggableName()));
+            "cannot resolve code owner email %s: account %s is not visible to user %s",
+            email,
+            accountState.account().id(),
+            user != null ? user.getLoggableName() : currentUser.get().getLoggableName());
         return false;
       }
 
@@ -776,11 +915,46 @@ public class CodeOwnerResolver {
     };
   }
 
-  /** Whether the given account can be seen. */
+  /**
+   * Whether the given account can be seen.
+   *
+   * <p>The result is memoized per account, so that the visibility of an account that is referenced
+   * by multiple emails is checked only once.
+   */
   private boolean canSee(AccountState accountState) {
-    AccountControl accountControl =
-        user != null ? accountControlFactory.get(user) : accountControlFactory.get();
-    return accountControl.canSee(accountState);
+    return visibleAccounts.computeIfAbsent(
+        accountState.account().id(), accountId -> getAccountControl().canSee(accountState));
+  }
+
+  /**
+   * Gets the account control for the {@link #user} or the calling user (if {@link #user} is unset).
+   *
+   * <p>The account control is created only once and then reused for all visibility checks.
+   */
+  private AccountControl getAccountControl() {
+    AccountControl accountControl = this.accountControl;
+    if (accountControl == null) {
+      accountControl = user != null ? accountControlFactory.get(user) : accountControlFactory.get();
+      this.accountControl = accountControl;
+    }
+    return accountControl;
+  }
+
+  /**
+   * Whether the {@link #user} or the calling user (if {@link #user} is unset) can see secondary
+   * emails of other accounts, which requires the {@code Modify Account} global capability.
+   *
+   * <p>The capability is checked only once and then the result is reused for all emails.
+   */
+  private boolean canSeeSecondaryEmails() throws PermissionBackendException {
+    Boolean canSeeSecondaryEmails = this.canSeeSecondaryEmails;
+    if (canSeeSecondaryEmails == null) {
+      canSeeSecondaryEmails =
+          (user != null ? permissionBackend.user(user) : permissionBackend.currentUser())
+              .test(GlobalPermission.MODIFY_ACCOUNT);
+      this.canSeeSecondaryEmails = canSeeSecondaryEmails;
+    }
+    return canSeeSecondaryEmails;
   }
 
   /**
@@ -797,27 +971,25 @@ public class CodeOwnerResolver {
    * @param messages builder to which debug messages are added
    */
   private Predicate<Pair<String, AccountState>> filterOutNonVisibleSecondaryEmails(
-      ImmutableList.Builder<String> messages) {
+      DebugMessages messages) {
     return e -> {
       String email = e.key();
       AccountState accountState = e.value();
       if (email.equals(accountState.account().preferredEmail())) {
         // the email is a primary email of the account
         messages.add(
-            String.format(
-                "account %s is visible to user %s",
-                accountState.account().id(),
-                user != null ? user.getLoggableName() : currentUser.get().getLoggableName()));
+            "account %s is visible to user %s",
+            accountState.account().id(),
+            user != null ? user.getLoggableName() : currentUser.get().getLoggableName());
         return true;
       }
 
       if (user != null) {
         if (user.hasEmailAddress(email)) {
           messages.add(
-              String.format(
-                  "email %s is visible to user %s: email is a secondary email that is owned by this"
-                      + " user",
-                  email, user.getLoggableName()));
+              "email %s is visible to user %s: email is a secondary email that is owned by this"
+                  + " user",
+              email, user.getLoggableName());
           return true;
         }
       } else if (currentUser.get().isIdentifiedUser()
@@ -825,10 +997,9 @@ public class CodeOwnerResolver {
         // it's a secondary email of the calling user, users can always see their own secondary
         // emails
         messages.add(
-            String.format(
-                "email %s is visible to the calling user %s: email is a secondary email that is"
-                    + " owned by this user",
-                email, currentUser.get().getLoggableName()));
+            "email %s is visible to the calling user %s: email is a secondary email that is"
+                + " owned by this user",
+            email, currentUser.get().getLoggableName());
         return true;
       }
 
@@ -836,35 +1007,31 @@ public class CodeOwnerResolver {
       // emails
       try {
         if (user != null) {
-          if (!permissionBackend.user(user).test(GlobalPermission.MODIFY_ACCOUNT)) {
+          if (!canSeeSecondaryEmails()) {
             transientCodeOwnerCache.cacheNonResolvable(email);
             messages.add(
-                String.format(
-                    "cannot resolve code owner email %s: account %s is referenced by secondary email"
-                        + " but user %s cannot see secondary emails",
-                    email, accountState.account().id(), user.getLoggableName()));
+                "cannot resolve code owner email %s: account %s is referenced by secondary email"
+                    + " but user %s cannot see secondary emails",
+                email, accountState.account().id(), user.getLoggableName());
             return false;
           }
           messages.add(
-              String.format(
-                  "resolved code owner email %s: account %s is referenced by secondary email"
-                      + " and user %s can see secondary emails",
-                  email, accountState.account().id(), user.getLoggableName()));
+              "resolved code owner email %s: account %s is referenced by secondary email"
+                  + " and user %s can see secondary emails",
+              email, accountState.account().id(), user.getLoggableName());
           return true;
-        } else if (!permissionBackend.currentUser().test(GlobalPermission.MODIFY_ACCOUNT)) {
+        } else if (!canSeeSecondaryEmails()) {
           transientCodeOwnerCache.cacheNonResolvable(email);
           messages.add(
-              String.format(
-                  "cannot resolve code owner email %s: account %s is referenced by secondary email"
-                      + " but the calling user %s cannot see secondary emails",
-                  email, accountState.account().id(), currentUser.get().getLoggableName()));
+              "cannot resolve code owner email %s: account %s is referenced by secondary email"
+                  + " but the calling user %s cannot see secondary emails",
+              email, accountState.account().id(), currentUser.get().getLoggableName());
           return false;
         } else {
           messages.add(
-              String.format(
-                  "resolved code owner email %s: account %s is referenced by secondary email"
-                      + " and the calling user %s can see secondary emails",
-                  email, accountState.account().id(), currentUser.get().getLoggableName()));
+              "resolved code owner email %s: account %s is referenced by secondary email"
+                  + " and the calling user %s can see secondary emails",
+              email, accountState.account().id(), currentUser.get().getLoggableName());
           return true;
         }
       } catch (PermissionBackendException ex) {
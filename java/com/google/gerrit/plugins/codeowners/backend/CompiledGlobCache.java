@@ -0,0 +1,93 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.flogger.FluentLogger;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Bounded cache of compiled Java NIO glob matchers.
+ *
+ * <p>Compiling a glob into a {@link PathMatcher} means translating it into a regular expression and
+ * compiling that regular expression, which is expensive compared to matching a path against the
+ * compiled matcher. Since the same path expressions are matched against many paths (e.g. all files
+ * of a change), the compiled matchers are cached.
+ *
+ * <p>The cache is keyed by the path expression as it is given to the {@link PathExpressionMatcher}.
+ * The conversion of the path expression into a glob is done only when the compiled matcher is
+ * loaded into the cache, so that it's not repeated for each match.
+ *
+ * <p>Invalid globs are cached as {@link Optional#empty()} so that they are not compiled again and
+ * again just to fail with a {@link PatternSyntaxException} each time.
+ *
+ * <p>This class is thread-safe.
+ */
+final class CompiledGlobCache {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** The maximum number of compiled matchers that are cached per cache instance. */
+  private static final long MAX_SIZE = 10000;
+
+  private final LoadingCache<String, Optional<PathMatcher>> compiledGlobs;
+
+  /**
+   * Creates a compiled glob cache.
+   *
+   * @param globConverter function that converts a path expression into a Java NIO glob
+   */
+  CompiledGlobCache(Function<String, String> globConverter) {
+    requireNonNull(globConverter, "globConverter");
+    this.compiledGlobs =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .build(
+                new CacheLoader<String, Optional<PathMatcher>>() {
+                  @Override
+                  public Optional<PathMatcher> load(String pathExpression) {
+                    return compile(globConverter.apply(pathExpression));
+                  }
+                });
+  }
+
+  /**
+   * Returns the compiled matcher for the given path expression.
+   *
+   * @param pathExpression the path expression for which the compiled matcher should be returned
+   * @return the compiled matcher, {@link Optional#empty()} if the glob for the path expression is
+   *     invalid
+   */
+  Optional<PathMatcher> get(String pathExpression) {
+    requireNonNull(pathExpression, "pathExpression");
+    return compiledGlobs.getUnchecked(pathExpression);
+  }
+
+  private static Optional<PathMatcher> compile(String glob) {
+    try {
+      return Optional.of(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    } catch (PatternSyntaxException e) {
+      logger.atFine().log("glob %s is invalid: %s", glob, e.getMessage());
+      return Optional.empty();
+    }
+  }
+}
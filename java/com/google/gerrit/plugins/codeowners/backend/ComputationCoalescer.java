@@ -0,0 +1,229 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.metrics.Counter0;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent computations of the same value, so that concurrent callers that need the
+ * value for the same key share one in-flight computation.
+ *
+ * <p>E.g. opening a change in the UI triggers several requests that compute the same code owner
+ * data concurrently (often for many users that look at the same change). Without coalescing each
+ * of these requests would do the same expensive computation.
+ *
+ * <p>Computed values are not retained once the computation has finished. Callers that want to reuse
+ * values for subsequent requests must cache them separately.
+ *
+ * <p>If an in-flight computation fails or is abandoned (e.g. because the caller didn't need the
+ * complete value), the callers that waited for it do the computation themselves. This means
+ * callers never see exceptions that are thrown by computations that are done on behalf of other
+ * requests. Callers wait for an in-flight computation only for a maximum wait time, if the
+ * computation doesn't finish in time they do the computation themselves too, so that a slow
+ * computation doesn't block an unbounded number of requests.
+ *
+ * <p>Computations should be registered only for the time in which the value is actually computed.
+ * E.g. callers that compute the value lazily (and may not need the complete value) should not
+ * register their computation, since the callers waiting for it would be blocked for as long as the
+ * value is consumed.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @param <K> the type of the keys that identify the computations
+ * @param <V> the type of the computed values
+ */
+public class ComputationCoalescer<K, V> {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Default for the maximum time that callers wait for an in-flight computation. */
+  public static final Duration DEFAULT_MAX_WAIT_TIME = Duration.ofSeconds(10);
+
+  private final ConcurrentMap<K, InFlightComputation<K, V>> inFlightComputations =
+      new ConcurrentHashMap<>();
+  private final Counter0 coalescedCallers;
+  private final Duration maxWaitTime;
+
+  /**
+   * Creates a {@link ComputationCoalescer} that lets callers wait for in-flight computations for at
+   * most {@link #DEFAULT_MAX_WAIT_TIME}.
+   *
+   * @param coalescedCallers counter that is incremented for each caller that reused the value of a
+   *     computation that was in flight
+   */
+  public ComputationCoalescer(Counter0 coalescedCallers) {
+    this(coalescedCallers, DEFAULT_MAX_WAIT_TIME);
+  }
+
+  /**
+   * Creates a {@link ComputationCoalescer}.
+   *
+   * @param coalescedCallers counter that is incremented for each caller that reused the value of a
+   *     computation that was in flight
+   * @param maxWaitTime the maximum time that callers wait for an in-flight computation before they
+   *     do the computation themselves
+   */
+  public ComputationCoalescer(Counter0 coalescedCallers, Duration maxWaitTime) {
+    this.coalescedCallers = requireNonNull(coalescedCallers, "coalescedCallers");
+    this.maxWaitTime = requireNonNull(maxWaitTime, "maxWaitTime");
+  }
+
+  /**
+   * Gets the value for the given key, either from a computation for the key that is in flight or by
+   * running the given computation.
+   *
+   * @param key the key that identifies the computation
+   * @param computation the computation that computes the value, only invoked if no computation for
+   *     the key is in flight
+   * @return the value for the given key
+   */
+  public V get(K key, Supplier<V> computation) {
+    requireNonNull(key, "key");
+    requireNonNull(computation, "computation");
+
+    Optional<V> value = join(key);
+    if (value.isPresent()) {
+      return value.get();
+    }
+
+    try (InFlightComputation<K, V> inFlightComputation = start(key)) {
+      V computedValue = computation.get();
+      inFlightComputation.complete(computedValue);
+      return computedValue;
+    }
+  }
+
+  /**
+   * Waits for the computation for the given key, if a computation for the key is in flight.
+   *
+   * <p>Callers that get an empty result should do the computation themselves and should register it
+   * by {@link #start(Object)}, so that further callers can join it.
+   *
+   * @param key the key that identifies the computation
+   * @return the value that was computed by the in-flight computation, {@link Optional#empty()} if
+   *     no computation for the key is in flight, if the in-flight computation failed or was
+   *     abandoned or if the in-flight computation didn't finish within the maximum wait time
+   */
+  public Optional<V> join(K key) {
+    requireNonNull(key, "key");
+
+    InFlightComputation<K, V> inFlightComputation = inFlightComputations.get(key);
+    if (inFlightComputation == null) {
+      return Optional.empty();
+    }
+
+    if (inFlightComputation.thread == Thread.currentThread()) {
+      // The computation was started by the current thread and is not completed yet. Waiting for it
+      // would never return.
+      return Optional.empty();
+    }
+
+    logger.atFine().log("waiting for in-flight computation of %s", key);
+    try {
+      Optional<V> value =
+          Optional.ofNullable(
+              inFlightComputation.value.get(maxWaitTime.toMillis(), TimeUnit.MILLISECONDS));
+      if (value.isPresent()) {
+        coalescedCallers.increment();
+      } else {
+        logger.atFine().log("in-flight computation of %s was abandoned", key);
+      }
+      return value;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Optional.empty();
+    } catch (ExecutionException e) {
+      // Cannot happen since in-flight computations are never completed exceptionally.
+      return Optional.empty();
+    } catch (TimeoutException e) {
+      logger.atFine().log(
+          "in-flight computation of %s didn't finish within %s, computing it again",
+          key,
+          maxWaitTime);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Registers a computation for the given key as in-flight, so that concurrent callers can {@link
+   * #join(Object)} it.
+   *
+   * <p>The caller must pass the computed value to {@link InFlightComputation#complete(Object)} and
+   * then close the returned {@link InFlightComputation}. Closing it without completing it abandons
+   * the computation (e.g. if the computation failed), in this case the callers that are waiting for
+   * it do the computation themselves.
+   *
+   * <p>If another computation for the key is already in flight (because it was started
+   * concurrently), the returned {@link InFlightComputation} is not registered, but it can be used
+   * the same way.
+   *
+   * @param key the key that identifies the computation
+   * @return the in-flight computation, must be closed by the caller
+   */
+  public InFlightComputation<K, V> start(K key) {
+    requireNonNull(key, "key");
+    InFlightComputation<K, V> inFlightComputation = new InFlightComputation<>(this, key);
+    inFlightComputation.registered =
+        inFlightComputations.putIfAbsent(key, inFlightComputation) == null;
+    return inFlightComputation;
+  }
+
+  /** A computation that is in flight. */
+  public static class InFlightComputation<K, V> implements AutoCloseable {
+    private final ComputationCoalescer<K, V> computationCoalescer;
+    private final K key;
+    private final Thread thread = Thread.currentThread();
+    private final CompletableFuture<V> value = new CompletableFuture<>();
+    private boolean registered;
+
+    private InFlightComputation(ComputationCoalescer<K, V> computationCoalescer, K key) {
+      this.computationCoalescer = computationCoalescer;
+      this.key = key;
+    }
+
+    /**
+     * Completes the computation with the given value, so that the callers that are waiting for the
+     * computation get the value.
+     *
+     * @param value the computed value
+     */
+    public void complete(V value) {
+      this.value.complete(requireNonNull(value, "value"));
+    }
+
+    /**
+     * Unregisters the computation. If the computation was not completed, it is abandoned and the
+     * callers that are waiting for the computation do the computation themselves.
+     */
+    @Override
+    public void close() {
+      if (registered) {
+        computationCoalescer.inFlightComputations.remove(key, this);
+      }
+      value.complete(null);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.Nullable;
+import java.util.Collection;
+
+/**
+ * Collects debug messages that are returned to callers (e.g. with {@link
+ * OptionalResultWithMessages} or {@link CodeOwnerResolverResult}).
+ *
+ * <p>Debug messages are only needed if the caller shows them to the user (e.g. the {@code
+ * CheckCodeOwner} REST endpoint or the {@code GetCodeOwners} REST endpoints if the {@code --debug}
+ * option is set). Other callers (e.g. the submit rule) discard them. If the collection of debug
+ * messages is disabled, messages are not formatted and not stored, so that they do not cost
+ * anything.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class DebugMessages {
+  private static final DebugMessages DISABLED = new DebugMessages(/* messages= */ null);
+
+  /**
+   * Creates a {@link DebugMessages} instance.
+   *
+   * @param enabled whether debug messages should be collected
+   * @return the {@link DebugMessages} instance, if debug messages are not collected a shared no-op
+   *     instance is returned
+   */
+  public static DebugMessages create(boolean enabled) {
+    return enabled ? new DebugMessages(ImmutableList.builder()) : DISABLED;
+  }
+
+  @Nullable private final ImmutableList.Builder<String> messages;
+
+  private DebugMessages(@Nullable ImmutableList.Builder<String> messages) {
+    this.messages = messages;
+  }
+
+  /** Whether debug messages are collected. */
+  public boolean isEnabled() {
+    return messages != null;
+  }
+
+  /**
+   * Adds the given message.
+   *
+   * @param message the message that should be added
+   */
+  public void add(String message) {
+    requireNonNull(message, "message");
+    if (messages != null) {
+      messages.add(message);
+    }
+  }
+
+  /**
+   * Adds a message that is formatted from the given format string and arguments.
+   *
+   * <p>The message is only formatted if debug messages are collected.
+   *
+   * @param format the format string of the message (see {@link String#format(String, Object...)})
+   * @param args the arguments for the format string
+   */
+  public void add(String format, Object... args) {
+    requireNonNull(format, "format");
+    if (messages != null) {
+      messages.add(String.format(format, args));
+    }
+  }
+
+  /**
+   * Adds the given messages.
+   *
+   * @param messages the messages that should be added
+   */
+  public void addAll(Collection<String> messages) {
+    requireNonNull(messages, "messages");
+    if (this.messages != null) {
+      this.messages.addAll(messages);
+    }
+  }
+
+  /** Returns the collected messages, an empty list if debug messages are not collected. */
+  public ImmutableList<String> build() {
+    return messages != null ? messages.build() : ImmutableList.of();
+  }
+}
@@ -0,0 +1,504 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.collect.ImmutableSetMultimap.toImmutableSetMultimap;
+import static java.util.Objects.requireNonNull;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.PatchSetApproval;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.events.AccountIndexedListener;
+import com.google.gerrit.extensions.events.GroupIndexedListener;
+import com.google.gerrit.plugins.codeowners.metrics.CodeOwnerMetrics;
+import com.google.gerrit.server.account.AccountCache;
+import com.google.gerrit.server.account.AccountState;
+import com.google.gerrit.server.account.externalids.ExternalId;
+import com.google.gerrit.server.account.externalids.ExternalIds;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.util.LabelVote;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Server-wide caches for the code owner statuses of the files in a change, for the submittability
+ * of a change and for the resolved code owners of the files in a change.
+ *
+ * <p>The code owners submit rule is evaluated again and again for the same change (e.g. on each
+ * reindexing of the change, on each load of the change in the UI), and most of these evaluations
+ * compute the same file statuses. Hence the file statuses are cached by a fingerprint of everything
+ * that is part of the change and that they depend on: the patch set (and its commit), the revision
+ * of the destination branch from which the code owner configs are read, the approvals on the
+ * current patch set and the reviewers.
+ *
+ * <p>Whether a change is submittable is cached under the same key. It's cached separately from the
+ * file statuses, since it's usually known before all file statuses have been computed (as soon as
+ * a file is found that is not approved), and the file statuses are only cached if all of them were
+ * computed.
+ *
+ * <p>If the approvals or reviewers of a change change, the file statuses must be recomputed, but
+ * the resolved code owners of the files are still the same. Hence the resolved code owners of the
+ * files are cached separately, by the patch set and the revision of the destination branch only
+ * (see {@link ResolvedPathCodeOwners}), so that only the code owner statuses must be computed
+ * again.
+ *
+ * <p>The file statuses also depend on state outside of the change, which cannot be part of the
+ * cache keys. Instead the cache keys contain the generation of this state for the project of the
+ * change (see {@link #getGeneration(Project.NameKey)}). If the state changes, the generation is
+ * increased so that the existing cache entries are no longer found (they are evicted from the
+ * caches once they are the least recently used entries). The generation is increased if:
+ *
+ * <ul>
+ *   <li>the code owner configuration of the project changes (see {@link
+ *       CodeOwnerConfigGenerations})
+ *   <li>the emails or the active state of an account change (code owner emails may resolve to
+ *       other accounts now)
+ *   <li>a group is reindexed and the file statuses of the project depend on the project owners
+ *       (group memberships may make other accounts project owners now)
+ * </ul>
+ *
+ * <p>Since not all state is observable (e.g. membership in external groups), cache entries expire
+ * after a maximum age.
+ */
+@Singleton
+public class FileCodeOwnerStatusCache implements AccountIndexedListener, GroupIndexedListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  static final String CACHE_NAME = "file_code_owner_statuses";
+  static final String SUBMITTABILITY_CACHE_NAME = "code_owner_submittability";
+  static final String RESOLVED_PATH_CODE_OWNERS_CACHE_NAME = "resolved_path_code_owners";
+  static final String ACCOUNT_FINGERPRINTS_CACHE_NAME = "code_owner_account_fingerprints";
+
+  /** Default for the maximum number of files that are cached over all changes. */
+  private static final long DEFAULT_MAX_WEIGHT = 100000;
+
+  /** Default for the maximum number of accounts for which fingerprints are cached. */
+  private static final long DEFAULT_MAX_ACCOUNT_FINGERPRINTS = 100000;
+
+  /** Default for the maximum age of cache entries. */
+  private static final Duration DEFAULT_MAX_AGE = Duration.ofHours(1);
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, Key.class, new TypeLiteral<ImmutableList<FileCodeOwnerStatus>>() {})
+            .maximumWeight(DEFAULT_MAX_WEIGHT)
+            .expireAfterWrite(DEFAULT_MAX_AGE)
+            .weigher(FileStatusesWeigher.class);
+        cache(SUBMITTABILITY_CACHE_NAME, Key.class, Boolean.class)
+            .maximumWeight(DEFAULT_MAX_WEIGHT)
+            .expireAfterWrite(DEFAULT_MAX_AGE);
+        cache(
+                RESOLVED_PATH_CODE_OWNERS_CACHE_NAME,
+                RevisionKey.class,
+                new TypeLiteral<ImmutableMap<Path, ResolvedPathCodeOwners>>() {})
+            .maximumWeight(DEFAULT_MAX_WEIGHT)
+            .expireAfterWrite(DEFAULT_MAX_AGE)
+            .weigher(ResolvedPathCodeOwnersWeigher.class);
+        cache(ACCOUNT_FINGERPRINTS_CACHE_NAME, Account.Id.class, HashCode.class)
+            .maximumWeight(DEFAULT_MAX_ACCOUNT_FINGERPRINTS);
+        bind(FileCodeOwnerStatusCache.class);
+      }
+    };
+  }
+
+  private final Cache<Key, ImmutableList<FileCodeOwnerStatus>> cache;
+  private final Cache<Key, Boolean> submittabilityCache;
+  private final Cache<RevisionKey, ImmutableMap<Path, ResolvedPathCodeOwners>>
+      resolvedPathCodeOwnersCache;
+  private final Cache<Account.Id, HashCode> accountFingerprints;
+  private final CodeOwnerConfigGenerations codeOwnerConfigGenerations;
+  private final AccountIdsByEmailCache accountIdsByEmailCache;
+  private final AccountCache accountCache;
+  private final ExternalIds externalIds;
+  private final CodeOwnerMetrics codeOwnerMetrics;
+
+  /**
+   * Generation of the accounts, increased whenever the emails or the active state of an account
+   * change.
+   */
+  private final AtomicLong accountsGeneration = new AtomicLong();
+
+  /** Projects for which the file statuses depend on the project owners. */
+  private final Set<Project.NameKey> projectsWithProjectOwnersLookups =
+      ConcurrentHashMap.newKeySet();
+
+  /** Generations of the project owners, increased whenever a group is reindexed. */
+  private final ConcurrentMap<Project.NameKey, Long> projectOwnersGenerations =
+      new ConcurrentHashMap<>();
+
+  @Inject
+  FileCodeOwnerStatusCache(
+      @Named(CACHE_NAME) Cache<Key, ImmutableList<FileCodeOwnerStatus>> cache,
+      @Named(SUBMITTABILITY_CACHE_NAME) Cache<Key, Boolean> submittabilityCache,
+      @Named(RESOLVED_PATH_CODE_OWNERS_CACHE_NAME)
+          Cache<RevisionKey, ImmutableMap<Path, ResolvedPathCodeOwners>>
+              resolvedPathCodeOwnersCache,
+      @Named(ACCOUNT_FINGERPRINTS_CACHE_NAME) Cache<Account.Id, HashCode> accountFingerprints,
+      CodeOwnerConfigGenerations codeOwnerConfigGenerations,
+      AccountIdsByEmailCache accountIdsByEmailCache,
+      AccountCache accountCache,
+      ExternalIds externalIds,
+      CodeOwnerMetrics codeOwnerMetrics) {
+    this.cache = cache;
+    this.submittabilityCache = submittabilityCache;
+    this.resolvedPathCodeOwnersCache = resolvedPathCodeOwnersCache;
+    this.accountFingerprints = accountFingerprints;
+    this.codeOwnerConfigGenerations = codeOwnerConfigGenerations;
+    this.accountIdsByEmailCache = accountIdsByEmailCache;
+    this.accountCache = accountCache;
+    this.externalIds = externalIds;
+    this.codeOwnerMetrics = codeOwnerMetrics;
+  }
+
+  /**
+   * Gets the current generation of the state outside of changes from which the file statuses of
+   * changes in the given project are computed.
+   *
+   * <p>Must be retrieved before any state is read from which the file statuses are computed and be
+   * passed into {@link RevisionKey#create(Project.NameKey, long, PatchSet, ObjectId)}. This way
+   * file statuses that were computed concurrently to a change of this state are cached under the
+   * outdated generation and are never returned.
+   *
+   * @param project the project of the change for which the file statuses are computed
+   */
+  public long getGeneration(Project.NameKey project) {
+    requireNonNull(project, "project");
+    return Math.max(
+        codeOwnerConfigGenerations.get(project),
+        Math.max(accountsGeneration.get(), projectOwnersGenerations.getOrDefault(project, 0L)));
+  }
+
+  /**
+   * Records that the file statuses of changes in the given project depend on the project owners.
+   *
+   * <p>Must be invoked when the project owners are looked up for the computation of file statuses,
+   * so that the cached file statuses of the project are invalidated when groups are reindexed.
+   *
+   * @param project the project for which the project owners are looked up
+   */
+  public void recordProjectOwnersLookup(Project.NameKey project) {
+    requireNonNull(project, "project");
+    projectsWithProjectOwnersLookups.add(project);
+  }
+
+  /**
+   * Gets the cached file statuses for the given key.
+   *
+   * @param key the key for which the file statuses should be returned
+   * @return the cached file statuses, {@link Optional#empty()} if no file statuses are cached for
+   *     the given key
+   */
+  public Optional<ImmutableList<FileCodeOwnerStatus>> get(Key key) {
+    requireNonNull(key, "key");
+    Optional<ImmutableList<FileCodeOwnerStatus>> fileStatuses =
+        Optional.ofNullable(cache.getIfPresent(key));
+    if (fileStatuses.isPresent()) {
+      codeOwnerMetrics.countFileCodeOwnerStatusCacheHits.increment();
+    } else {
+      codeOwnerMetrics.countFileCodeOwnerStatusCacheMisses.increment();
+    }
+    return fileStatuses;
+  }
+
+  /**
+   * Puts the given file statuses into the cache.
+   *
+   * @param key the key for which the file statuses were computed
+   * @param fileStatuses the computed file statuses
+   */
+  public void put(Key key, ImmutableList<FileCodeOwnerStatus> fileStatuses) {
+    requireNonNull(key, "key");
+    requireNonNull(fileStatuses, "fileStatuses");
+    cache.put(key, fileStatuses);
+  }
+
+  /**
+   * Gets the cached submittability for the given key.
+   *
+   * @param key the key for which the submittability should be returned
+   * @return whether the change is submittable, {@link Optional#empty()} if the submittability is
+   *     not cached for the given key
+   */
+  public Optional<Boolean> getSubmittability(Key key) {
+    requireNonNull(key, "key");
+    Optional<Boolean> isSubmittable = Optional.ofNullable(submittabilityCache.getIfPresent(key));
+    if (isSubmittable.isPresent()) {
+      codeOwnerMetrics.countSubmittabilityCacheHits.increment();
+    } else {
+      codeOwnerMetrics.countSubmittabilityCacheMisses.increment();
+    }
+    return isSubmittable;
+  }
+
+  /**
+   * Puts the given submittability into the cache.
+   *
+   * @param key the key for which the submittability was computed
+   * @param isSubmittable whether the change is submittable
+   */
+  public void putSubmittability(Key key, boolean isSubmittable) {
+    requireNonNull(key, "key");
+    submittabilityCache.put(key, isSubmittable);
+  }
+
+  /**
+   * Gets the cached resolved code owners of the files in the given patch set.
+   *
+   * @param revisionKey the key of the patch set for which the resolved code owners should be
+   *     returned
+   * @return the cached resolved code owners by path, {@link Optional#empty()} if no resolved code
+   *     owners are cached for the given key; paths for which not all code owner configs were
+   *     resolved (e.g. because they were approved by a code owner that is near to the path) are
+   *     missing and must be resolved by the caller
+   */
+  public Optional<ImmutableMap<Path, ResolvedPathCodeOwners>> getResolvedPathCodeOwners(
+      RevisionKey revisionKey) {
+    requireNonNull(revisionKey, "revisionKey");
+    return Optional.ofNullable(resolvedPathCodeOwnersCache.getIfPresent(revisionKey));
+  }
+
+  /**
+   * Puts the given resolved code owners into the cache.
+   *
+   * @param revisionKey the key of the patch set for which the resolved code owners were computed
+   * @param resolvedPathCodeOwners the resolved code owners by path
+   */
+  public void putResolvedPathCodeOwners(
+      RevisionKey revisionKey, ImmutableMap<Path, ResolvedPathCodeOwners> resolvedPathCodeOwners) {
+    requireNonNull(revisionKey, "revisionKey");
+    requireNonNull(resolvedPathCodeOwners, "resolvedPathCodeOwners");
+    resolvedPathCodeOwnersCache.put(revisionKey, resolvedPathCodeOwners);
+  }
+
+  /**
+   * Invalidates the cached file statuses if the reindexing of the given account changed anything
+   * that is relevant for the code owner statuses.
+   *
+   * <p>Also invalidates the cached account IDs of the emails of the account (see {@link
+   * AccountIdsByEmailCache#invalidate(Account.Id)}). This is done here, so that it is known whether
+   * code owners have been resolved from the previous state of the account before its cache entries
+   * are invalidated.
+   *
+   * <p>To detect whether the reindexing changed anything relevant, a fingerprint of the emails and
+   * the active state of the account is compared with the fingerprint from the previous reindexing.
+   * If no previous fingerprint is known (e.g. on the first reindexing after a server restart), the
+   * cached file statuses are only invalidated if code owners may have been resolved from the
+   * previous state of the account, i.e. if any of the emails that are or were owned by the account
+   * have been cached by the {@link AccountIdsByEmailCache}.
+   */
+  @Override
+  public void onAccountIndexed(int id) {
+    Account.Id accountId = Account.id(id);
+    boolean usedForCodeOwnerResolution = accountIdsByEmailCache.invalidate(accountId);
+
+    HashCode fingerprint;
+    try {
+      fingerprint = getFingerprint(accountId);
+    } catch (IOException e) {
+      // We cannot know whether the emails of the account have changed, hence invalidate.
+      logger.atWarning().withCause(e).log(
+          "Failed to read external IDs of account %d, invalidating all cached file statuses.", id);
+      accountFingerprints.invalidate(accountId);
+      invalidateAccounts();
+      return;
+    }
+
+    HashCode previousFingerprint = accountFingerprints.asMap().put(accountId, fingerprint);
+    if (fingerprint.equals(previousFingerprint)) {
+      logger.atFine().log(
+          "account %d was reindexed, but its emails and its active state didn't change", id);
+      return;
+    }
+    if (!usedForCodeOwnerResolution) {
+      logger.atFine().log(
+          "account %d was reindexed, but no code owners have been resolved from its previous state",
+          id);
+      return;
+    }
+
+    logger.atFine().log("account %d was reindexed", id);
+    invalidateAccounts();
+  }
+
+  @Override
+  public void onGroupIndexed(String uuid) {
+    logger.atFine().log(
+        "group %s was reindexed, invalidating cached file statuses of projects that depend on"
+            + " project owners (%s)",
+        uuid, projectsWithProjectOwnersLookups);
+    for (Project.NameKey project : projectsWithProjectOwnersLookups) {
+      projectOwnersGenerations.merge(
+          project, codeOwnerConfigGenerations.newGeneration(), Math::max);
+    }
+  }
+
+  private void invalidateAccounts() {
+    logger.atFine().log("invalidating cached file statuses and resolved code owners");
+    accountsGeneration.accumulateAndGet(codeOwnerConfigGenerations.newGeneration(), Math::max);
+  }
+
+  /**
+   * Computes a fingerprint of the state of the given account that is relevant for resolving code
+   * owners: the active state and the emails of the account.
+   */
+  private HashCode getFingerprint(Account.Id accountId) throws IOException {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    Optional<AccountState> accountState = accountCache.get(accountId);
+    hasher.putBoolean(accountState.isPresent());
+    if (accountState.isPresent()) {
+      hasher.putBoolean(accountState.get().account().isActive());
+      hasher.putUnencodedChars(
+          Objects.toString(accountState.get().account().preferredEmail(), ""));
+    }
+    ImmutableSortedSet<String> emails =
+        externalIds.byAccount(accountId).stream()
+            .map(ExternalId::email)
+            .filter(Objects::nonNull)
+            .collect(ImmutableSortedSet.toImmutableSortedSet(String::compareTo));
+    for (String email : emails) {
+      hasher.putInt(email.length()).putUnencodedChars(email);
+    }
+    return hasher.hash();
+  }
+
+  /** Key that identifies a patch set of a change and the revision of its destination branch. */
+  @AutoValue
+  public abstract static class RevisionKey {
+    /** The project of the change. */
+    abstract Project.NameKey project();
+
+    /**
+     * The generation of the state outside of the change (see {@link
+     * FileCodeOwnerStatusCache#getGeneration(Project.NameKey)}).
+     */
+    abstract long generation();
+
+    /** The ID of the current patch set of the change. */
+    abstract PatchSet.Id patchSetId();
+
+    /** The commit of the current patch set of the change. */
+    abstract ObjectId patchSetCommit();
+
+    /** The revision of the destination branch from which the code owner configs are read. */
+    abstract ObjectId destBranchRevision();
+
+    /**
+     * Creates a {@link RevisionKey}.
+     *
+     * @param project the project of the change
+     * @param generation the generation that was retrieved by {@link
+     *     FileCodeOwnerStatusCache#getGeneration(Project.NameKey)} before the computation of the
+     *     file statuses was started
+     * @param patchSet the current patch set of the change
+     * @param destBranchRevision the revision of the destination branch from which the code owner
+     *     configs are read
+     */
+    public static RevisionKey create(
+        Project.NameKey project, long generation, PatchSet patchSet, ObjectId destBranchRevision) {
+      requireNonNull(project, "project");
+      requireNonNull(patchSet, "patchSet");
+      requireNonNull(destBranchRevision, "destBranchRevision");
+      return new AutoValue_FileCodeOwnerStatusCache_RevisionKey(
+          project,
+          generation,
+          patchSet.id(),
+          patchSet.commitId().copy(),
+          destBranchRevision.copy());
+    }
+  }
+
+  @AutoValue
+  public abstract static class Key {
+    /** The patch set of the change and the revision of its destination branch. */
+    abstract RevisionKey revisionKey();
+
+    /** The votes on the current patch set by account. */
+    abstract ImmutableSetMultimap<Account.Id, LabelVote> approvals();
+
+    /** The accounts that are reviewer of the change. */
+    abstract ImmutableSet<Account.Id> reviewers();
+
+    /**
+     * Creates a {@link Key}.
+     *
+     * @param revisionKey the patch set of the change and the revision of its destination branch
+     * @param currentPatchSetApprovals the approvals on the current patch set
+     * @param reviewers the accounts that are reviewer of the change
+     */
+    public static Key create(
+        RevisionKey revisionKey,
+        ImmutableList<PatchSetApproval> currentPatchSetApprovals,
+        ImmutableSet<Account.Id> reviewers) {
+      requireNonNull(revisionKey, "revisionKey");
+      requireNonNull(currentPatchSetApprovals, "currentPatchSetApprovals");
+      requireNonNull(reviewers, "reviewers");
+      return new AutoValue_FileCodeOwnerStatusCache_Key(
+          revisionKey,
+          currentPatchSetApprovals.stream()
+              .collect(
+                  toImmutableSetMultimap(
+                      PatchSetApproval::accountId,
+                      approval -> LabelVote.create(approval.label(), approval.value()))),
+          reviewers);
+    }
+  }
+
+  /** Weighs cached file statuses by the number of files. */
+  static class FileStatusesWeigher implements Weigher<Key, ImmutableList<FileCodeOwnerStatus>> {
+    @Override
+    public int weigh(Key key, ImmutableList<FileCodeOwnerStatus> fileStatuses) {
+      return 1 + fileStatuses.size();
+    }
+  }
+
+  /** Weighs cached resolved code owners by the number of paths. */
+  static class ResolvedPathCodeOwnersWeigher
+      implements Weigher<RevisionKey, ImmutableMap<Path, ResolvedPathCodeOwners>> {
+    @Override
+    public int weigh(
+        RevisionKey revisionKey,
+        ImmutableMap<Path, ResolvedPathCodeOwners> resolvedPathCodeOwners) {
+      return 1 + resolvedPathCodeOwners.size();
+    }
+  }
+}
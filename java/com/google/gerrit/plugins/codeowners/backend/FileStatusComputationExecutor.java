@@ -0,0 +1,51 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginConfiguration;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Executor to compute the code owner statuses of the files in a change in parallel.
+ *
+ * <p>The number of threads is configured by {@code
+ * plugin.code-owners.maxThreadsForFileStatusComputation} in {@code gerrit.config}. If it is not
+ * set, or set to {@code 1}, no threads are started and file statuses are computed sequentially on
+ * the request thread.
+ */
+@Singleton
+public class FileStatusComputationExecutor extends ParallelComputationExecutor {
+  private static final String QUEUE_NAME = "CodeOwnersFileStatusComputation";
+
+  private final CodeOwnersPluginConfiguration codeOwnersPluginConfiguration;
+
+  @Inject
+  FileStatusComputationExecutor(
+      WorkQueue workQueue,
+      CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
+      ThreadLocalRequestContext threadLocalRequestContext) {
+    super(workQueue, threadLocalRequestContext, QUEUE_NAME);
+    this.codeOwnersPluginConfiguration = codeOwnersPluginConfiguration;
+  }
+
+  @Override
+  protected int getMaxThreads() {
+    return codeOwnersPluginConfiguration.getGlobalConfig().getMaxThreadsForFileStatusComputation();
+  }
+}
@@ -14,7 +14,10 @@
 
 package com.google.gerrit.plugins.codeowners.backend;
 
+import com.google.common.flogger.FluentLogger;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Optional;
 
 /**
  * Glob matcher that is compatible with how globs are interpreted by the {@code find-owners} plugin.
@@ -24,17 +27,48 @@ import java.nio.file.Path;
  * <ul>
  *   <li>'*': matches any string, including slashes (same as '**')
  * </ul>
+ *
+ * <p>Compiled globs are cached (see {@link CompiledGlobCache}).
  */
 public class FindOwnersGlobMatcher implements PathExpressionMatcher {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
   /** Singleton instance. */
   public static FindOwnersGlobMatcher INSTANCE = new FindOwnersGlobMatcher();
 
+  // always match files in all subdirectories
+  private static final CompiledGlobCache compiledGlobs =
+      new CompiledGlobCache(glob -> "{**/,}" + glob);
+
   /** Private constructor to prevent creation of further instances. */
   private FindOwnersGlobMatcher() {}
 
   @Override
   public boolean matches(String glob, Path relativePath) {
-    // always match files in all subdirectories
-    return GlobMatcher.INSTANCE.matches("{**/,}" + glob, relativePath);
+    Optional<PathMatcher> pathMatcher = compiledGlobs.get(glob);
+    if (!pathMatcher.isPresent()) {
+      logger.atFine().log("glob %s is invalid", glob);
+      return false;
+    }
+    boolean isMatching = pathMatcher.get().matches(relativePath);
+    logger.atFine().log("path %s %s matching %s", relativePath, isMatching ? "is" : "is not", glob);
+    return isMatching;
+  }
+
+  @Override
+  public Optional<IndexablePathExpression> classify(String glob) {
+    if (GlobMatcher.GLOB_SPECIAL_CHARS.matchesNoneOf(glob)) {
+      return Optional.of(IndexablePathExpression.exactPathInAnyFolder(glob));
+    }
+
+    // '*<suffix>' matches all files in all folders that end with the suffix
+    if (glob.startsWith("*")) {
+      String suffix = glob.substring(1);
+      if (GlobMatcher.GLOB_SPECIAL_CHARS.matchesNoneOf(suffix) && !suffix.contains("/")) {
+        return Optional.of(IndexablePathExpression.fileNameSuffixInAnyFolder(suffix));
+      }
+    }
+
+    return Optional.empty();
   }
 }
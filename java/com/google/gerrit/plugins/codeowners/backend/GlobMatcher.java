@@ -14,10 +14,12 @@
 
 package com.google.gerrit.plugins.codeowners.backend;
 
+import com.google.common.base.CharMatcher;
 import com.google.common.flogger.FluentLogger;
-import java.nio.file.FileSystems;
 import java.nio.file.Path;
-import java.util.regex.PatternSyntaxException;
+import java.nio.file.PathMatcher;
+import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Matcher that checks for a given path expression as Java NIO glob if it matches a given path.
@@ -36,6 +38,8 @@ import java.util.regex.PatternSyntaxException;
  *       all its subfolders, e.g. '{**&#47;,}BUILD' matches files that either match '**&#47;BUILD'
  *       or 'BUILD'.
  * </ul>
+ *
+ * <p>Compiled globs are cached (see {@link CompiledGlobCache}).
  */
 public class GlobMatcher implements PathExpressionMatcher {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
@@ -43,20 +47,49 @@ public class GlobMatcher implements PathExpressionMatcher {
   /** Singleton instance. */
   public static GlobMatcher INSTANCE = new GlobMatcher();
 
+  private static final CompiledGlobCache compiledGlobs =
+      new CompiledGlobCache(Function.identity());
+
+  /** Characters that have a special meaning in globs. */
+  static final CharMatcher GLOB_SPECIAL_CHARS = CharMatcher.anyOf("*?[]{}\\");
+
   /** Private constructor to prevent creation of further instances. */
   private GlobMatcher() {}
 
   @Override
   public boolean matches(String glob, Path relativePath) {
-    try {
-      boolean isMatching =
-          FileSystems.getDefault().getPathMatcher("glob:" + glob).matches(relativePath);
-      logger.atFine().log(
-          "path %s %s matching %s", relativePath, isMatching ? "is" : "is not", glob);
-      return isMatching;
-    } catch (PatternSyntaxException e) {
-      logger.atFine().log("glob %s is invalid: %s", glob, e.getMessage());
+    Optional<PathMatcher> pathMatcher = compiledGlobs.get(glob);
+    if (!pathMatcher.isPresent()) {
+      logger.atFine().log("glob %s is invalid", glob);
       return false;
     }
+    boolean isMatching = pathMatcher.get().matches(relativePath);
+    logger.atFine().log("path %s %s matching %s", relativePath, isMatching ? "is" : "is not", glob);
+    return isMatching;
+  }
+
+  @Override
+  public Optional<IndexablePathExpression> classify(String glob) {
+    if (GLOB_SPECIAL_CHARS.matchesNoneOf(glob)) {
+      return Optional.of(IndexablePathExpression.exactPath(glob));
+    }
+
+    // '*<suffix>' matches all files in the current folder that end with the suffix
+    if (glob.startsWith("*")) {
+      String suffix = glob.substring(1);
+      if (GLOB_SPECIAL_CHARS.matchesNoneOf(suffix) && !suffix.contains("/")) {
+        return Optional.of(IndexablePathExpression.fileNameSuffix(suffix));
+      }
+    }
+
+    // '<folder>/**' matches all files in the folder and its subfolders
+    if (glob.endsWith("/**")) {
+      String folder = glob.substring(0, glob.length() - "/**".length());
+      if (!folder.isEmpty() && GLOB_SPECIAL_CHARS.matchesNoneOf(folder)) {
+        return Optional.of(IndexablePathExpression.folderPrefix(folder));
+      }
+    }
+
+    return Optional.empty();
   }
 }
@@ -0,0 +1,92 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * A path expression that can be matched by comparing strings, rather than by evaluating it as a
+ * pattern.
+ *
+ * <p>Path expressions are classified by {@link PathExpressionMatcher#classify(String)}. Classified
+ * path expressions can be indexed, which allows to find all matching path expressions of a code
+ * owner config by looking up the path in the index (see {@link PerFileCodeOwnerSetIndex}).
+ */
+@AutoValue
+public abstract class IndexablePathExpression {
+  /** The kinds of path expressions that can be indexed. */
+  public enum Kind {
+    /** Matches the path that is equal to {@link #value()}. */
+    EXACT_PATH,
+
+    /**
+     * Matches the path that is equal to {@link #value()} and all paths that end with '/' + {@link
+     * #value()} (e.g. the value {@code BUILD} matches {@code BUILD} and {@code foo/BUILD}).
+     */
+    EXACT_PATH_IN_ANY_FOLDER,
+
+    /**
+     * Matches all paths that do not contain a folder and end with {@link #value()} (e.g. the value
+     * {@code .md} matches {@code README.md}, but not {@code foo/README.md}).
+     */
+    FILE_NAME_SUFFIX,
+
+    /**
+     * Matches all paths whose file name ends with {@link #value()} (e.g. the value {@code .md}
+     * matches {@code README.md} and {@code foo/README.md}).
+     */
+    FILE_NAME_SUFFIX_IN_ANY_FOLDER,
+
+    /**
+     * Matches all paths that start with {@link #value()}, the value always ends with '/' (e.g. the
+     * value {@code foo/} matches {@code foo/bar} and {@code foo/bar/baz}).
+     */
+    FOLDER_PREFIX;
+  }
+
+  /** The kind of the path expression. */
+  public abstract Kind kind();
+
+  /** The string that is compared with paths, how it is compared depends on the {@link #kind()}. */
+  public abstract String value();
+
+  public static IndexablePathExpression exactPath(String path) {
+    return create(Kind.EXACT_PATH, path);
+  }
+
+  public static IndexablePathExpression exactPathInAnyFolder(String path) {
+    return create(Kind.EXACT_PATH_IN_ANY_FOLDER, path);
+  }
+
+  public static IndexablePathExpression fileNameSuffix(String suffix) {
+    return create(Kind.FILE_NAME_SUFFIX, suffix);
+  }
+
+  public static IndexablePathExpression fileNameSuffixInAnyFolder(String suffix) {
+    return create(Kind.FILE_NAME_SUFFIX_IN_ANY_FOLDER, suffix);
+  }
+
+  public static IndexablePathExpression folderPrefix(String folder) {
+    requireNonNull(folder, "folder");
+    return create(Kind.FOLDER_PREFIX, folder.endsWith("/") ? folder : folder + "/");
+  }
+
+  private static IndexablePathExpression create(Kind kind, String value) {
+    requireNonNull(value, "value");
+    return new AutoValue_IndexablePathExpression(kind, value);
+  }
+}
@@ -0,0 +1,228 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Streams;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.cache.PerThreadCache;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.logging.LoggingContextAwareExecutorService;
+import com.google.gerrit.server.util.RequestContext;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Base class for executors that apply a function to many inputs in parallel, using an own queue
+ * with a configured number of threads.
+ *
+ * <p>If the configured number of threads is {@code 1}, no threads are started and the function is
+ * applied sequentially on the request thread.
+ *
+ * <p>Each computation submits at most as many tasks to the queue as there are threads. Further
+ * tasks are only submitted when the results of the submitted tasks are consumed, so that a single
+ * request with many inputs cannot fill up the queue ahead of other requests.
+ *
+ * <p>The request context of the calling thread is propagated to the worker threads. Each task gets
+ * an own {@link PerThreadCache}, since the objects that are cached in it (e.g. config snapshots)
+ * are not thread-safe.
+ */
+public abstract class ParallelComputationExecutor implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final WorkQueue workQueue;
+  private final ThreadLocalRequestContext threadLocalRequestContext;
+  private final String queueName;
+
+  @Nullable private volatile ExecutorService executor;
+  private volatile int maxInFlightTasksPerComputation;
+
+  protected ParallelComputationExecutor(
+      WorkQueue workQueue, ThreadLocalRequestContext threadLocalRequestContext, String queueName) {
+    this.workQueue = workQueue;
+    this.threadLocalRequestContext = threadLocalRequestContext;
+    this.queueName = queueName;
+  }
+
+  /**
+   * Gets the maximum number of threads that should be used.
+   *
+   * <p>Only read when the executor is started.
+   *
+   * @return the maximum number of threads, {@code 1} if the inputs should be processed sequentially
+   *     on the request thread
+   */
+  protected abstract int getMaxThreads();
+
+  @Override
+  public void start() {
+    int maxThreads = getMaxThreads();
+    logger.atFine().log("maxThreads for %s = %d", queueName, maxThreads);
+    if (maxThreads > 1) {
+      maxInFlightTasksPerComputation = maxThreads;
+      executor =
+          new LoggingContextAwareExecutorService(workQueue.createQueue(maxThreads, queueName));
+    }
+  }
+
+  @Override
+  public void stop() {
+    ExecutorService executor = this.executor;
+    this.executor = null;
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Applies the given function to all inputs.
+   *
+   * <p>If parallel computation is enabled, the function is applied to the inputs in parallel, but
+   * only to as many inputs at the same time as there are threads. The function is applied to
+   * further inputs when the returned stream is consumed. Otherwise the function is applied lazily
+   * on the calling thread, when the returned stream is consumed.
+   *
+   * <p>In both cases the returned stream contains the outputs in the order of the inputs.
+   *
+   * <p>Closing the returned stream cancels the computations that have not been started yet, hence
+   * callers that do not consume the complete stream (e.g. because they short-circuit) should close
+   * it.
+   *
+   * @param inputs the inputs to which the function should be applied
+   * @param function the function that should be applied to the inputs, must be thread-safe
+   * @return the outputs of the function, in the order of the inputs
+   */
+  public <I, O> Stream<O> map(Collection<I> inputs, Function<I, O> function) {
+    requireNonNull(inputs, "inputs");
+    requireNonNull(function, "function");
+
+    ExecutorService executor = this.executor;
+    if (executor == null || inputs.size() <= 1) {
+      return inputs.stream().map(function);
+    }
+
+    RequestContext requestContext = threadLocalRequestContext.getContext();
+    WindowedComputation<I, O> computation =
+        new WindowedComputation<>(
+            executor,
+            maxInFlightTasksPerComputation,
+            inputs.iterator(),
+            input -> () -> apply(requestContext, function, input));
+    return computation.stream();
+  }
+
+  private <I, O> O apply(
+      @Nullable RequestContext requestContext, Function<I, O> function, I input) {
+    RequestContext oldRequestContext = threadLocalRequestContext.setContext(requestContext);
+    try (PerThreadCache perThreadCache = PerThreadCache.create()) {
+      return function.apply(input);
+    } finally {
+      threadLocalRequestContext.setContext(oldRequestContext);
+    }
+  }
+
+  private static <O> O getResult(Future<O> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CodeOwnersInternalServerErrorException(
+          "interrupted while waiting for parallel computation", e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new CodeOwnersInternalServerErrorException("parallel computation failed", e.getCause());
+    }
+  }
+
+  /**
+   * Iterates over the outputs of tasks that are executed in parallel, in the order of the inputs.
+   *
+   * <p>At most {@code maxInFlightTasks} tasks are submitted to the executor at the same time. Each
+   * time an output is consumed, the task for the next input is submitted.
+   */
+  @VisibleForTesting
+  static class WindowedComputation<I, O> extends AbstractIterator<O> {
+    private final ExecutorService executor;
+    private final int maxInFlightTasks;
+    private final Iterator<I> inputs;
+    private final Function<I, Callable<O>> taskFactory;
+    private final Deque<Future<O>> inFlightTasks = new ArrayDeque<>();
+
+    private boolean cancelled;
+
+    WindowedComputation(
+        ExecutorService executor,
+        int maxInFlightTasks,
+        Iterator<I> inputs,
+        Function<I, Callable<O>> taskFactory) {
+      this.executor = executor;
+      this.maxInFlightTasks = maxInFlightTasks;
+      this.inputs = inputs;
+      this.taskFactory = taskFactory;
+
+      // Start the first tasks right away, so that the computation is running before the outputs
+      // are consumed.
+      submitTasks();
+    }
+
+    @Override
+    protected O computeNext() {
+      Future<O> nextTask = inFlightTasks.poll();
+      if (nextTask == null) {
+        return endOfData();
+      }
+      O output = getResult(nextTask);
+      submitTasks();
+      return output;
+    }
+
+    /**
+     * Returns the outputs as a stream. Closing the stream cancels the computation (see {@link
+     * #cancel()}).
+     */
+    Stream<O> stream() {
+      return Streams.stream(this).onClose(this::cancel);
+    }
+
+    /** Cancels the tasks that have not been started yet and doesn't submit any further tasks. */
+    void cancel() {
+      cancelled = true;
+      inFlightTasks.forEach(task -> task.cancel(/* mayInterruptIfRunning= */ false));
+      inFlightTasks.clear();
+    }
+
+    private void submitTasks() {
+      while (!cancelled && inFlightTasks.size() < maxInFlightTasks && inputs.hasNext()) {
+        inFlightTasks.add(executor.submit(taskFactory.apply(inputs.next())));
+      }
+    }
+  }
+}
@@ -0,0 +1,144 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.cache.Cache;
+import com.google.gerrit.plugins.codeowners.metrics.CodeOwnerMetrics;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.util.Optional;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Server-wide cache for parsed code owner configs.
+ *
+ * <p>Code owner config files are immutable Git blobs, hence the result of parsing a code owner
+ * config file only depends on the content of the blob and on the parser that was used to parse it.
+ * This is why the cache is keyed by the parser and the blob ID. Parsed code owner configs in this
+ * cache are shared across requests and across branches/revisions that contain the same code owner
+ * config file.
+ *
+ * <p>Since the key and the revision of a code owner config are not derived from the file content,
+ * the code owner configs that are returned from this cache are rewritten to have the code owner
+ * config key and the revision of the caller.
+ *
+ * <p>Only successfully parsed code owner configs are cached. Parsing failures are not cached since
+ * they should be rare and the exceptions contain request-specific information (e.g. the project and
+ * branch).
+ */
+@Singleton
+public class ParsedCodeOwnerConfigCache {
+  static final String CACHE_NAME = "parsed_code_owner_configs";
+
+  /** Default for the maximum number of parsed code owner configs that are cached. */
+  private static final long DEFAULT_MAX_ENTRIES = 10000;
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, Key.class, CodeOwnerConfig.class).maximumWeight(DEFAULT_MAX_ENTRIES);
+        bind(ParsedCodeOwnerConfigCache.class);
+      }
+    };
+  }
+
+  private final Cache<Key, CodeOwnerConfig> cache;
+  private final CodeOwnerMetrics codeOwnerMetrics;
+
+  @Inject
+  ParsedCodeOwnerConfigCache(
+      @Named(CACHE_NAME) Cache<Key, CodeOwnerConfig> cache, CodeOwnerMetrics codeOwnerMetrics) {
+    this.cache = cache;
+    this.codeOwnerMetrics = codeOwnerMetrics;
+  }
+
+  /**
+   * Gets a parsed code owner config from the cache.
+   *
+   * @param codeOwnerConfigParser the parser that is used to parse the code owner config file
+   * @param blobId the ID of the blob that contains the code owner config file
+   * @param codeOwnerConfigKey the key that should be set for the returned code owner config
+   * @param revision the revision that should be set for the returned code owner config
+   * @return the cached code owner config with the given code owner config key and revision set, or
+   *     {@link Optional#empty()} if the code owner config file was not parsed yet
+   */
+  public Optional<CodeOwnerConfig> get(
+      CodeOwnerConfigParser codeOwnerConfigParser,
+      ObjectId blobId,
+      CodeOwnerConfig.Key codeOwnerConfigKey,
+      ObjectId revision) {
+    requireNonNull(codeOwnerConfigKey, "codeOwnerConfigKey");
+    requireNonNull(revision, "revision");
+
+    CodeOwnerConfig cachedCodeOwnerConfig =
+        cache.getIfPresent(Key.create(codeOwnerConfigParser, blobId));
+    if (cachedCodeOwnerConfig == null) {
+      codeOwnerMetrics.countParsedCodeOwnerConfigCacheMisses.increment();
+      return Optional.empty();
+    }
+
+    codeOwnerMetrics.countParsedCodeOwnerConfigCacheHits.increment();
+    if (cachedCodeOwnerConfig.key().equals(codeOwnerConfigKey)
+        && cachedCodeOwnerConfig.revision().equals(revision)) {
+      return Optional.of(cachedCodeOwnerConfig);
+    }
+    return Optional.of(
+        cachedCodeOwnerConfig.toBuilder().setKey(codeOwnerConfigKey).setRevision(revision).build());
+  }
+
+  /**
+   * Puts a parsed code owner config into the cache.
+   *
+   * @param codeOwnerConfigParser the parser that was used to parse the code owner config file
+   * @param blobId the ID of the blob that contains the code owner config file
+   * @param codeOwnerConfig the code owner config that was parsed from the blob
+   */
+  public void put(
+      CodeOwnerConfigParser codeOwnerConfigParser,
+      ObjectId blobId,
+      CodeOwnerConfig codeOwnerConfig) {
+    requireNonNull(codeOwnerConfig, "codeOwnerConfig");
+    cache.put(Key.create(codeOwnerConfigParser, blobId), codeOwnerConfig);
+  }
+
+  @AutoValue
+  abstract static class Key {
+    /**
+     * The name of the class of the parser that was used to parse the code owner config file.
+     *
+     * <p>Each code owner backend has its own parser, hence the parser identifies the code owner
+     * backend (e.g. the same blob is parsed differently by the find-owners backend and the proto
+     * backend).
+     */
+    abstract String parser();
+
+    /** The ID of the blob that contains the code owner config file. */
+    abstract ObjectId blobId();
+
+    static Key create(CodeOwnerConfigParser codeOwnerConfigParser, ObjectId blobId) {
+      requireNonNull(codeOwnerConfigParser, "codeOwnerConfigParser");
+      requireNonNull(blobId, "blobId");
+      return new AutoValue_ParsedCodeOwnerConfigCache_Key(
+          codeOwnerConfigParser.getClass().getName(), blobId.copy());
+    }
+  }
+}
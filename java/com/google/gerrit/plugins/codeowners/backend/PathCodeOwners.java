@@ -36,7 +36,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.nio.file.Path;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -61,17 +61,20 @@ public class PathCodeOwners {
     private final ProjectCache projectCache;
     private final CodeOwnersPluginConfiguration codeOwnersPluginConfiguration;
     private final CodeOwners codeOwners;
+    private final CodeOwnerConfigGenerations codeOwnerConfigGenerations;
 
     @Inject
     Factory(
         CodeOwnerMetrics codeOwnerMetrics,
         ProjectCache projectCache,
         CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
-        CodeOwners codeOwners) {
+        CodeOwners codeOwners,
+        CodeOwnerConfigGenerations codeOwnerConfigGenerations) {
       this.codeOwnerMetrics = codeOwnerMetrics;
       this.projectCache = projectCache;
       this.codeOwnersPluginConfiguration = codeOwnersPluginConfiguration;
       this.codeOwners = codeOwners;
+      this.codeOwnerConfigGenerations = codeOwnerConfigGenerations;
     }
 
     public PathCodeOwners createWithoutCache(CodeOwnerConfig codeOwnerConfig, Path absolutePath) {
@@ -80,7 +83,9 @@ public class PathCodeOwners {
           codeOwnerMetrics,
           projectCache,
           /* transientCodeOwnerConfigCache= */ null,
+          /* transientPathCodeOwnersResultCache= */ null,
           codeOwners,
+          codeOwnerConfigGenerations,
           codeOwnerConfig,
           absolutePath,
           getMatcher(codeOwnerConfig.key()));
@@ -91,6 +96,35 @@ public class PathCodeOwners {
         CodeOwnerConfig.Key codeOwnerConfigKey,
         ObjectId revision,
         Path absolutePath) {
+      return create(
+          transientCodeOwnerConfigCache,
+          /* transientPathCodeOwnersResultCache= */ null,
+          codeOwnerConfigKey,
+          revision,
+          absolutePath);
+    }
+
+    /**
+     * Creates a {@link PathCodeOwners} instance for the specified code owner config and path.
+     *
+     * @param transientCodeOwnerConfigCache cache from which the code owner config and imported code
+     *     owner configs are loaded
+     * @param transientPathCodeOwnersResultCache optional cache in which the result of {@link
+     *     PathCodeOwners#resolveCodeOwnerConfig()} is looked up and stored, so that it can be
+     *     reused for other paths to which the same per-file code owner sets of the code owner
+     *     config apply
+     * @param codeOwnerConfigKey the key of the code owner config
+     * @param revision the revision from which the code owner config should be loaded
+     * @param absolutePath the path for which the code owners should be computed
+     * @return the {@link PathCodeOwners} instance, {@link Optional#empty()} if the code owner
+     *     config doesn't exist
+     */
+    public Optional<PathCodeOwners> create(
+        TransientCodeOwnerConfigCache transientCodeOwnerConfigCache,
+        @Nullable TransientPathCodeOwnersResultCache transientPathCodeOwnersResultCache,
+        CodeOwnerConfig.Key codeOwnerConfigKey,
+        ObjectId revision,
+        Path absolutePath) {
       requireNonNull(transientCodeOwnerConfigCache, "transientCodeOwnerConfigCache");
       requireNonNull(codeOwnerConfigKey, "codeOwnerConfigKey");
       requireNonNull(revision, "revision");
@@ -102,7 +136,9 @@ public class PathCodeOwners {
                       codeOwnerMetrics,
                       projectCache,
                       transientCodeOwnerConfigCache,
+                      transientPathCodeOwnersResultCache,
                       codeOwners,
+                      codeOwnerConfigGenerations,
                       codeOwnerConfig,
                       absolutePath,
                       getMatcher(codeOwnerConfigKey)));
@@ -139,18 +175,35 @@ public class PathCodeOwners {
   private final CodeOwnerMetrics codeOwnerMetrics;
   private final ProjectCache projectCache;
   private final CodeOwnerConfigLoader codeOwnerConfigLoader;
+  @Nullable private final TransientPathCodeOwnersResultCache transientPathCodeOwnersResultCache;
   private final CodeOwners codeOwners;
+  private final CodeOwnerConfigGenerations codeOwnerConfigGenerations;
   private final CodeOwnerConfig codeOwnerConfig;
   private final Path path;
   private final PathExpressionMatcher pathExpressionMatcher;
 
   private OptionalResultWithMessages<PathCodeOwnersResult> pathCodeOwnersResult;
 
+  // Collect debug messages by default.
+  private boolean collectDebugMessages = true;
+
+  /**
+   * Whether per-file code owner sets of imported code owner configs have been matched against the
+   * {@link #path} when resolving the code owner config.
+   *
+   * <p>If yes, the resolved code owner config depends on the path beyond the per-file code owner
+   * sets of the {@link #codeOwnerConfig} that match the path and it cannot be reused for other
+   * paths.
+   */
+  private boolean importedPerFileCodeOwnerSetsMatched;
+
   private PathCodeOwners(
       CodeOwnerMetrics codeOwnerMetrics,
       ProjectCache projectCache,
       @Nullable TransientCodeOwnerConfigCache transientCodeOwnerConfigCache,
+      @Nullable TransientPathCodeOwnersResultCache transientPathCodeOwnersResultCache,
       CodeOwners codeOwners,
+      CodeOwnerConfigGenerations codeOwnerConfigGenerations,
       CodeOwnerConfig codeOwnerConfig,
       Path path,
       PathExpressionMatcher pathExpressionMatcher) {
@@ -158,7 +211,10 @@ public class PathCodeOwners {
     this.projectCache = requireNonNull(projectCache, "projectCache");
     this.codeOwnerConfigLoader =
         transientCodeOwnerConfigCache != null ? transientCodeOwnerConfigCache : codeOwners;
+    this.transientPathCodeOwnersResultCache = transientPathCodeOwnersResultCache;
     this.codeOwners = requireNonNull(codeOwners, "codeOwners");
+    this.codeOwnerConfigGenerations =
+        requireNonNull(codeOwnerConfigGenerations, "codeOwnerConfigGenerations");
     this.codeOwnerConfig = requireNonNull(codeOwnerConfig, "codeOwnerConfig");
     this.path = requireNonNull(path, "path");
     this.pathExpressionMatcher = requireNonNull(pathExpressionMatcher, "pathExpressionMatcher");
@@ -166,6 +222,19 @@ public class PathCodeOwners {
     checkState(path.isAbsolute(), "path %s must be absolute", path);
   }
 
+  /**
+   * Whether debug messages should be collected when resolving the code owner config.
+   *
+   * <p>Must be invoked before the code owner config is resolved.
+   *
+   * @param collectDebugMessages whether debug messages should be collected
+   * @return the {@link PathCodeOwners} instance for chaining calls
+   */
+  public PathCodeOwners collectDebugMessages(boolean collectDebugMessages) {
+    this.collectDebugMessages = collectDebugMessages;
+    return this;
+  }
+
   /** Returns the local code owner config. */
   public CodeOwnerConfig getCodeOwnerConfig() {
     return codeOwnerConfig;
@@ -210,6 +279,11 @@ public class PathCodeOwners {
    * <p>Imports from other projects are always loaded from the same branch from which the importing
    * code owner config was loaded.
    *
+   * <p>If a {@link TransientPathCodeOwnersResultCache} was provided, the resolved code owner config
+   * is reused from other paths to which the same per-file code owner sets of the {@link
+   * #codeOwnerConfig} apply (e.g. other files in the same folder), unless the resolution depended
+   * on per-file code owner sets of imported code owner configs.
+   *
    * @return the resolved code owner config
    */
   public OptionalResultWithMessages<PathCodeOwnersResult> resolveCodeOwnerConfig() {
@@ -221,10 +295,26 @@ public class PathCodeOwners {
       logger.atFine().log(
           "resolve code owners for %s from code owner config %s", path, codeOwnerConfig.key());
 
-      List<String> messages = new ArrayList<>();
-      messages.add(
-          String.format(
-              "resolve code owners for %s from code owner config %s", path, codeOwnerConfig.key()));
+      BitSet matchingPerFileCodeOwnerSetIndexes = getMatchingPerFileCodeOwnerSetIndexes();
+      TransientPathCodeOwnersResultCache.Key cacheKey =
+          TransientPathCodeOwnersResultCache.Key.create(
+              codeOwnerConfig.key(),
+              codeOwnerConfig.revision(),
+              matchingPerFileCodeOwnerSetIndexes);
+      if (transientPathCodeOwnersResultCache != null) {
+        Optional<OptionalResultWithMessages<PathCodeOwnersResult>> cachedPathCodeOwnersResult =
+            transientPathCodeOwnersResultCache.get(cacheKey);
+        if (cachedPathCodeOwnersResult.isPresent()) {
+          logger.atFine().log("reuse resolved code owner config for %s", path);
+          this.pathCodeOwnersResult = forPath(cachedPathCodeOwnersResult.get());
+          return this.pathCodeOwnersResult;
+        }
+      }
+
+      DebugMessages messages = DebugMessages.create(collectDebugMessages);
+      if (collectDebugMessages) {
+        messages.add(createResolveMessage(path));
+      }
 
       // Create a code owner config builder to create the resolved code owner config (= code owner
       // config that is scoped to the path and which has imports resolved)
@@ -240,11 +330,10 @@ public class PathCodeOwners {
           .forEach(resolvedCodeOwnerConfigBuilder::addCodeOwnerSet);
       boolean globalCodeOwnersIgnored = false;
       for (CodeOwnerSet codeOwnerSet :
-          getMatchingPerFileCodeOwnerSets(codeOwnerConfig).collect(toImmutableSet())) {
+          getPerFileCodeOwnerSets(codeOwnerConfig, matchingPerFileCodeOwnerSetIndexes)) {
         messages.add(
-            String.format(
-                "per-file code owner set with path expressions %s matches",
-                codeOwnerSet.pathExpressions()));
+            "per-file code owner set with path expressions %s matches",
+            codeOwnerSet.pathExpressions());
         resolvedCodeOwnerConfigBuilder.addCodeOwnerSet(codeOwnerSet);
         if (codeOwnerSet.ignoreGlobalAndParentCodeOwners()) {
           globalCodeOwnersIgnored = true;
@@ -282,19 +371,20 @@ public class PathCodeOwners {
       // In this case also set ignoreParentCodeOwners to true, so that we do not need to inspect the
       // ignoreGlobalAndParentCodeOwners flags on per-file code owner sets again, but can just rely
       // on the global ignoreParentCodeOwners flag.
+      // All per-file code owner sets in the resolved code owner config are matching, since only
+      // matching per-file code owner sets have been added, hence we don't need to match them again.
       Optional<CodeOwnerSet> matchingPerFileCodeOwnerSetThatIgnoresGlobalAndParentCodeOwners =
-          getMatchingPerFileCodeOwnerSets(resolvedCodeOwnerConfigBuilder.build())
+          getPerFileCodeOwnerSets(resolvedCodeOwnerConfigBuilder.build())
               .filter(CodeOwnerSet::ignoreGlobalAndParentCodeOwners)
               .findAny();
       if (matchingPerFileCodeOwnerSetThatIgnoresGlobalAndParentCodeOwners.isPresent()) {
         logger.atFine().log("remove folder code owner sets and set ignoreParentCodeOwners to true");
         messages.add(
-            String.format(
-                "found matching per-file code owner set (with path expressions = %s) that ignores"
-                    + " parent code owners, hence ignoring the folder code owners",
-                matchingPerFileCodeOwnerSetThatIgnoresGlobalAndParentCodeOwners
-                    .get()
-                    .pathExpressions()));
+            "found matching per-file code owner set (with path expressions = %s) that ignores"
+                + " parent code owners, hence ignoring the folder code owners",
+            matchingPerFileCodeOwnerSetThatIgnoresGlobalAndParentCodeOwners
+                .get()
+                .pathExpressions());
         // We use resolvedCodeOwnerConfigBuilder to build up a code owner config that is scoped to
         // the path and which has imports resolved. When resolving imports the relevant code owner
         // sets from the imported code owner configs are added to the builder.
@@ -329,12 +419,43 @@ public class PathCodeOwners {
           OptionalResultWithMessages.create(
               PathCodeOwnersResult.create(
                   path, resolvedCodeOwnerConfigBuilder.build(), unresolvedImports.build()),
-              messages);
+              messages.build());
       logger.atFine().log("path code owners result = %s", pathCodeOwnersResult);
+
+      if (transientPathCodeOwnersResultCache != null && !importedPerFileCodeOwnerSetsMatched) {
+        transientPathCodeOwnersResultCache.put(cacheKey, this.pathCodeOwnersResult);
+      }
       return this.pathCodeOwnersResult;
     }
   }
 
+  /**
+   * Adapts a resolved code owner config that was resolved for another path to the {@link #path}.
+   *
+   * <p>Only the path and the first message (which mentions the path) are path-specific, everything
+   * else can be taken over as it is.
+   */
+  private OptionalResultWithMessages<PathCodeOwnersResult> forPath(
+      OptionalResultWithMessages<PathCodeOwnersResult> cachedPathCodeOwnersResult) {
+    DebugMessages messages = DebugMessages.create(collectDebugMessages);
+    ImmutableList<String> cachedMessages = cachedPathCodeOwnersResult.messages();
+    if (collectDebugMessages && !cachedMessages.isEmpty()) {
+      messages.add(createResolveMessage(path));
+      messages.addAll(cachedMessages.subList(1, cachedMessages.size()));
+    }
+    return OptionalResultWithMessages.create(
+        PathCodeOwnersResult.create(
+            path,
+            cachedPathCodeOwnersResult.get().codeOwnerConfig(),
+            cachedPathCodeOwnersResult.get().unresolvedImports()),
+        messages.build());
+  }
+
+  private String createResolveMessage(Path path) {
+    return String.format(
+        "resolve code owners for %s from code owner config %s", path, codeOwnerConfig.key());
+  }
+
   /**
    * Resolve the imports of the given code owner config.
    *
@@ -363,7 +484,7 @@ public class PathCodeOwners {
 
       Queue<CodeOwnerConfigImport> codeOwnerConfigsToImport = new ArrayDeque<>();
       codeOwnerConfigsToImport.addAll(codeOwnerConfigImports);
-      if (!codeOwnerConfigsToImport.isEmpty()) {
+      if (collectDebugMessages && !codeOwnerConfigsToImport.isEmpty()) {
         messageBuilder.append(
             String.format(
                 "Code owner config %s imports:\n",
@@ -371,13 +492,22 @@ public class PathCodeOwners {
       }
       while (!codeOwnerConfigsToImport.isEmpty()) {
         CodeOwnerConfigImport codeOwnerConfigImport = codeOwnerConfigsToImport.poll();
-        messageBuilder.append(codeOwnerConfigImport.format());
+        if (collectDebugMessages) {
+          messageBuilder.append(codeOwnerConfigImport.format());
+        }
 
         CodeOwnerConfigReference codeOwnerConfigReference =
             codeOwnerConfigImport.referenceToImportedCodeOwnerConfig();
         CodeOwnerConfig.Key keyOfImportedCodeOwnerConfig =
             createKeyForImportedCodeOwnerConfig(
                 keyOfImportingCodeOwnerConfig, codeOwnerConfigReference);
+        if (!keyOfImportedCodeOwnerConfig.project().equals(codeOwnerConfig.key().project())) {
+          // Must be recorded before the imported code owner config is loaded, so that updates of
+          // the imported code owner config that are done concurrently invalidate the data that is
+          // derived from the importing code owner config.
+          codeOwnerConfigGenerations.recordImportFromOtherProject(
+              keyOfImportedCodeOwnerConfig.project());
+        }
 
         try (Timer0.Context ctx2 = codeOwnerMetrics.resolveCodeOwnerConfigImport.start()) {
           logger.atFine().log(
@@ -393,8 +523,10 @@ public class PathCodeOwners {
                     codeOwnerConfigReference,
                     String.format(
                         "project %s not found", keyOfImportedCodeOwnerConfig.project().get())));
-            messageBuilder.append(
-                codeOwnerConfigImport.formatSubItem("failed to resolve (project not found)\n"));
+            if (collectDebugMessages) {
+              messageBuilder.append(
+                  codeOwnerConfigImport.formatSubItem("failed to resolve (project not found)\n"));
+            }
             continue;
           }
           if (!projectState.get().statePermitsRead()) {
@@ -406,9 +538,11 @@ public class PathCodeOwners {
                     String.format(
                         "state of project %s doesn't permit read",
                         keyOfImportedCodeOwnerConfig.project().get())));
-            messageBuilder.append(
-                codeOwnerConfigImport.formatSubItem(
-                    "failed to resolve (project state doesn't allow read)\n"));
+            if (collectDebugMessages) {
+              messageBuilder.append(
+                  codeOwnerConfigImport.formatSubItem(
+                      "failed to resolve (project state doesn't allow read)\n"));
+            }
             continue;
           }
 
@@ -432,9 +566,11 @@ public class PathCodeOwners {
                     String.format(
                         "code owner config does not exist (revision = %s)",
                         revision.map(ObjectId::name).orElse("current"))));
-            messageBuilder.append(
-                codeOwnerConfigImport.formatSubItem(
-                    "failed to resolve (code owner config not found)\n"));
+            if (collectDebugMessages) {
+              messageBuilder.append(
+                  codeOwnerConfigImport.formatSubItem(
+                      "failed to resolve (code owner config not found)\n"));
+            }
             continue;
           }
 
@@ -457,17 +593,22 @@ public class PathCodeOwners {
                 .forEach(resolvedCodeOwnerConfigBuilder::addCodeOwnerSet);
           }
 
+          if (getPerFileCodeOwnerSets(importedCodeOwnerConfig).findAny().isPresent()) {
+            importedPerFileCodeOwnerSetsMatched = true;
+          }
           ImmutableSet<CodeOwnerSet> matchingPerFileCodeOwnerSets =
               getMatchingPerFileCodeOwnerSets(importedCodeOwnerConfig).collect(toImmutableSet());
           if (importMode.importPerFileCodeOwnerSets()) {
             logger.atFine().log("import per-file code owners");
             matchingPerFileCodeOwnerSets.forEach(
                 codeOwnerSet -> {
-                  messageBuilder.append(
-                      codeOwnerConfigImport.formatSubItem(
-                          String.format(
-                              "per-file code owner set with path expressions %s matches\n",
-                              codeOwnerSet.pathExpressions())));
+                  if (collectDebugMessages) {
+                    messageBuilder.append(
+                        codeOwnerConfigImport.formatSubItem(
+                            String.format(
+                                "per-file code owner set with path expressions %s matches\n",
+                                codeOwnerSet.pathExpressions())));
+                  }
                   resolvedCodeOwnerConfigBuilder.addCodeOwnerSet(codeOwnerSet);
                 });
           }
@@ -581,10 +722,42 @@ public class PathCodeOwners {
         .filter(codeOwnerSet -> codeOwnerSet.pathExpressions().isEmpty());
   }
 
-  private Stream<CodeOwnerSet> getMatchingPerFileCodeOwnerSets(CodeOwnerConfig codeOwnerConfig) {
+  private static Stream<CodeOwnerSet> getPerFileCodeOwnerSets(CodeOwnerConfig codeOwnerConfig) {
     return codeOwnerConfig.codeOwnerSets().stream()
-        .filter(codeOwnerSet -> !codeOwnerSet.pathExpressions().isEmpty())
-        .filter(codeOwnerSet -> matches(codeOwnerSet, getRelativePath(), pathExpressionMatcher));
+        .filter(codeOwnerSet -> !codeOwnerSet.pathExpressions().isEmpty());
+  }
+
+  private Stream<CodeOwnerSet> getMatchingPerFileCodeOwnerSets(CodeOwnerConfig codeOwnerConfig) {
+    if (!getPerFileCodeOwnerSets(codeOwnerConfig).findAny().isPresent()) {
+      return Stream.empty();
+    }
+    return getPerFileCodeOwnerSetIndex(codeOwnerConfig)
+        .getMatchingCodeOwnerSets(getRelativePath())
+        .stream();
+  }
+
+  /**
+   * Gets the indexes of the per-file code owner sets of the {@link #codeOwnerConfig} that match the
+   * {@link #path} (see {@link PerFileCodeOwnerSetIndex#getMatchingCodeOwnerSetIndexes(Path)}).
+   */
+  private BitSet getMatchingPerFileCodeOwnerSetIndexes() {
+    if (!getPerFileCodeOwnerSets(codeOwnerConfig).findAny().isPresent()) {
+      return new BitSet();
+    }
+    return getPerFileCodeOwnerSetIndex(codeOwnerConfig)
+        .getMatchingCodeOwnerSetIndexes(getRelativePath());
+  }
+
+  private ImmutableList<CodeOwnerSet> getPerFileCodeOwnerSets(
+      CodeOwnerConfig codeOwnerConfig, BitSet codeOwnerSetIndexes) {
+    if (codeOwnerSetIndexes.isEmpty()) {
+      return ImmutableList.of();
+    }
+    return getPerFileCodeOwnerSetIndex(codeOwnerConfig).getCodeOwnerSets(codeOwnerSetIndexes);
+  }
+
+  private PerFileCodeOwnerSetIndex getPerFileCodeOwnerSetIndex(CodeOwnerConfig codeOwnerConfig) {
+    return PerFileCodeOwnerSetIndex.get(codeOwnerConfig, pathExpressionMatcher);
   }
 
   private Path getRelativePath() {
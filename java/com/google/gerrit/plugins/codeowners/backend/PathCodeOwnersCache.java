@@ -0,0 +1,173 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.plugins.codeowners.metrics.CodeOwnerMetrics;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.Supplier;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Server-wide cache for the path code owners of paths in a branch revision.
+ *
+ * <p>Code owner suggestions are requested for the same paths again and again (e.g. whenever a user
+ * opens the reply dialog of a change), often by different users. Which code owners are suggested
+ * depends on the calling user (code owners that are not visible to the calling user are omitted),
+ * but the code owner configs that apply to a path and the code owner references that they define
+ * for the path do not. Hence these path code owners are cached by the branch revision and the path
+ * (see {@link PathCodeOwnersResult}), so that for each suggestion only the resolution of the code
+ * owner references to the accounts that are visible to the calling user must be done again.
+ *
+ * <p>Code owner config files that are imported from other branches and the code owners
+ * configuration cannot be part of the cache key. Instead the cache key contains the generation of
+ * the code owner configuration of the project, so that cache entries are no longer found once the
+ * code owner configuration of the project changes (see {@link CodeOwnerConfigGenerations}). The
+ * path code owners do not depend on accounts and groups, hence reindexing accounts and groups
+ * doesn't affect this cache.
+ *
+ * <p>Since the path code owners do not depend on the calling user, concurrent cache misses for the
+ * same path (e.g. because several users look at the same change) share one computation (see {@link
+ * ComputationCoalescer}).
+ */
+@Singleton
+public class PathCodeOwnersCache {
+  static final String CACHE_NAME = "path_code_owners";
+
+  /** Default for the maximum number of code owner configs that are cached over all paths. */
+  private static final long DEFAULT_MAX_WEIGHT = 100000;
+
+  /** Default for the maximum age of cache entries. */
+  private static final Duration DEFAULT_MAX_AGE = Duration.ofHours(1);
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, Key.class, new TypeLiteral<ImmutableList<PathCodeOwnersResult>>() {})
+            .maximumWeight(DEFAULT_MAX_WEIGHT)
+            .expireAfterWrite(DEFAULT_MAX_AGE)
+            .weigher(PathCodeOwnersWeigher.class);
+        bind(PathCodeOwnersCache.class);
+      }
+    };
+  }
+
+  private final Cache<Key, ImmutableList<PathCodeOwnersResult>> cache;
+  private final CodeOwnerConfigGenerations codeOwnerConfigGenerations;
+  private final CodeOwnerMetrics codeOwnerMetrics;
+  private final ComputationCoalescer<Key, ImmutableList<PathCodeOwnersResult>> computations;
+
+  @Inject
+  PathCodeOwnersCache(
+      @Named(CACHE_NAME) Cache<Key, ImmutableList<PathCodeOwnersResult>> cache,
+      CodeOwnerConfigGenerations codeOwnerConfigGenerations,
+      CodeOwnerMetrics codeOwnerMetrics) {
+    this.cache = cache;
+    this.codeOwnerConfigGenerations = codeOwnerConfigGenerations;
+    this.codeOwnerMetrics = codeOwnerMetrics;
+    this.computations =
+        new ComputationCoalescer<>(codeOwnerMetrics.countCoalescedPathCodeOwnersComputations);
+  }
+
+  /**
+   * Gets the path code owners of the given path, from the cache if they are cached, otherwise by
+   * running the given computation.
+   *
+   * <p>Must only be used if no debug messages are collected, since the debug messages of the path
+   * code owners are not cached.
+   *
+   * @param branch the project and branch from which the code owner configs are read
+   * @param revision the revision of the branch from which the code owner configs are read
+   * @param absolutePath the absolute path for which the code owners are looked up
+   * @param computation computes the path code owners of the code owner configs that apply to the
+   *     path, in the order in which the code owner configs are visited by the {@link
+   *     CodeOwnerConfigHierarchy}, only invoked if the path code owners are neither cached nor
+   *     computed concurrently
+   * @return the path code owners of the code owner configs that apply to the path
+   */
+  public ImmutableList<PathCodeOwnersResult> get(
+      BranchNameKey branch,
+      ObjectId revision,
+      Path absolutePath,
+      Supplier<ImmutableList<PathCodeOwnersResult>> computation) {
+    requireNonNull(branch, "branch");
+    requireNonNull(revision, "revision");
+    requireNonNull(absolutePath, "absolutePath");
+    requireNonNull(computation, "computation");
+
+    // The generation must be retrieved before the computation, so that path code owners that are
+    // computed concurrently to a change of the code owner configuration are cached under the
+    // outdated generation.
+    long generation = codeOwnerConfigGenerations.get(branch.project());
+    Key key = Key.create(branch, generation, revision, absolutePath);
+    ImmutableList<PathCodeOwnersResult> pathCodeOwners = cache.getIfPresent(key);
+    if (pathCodeOwners != null) {
+      codeOwnerMetrics.countPathCodeOwnersCacheHits.increment();
+      return pathCodeOwners;
+    }
+
+    codeOwnerMetrics.countPathCodeOwnersCacheMisses.increment();
+    return computations.get(
+        key,
+        () -> {
+          ImmutableList<PathCodeOwnersResult> computedPathCodeOwners = computation.get();
+          cache.put(key, computedPathCodeOwners);
+          return computedPathCodeOwners;
+        });
+  }
+
+  /** Key that identifies a path in a branch revision. */
+  @AutoValue
+  abstract static class Key {
+    /** The project and branch from which the code owner configs are read. */
+    abstract BranchNameKey branch();
+
+    /** The generation of the code owner configuration (see {@link CodeOwnerConfigGenerations}). */
+    abstract long generation();
+
+    /** The revision of the branch from which the code owner configs are read. */
+    abstract ObjectId revision();
+
+    /** The absolute path for which the code owners are looked up. */
+    abstract Path path();
+
+    static Key create(BranchNameKey branch, long generation, ObjectId revision, Path absolutePath) {
+      return new AutoValue_PathCodeOwnersCache_Key(
+          branch, generation, revision.copy(), absolutePath);
+    }
+  }
+
+  /** Weighs cached path code owners by the number of code owner configs that apply to the path. */
+  static class PathCodeOwnersWeigher implements Weigher<Key, ImmutableList<PathCodeOwnersResult>> {
+    @Override
+    public int weigh(Key key, ImmutableList<PathCodeOwnersResult> pathCodeOwners) {
+      return 1 + pathCodeOwners.size();
+    }
+  }
+}
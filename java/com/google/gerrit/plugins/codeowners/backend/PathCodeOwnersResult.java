@@ -36,6 +36,11 @@ public abstract class PathCodeOwnersResult {
   /** Gets the resolved code owner config. */
   abstract CodeOwnerConfig codeOwnerConfig();
 
+  /** Gets the key of the resolved code owner config. */
+  public CodeOwnerConfig.Key getCodeOwnerConfigKey() {
+    return codeOwnerConfig().key();
+  }
+
   /** Gets a list of unresolved imports. */
   public abstract ImmutableList<UnresolvedImport> unresolvedImports();
 
@@ -15,6 +15,7 @@
 package com.google.gerrit.plugins.codeowners.backend;
 
 import java.nio.file.Path;
+import java.util.Optional;
 
 /**
  * Matcher that checks for a given path expression if it matches a given path.
@@ -37,4 +38,22 @@ public interface PathExpressionMatcher {
    *     false}
    */
   boolean matches(String pathExpression, Path relativePath);
+
+  /**
+   * Classifies the given path expression as an {@link IndexablePathExpression} if it can be matched
+   * by comparing strings.
+   *
+   * <p>For a path expression that is classified, {@link #matches(String, Path)} must return the
+   * same result as matching the path as specified by the {@link IndexablePathExpression.Kind}.
+   *
+   * <p>Path expressions that are not classified (e.g. because they contain wildcards that can't be
+   * matched by comparing strings) are matched by invoking {@link #matches(String, Path)}.
+   *
+   * @param pathExpression path expression that should be classified
+   * @return the path expression as {@link IndexablePathExpression}, {@link Optional#empty()} if the
+   *     path expression can only be matched by {@link #matches(String, Path)}
+   */
+  default Optional<IndexablePathExpression> classify(String pathExpression) {
+    return Optional.empty();
+  }
 }
@@ -0,0 +1,288 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Index of the path expressions of all per-file code owner sets of a code owner config.
+ *
+ * <p>Allows to find all per-file code owner sets that match a path without matching each path
+ * expression one by one:
+ *
+ * <ul>
+ *   <li>path expressions that match exact paths are looked up in a map
+ *   <li>path expressions that match file name suffixes (e.g. file extensions) are looked up in a
+ *       trie that is traversed from the end of the path
+ *   <li>path expressions that match folder prefixes are looked up in a map (once for each parent
+ *       folder of the path)
+ *   <li>all other path expressions are matched by the {@link PathExpressionMatcher}
+ * </ul>
+ *
+ * <p>Which path expressions can be indexed is decided by {@link
+ * PathExpressionMatcher#classify(String)}.
+ *
+ * <p>Indexes are cached per code owner config and matcher (see {@link #get(CodeOwnerConfig,
+ * PathExpressionMatcher)}).
+ *
+ * <p>This class is immutable and thread-safe.
+ */
+final class PerFileCodeOwnerSetIndex {
+  /**
+   * Cache of indexes.
+   *
+   * <p>The cache uses weak keys, which means that keys are compared by identity and that entries
+   * are removed once the code owner sets are garbage collected. Code owner configs that are
+   * returned from {@link ParsedCodeOwnerConfigCache} share the code owner sets instance, hence they
+   * also share the index.
+   */
+  private static final Cache<
+          ImmutableSet<CodeOwnerSet>,
+          ConcurrentMap<PathExpressionMatcher, PerFileCodeOwnerSetIndex>>
+      indexes = CacheBuilder.newBuilder().weakKeys().maximumSize(10000).build();
+
+  /**
+   * Gets the index for the per-file code owner sets of the given code owner config.
+   *
+   * @param codeOwnerConfig the code owner config for which the index should be returned
+   * @param matcher the matcher that should be used to match path expressions
+   * @return the index for the per-file code owner sets of the given code owner config
+   */
+  static PerFileCodeOwnerSetIndex get(
+      CodeOwnerConfig codeOwnerConfig, PathExpressionMatcher matcher) {
+    requireNonNull(codeOwnerConfig, "codeOwnerConfig");
+    requireNonNull(matcher, "matcher");
+    try {
+      return indexes
+          .get(codeOwnerConfig.codeOwnerSets(), ConcurrentHashMap::new)
+          .computeIfAbsent(
+              matcher, m -> new PerFileCodeOwnerSetIndex(codeOwnerConfig.codeOwnerSets(), m));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(
+          String.format("failed to get index for code owner config %s", codeOwnerConfig.key()), e);
+    }
+  }
+
+  /** The per-file code owner sets, the position in this list is the index of the code owner set. */
+  private final ImmutableList<CodeOwnerSet> perFileCodeOwnerSets;
+
+  private final PathExpressionMatcher matcher;
+
+  private final Map<String, List<Integer>> exactPaths = new HashMap<>();
+  private final Map<String, List<Integer>> exactPathsInAnyFolder = new HashMap<>();
+  private final SuffixTrie fileNameSuffixes = new SuffixTrie();
+  private final SuffixTrie fileNameSuffixesInAnyFolder = new SuffixTrie();
+  private final Map<String, List<Integer>> folderPrefixes = new HashMap<>();
+
+  /**
+   * Path expressions that cannot be indexed, these are matched by invoking the {@link #matcher}.
+   */
+  private final List<UnindexedPathExpression> unindexedPathExpressions = new ArrayList<>();
+
+  @VisibleForTesting
+  PerFileCodeOwnerSetIndex(
+      ImmutableSet<CodeOwnerSet> codeOwnerSets, PathExpressionMatcher matcher) {
+    this.perFileCodeOwnerSets =
+        codeOwnerSets.stream()
+            .filter(codeOwnerSet -> !codeOwnerSet.pathExpressions().isEmpty())
+            .collect(toImmutableList());
+    this.matcher = matcher;
+
+    for (int i = 0; i < perFileCodeOwnerSets.size(); i++) {
+      for (String pathExpression : perFileCodeOwnerSets.get(i).pathExpressions()) {
+        Optional<IndexablePathExpression> indexablePathExpression =
+            matcher.classify(pathExpression);
+        if (!indexablePathExpression.isPresent()) {
+          unindexedPathExpressions.add(new UnindexedPathExpression(i, pathExpression));
+          continue;
+        }
+
+        String value = indexablePathExpression.get().value();
+        switch (indexablePathExpression.get().kind()) {
+          case EXACT_PATH:
+            add(exactPaths, value, i);
+            break;
+          case EXACT_PATH_IN_ANY_FOLDER:
+            add(exactPathsInAnyFolder, value, i);
+            break;
+          case FILE_NAME_SUFFIX:
+            fileNameSuffixes.add(value, i);
+            break;
+          case FILE_NAME_SUFFIX_IN_ANY_FOLDER:
+            fileNameSuffixesInAnyFolder.add(value, i);
+            break;
+          case FOLDER_PREFIX:
+            add(folderPrefixes, value, i);
+            break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the per-file code owner sets that match the given path.
+   *
+   * @param relativePath path relative to the code owner config, for which the matching per-file
+   *     code owner sets should be returned
+   * @return the matching per-file code owner sets, in the order in which they are defined in the
+   *     code owner config
+   */
+  ImmutableList<CodeOwnerSet> getMatchingCodeOwnerSets(Path relativePath) {
+    return getCodeOwnerSets(getMatchingCodeOwnerSetIndexes(relativePath));
+  }
+
+  /**
+   * Gets the per-file code owner sets with the given indexes.
+   *
+   * @param codeOwnerSetIndexes the indexes of the per-file code owner sets that should be returned
+   *     (see {@link #getMatchingCodeOwnerSetIndexes(Path)})
+   * @return the per-file code owner sets with the given indexes, in the order in which they are
+   *     defined in the code owner config
+   */
+  ImmutableList<CodeOwnerSet> getCodeOwnerSets(BitSet codeOwnerSetIndexes) {
+    ImmutableList.Builder<CodeOwnerSet> codeOwnerSets = ImmutableList.builder();
+    for (int i = codeOwnerSetIndexes.nextSetBit(0);
+        i >= 0;
+        i = codeOwnerSetIndexes.nextSetBit(i + 1)) {
+      codeOwnerSets.add(perFileCodeOwnerSets.get(i));
+    }
+    return codeOwnerSets.build();
+  }
+
+  /**
+   * Gets the indexes of the per-file code owner sets that match the given path.
+   *
+   * <p>The index of a per-file code owner set is its position among the per-file code owner sets
+   * of the code owner config.
+   *
+   * @param relativePath path relative to the code owner config, for which the indexes of the
+   *     matching per-file code owner sets should be returned
+   * @return the indexes of the matching per-file code owner sets
+   */
+  BitSet getMatchingCodeOwnerSetIndexes(Path relativePath) {
+    requireNonNull(relativePath, "relativePath");
+    checkState(!relativePath.isAbsolute(), "path %s must be relative", relativePath);
+
+    BitSet matches = new BitSet(perFileCodeOwnerSets.size());
+    String path = relativePath.toString();
+    int lastSlash = path.lastIndexOf('/');
+
+    addAll(matches, exactPaths.get(path));
+    if (!exactPathsInAnyFolder.isEmpty()) {
+      addAll(matches, exactPathsInAnyFolder.get(path));
+      for (int i = path.indexOf('/'); i >= 0; i = path.indexOf('/', i + 1)) {
+        addAll(matches, exactPathsInAnyFolder.get(path.substring(i + 1)));
+      }
+    }
+    if (lastSlash < 0) {
+      fileNameSuffixes.addMatches(matches, path, 0);
+    }
+    fileNameSuffixesInAnyFolder.addMatches(matches, path, lastSlash + 1);
+    if (!folderPrefixes.isEmpty()) {
+      for (int i = path.indexOf('/'); i >= 0; i = path.indexOf('/', i + 1)) {
+        addAll(matches, folderPrefixes.get(path.substring(0, i + 1)));
+      }
+    }
+
+    for (UnindexedPathExpression unindexedPathExpression : unindexedPathExpressions) {
+      if (!matches.get(unindexedPathExpression.codeOwnerSetIndex)
+          && matcher.matches(unindexedPathExpression.pathExpression, relativePath)) {
+        matches.set(unindexedPathExpression.codeOwnerSetIndex);
+      }
+    }
+    return matches;
+  }
+
+  private static void add(Map<String, List<Integer>> map, String key, int codeOwnerSetIndex) {
+    map.computeIfAbsent(key, k -> new ArrayList<>()).add(codeOwnerSetIndex);
+  }
+
+  private static void addAll(BitSet matches, List<Integer> codeOwnerSetIndexes) {
+    if (codeOwnerSetIndexes != null) {
+      codeOwnerSetIndexes.forEach(matches::set);
+    }
+  }
+
+  /** A path expression that cannot be indexed. */
+  private static class UnindexedPathExpression {
+    final int codeOwnerSetIndex;
+    final String pathExpression;
+
+    UnindexedPathExpression(int codeOwnerSetIndex, String pathExpression) {
+      this.codeOwnerSetIndex = codeOwnerSetIndex;
+      this.pathExpression = pathExpression;
+    }
+  }
+
+  /**
+   * Trie of suffixes, which is built from the reversed suffixes so that all suffixes of a string
+   * can be found in a single pass from the end of the string.
+   */
+  private static class SuffixTrie {
+    private final Map<Character, SuffixTrie> children = new HashMap<>();
+    private final List<Integer> codeOwnerSetIndexes = new ArrayList<>();
+    private boolean isEmpty = true;
+
+    void add(String suffix, int codeOwnerSetIndex) {
+      isEmpty = false;
+      SuffixTrie node = this;
+      for (int i = suffix.length() - 1; i >= 0; i--) {
+        node = node.children.computeIfAbsent(suffix.charAt(i), c -> new SuffixTrie());
+      }
+      node.codeOwnerSetIndexes.add(codeOwnerSetIndex);
+    }
+
+    /**
+     * Adds the indexes of all code owner sets that have a suffix that matches the end of the given
+     * string.
+     *
+     * @param matches the bit set to which the indexes of the matching code owner sets are added
+     * @param s the string for which the matching suffixes should be found
+     * @param start the index in the string before which suffixes must not start
+     */
+    void addMatches(BitSet matches, String s, int start) {
+      if (isEmpty) {
+        return;
+      }
+      SuffixTrie node = this;
+      addAll(matches, node.codeOwnerSetIndexes);
+      for (int i = s.length() - 1; i >= start; i--) {
+        node = node.children.get(s.charAt(i));
+        if (node == null) {
+          return;
+        }
+        addAll(matches, node.codeOwnerSetIndexes);
+      }
+    }
+  }
+}
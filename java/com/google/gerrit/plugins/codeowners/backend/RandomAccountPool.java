@@ -0,0 +1,292 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.extensions.events.AccountIndexedListener;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.account.AccountCache;
+import com.google.gerrit.server.account.AccountState;
+import com.google.gerrit.server.account.Accounts;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-wide pool of random active accounts, from which random users can be sampled.
+ *
+ * <p>If a path is owned by all users, the code owner suggestion fills up the suggestion list with
+ * random users. Picking them from all accounts requires listing and shuffling all accounts on
+ * each request, which is expensive on servers with many accounts. Instead random users are sampled
+ * from this pool, which costs O(limit).
+ *
+ * <p>The pool contains at most {@link #MAX_POOL_SIZE} active accounts in random order. It is loaded
+ * lazily when it is used for the first time and it is refreshed periodically (every {@link
+ * #REFRESH_INTERVAL}), so that the sampled users change over time.
+ *
+ * <p>If the pool contains all active accounts (i.e. the server has not more than {@link
+ * #MAX_POOL_SIZE} active accounts), it is kept up to date on reindexing of accounts, so that new
+ * accounts can be sampled immediately. Otherwise new accounts are only added by the next refresh.
+ * Accounts that got inactive or that have been deleted are always removed from the pool on
+ * reindexing.
+ *
+ * <p>The pool is independent of the calling user, hence checking the visibility of the sampled
+ * accounts is left to the callers.
+ */
+@Singleton
+public class RandomAccountPool implements AccountIndexedListener, LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** The maximum number of accounts in the pool. */
+  @VisibleForTesting public static final int MAX_POOL_SIZE = 1000;
+
+  /** The interval in which the pool is refreshed. */
+  private static final Duration REFRESH_INTERVAL = Duration.ofMinutes(10);
+
+  private final Accounts accounts;
+  private final AccountCache accountCache;
+  private final WorkQueue workQueue;
+
+  /** Lock to ensure that the pool is not loaded by multiple threads concurrently. */
+  private final Object loadLock = new Object();
+
+  @Nullable private volatile Pool pool;
+
+  /**
+   * The accounts that have been reindexed while the pool was loaded, {@code null} if no load is in
+   * progress.
+   *
+   * <p>The updates of these accounts are applied to the loaded pool once the load is done, since
+   * the load may have read the accounts before they were updated.
+   */
+  @Nullable private Set<Account.Id> accountsIndexedDuringLoad;
+
+  @Nullable private ScheduledFuture<?> refreshTask;
+
+  @Inject
+  RandomAccountPool(Accounts accounts, AccountCache accountCache, WorkQueue workQueue) {
+    this.accounts = accounts;
+    this.accountCache = accountCache;
+    this.workQueue = workQueue;
+  }
+
+  @Override
+  public void start() {
+    refreshTask =
+        workQueue
+            .getDefaultQueue()
+            .scheduleAtFixedRate(
+                this::refresh,
+                REFRESH_INTERVAL.toMillis(),
+                REFRESH_INTERVAL.toMillis(),
+                TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    if (refreshTask != null) {
+      refreshTask.cancel(/* mayInterruptIfRunning= */ false);
+      refreshTask = null;
+    }
+  }
+
+  /**
+   * Samples random active accounts from the pool.
+   *
+   * <p>The sampled accounts are consecutive accounts of the pool, starting at a random position.
+   * Since the pool is in random order, they are random accounts.
+   *
+   * @param seed seed that should be used to pick the start position, if present sampling is stable
+   *     as long as the pool doesn't change
+   * @param limit the max number of accounts that should be returned
+   * @return random active accounts, less than the limit if the pool doesn't contain enough accounts
+   */
+  public ImmutableList<Account.Id> sample(Optional<Long> seed, int limit) {
+    ImmutableList<Account.Id> accountIds = getPool().accountIds();
+    if (accountIds.isEmpty() || limit <= 0) {
+      return ImmutableList.of();
+    }
+
+    int start =
+        (seed.isPresent() ? new Random(seed.get()) : ThreadLocalRandom.current())
+            .nextInt(accountIds.size());
+    int size = Math.min(limit, accountIds.size());
+    ImmutableList.Builder<Account.Id> sample = ImmutableList.builderWithExpectedSize(size);
+    for (int i = 0; i < size; i++) {
+      sample.add(accountIds.get((start + i) % accountIds.size()));
+    }
+    return sample.build();
+  }
+
+  @Override
+  public void onAccountIndexed(int id) {
+    Account.Id accountId = Account.id(id);
+    synchronized (this) {
+      if (accountsIndexedDuringLoad != null) {
+        accountsIndexedDuringLoad.add(accountId);
+      }
+      if (pool != null) {
+        pool = update(pool, accountId);
+      }
+    }
+  }
+
+  private Pool getPool() {
+    Pool pool = this.pool;
+    if (pool != null) {
+      return pool;
+    }
+
+    synchronized (loadLock) {
+      pool = this.pool;
+      if (pool != null) {
+        return pool;
+      }
+      try {
+        return load();
+      } catch (IOException e) {
+        throw new CodeOwnersInternalServerErrorException("failed to load random accounts", e);
+      }
+    }
+  }
+
+  /** Reloads the pool, if it has been loaded before. */
+  private void refresh() {
+    if (pool == null) {
+      // The pool was never used, no need to load it.
+      return;
+    }
+
+    synchronized (loadLock) {
+      try {
+        load();
+      } catch (IOException | RuntimeException e) {
+        // Keep using the old pool until the next refresh.
+        logger.atWarning().withCause(e).log("Failed to refresh random account pool");
+      }
+    }
+  }
+
+  private Pool load() throws IOException {
+    synchronized (this) {
+      accountsIndexedDuringLoad = new HashSet<>();
+    }
+    try {
+      Pool loadedPool = loadPool();
+      synchronized (this) {
+        for (Account.Id accountId : accountsIndexedDuringLoad) {
+          loadedPool = update(loadedPool, accountId);
+        }
+        pool = loadedPool;
+      }
+      logger.atFine().log(
+          "loaded random account pool (size = %d, complete = %s)",
+          loadedPool.accountIds().size(), loadedPool.complete());
+      return loadedPool;
+    } finally {
+      synchronized (this) {
+        accountsIndexedDuringLoad = null;
+      }
+    }
+  }
+
+  private Pool loadPool() throws IOException {
+    List<Account.Id> allAccountIds = new ArrayList<>(accounts.allIds());
+    Collections.shuffle(allAccountIds);
+
+    // Load the account states in batches, so that we only load as many accounts as are needed to
+    // fill the pool.
+    List<Account.Id> activeAccountIds = new ArrayList<>();
+    for (List<Account.Id> batch : Iterables.partition(allAccountIds, MAX_POOL_SIZE)) {
+      Map<Account.Id, AccountState> accountStates = accountCache.get(ImmutableSet.copyOf(batch));
+      for (Account.Id accountId : batch) {
+        if (activeAccountIds.size() >= MAX_POOL_SIZE) {
+          return Pool.create(ImmutableList.copyOf(activeAccountIds), /* complete= */ false);
+        }
+        AccountState accountState = accountStates.get(accountId);
+        if (accountState != null && accountState.account().isActive()) {
+          activeAccountIds.add(accountId);
+        }
+      }
+    }
+    return Pool.create(ImmutableList.copyOf(activeAccountIds), /* complete= */ true);
+  }
+
+  /** Updates the given pool for the given account that has been reindexed. */
+  private Pool update(Pool pool, Account.Id accountId) {
+    boolean active =
+        accountCache
+            .get(accountId)
+            .map(accountState -> accountState.account().isActive())
+            .orElse(false);
+    if (active == pool.accountIds().contains(accountId)) {
+      return pool;
+    }
+
+    if (!active) {
+      return Pool.create(
+          pool.accountIds().stream()
+              .filter(id -> !id.equals(accountId))
+              .collect(toImmutableList()),
+          pool.complete());
+    }
+
+    if (!pool.complete()) {
+      // The pool is only a sample of the active accounts, the new account may be added by the next
+      // refresh.
+      return pool;
+    }
+
+    // Insert the new account at a random position so that the pool stays in random order.
+    List<Account.Id> accountIds = new ArrayList<>(pool.accountIds());
+    accountIds.add(ThreadLocalRandom.current().nextInt(accountIds.size() + 1), accountId);
+    return Pool.create(ImmutableList.copyOf(accountIds), /* complete= */ true);
+  }
+
+  @AutoValue
+  abstract static class Pool {
+    /** The IDs of the accounts in the pool, in random order. */
+    abstract ImmutableList<Account.Id> accountIds();
+
+    /** Whether the pool contains all active accounts. */
+    abstract boolean complete();
+
+    static Pool create(ImmutableList<Account.Id> accountIds, boolean complete) {
+      return new AutoValue_RandomAccountPool_Pool(accountIds, complete);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The resolved code owners of a path, for all code owner configs that apply to the path.
+ *
+ * <p>The resolved code owners only depend on the revision from which the code owner configs are
+ * read, but not on the approvals or reviewers of a change. Hence they can be reused to compute the
+ * code owner status of the path when only the approvals or reviewers of a change have changed.
+ */
+@AutoValue
+public abstract class ResolvedPathCodeOwners {
+  /**
+   * The resolved code owners of the code owner configs that apply to the path, in the order in
+   * which the code owner configs are visited by the {@link CodeOwnerConfigHierarchy} (starting
+   * with the code owner config that is closest to the path).
+   */
+  public abstract ImmutableList<ResolvedCodeOwnerConfig> codeOwnerConfigs();
+
+  /** Whether any of the code owner configs that apply to the path ignores parent code owners. */
+  public abstract boolean parentCodeOwnersIgnored();
+
+  /**
+   * Whether any code owners are defined for the path, regardless of whether they can be resolved or
+   * not.
+   */
+  public boolean hasRevelantCodeOwnerDefinitions() {
+    return codeOwnerConfigs().stream()
+        .anyMatch(
+            codeOwnerConfig -> codeOwnerConfig.codeOwners().hasRevelantCodeOwnerDefinitions());
+  }
+
+  /**
+   * Creates a {@link ResolvedPathCodeOwners} instance.
+   *
+   * @param codeOwnerConfigs the resolved code owners of the code owner configs that apply to the
+   *     path
+   * @param parentCodeOwnersIgnored whether any of the code owner configs that apply to the path
+   *     ignores parent code owners
+   */
+  public static ResolvedPathCodeOwners create(
+      ImmutableList<ResolvedCodeOwnerConfig> codeOwnerConfigs, boolean parentCodeOwnersIgnored) {
+    return new AutoValue_ResolvedPathCodeOwners(codeOwnerConfigs, parentCodeOwnersIgnored);
+  }
+
+  /** The resolved code owners of a code owner config that applies to the path. */
+  @AutoValue
+  public abstract static class ResolvedCodeOwnerConfig {
+    /** The key of the code owner config. */
+    public abstract CodeOwnerConfig.Key key();
+
+    /** The kind of the code owners that are defined in the code owner config. */
+    public abstract CodeOwnerKind codeOwnerKind();
+
+    /** The resolved code owners that own the path according to the code owner config. */
+    public abstract CodeOwnerResolverResult codeOwners();
+
+    /**
+     * The account IDs of the {@link #codeOwners()}, sorted in ascending order.
+     *
+     * <p>Computed once when the code owners are resolved, so that checking whether the code owners
+     * contain an approver or reviewer only requires a binary search per approver or reviewer (see
+     * {@link CodeOwnerApprovalEvaluator#toBitSet(ResolvedCodeOwnerConfig)}), regardless of how
+     * often the code owner statuses are computed from the resolved code owners.
+     *
+     * <p>The returned array must not be modified.
+     */
+    @SuppressWarnings("mutable")
+    abstract int[] sortedCodeOwnerAccountIds();
+
+    /**
+     * Creates a {@link ResolvedCodeOwnerConfig} instance.
+     *
+     * @param key the key of the code owner config
+     * @param codeOwnerKind the kind of the code owners that are defined in the code owner config
+     * @param codeOwners the resolved code owners that own the path according to the code owner
+     *     config
+     */
+    public static ResolvedCodeOwnerConfig create(
+        CodeOwnerConfig.Key key, CodeOwnerKind codeOwnerKind, CodeOwnerResolverResult codeOwners) {
+      requireNonNull(key, "key");
+      requireNonNull(codeOwnerKind, "codeOwnerKind");
+      requireNonNull(codeOwners, "codeOwners");
+      return new AutoValue_ResolvedPathCodeOwners_ResolvedCodeOwnerConfig(
+          key, codeOwnerKind, codeOwners, getSortedAccountIds(codeOwners.codeOwners()));
+    }
+
+    private static int[] getSortedAccountIds(ImmutableSet<CodeOwner> codeOwners) {
+      return codeOwners.stream()
+          .mapToInt(codeOwner -> codeOwner.accountId().get())
+          .sorted()
+          .toArray();
+    }
+  }
+}
@@ -14,8 +14,11 @@
 
 package com.google.gerrit.plugins.codeowners.backend;
 
+import com.google.common.base.CharMatcher;
 import com.google.common.flogger.FluentLogger;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Optional;
 
 /**
  * Matcher that checks for a given simple path expression if it matches a given path.
@@ -27,6 +30,9 @@ import java.nio.file.Path;
  *   <li>'...': Represents any string, including slashes.
  *   <li>Patterns such as '{**&#47;,}' or '[1-4]' are not supported.
  * </ul>
+ *
+ * <p>Simple path expressions are converted to globs. The compiled globs are cached (see {@link
+ * CompiledGlobCache}).
  */
 public class SimplePathExpressionMatcher implements PathExpressionMatcher {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
@@ -34,19 +40,61 @@ public class SimplePathExpressionMatcher implements PathExpressionMatcher {
   /** Singleton instance. */
   public static SimplePathExpressionMatcher INSTANCE = new SimplePathExpressionMatcher();
 
+  private static final CompiledGlobCache compiledGlobs =
+      new CompiledGlobCache(SimplePathExpressionMatcher::asGlob);
+
+  /**
+   * Characters that have a special meaning in the globs to which simple path expressions are
+   * converted ('{', '}', '[' and ']' are escaped, hence they have no special meaning).
+   */
+  private static final CharMatcher SPECIAL_CHARS = CharMatcher.anyOf("*?\\");
+
   /** Private constructor to prevent creation of further instances. */
   private SimplePathExpressionMatcher() {}
 
   @Override
   public boolean matches(String pathExpression, Path relativePath) {
-    String glob = asGlob(pathExpression);
-    boolean isMatching = GlobMatcher.INSTANCE.matches(glob, relativePath);
+    Optional<PathMatcher> pathMatcher = compiledGlobs.get(pathExpression);
+    if (!pathMatcher.isPresent()) {
+      logger.atFine().log("path expression %s is invalid", pathExpression);
+      return false;
+    }
+    boolean isMatching = pathMatcher.get().matches(relativePath);
     logger.atFine().log(
-        "path %s %s matching %s (glob = %s)",
-        relativePath, isMatching ? "is" : "is not", pathExpression, glob);
+        "path %s %s matching %s", relativePath, isMatching ? "is" : "is not", pathExpression);
     return isMatching;
   }
 
+  @Override
+  public Optional<IndexablePathExpression> classify(String pathExpression) {
+    if (isPlain(pathExpression)) {
+      return Optional.of(IndexablePathExpression.exactPath(pathExpression));
+    }
+
+    // '*<suffix>' matches all files in the current folder that end with the suffix
+    if (pathExpression.startsWith("*")) {
+      String suffix = pathExpression.substring(1);
+      if (isPlain(suffix) && !suffix.contains("/")) {
+        return Optional.of(IndexablePathExpression.fileNameSuffix(suffix));
+      }
+    }
+
+    // '<folder>/...' matches all files in the folder and its subfolders
+    if (pathExpression.endsWith("/...")) {
+      String folder = pathExpression.substring(0, pathExpression.length() - "/...".length());
+      if (!folder.isEmpty() && isPlain(folder)) {
+        return Optional.of(IndexablePathExpression.folderPrefix(folder));
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  /** Whether the given string contains no characters that have a special meaning. */
+  private static boolean isPlain(String s) {
+    return SPECIAL_CHARS.matchesNoneOf(s) && !s.contains("...");
+  }
+
   private static String asGlob(String pathExpression) {
     return escape(pathExpression, '{', '}', '[', ']').replace("...", "**");
   }
@@ -14,18 +14,19 @@
 
 package com.google.gerrit.plugins.codeowners.backend;
 
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
-
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginConfiguration;
 import com.google.gerrit.plugins.codeowners.metrics.CodeOwnerMetrics;
 import com.google.inject.Inject;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class to cache resolved {@link CodeOwner}s within a request.
@@ -33,35 +34,54 @@ import java.util.concurrent.TimeUnit;
  * <p>This cache is transient, which means the code owners stay cached only for the lifetime of the
  * {@code TransientCodeOwnerCache} instance.
  *
- * <p><strong>Note</strong>: This class is not thread-safe.
+ * <p>Code owners are looked up by email, so that the cost of a lookup is proportional to the number
+ * of requested emails, and not to the number of cached code owners. If the maximum cache size (see
+ * {@link
+ * com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginGlobalConfigSnapshot#getMaxCodeOwnerCacheSize()})
+ * is reached, the least recently used code owners are evicted.
+ *
+ * <p>This class is thread-safe, so that code owners can be resolved from multiple threads that work
+ * on the same request (see {@link FileStatusComputationExecutor}).
  */
 public class TransientCodeOwnerCache {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
-  private final Optional<Integer> maxCacheSize;
   private final Counters counters;
-  private final HashMap<String, Optional<CodeOwner>> cache = new HashMap<>();
+  private final Cache<String, Optional<CodeOwner>> cache;
 
   @Inject
   TransientCodeOwnerCache(
       CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
       CodeOwnerMetrics codeOwnerMetrics) {
-    this.maxCacheSize =
-        codeOwnersPluginConfiguration.getGlobalConfig().getMaxCodeOwnerConfigCacheSize();
     this.counters = new Counters(codeOwnerMetrics);
+
+    CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
+    Optional<Integer> maxCacheSize =
+        codeOwnersPluginConfiguration.getGlobalConfig().getMaxCodeOwnerCacheSize();
+    if (maxCacheSize.isPresent()) {
+      cacheBuilder.maximumSize(maxCacheSize.get());
+    }
+    RemovalListener<String, Optional<CodeOwner>> removalListener = this::onRemoval;
+    this.cache = cacheBuilder.removalListener(removalListener).build();
   }
 
+  /**
+   * Gets the cached code owners for the given emails.
+   *
+   * @param emails the emails for which the cached code owners should be returned
+   * @return the cached code owners by email, emails that are not cached are omitted, emails that
+   *     have been cached as non-resolvable are mapped to {@link Optional#empty()}
+   */
   public ImmutableMap<String, Optional<CodeOwner>> get(Set<String> emails) {
     ImmutableMap<String, Optional<CodeOwner>> cachedCodeOwnersByEmail =
-        cache.entrySet().stream()
-            .filter(e -> emails.contains(e.getKey()))
-            .collect(toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+        cache.getAllPresent(emails);
     counters.incrementCacheReads(cachedCodeOwnersByEmail.size());
+    counters.incrementCacheMisses(emails.size() - cachedCodeOwnersByEmail.size());
     return cachedCodeOwnersByEmail;
   }
 
   public void clear() {
-    cache.clear();
+    cache.invalidateAll();
   }
 
   public void cacheNonResolvable(String email) {
@@ -74,11 +94,14 @@ public class TransientCodeOwnerCache {
 
   private void cache(String email, Optional<CodeOwner> codeOwner) {
     counters.incrementResolutions();
-    if (!maxCacheSize.isPresent() || cache.size() < maxCacheSize.get()) {
-      cache.put(email, codeOwner);
-    } else if (maxCacheSize.isPresent()) {
+    cache.put(email, codeOwner);
+  }
+
+  private void onRemoval(RemovalNotification<String, Optional<CodeOwner>> notification) {
+    if (notification.wasEvicted()) {
       logger.atWarning().atMostEvery(1, TimeUnit.DAYS).log(
           "exceeded limit of %s", getClass().getSimpleName());
+      counters.incrementEvictions();
     }
   }
 
@@ -89,8 +112,10 @@ public class TransientCodeOwnerCache {
   public static class Counters {
     private final CodeOwnerMetrics codeOwnerMetrics;
 
-    private int resolutionCount;
-    private int cacheReadCount;
+    private final AtomicInteger resolutionCount = new AtomicInteger();
+    private final AtomicInteger cacheReadCount = new AtomicInteger();
+    private final AtomicInteger cacheMissCount = new AtomicInteger();
+    private final AtomicInteger evictionCount = new AtomicInteger();
 
     private Counters(CodeOwnerMetrics codeOwnerMetrics) {
       this.codeOwnerMetrics = codeOwnerMetrics;
@@ -98,20 +123,40 @@ public class TransientCodeOwnerCache {
 
     private void incrementCacheReads(long value) {
       codeOwnerMetrics.countCodeOwnerCacheReads.incrementBy(value);
-      cacheReadCount++;
+      cacheReadCount.incrementAndGet();
+    }
+
+    private void incrementCacheMisses(int value) {
+      codeOwnerMetrics.countCodeOwnerCacheMisses.incrementBy(value);
+      cacheMissCount.addAndGet(value);
+    }
+
+    private void incrementEvictions() {
+      codeOwnerMetrics.countCodeOwnerCacheEvictions.increment();
+      evictionCount.incrementAndGet();
     }
 
     private void incrementResolutions() {
       codeOwnerMetrics.countCodeOwnerResolutions.increment();
-      resolutionCount++;
+      resolutionCount.incrementAndGet();
     }
 
     public int getResolutionCount() {
-      return resolutionCount;
+      return resolutionCount.get();
     }
 
     public int getCacheReadCount() {
-      return cacheReadCount;
+      return cacheReadCount.get();
+    }
+
+    /** Returns the number of emails that were looked up but not found in the cache. */
+    public int getCacheMissCount() {
+      return cacheMissCount.get();
+    }
+
+    /** Returns the number of code owners that were evicted from the cache. */
+    public int getEvictionCount() {
+      return evictionCount.get();
     }
   }
 }
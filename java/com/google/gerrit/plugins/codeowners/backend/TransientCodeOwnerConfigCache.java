@@ -14,6 +14,8 @@
 
 package com.google.gerrit.plugins.codeowners.backend;
 
+import static java.util.Objects.requireNonNull;
+
 import com.google.auto.value.AutoValue;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.common.Nullable;
@@ -23,9 +25,10 @@ import com.google.gerrit.plugins.codeowners.metrics.CodeOwnerMetrics;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.inject.Inject;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
@@ -36,7 +39,12 @@ import org.eclipse.jgit.lib.Repository;
  * <p>This cache is transient, which means the code owner configs stay cached only for the lifetime
  * of the {@code TransientCodeOwnerConfigCache} instance.
  *
- * <p><strong>Note</strong>: This class is not thread-safe.
+ * <p>If a {@link TransientGitContext} is set (see {@link #useGitContext(TransientGitContext)}), the
+ * code owner configs are loaded with the repositories and rev walks of the Git context, rather than
+ * opening the repository for each load.
+ *
+ * <p>This class is thread-safe, so that the code owner configs can be loaded from multiple threads
+ * that work on the same request (see {@link FileStatusComputationExecutor}).
  */
 public class TransientCodeOwnerConfigCache implements CodeOwnerConfigLoader {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
@@ -45,7 +53,10 @@ public class TransientCodeOwnerConfigCache implements CodeOwnerConfigLoader {
   private final CodeOwners codeOwners;
   private final Optional<Integer> maxCacheSize;
   private final Counters counters;
-  private final HashMap<CacheKey, Optional<CodeOwnerConfig>> cache = new HashMap<>();
+  private final ConcurrentHashMap<CacheKey, Optional<CodeOwnerConfig>> cache =
+      new ConcurrentHashMap<>();
+
+  @Nullable private TransientGitContext gitContext;
 
   @Inject
   TransientCodeOwnerConfigCache(
@@ -60,6 +71,18 @@ public class TransientCodeOwnerConfigCache implements CodeOwnerConfigLoader {
     this.counters = new Counters(codeOwnerMetrics);
   }
 
+  /**
+   * Sets the Git context that should be used to load code owner configs.
+   *
+   * <p>Must be invoked before any code owner config is loaded. The caller stays responsible for
+   * closing the Git context.
+   *
+   * @param gitContext the Git context that should be used to load code owner configs
+   */
+  void useGitContext(TransientGitContext gitContext) {
+    this.gitContext = requireNonNull(gitContext, "gitContext");
+  }
+
   /**
    * Gets the specified code owner config from the cache, if it was previously retrieved. Otherwise
    * loads and returns the code owner config.
@@ -90,18 +113,26 @@ public class TransientCodeOwnerConfigCache implements CodeOwnerConfigLoader {
     counters.incrementBackendReads();
     Optional<CodeOwnerConfig> codeOwnerConfig;
     if (cacheKey.revision().isPresent()) {
-      codeOwnerConfig = codeOwners.get(cacheKey.codeOwnerConfigKey(), cacheKey.revision().get());
+      codeOwnerConfig = load(cacheKey.codeOwnerConfigKey(), cacheKey.revision().get());
     } else {
       Optional<ObjectId> revision = getRevision(cacheKey.codeOwnerConfigKey().branchNameKey());
       if (revision.isPresent()) {
-        codeOwnerConfig = codeOwners.get(cacheKey.codeOwnerConfigKey(), revision.get());
+        codeOwnerConfig = load(cacheKey.codeOwnerConfigKey(), revision.get());
       } else {
         // branch does not exists, hence the code owner config also doesn't exist
         codeOwnerConfig = Optional.empty();
       }
     }
     if (!maxCacheSize.isPresent() || cache.size() < maxCacheSize.get()) {
-      cache.put(cacheKey, codeOwnerConfig);
+      // If another thread loaded the code owner config concurrently, use the code owner config
+      // that was cached by the other thread, so that all callers see the same code owner config
+      // (matters if the code owner config was loaded from the current revision and the branch was
+      // updated in between).
+      Optional<CodeOwnerConfig> cachedCodeOwnerConfig =
+          cache.putIfAbsent(cacheKey, codeOwnerConfig);
+      if (cachedCodeOwnerConfig != null) {
+        return cachedCodeOwnerConfig;
+      }
     } else if (maxCacheSize.isPresent()) {
       logger.atWarning().atMostEvery(1, TimeUnit.DAYS).log(
           "exceeded limit of %s (project = %s)",
@@ -110,19 +141,36 @@ public class TransientCodeOwnerConfigCache implements CodeOwnerConfigLoader {
     return codeOwnerConfig;
   }
 
+  /** Loads a code owner config from the backend. */
+  private Optional<CodeOwnerConfig> load(
+      CodeOwnerConfig.Key codeOwnerConfigKey, ObjectId revision) {
+    if (gitContext == null) {
+      return codeOwners.get(codeOwnerConfigKey, revision);
+    }
+
+    try {
+      return gitContext.withRevWalk(
+          codeOwnerConfigKey.project(),
+          revWalk -> codeOwners.get(codeOwnerConfigKey, revWalk, revision));
+    } catch (IOException e) {
+      throw new CodeOwnersInternalServerErrorException(
+          String.format("failed to load code owner config %s", codeOwnerConfigKey), e);
+    }
+  }
+
   /**
    * Gets the revision for the given branch.
    *
    * <p>Returns {@link Optional#empty()} if the branch doesn't exist.
    */
   private Optional<ObjectId> getRevision(BranchNameKey branchNameKey) {
-    try (Repository repo = repoManager.openRepository(branchNameKey.project())) {
-      Ref ref = repo.exactRef(branchNameKey.branch());
-      if (ref == null) {
-        // branch does not exist
-        return Optional.empty();
+    try {
+      if (gitContext != null) {
+        return getRevision(gitContext.getRepository(branchNameKey.project()), branchNameKey);
+      }
+      try (Repository repo = repoManager.openRepository(branchNameKey.project())) {
+        return getRevision(repo, branchNameKey);
       }
-      return Optional.of(ref.getObjectId());
     } catch (IOException e) {
       throw new CodeOwnersInternalServerErrorException(
           String.format(
@@ -132,6 +180,16 @@ public class TransientCodeOwnerConfigCache implements CodeOwnerConfigLoader {
     }
   }
 
+  private static Optional<ObjectId> getRevision(Repository repo, BranchNameKey branchNameKey)
+      throws IOException {
+    Ref ref = repo.exactRef(branchNameKey.branch());
+    if (ref == null) {
+      // branch does not exist
+      return Optional.empty();
+    }
+    return Optional.of(ref.getObjectId());
+  }
+
   @AutoValue
   abstract static class CacheKey {
     /** The key of the code owner config. */
@@ -154,8 +212,8 @@ public class TransientCodeOwnerConfigCache implements CodeOwnerConfigLoader {
   public static class Counters {
     private final CodeOwnerMetrics codeOwnerMetrics;
 
-    private int cacheReadCount;
-    private int backendReadCount;
+    private final AtomicInteger cacheReadCount = new AtomicInteger();
+    private final AtomicInteger backendReadCount = new AtomicInteger();
 
     private Counters(CodeOwnerMetrics codeOwnerMetrics) {
       this.codeOwnerMetrics = codeOwnerMetrics;
@@ -163,21 +221,21 @@ public class TransientCodeOwnerConfigCache implements CodeOwnerConfigLoader {
 
     private void incrementCacheReads() {
       codeOwnerMetrics.countCodeOwnerConfigCacheReads.increment();
-      cacheReadCount++;
+      cacheReadCount.incrementAndGet();
     }
 
     private void incrementBackendReads() {
       // we do not increase the countCodeOwnerConfigReads metric here, since this is already done in
       // CodeOwners
-      backendReadCount++;
+      backendReadCount.incrementAndGet();
     }
 
     public int getBackendReadCount() {
-      return backendReadCount;
+      return backendReadCount.get();
     }
 
     public int getCacheReadCount() {
-      return cacheReadCount;
+      return cacheReadCount.get();
     }
   }
 }
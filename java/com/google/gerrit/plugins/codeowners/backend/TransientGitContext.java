@@ -0,0 +1,140 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.inject.Inject;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Class to share opened repositories and {@link RevWalk}s within a request.
+ *
+ * <p>Each repository is opened only once per {@code TransientGitContext} instance, and {@link
+ * RevWalk}s (and hence their {@link org.eclipse.jgit.lib.ObjectReader}s) are reused for all Git
+ * reads from the same repository. Since {@link RevWalk}s remember the objects that they have
+ * parsed, commits that are read multiple times (e.g. the branch revision from which the code owner
+ * configs are loaded) are parsed only once.
+ *
+ * <p>The repositories stay open until the {@code TransientGitContext} is closed, hence instances
+ * must always be closed by the caller that created them.
+ *
+ * <p>This class is thread-safe, so that it can be used by multiple threads that work on the same
+ * request (see {@link FileStatusComputationExecutor}). Since {@link RevWalk}s are not thread-safe,
+ * each {@link RevWalk} is only handed out to one thread at a time (see {@link
+ * #withRevWalk(Project.NameKey, RevWalkFunction)}).
+ */
+public class TransientGitContext implements AutoCloseable {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final GitRepositoryManager repoManager;
+  private final Map<Project.NameKey, Repository> repositories = new ConcurrentHashMap<>();
+  private final Map<Project.NameKey, Queue<RevWalk>> revWalks = new ConcurrentHashMap<>();
+
+  private volatile boolean closed;
+
+  @Inject
+  TransientGitContext(GitRepositoryManager repoManager) {
+    this.repoManager = repoManager;
+  }
+
+  /**
+   * Gets the repository of the given project.
+   *
+   * <p>The returned repository must not be closed by the caller.
+   *
+   * @param project the project for which the repository should be returned
+   * @return the repository of the given project
+   */
+  public Repository getRepository(Project.NameKey project) throws IOException {
+    requireNonNull(project, "project");
+    Repository repository = repositories.get(project);
+    if (repository != null) {
+      return repository;
+    }
+
+    synchronized (this) {
+      checkState(!closed, "git context is closed");
+      repository = repositories.get(project);
+      if (repository == null) {
+        logger.atFine().log("opening repository %s", project);
+        repository = repoManager.openRepository(project);
+        repositories.put(project, repository);
+      }
+      return repository;
+    }
+  }
+
+  /**
+   * Invokes the given function with a {@link RevWalk} for the repository of the given project.
+   *
+   * <p>The {@link RevWalk} is exclusively used by the calling thread until the function returns.
+   * It must not be closed or used after the function returned.
+   *
+   * @param project the project for which a {@link RevWalk} is needed
+   * @param function function that should be invoked with the {@link RevWalk}
+   * @return the result of the function
+   */
+  public <T> T withRevWalk(Project.NameKey project, RevWalkFunction<T> function)
+      throws IOException {
+    requireNonNull(function, "function");
+    Queue<RevWalk> availableRevWalks =
+        revWalks.computeIfAbsent(project, p -> new ConcurrentLinkedQueue<>());
+    RevWalk revWalk = availableRevWalks.poll();
+    if (revWalk == null) {
+      revWalk = new RevWalk(getRepository(project));
+    }
+    try {
+      return function.apply(revWalk);
+    } finally {
+      // Make the rev walk available for reuse, unless the context was closed in the meantime.
+      availableRevWalks.add(revWalk);
+      if (closed) {
+        closeRevWalks(availableRevWalks);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    revWalks.values().forEach(TransientGitContext::closeRevWalks);
+    repositories.values().forEach(Repository::close);
+    repositories.clear();
+  }
+
+  private static void closeRevWalks(Queue<RevWalk> revWalks) {
+    RevWalk revWalk;
+    while ((revWalk = revWalks.poll()) != null) {
+      revWalk.close();
+    }
+  }
+
+  /** Function that is invoked with a {@link RevWalk}. */
+  @FunctionalInterface
+  public interface RevWalkFunction<T> {
+    T apply(RevWalk revWalk) throws IOException;
+  }
+}
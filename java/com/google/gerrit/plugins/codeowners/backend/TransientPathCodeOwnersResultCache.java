@@ -0,0 +1,101 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.auto.value.AutoValue;
+import com.google.inject.Inject;
+import java.util.BitSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Class to cache resolved {@link PathCodeOwners} within a request.
+ *
+ * <p>Resolving {@link PathCodeOwners} for a path (see {@link
+ * PathCodeOwners#resolveCodeOwnerConfig()}) only depends on the path through the per-file code
+ * owner sets that match the path. If the resolution didn't need to match any per-file code owner
+ * sets of imported code owner configs, all paths for which the same per-file code owner sets of
+ * the code owner config match have the same resolved code owners (e.g. all files in the same
+ * folder that are not matched by any per-file code owner set). This allows to resolve the code
+ * owner config only once for all these paths.
+ *
+ * <p>This cache is transient, which means the results stay cached only for the lifetime of the
+ * {@code TransientPathCodeOwnersResultCache} instance.
+ *
+ * <p>This class is thread-safe (see {@link FileStatusComputationExecutor}).
+ */
+public class TransientPathCodeOwnersResultCache {
+  private final ConcurrentHashMap<Key, OptionalResultWithMessages<PathCodeOwnersResult>> cache =
+      new ConcurrentHashMap<>();
+
+  @Inject
+  TransientPathCodeOwnersResultCache() {}
+
+  /**
+   * Gets the resolved code owner config for the given key.
+   *
+   * <p>The returned result and its messages refer to the path for which the code owner config was
+   * resolved originally, callers must adapt them to their path.
+   *
+   * @param key the key for which the resolved code owner config should be returned
+   * @return the resolved code owner config, {@link Optional#empty()} if it is not cached
+   */
+  Optional<OptionalResultWithMessages<PathCodeOwnersResult>> get(Key key) {
+    requireNonNull(key, "key");
+    return Optional.ofNullable(cache.get(key));
+  }
+
+  /**
+   * Caches the resolved code owner config for the given key.
+   *
+   * <p>Must only be invoked if the resolution of the code owner config didn't depend on the path
+   * beyond the matching per-file code owner sets of the code owner config that are contained in the
+   * key.
+   *
+   * @param key the key under which the resolved code owner config should be cached
+   * @param pathCodeOwnersResult the resolved code owner config
+   */
+  void put(Key key, OptionalResultWithMessages<PathCodeOwnersResult> pathCodeOwnersResult) {
+    requireNonNull(key, "key");
+    requireNonNull(pathCodeOwnersResult, "pathCodeOwnersResult");
+    cache.put(key, pathCodeOwnersResult);
+  }
+
+  @AutoValue
+  public abstract static class Key {
+    /** The key of the code owner config that was resolved. */
+    abstract CodeOwnerConfig.Key codeOwnerConfigKey();
+
+    /** The revision of the code owner config that was resolved. */
+    abstract ObjectId revision();
+
+    /**
+     * The indexes of the per-file code owner sets of the code owner config that match the path (see
+     * {@link PerFileCodeOwnerSetIndex}).
+     */
+    abstract BitSet matchingPerFileCodeOwnerSets();
+
+    static Key create(
+        CodeOwnerConfig.Key codeOwnerConfigKey,
+        ObjectId revision,
+        BitSet matchingPerFileCodeOwnerSets) {
+      return new AutoValue_TransientPathCodeOwnersResultCache_Key(
+          codeOwnerConfigKey, revision, matchingPerFileCodeOwnerSets);
+    }
+  }
+}
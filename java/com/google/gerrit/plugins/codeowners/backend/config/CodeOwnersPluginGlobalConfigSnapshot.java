@@ -33,9 +33,15 @@ public class CodeOwnersPluginGlobalConfigSnapshot {
 
   @VisibleForTesting static final int DEFAULT_MAX_CODE_OWNER_CONFIG_CACHE_SIZE = 10000;
   @VisibleForTesting static final int DEFAULT_MAX_CODE_OWNER_CACHE_SIZE = 10000;
+  @VisibleForTesting static final int DEFAULT_MAX_THREADS_FOR_FILE_STATUS_COMPUTATION = 1;
+  @VisibleForTesting static final int DEFAULT_MAX_THREADS_FOR_CODE_OWNER_CONFIG_CHECK = 2;
 
   private static final String KEY_MAX_CODE_OWNER_CONFIG_CACHE_SIZE = "maxCodeOwnerConfigCacheSize";
   private static final String KEY_MAX_CODE_OWNER_CACHE_SIZE = "maxCodeOwnerCacheSize";
+  private static final String KEY_MAX_THREADS_FOR_FILE_STATUS_COMPUTATION =
+      "maxThreadsForFileStatusComputation";
+  private static final String KEY_MAX_THREADS_FOR_CODE_OWNER_CONFIG_CHECK =
+      "maxThreadsForCodeOwnerConfigCheck";
 
   public interface Factory {
     CodeOwnersPluginGlobalConfigSnapshot create();
@@ -48,6 +54,7 @@ public class CodeOwnersPluginGlobalConfigSnapshot {
   @Nullable private ImmutableSet<String> allowedEmailDomains;
   @Nullable private Boolean enabledExperimentalRestEndpoints;
   @Nullable private Optional<Integer> maxCodeOwnerConfigCacheSize;
+  @Nullable private Optional<Integer> maxCodeOwnerCacheSize;
 
   @Inject
   CodeOwnersPluginGlobalConfigSnapshot(
@@ -126,16 +133,55 @@ public class CodeOwnersPluginGlobalConfigSnapshot {
 
   /**
    * Gets the maximum size for the {@link
-   * com.google.gerrit.plugins.codeowners.backend.TransientCodeOwnerConfigCache}.
+   * com.google.gerrit.plugins.codeowners.backend.TransientCodeOwnerCache}.
    *
    * @return the maximum cache size, {@link Optional#empty()} if the cache size is not limited
    */
   public Optional<Integer> getMaxCodeOwnerCacheSize() {
-    if (maxCodeOwnerConfigCacheSize == null) {
-      maxCodeOwnerConfigCacheSize =
+    if (maxCodeOwnerCacheSize == null) {
+      maxCodeOwnerCacheSize =
           readMaxCacheSize(KEY_MAX_CODE_OWNER_CACHE_SIZE, DEFAULT_MAX_CODE_OWNER_CACHE_SIZE);
     }
-    return maxCodeOwnerConfigCacheSize;
+    return maxCodeOwnerCacheSize;
+  }
+
+  /**
+   * Gets the maximum number of threads that are used to compute the code owner statuses of the
+   * files in a change in parallel.
+   *
+   * @return the maximum number of threads, {@code 1} if file statuses should be computed
+   *     sequentially on the request thread
+   */
+  public int getMaxThreadsForFileStatusComputation() {
+    return readMaxThreads(
+        KEY_MAX_THREADS_FOR_FILE_STATUS_COMPUTATION,
+        DEFAULT_MAX_THREADS_FOR_FILE_STATUS_COMPUTATION);
+  }
+
+  /**
+   * Gets the maximum number of threads that are used to check the code owner config files of
+   * multiple branches in parallel.
+   *
+   * @return the maximum number of threads, {@code 1} if branches should be checked sequentially on
+   *     the request thread
+   */
+  public int getMaxThreadsForCodeOwnerConfigCheck() {
+    return readMaxThreads(
+        KEY_MAX_THREADS_FOR_CODE_OWNER_CONFIG_CHECK,
+        DEFAULT_MAX_THREADS_FOR_CODE_OWNER_CONFIG_CHECK);
+  }
+
+  private int readMaxThreads(String key, int defaultMaxThreads) {
+    try {
+      int maxThreads =
+          pluginConfigFactory.getFromGerritConfig(pluginName).getInt(key, defaultMaxThreads);
+      return Math.max(maxThreads, 1);
+    } catch (IllegalArgumentException e) {
+      logger.atWarning().withCause(e).log(
+          "Value '%s' in gerrit.config (parameter plugin.%s.%s) is invalid.",
+          pluginConfigFactory.getFromGerritConfig(pluginName).getString(key), pluginName, key);
+      return defaultMaxThreads;
+    }
   }
 
   private Optional<Integer> readMaxCacheSize(String key, int defaultCacheSize) {
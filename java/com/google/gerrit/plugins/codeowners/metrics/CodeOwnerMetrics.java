@@ -60,6 +60,12 @@ public class CodeOwnerMetrics {
   public final Timer1<String> parseCodeOwnerConfig;
 
   // counter metrics
+  public final Counter0 countAccountIdsByEmailCacheHits;
+  public final Counter0 countAccountIdsByEmailCacheMisses;
+  public final Counter0 countCoalescedFileStatusComputations;
+  public final Counter0 countCoalescedPathCodeOwnersComputations;
+  public final Counter0 countCodeOwnerCacheEvictions;
+  public final Counter0 countCodeOwnerCacheMisses;
   public final Counter0 countCodeOwnerCacheReads;
   public final Counter0 countCodeOwnerConfigReads;
   public final Counter0 countCodeOwnerConfigCacheReads;
@@ -69,7 +75,16 @@ public class CodeOwnerMetrics {
   public final Counter1<String> countCodeOwnerSubmitRuleErrors;
   public final Counter0 countCodeOwnerSubmitRuleRuns;
   public final Counter1<Boolean> countCodeOwnerSuggestions;
+  public final Counter0 countFileCodeOwnerStatusCacheHits;
+  public final Counter0 countFileCodeOwnerStatusCacheMisses;
   public final Counter3<String, String, String> countInvalidCodeOwnerConfigFiles;
+  public final Counter0 countParsedCodeOwnerConfigCacheHits;
+  public final Counter0 countParsedCodeOwnerConfigCacheMisses;
+  public final Counter0 countPathCodeOwnersCacheHits;
+  public final Counter0 countPathCodeOwnersCacheMisses;
+  public final Counter0 countSkippedBranchChecks;
+  public final Counter0 countSubmittabilityCacheHits;
+  public final Counter0 countSubmittabilityCacheMisses;
 
   private final MetricMaker metricMaker;
 
@@ -167,6 +182,33 @@ public class CodeOwnerMetrics {
             "read_code_owner_config", "Latency for reading a code owner config file");
 
     // counter metrics
+    this.countAccountIdsByEmailCacheHits =
+        createCounter(
+            "count_account_ids_by_email_cache_hits",
+            "Total number of code owner emails that were found in the account IDs by email cache");
+    this.countAccountIdsByEmailCacheMisses =
+        createCounter(
+            "count_account_ids_by_email_cache_misses",
+            "Total number of code owner emails that were not found in the account IDs by email"
+                + " cache");
+    this.countCoalescedFileStatusComputations =
+        createCounter(
+            "count_coalesced_file_status_computations",
+            "Total number of file status computations for changes that were not done since the same"
+                + " file statuses were computed concurrently by another request");
+    this.countCoalescedPathCodeOwnersComputations =
+        createCounter(
+            "count_coalesced_path_code_owners_computations",
+            "Total number of path code owner computations that were not done since the same path"
+                + " code owners were computed concurrently by another request");
+    this.countCodeOwnerCacheEvictions =
+        createCounter(
+            "count_code_owner_cache_evictions",
+            "Total number of code owners that were evicted from cache since the cache was full");
+    this.countCodeOwnerCacheMisses =
+        createCounter(
+            "count_code_owner_cache_misses",
+            "Total number of code owners that were not found in cache");
     this.countCodeOwnerCacheReads =
         createCounter(
             "count_code_owner_cache_reads", "Total number of code owner reads from cache");
@@ -213,6 +255,16 @@ public class CodeOwnerMetrics {
                     "Whether code ownerships that are assigned to all users are resolved to random"
                         + " users.")
                 .build());
+    this.countFileCodeOwnerStatusCacheHits =
+        createCounter(
+            "count_file_code_owner_status_cache_hits",
+            "Total number of changes for which the file statuses were found in the file code owner"
+                + " status cache");
+    this.countFileCodeOwnerStatusCacheMisses =
+        createCounter(
+            "count_file_code_owner_status_cache_misses",
+            "Total number of changes for which the file statuses were not found in the file code"
+                + " owner status cache");
     this.countInvalidCodeOwnerConfigFiles =
         createCounter3(
             "count_invalid_code_owner_config_files",
@@ -229,6 +281,39 @@ public class CodeOwnerMetrics {
             Field.ofString("path", Metadata.Builder::filePath)
                 .description("The path of the invalid code owner config file.")
                 .build());
+    this.countParsedCodeOwnerConfigCacheHits =
+        createCounter(
+            "count_parsed_code_owner_config_cache_hits",
+            "Total number of parsed code owner configs that were found in the cache");
+    this.countParsedCodeOwnerConfigCacheMisses =
+        createCounter(
+            "count_parsed_code_owner_config_cache_misses",
+            "Total number of parsed code owner configs that were not found in the cache");
+    this.countPathCodeOwnersCacheHits =
+        createCounter(
+            "count_path_code_owners_cache_hits",
+            "Total number of paths for which the path code owners were found in the path code"
+                + " owners cache");
+    this.countPathCodeOwnersCacheMisses =
+        createCounter(
+            "count_path_code_owners_cache_misses",
+            "Total number of paths for which the path code owners were not found in the path code"
+                + " owners cache");
+    this.countSkippedBranchChecks =
+        createCounter(
+            "count_skipped_branch_checks",
+            "Total number of branches for which the code owner config files were not checked"
+                + " since they contain the same code owner config files as another branch");
+    this.countSubmittabilityCacheHits =
+        createCounter(
+            "count_submittability_cache_hits",
+            "Total number of changes for which the submittability was found in the"
+                + " submittability cache");
+    this.countSubmittabilityCacheMisses =
+        createCounter(
+            "count_submittability_cache_misses",
+            "Total number of changes for which the submittability was not found in the"
+                + " submittability cache");
   }
 
   private Timer0 createLatencyTimer(String name, String description) {
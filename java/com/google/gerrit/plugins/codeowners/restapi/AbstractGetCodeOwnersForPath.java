@@ -19,13 +19,17 @@ import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.gerrit.plugins.codeowners.backend.CodeOwnerScore.IS_EXPLICITLY_MENTIONED_SCORING_VALUE;
 import static com.google.gerrit.plugins.codeowners.backend.CodeOwnerScore.NOT_EXPLICITLY_MENTIONED_SCORING_VALUE;
 
+import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimaps;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.entities.Account;
 import com.google.gerrit.entities.Project;
@@ -37,38 +41,51 @@ import com.google.gerrit.extensions.restapi.AuthException;
 import com.google.gerrit.extensions.restapi.BadRequestException;
 import com.google.gerrit.extensions.restapi.Response;
 import com.google.gerrit.extensions.restapi.RestReadView;
+import com.google.gerrit.plugins.codeowners.api.CodeOwnerInfo;
 import com.google.gerrit.plugins.codeowners.api.CodeOwnersInfo;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwner;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerAnnotation;
+import com.google.gerrit.plugins.codeowners.backend.CodeOwnerConfig;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerConfigHierarchy;
+import com.google.gerrit.plugins.codeowners.backend.CodeOwnerKind;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerResolver;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerResolverResult;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerScore;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerScoring;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerScorings;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnersInternalServerErrorException;
+import com.google.gerrit.plugins.codeowners.backend.PathCodeOwners;
+import com.google.gerrit.plugins.codeowners.backend.PathCodeOwnersCache;
+import com.google.gerrit.plugins.codeowners.backend.PathCodeOwnersResult;
+import com.google.gerrit.plugins.codeowners.backend.PathCodeOwnersVisitor;
+import com.google.gerrit.plugins.codeowners.backend.RandomAccountPool;
+import com.google.gerrit.plugins.codeowners.backend.ResolvedPathCodeOwners;
+import com.google.gerrit.plugins.codeowners.backend.ResolvedPathCodeOwners.ResolvedCodeOwnerConfig;
 import com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginConfiguration;
 import com.google.gerrit.plugins.codeowners.metrics.CodeOwnerMetrics;
 import com.google.gerrit.server.account.AccountControl;
 import com.google.gerrit.server.account.AccountDirectory.FillOptions;
 import com.google.gerrit.server.account.AccountLoader;
-import com.google.gerrit.server.account.Accounts;
 import com.google.gerrit.server.permissions.GlobalPermission;
 import com.google.gerrit.server.permissions.PermissionBackend;
 import com.google.gerrit.server.permissions.PermissionBackendException;
 import com.google.gerrit.server.permissions.RefPermission;
 import com.google.inject.Provider;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.kohsuke.args4j.Option;
 
@@ -83,7 +100,7 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
   @VisibleForTesting public static final int DEFAULT_LIMIT = 10;
 
   private final AccountVisibility accountVisibility;
-  private final Accounts accounts;
+  private final RandomAccountPool randomAccountPool;
   private final AccountControl.Factory accountControlFactory;
   private final PermissionBackend permissionBackend;
   private final CheckCodeOwnerCapability checkCodeOwnerCapability;
@@ -91,6 +108,7 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
   private final CodeOwnersPluginConfiguration codeOwnersPluginConfiguration;
   private final CodeOwnerConfigHierarchy codeOwnerConfigHierarchy;
   private final Provider<CodeOwnerResolver> codeOwnerResolver;
+  private final PathCodeOwnersCache pathCodeOwnersCache;
   private final CodeOwnerJson.Factory codeOwnerJsonFactory;
   private final EnumSet<ListAccountsOption> options;
   private final Set<String> hexOptions;
@@ -159,7 +177,7 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
 
   protected AbstractGetCodeOwnersForPath(
       AccountVisibility accountVisibility,
-      Accounts accounts,
+      RandomAccountPool randomAccountPool,
       AccountControl.Factory accountControlFactory,
       PermissionBackend permissionBackend,
       CheckCodeOwnerCapability checkCodeOwnerCapability,
@@ -167,9 +185,10 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
       CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
       CodeOwnerConfigHierarchy codeOwnerConfigHierarchy,
       Provider<CodeOwnerResolver> codeOwnerResolver,
+      PathCodeOwnersCache pathCodeOwnersCache,
       CodeOwnerJson.Factory codeOwnerJsonFactory) {
     this.accountVisibility = accountVisibility;
-    this.accounts = accounts;
+    this.randomAccountPool = randomAccountPool;
     this.accountControlFactory = accountControlFactory;
     this.permissionBackend = permissionBackend;
     this.checkCodeOwnerCapability = checkCodeOwnerCapability;
@@ -177,6 +196,7 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
     this.codeOwnersPluginConfiguration = codeOwnersPluginConfiguration;
     this.codeOwnerConfigHierarchy = codeOwnerConfigHierarchy;
     this.codeOwnerResolver = codeOwnerResolver;
+    this.pathCodeOwnersCache = pathCodeOwnersCache;
     this.codeOwnerJsonFactory = codeOwnerJsonFactory;
     this.options = EnumSet.noneOf(ListAccountsOption.class);
     this.hexOptions = new HashSet<>();
@@ -184,6 +204,146 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
 
   protected Response<CodeOwnersInfo> applyImpl(R rsrc)
       throws AuthException, BadRequestException, PermissionBackendException {
+    validateRequest(rsrc);
+
+    CodeOwnerResolver codeOwnerResolver = createCodeOwnerResolver();
+
+    ImmutableList<ResolvedCodeOwnerConfig> resolvedCodeOwnerConfigs =
+        resolvePathCodeOwners(codeOwnerResolver, rsrc);
+
+    SuggestedCodeOwners suggestedCodeOwners =
+        suggestCodeOwners(
+            rsrc,
+            resolvedCodeOwnerConfigs,
+            () -> getGlobalCodeOwners(codeOwnerResolver, rsrc.getBranch().project()));
+    return Response.ok(
+        toCodeOwnersInfo(
+            suggestedCodeOwners,
+            codeOwnerJsonFactory
+                .create(getFillOptions())
+                .format(suggestedCodeOwners.codeOwners())));
+  }
+
+  /**
+   * Gets the code owners for multiple files at once.
+   *
+   * <p>Returns the same code owners for each file as {@link #applyImpl(AbstractPathResource)} would
+   * return for the file, but the work that is needed for all files is only done once:
+   *
+   * <ul>
+   *   <li>the code owner configs that apply to the files are looked up with a single traversal of
+   *       the folder hierarchy (see {@link CodeOwnerConfigHierarchy#prepareForFiles}), each code
+   *       owner config is loaded and its imports are resolved only once
+   *   <li>the code owners of all files are resolved to accounts at once
+   *   <li>the global code owners are resolved only once
+   *   <li>the accounts of all suggested code owners are loaded at once
+   * </ul>
+   *
+   * @param fileResources the resources of the files for which the code owners should be returned,
+   *     keyed by the path that was requested by the caller; all resources must be for the same
+   *     branch revision and must be file paths (no folder paths)
+   * @return the code owners for the files, keyed by the path that was requested by the caller
+   */
+  protected Response<ImmutableMap<String, CodeOwnersInfo>> applyImpl(
+      ImmutableMap<String, R> fileResources)
+      throws AuthException, BadRequestException, PermissionBackendException {
+    ImmutableMap<String, SuggestedCodeOwners> suggestedCodeOwnersByPath =
+        suggestCodeOwners(fileResources);
+    ImmutableMap<String, ImmutableList<CodeOwnerInfo>> codeOwnerInfosByPath =
+        codeOwnerJsonFactory
+            .create(getFillOptions())
+            .format(
+                Maps.transformValues(suggestedCodeOwnersByPath, SuggestedCodeOwners::codeOwners));
+    return Response.ok(
+        ImmutableMap.copyOf(
+            Maps.transformEntries(
+                suggestedCodeOwnersByPath,
+                (path, suggestedCodeOwners) ->
+                    toCodeOwnersInfo(suggestedCodeOwners, codeOwnerInfosByPath.get(path)))));
+  }
+
+  /**
+   * Computes the code owners that should be suggested for multiple files at once.
+   *
+   * <p>See {@link #applyImpl(ImmutableMap)} for which work is only done once for all files.
+   *
+   * @param fileResources the resources of the files for which code owners should be suggested,
+   *     keyed by the path that was requested by the caller; all resources must be for the same
+   *     branch revision and must be file paths (no folder paths)
+   * @return the suggested code owners for the files, keyed by the path that was requested by the
+   *     caller
+   */
+  ImmutableMap<String, SuggestedCodeOwners> suggestCodeOwners(
+      ImmutableMap<String, R> fileResources)
+      throws AuthException, BadRequestException, PermissionBackendException {
+    return suggestCodeOwners(fileResources, /* resolvedPathCodeOwnersByPath= */ ImmutableMap.of());
+  }
+
+  /**
+   * Computes the code owners that should be suggested for multiple files at once, reusing code
+   * owners that have already been resolved for some of the files.
+   *
+   * <p>Same as {@link #suggestCodeOwners(ImmutableMap)}, but the code owner configs that apply to
+   * the files for which resolved code owners are given are not looked up and resolved again. Since
+   * the given code owners may have been resolved without checking their visibility (e.g. if they
+   * were cached when computing the code owner statuses of a change), code owners whose accounts are
+   * not visible to the calling user are filtered out.
+   *
+   * @param fileResources the resources of the files for which code owners should be suggested,
+   *     keyed by the path that was requested by the caller; all resources must be for the same
+   *     branch revision and must be file paths (no folder paths)
+   * @param resolvedPathCodeOwnersByPath resolved code owners of files, keyed by the path that was
+   *     requested by the caller, must have been resolved from the branch revision of the file
+   *     resources; files for which no resolved code owners are given are resolved
+   * @return the suggested code owners for the files, keyed by the path that was requested by the
+   *     caller
+   */
+  ImmutableMap<String, SuggestedCodeOwners> suggestCodeOwners(
+      ImmutableMap<String, R> fileResources,
+      ImmutableMap<String, ResolvedPathCodeOwners> resolvedPathCodeOwnersByPath)
+      throws AuthException, BadRequestException, PermissionBackendException {
+    if (fileResources.isEmpty()) {
+      return ImmutableMap.of();
+    }
+
+    R anyFileResource = fileResources.values().iterator().next();
+    validateRequest(anyFileResource);
+
+    CodeOwnerResolver codeOwnerResolver = createCodeOwnerResolver();
+    Map<String, ImmutableList<ResolvedCodeOwnerConfig>> resolvedCodeOwnerConfigsByPath =
+        new HashMap<>();
+    Map<String, R> unresolvedFileResources = new LinkedHashMap<>();
+    for (Map.Entry<String, R> e : fileResources.entrySet()) {
+      ResolvedPathCodeOwners resolvedPathCodeOwners = resolvedPathCodeOwnersByPath.get(e.getKey());
+      if (resolvedPathCodeOwners != null) {
+        resolvedCodeOwnerConfigsByPath.put(
+            e.getKey(), filterVisible(codeOwnerResolver, resolvedPathCodeOwners));
+      } else {
+        unresolvedFileResources.put(e.getKey(), e.getValue());
+      }
+    }
+    if (!unresolvedFileResources.isEmpty()) {
+      resolvedCodeOwnerConfigsByPath.putAll(
+          resolveCodeOwnersOfFiles(
+              codeOwnerResolver, ImmutableMap.copyOf(unresolvedFileResources)));
+    }
+    Supplier<CodeOwnerResolverResult> globalCodeOwners =
+        Suppliers.memoize(
+            () -> getGlobalCodeOwners(codeOwnerResolver, anyFileResource.getBranch().project()));
+
+    ImmutableMap.Builder<String, SuggestedCodeOwners> suggestedCodeOwnersByPath =
+        ImmutableMap.builder();
+    for (Map.Entry<String, R> e : fileResources.entrySet()) {
+      suggestedCodeOwnersByPath.put(
+          e.getKey(),
+          suggestCodeOwners(
+              e.getValue(), resolvedCodeOwnerConfigsByPath.get(e.getKey()), globalCodeOwners));
+    }
+    return suggestedCodeOwnersByPath.build();
+  }
+
+  private void validateRequest(R rsrc)
+      throws AuthException, BadRequestException, PermissionBackendException {
     parseHexOptions();
     validateLimit();
 
@@ -194,7 +354,21 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
     if (!seed.isPresent()) {
       seed = getDefaultSeed(rsrc);
     }
+  }
 
+  /**
+   * Computes the code owners that should be suggested for the path of the given resource.
+   *
+   * @param rsrc the resource that specifies the path for which code owners should be suggested
+   * @param resolvedCodeOwnerConfigs the resolved code owners of the code owner configs that apply
+   *     to the path
+   * @param globalCodeOwnersSupplier supplier for the resolved global code owners, only invoked if
+   *     the path is not owned by all users
+   */
+  private SuggestedCodeOwners suggestCodeOwners(
+      R rsrc,
+      ImmutableList<ResolvedCodeOwnerConfig> resolvedCodeOwnerConfigs,
+      Supplier<CodeOwnerResolverResult> globalCodeOwnersSupplier) {
     codeOwnerMetrics.countCodeOwnerSuggestions.increment(resolveAllUsers);
 
     // The distance that applies to code owners that are defined in the root code owner
@@ -213,60 +387,48 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
     ListMultimap<CodeOwner, CodeOwnerAnnotation> annotations = LinkedListMultimap.create();
     AtomicBoolean ownedByAllUsers = new AtomicBoolean(false);
     ImmutableList.Builder<String> debugLogsBuilder = ImmutableList.builder();
-    codeOwnerConfigHierarchy.visit(
-        rsrc.getBranch(),
-        rsrc.getRevision(),
-        rsrc.getPath(),
-        codeOwnerConfig -> {
-          CodeOwnerResolverResult pathCodeOwners =
-              codeOwnerResolver.get().resolvePathCodeOwners(codeOwnerConfig, rsrc.getPath());
-
-          debugLogsBuilder.addAll(pathCodeOwners.messages());
-          codeOwners.addAll(pathCodeOwners.codeOwners());
-          annotations.putAll(pathCodeOwners.annotations());
-
-          int distance =
-              codeOwnerConfig.key().branchNameKey().branch().equals(RefNames.REFS_CONFIG)
-                  ? defaultOwnersDistance
-                  : rootDistance - codeOwnerConfig.key().folderPath().getNameCount();
-          pathCodeOwners
-              .codeOwners()
-              .forEach(
-                  localCodeOwner -> {
-                    distanceScoring.putValueForCodeOwner(localCodeOwner, distance);
-                    isExplicitlyMentionedScoring.putValueForCodeOwner(
-                        localCodeOwner, IS_EXPLICITLY_MENTIONED_SCORING_VALUE);
-                  });
-
-          if (pathCodeOwners.ownedByAllUsers()) {
-            ownedByAllUsers.set(true);
-            ImmutableSet<CodeOwner> addedCodeOwners = fillUpWithRandomUsers(codeOwners, limit);
-            addedCodeOwners.forEach(
-                localCodeOwner -> {
-                  distanceScoring.putValueForCodeOwner(localCodeOwner, distance);
-                  isExplicitlyMentionedScoring.putValueForCodeOwner(
-                      localCodeOwner, NOT_EXPLICITLY_MENTIONED_SCORING_VALUE);
-                });
-
-            if (codeOwners.size() < limit) {
-              logger.atFine().log(
-                  "tried to fill up the suggestion list with random users,"
-                      + " but didn't find enough visible accounts"
-                      + " (wanted number of suggestions = %d, got = %d",
-                  limit, codeOwners.size());
-            }
-          }
-
-          // We always need to iterate over all relevant OWNERS files (even if the limit has already
-          // been reached).
-          // This is needed to collect distance scores for code owners that are mentioned in the
-          // more distant OWNERS files. Those become relevant if further scores are applied later
-          // (e.g. the score for current reviewers of the change).
-          return true;
-        });
+    for (ResolvedCodeOwnerConfig resolvedCodeOwnerConfig : resolvedCodeOwnerConfigs) {
+      CodeOwnerResolverResult pathCodeOwners = resolvedCodeOwnerConfig.codeOwners();
+
+      debugLogsBuilder.addAll(pathCodeOwners.messages());
+      codeOwners.addAll(pathCodeOwners.codeOwners());
+      annotations.putAll(pathCodeOwners.annotations());
+
+      int distance =
+          resolvedCodeOwnerConfig.codeOwnerKind() == CodeOwnerKind.DEFAULT_CODE_OWNER
+              ? defaultOwnersDistance
+              : rootDistance - resolvedCodeOwnerConfig.key().folderPath().getNameCount();
+      pathCodeOwners
+          .codeOwners()
+          .forEach(
+              localCodeOwner -> {
+                distanceScoring.putValueForCodeOwner(localCodeOwner, distance);
+                isExplicitlyMentionedScoring.putValueForCodeOwner(
+                    localCodeOwner, IS_EXPLICITLY_MENTIONED_SCORING_VALUE);
+              });
+
+      if (pathCodeOwners.ownedByAllUsers()) {
+        ownedByAllUsers.set(true);
+        ImmutableSet<CodeOwner> addedCodeOwners = fillUpWithRandomUsers(codeOwners, limit);
+        addedCodeOwners.forEach(
+            localCodeOwner -> {
+              distanceScoring.putValueForCodeOwner(localCodeOwner, distance);
+              isExplicitlyMentionedScoring.putValueForCodeOwner(
+                  localCodeOwner, NOT_EXPLICITLY_MENTIONED_SCORING_VALUE);
+            });
+
+        if (codeOwners.size() < limit) {
+          logger.atFine().log(
+              "tried to fill up the suggestion list with random users,"
+                  + " but didn't find enough visible accounts"
+                  + " (wanted number of suggestions = %d, got = %d",
+              limit, codeOwners.size());
+        }
+      }
+    }
 
     if (!ownedByAllUsers.get()) {
-      CodeOwnerResolverResult globalCodeOwners = getGlobalCodeOwners(rsrc.getBranch().project());
+      CodeOwnerResolverResult globalCodeOwners = globalCodeOwnersSupplier.get();
 
       debugLogsBuilder.add("resolve global code owners");
       debugLogsBuilder.addAll(globalCodeOwners.messages());
@@ -308,29 +470,200 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
     ImmutableMap<CodeOwner, Double> scoredCodeOwners =
         codeOwnerScorings.getScorings(filteredCodeOwners);
 
-    ImmutableList<CodeOwner> sortedAndLimitedCodeOwners = sortAndLimit(rsrc, scoredCodeOwners);
+    ImmutableList<CodeOwner> sortedAndLimitedCodeOwners = sortAndLimit(scoredCodeOwners);
 
-    if (highestScoreOnly) {
-      Optional<Double> highestScore =
-          scoredCodeOwners.values().stream().max(Comparator.naturalOrder());
-      if (highestScore.isPresent()) {
-        sortedAndLimitedCodeOwners =
-            sortedAndLimitedCodeOwners.stream()
-                .filter(codeOwner -> scoredCodeOwners.get(codeOwner).equals(highestScore.get()))
-                .collect(toImmutableList());
-      }
+    if (highestScoreOnly && !sortedAndLimitedCodeOwners.isEmpty()) {
+      // The first code owner has the highest score, since the code owners are sorted by score.
+      Double highestScore = scoredCodeOwners.get(sortedAndLimitedCodeOwners.get(0));
+      sortedAndLimitedCodeOwners =
+          sortedAndLimitedCodeOwners.stream()
+              .filter(codeOwner -> scoredCodeOwners.get(codeOwner).equals(highestScore))
+              .collect(toImmutableList());
     }
 
-    CodeOwnersInfo codeOwnersInfo = new CodeOwnersInfo();
-    codeOwnersInfo.codeOwners =
-        codeOwnerJsonFactory.create(getFillOptions()).format(sortedAndLimitedCodeOwners);
-    codeOwnersInfo.ownedByAllUsers = ownedByAllUsers.get() ? true : null;
-
     ImmutableList<String> debugLogs = debugLogsBuilder.build();
-    codeOwnersInfo.debugLogs = debug ? debugLogs : null;
     logger.atFine().log("debug logs: %s", debugLogs);
 
-    return Response.ok(codeOwnersInfo);
+    return SuggestedCodeOwners.create(
+        sortedAndLimitedCodeOwners,
+        Maps.toMap(sortedAndLimitedCodeOwners, scoredCodeOwners::get),
+        ownedByAllUsers.get(),
+        debugLogs);
+  }
+
+  private CodeOwnersInfo toCodeOwnersInfo(
+      SuggestedCodeOwners suggestedCodeOwners, ImmutableList<CodeOwnerInfo> codeOwnerInfos) {
+    CodeOwnersInfo codeOwnersInfo = new CodeOwnersInfo();
+    codeOwnersInfo.codeOwners = codeOwnerInfos;
+    codeOwnersInfo.ownedByAllUsers = suggestedCodeOwners.ownedByAllUsers() ? true : null;
+    codeOwnersInfo.debugLogs = debug ? suggestedCodeOwners.debugLogs() : null;
+    return codeOwnersInfo;
+  }
+
+  /**
+   * Resolves the code owners of all code owner configs that apply to the path of the given
+   * resource.
+   *
+   * <p>Always all relevant code owner configs are visited (even if the limit has already been
+   * reached). This is needed to collect distance scores for code owners that are mentioned in the
+   * more distant code owner configs. Those become relevant if further scores are applied later
+   * (e.g. the score for current reviewers of the change).
+   *
+   * <p>If no debug messages are collected, the code owner configs that apply to the path and the
+   * code owners that they define for the path are taken from the {@link PathCodeOwnersCache},
+   * so that they are not looked up again for each request. Only the resolution of the code owners
+   * to accounts is done for each request, since it depends on the calling user (code owners that
+   * are not visible to the calling user are filtered out).
+   */
+  private ImmutableList<ResolvedCodeOwnerConfig> resolvePathCodeOwners(
+      CodeOwnerResolver codeOwnerResolver, R rsrc) {
+    if (!collectDebugMessages()) {
+      return getPathCodeOwners(rsrc).stream()
+          .map(
+              pathCodeOwnersResult ->
+                  ResolvedCodeOwnerConfig.create(
+                      pathCodeOwnersResult.getCodeOwnerConfigKey(),
+                      getCodeOwnerKind(pathCodeOwnersResult.getCodeOwnerConfigKey()),
+                      codeOwnerResolver.resolvePathCodeOwners(pathCodeOwnersResult)))
+          .collect(toImmutableList());
+    }
+
+    ImmutableList.Builder<ResolvedCodeOwnerConfig> resolvedCodeOwnerConfigs =
+        ImmutableList.builder();
+    codeOwnerConfigHierarchy.visit(
+        rsrc.getBranch(),
+        rsrc.getRevision(),
+        rsrc.getPath(),
+        codeOwnerConfig -> {
+          resolvedCodeOwnerConfigs.add(
+              ResolvedCodeOwnerConfig.create(
+                  codeOwnerConfig.key(),
+                  getCodeOwnerKind(codeOwnerConfig.key()),
+                  codeOwnerResolver.resolvePathCodeOwners(codeOwnerConfig, rsrc.getPath())));
+          return true;
+        });
+    return resolvedCodeOwnerConfigs.build();
+  }
+
+  /**
+   * Gets the path code owners of all code owner configs that apply to the path of the given
+   * resource, from the {@link PathCodeOwnersCache} if they are cached.
+   *
+   * <p>Must only be used if no debug messages are collected, since the debug messages of the path
+   * code owners are not cached.
+   */
+  private ImmutableList<PathCodeOwnersResult> getPathCodeOwners(R rsrc) {
+    return pathCodeOwnersCache.get(
+        rsrc.getBranch(),
+        rsrc.getRevision(),
+        rsrc.getPath(),
+        () -> {
+          ImmutableList.Builder<PathCodeOwnersResult> pathCodeOwnersResults =
+              ImmutableList.builder();
+          codeOwnerConfigHierarchy
+              .collectDebugMessages(false)
+              .visit(
+                  rsrc.getBranch(),
+                  rsrc.getRevision(),
+                  rsrc.getPath(),
+                  (PathCodeOwnersVisitor)
+                      pathCodeOwners -> {
+                        pathCodeOwnersResults.add(pathCodeOwners.resolveCodeOwnerConfig().get());
+                        return true;
+                      },
+                  /* parentCodeOwnersIgnoredCallback= */ codeOwnerConfigKey -> {});
+          return pathCodeOwnersResults.build();
+        });
+  }
+
+  /**
+   * Resolves the code owners of all code owner configs that apply to the paths of the given file
+   * resources.
+   *
+   * <p>Same as {@link #resolvePathCodeOwners(CodeOwnerResolver, AbstractPathResource)} for each of
+   * the files, but the code owner configs for all files are looked up with a single traversal of
+   * the folder hierarchy and the code owners of all files are resolved to accounts at once.
+   */
+  private ImmutableMap<String, ImmutableList<ResolvedCodeOwnerConfig>> resolveCodeOwnersOfFiles(
+      CodeOwnerResolver codeOwnerResolver, ImmutableMap<String, R> fileResources) {
+    R anyFileResource = fileResources.values().iterator().next();
+    codeOwnerConfigHierarchy
+        .collectDebugMessages(collectDebugMessages())
+        .prepareForFiles(
+            anyFileResource.getBranch(),
+            anyFileResource.getRevision(),
+            fileResources.values().stream().map(R::getPath).collect(toImmutableSet()));
+
+    List<String> requestedPaths = new ArrayList<>();
+    List<PathCodeOwners> pathCodeOwnersList = new ArrayList<>();
+    for (Map.Entry<String, R> e : fileResources.entrySet()) {
+      codeOwnerConfigHierarchy.visitForFile(
+          e.getValue().getBranch(),
+          e.getValue().getRevision(),
+          e.getValue().getPath(),
+          (PathCodeOwnersVisitor)
+              pathCodeOwners -> {
+                requestedPaths.add(e.getKey());
+                pathCodeOwnersList.add(pathCodeOwners);
+                return true;
+              },
+          /* parentCodeOwnersIgnoredCallback= */ codeOwnerConfigKey -> {});
+    }
+    ImmutableList<CodeOwnerResolverResult> resolvedPathCodeOwnersList =
+        codeOwnerResolver.resolvePathCodeOwners(pathCodeOwnersList);
+
+    Map<String, ImmutableList.Builder<ResolvedCodeOwnerConfig>> resolvedCodeOwnerConfigsByPath =
+        new LinkedHashMap<>();
+    fileResources
+        .keySet()
+        .forEach(path -> resolvedCodeOwnerConfigsByPath.put(path, ImmutableList.builder()));
+    for (int i = 0; i < pathCodeOwnersList.size(); i++) {
+      CodeOwnerConfig.Key codeOwnerConfigKey =
+          pathCodeOwnersList.get(i).getCodeOwnerConfig().key();
+      resolvedCodeOwnerConfigsByPath
+          .get(requestedPaths.get(i))
+          .add(
+              ResolvedCodeOwnerConfig.create(
+                  codeOwnerConfigKey,
+                  getCodeOwnerKind(codeOwnerConfigKey),
+                  resolvedPathCodeOwnersList.get(i)));
+    }
+    return ImmutableMap.copyOf(
+        Maps.transformValues(resolvedCodeOwnerConfigsByPath, ImmutableList.Builder::build));
+  }
+
+  /**
+   * Filters out the code owners whose accounts are not visible to the calling user from the given
+   * resolved code owners.
+   */
+  private static ImmutableList<ResolvedCodeOwnerConfig> filterVisible(
+      CodeOwnerResolver codeOwnerResolver, ResolvedPathCodeOwners resolvedPathCodeOwners) {
+    return resolvedPathCodeOwners.codeOwnerConfigs().stream()
+        .map(
+            resolvedCodeOwnerConfig -> {
+              CodeOwnerResolverResult codeOwners = resolvedCodeOwnerConfig.codeOwners();
+              ImmutableSet<CodeOwner> visibleCodeOwners =
+                  codeOwnerResolver.filterVisible(codeOwners.codeOwners());
+              return ResolvedCodeOwnerConfig.create(
+                  resolvedCodeOwnerConfig.key(),
+                  resolvedCodeOwnerConfig.codeOwnerKind(),
+                  CodeOwnerResolverResult.create(
+                      visibleCodeOwners,
+                      ImmutableMultimap.copyOf(
+                          Multimaps.filterKeys(
+                              codeOwners.annotations(), visibleCodeOwners::contains)),
+                      codeOwners.ownedByAllUsers(),
+                      codeOwners.hasUnresolvedCodeOwners(),
+                      codeOwners.hasUnresolvedImports(),
+                      codeOwners.messages()));
+            })
+        .collect(toImmutableList());
+  }
+
+  private static CodeOwnerKind getCodeOwnerKind(CodeOwnerConfig.Key codeOwnerConfigKey) {
+    return codeOwnerConfigKey.branchNameKey().branch().equals(RefNames.REFS_CONFIG)
+        ? CodeOwnerKind.DEFAULT_CODE_OWNER
+        : CodeOwnerKind.REGULAR_CODE_OWNER;
   }
 
   private CodeOwnerScorings createScorings(
@@ -341,16 +674,31 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
     return CodeOwnerScorings.create(codeOwnerScorings.build());
   }
 
-  private CodeOwnerResolverResult getGlobalCodeOwners(Project.NameKey projectName) {
+  private CodeOwnerResolverResult getGlobalCodeOwners(
+      CodeOwnerResolver codeOwnerResolver, Project.NameKey projectName) {
     CodeOwnerResolverResult globalCodeOwners =
-        codeOwnerResolver
-            .get()
-            .resolve(
+        codeOwnerResolver.resolve(
                 codeOwnersPluginConfiguration.getProjectConfig(projectName).getGlobalCodeOwners());
     logger.atFine().log("including global code owners = %s", globalCodeOwners);
     return globalCodeOwners;
   }
 
+  /**
+   * Creates a {@link CodeOwnerResolver} that only collects debug messages if they are returned to
+   * the caller or if they are logged (e.g. when the request is traced).
+   */
+  private CodeOwnerResolver createCodeOwnerResolver() {
+    return codeOwnerResolver.get().collectDebugMessages(collectDebugMessages());
+  }
+
+  /**
+   * Whether debug messages should be collected, which is the case if they are returned to the
+   * caller or if they are logged (e.g. when the request is traced).
+   */
+  private boolean collectDebugMessages() {
+    return debug || logger.atFine().isEnabled();
+  }
+
   /**
    * Get further code owner scorings.
    *
@@ -480,27 +828,63 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
     return fillOptions;
   }
 
-  private ImmutableList<CodeOwner> sortAndLimit(
-      R rsrc, ImmutableMap<CodeOwner, Double> scoredCodeOwners) {
-    return sortCodeOwners(rsrc, seed, scoredCodeOwners).limit(limit).collect(toImmutableList());
+  private ImmutableList<CodeOwner> sortAndLimit(ImmutableMap<CodeOwner, Double> scoredCodeOwners) {
+    return sortAndLimit(seed, scoredCodeOwners, limit);
   }
 
   /**
-   * Sorts the code owners.
+   * Sorts the code owners and returns the first code owners, at most as many as specified by the
+   * limit.
    *
    * <p>Code owners with higher score are returned first.
    *
-   * <p>The order of code owners with the same score is random.
+   * <p>The order of code owners with the same score is random: the code owners are shuffled and
+   * code owners with the same score are returned in the shuffled order.
+   *
+   * <p>Instead of sorting all code owners, only the code owners with the best scores are selected
+   * by a heap that is bounded by the limit. This way the sorting work grows with the limit rather
+   * than with the number of code owners (e.g. if a path has thousands of code owners, or if it is
+   * owned by all users). The result is the same as if all code owners were sorted.
    *
-   * @param rsrc resource on which this REST endpoint is invoked
    * @param seed seed that should be used to randomize the order
    * @param scoredCodeOwners the code owners with their scores
-   * @return the sorted code owners
+   * @param limit the max number of code owners that should be returned
+   * @return the sorted and limited code owners
    */
-  private Stream<CodeOwner> sortCodeOwners(
-      R rsrc, Optional<Long> seed, ImmutableMap<CodeOwner, Double> scoredCodeOwners) {
-    return randomizeOrder(seed, scoredCodeOwners.keySet())
-        .sorted(Comparator.comparingDouble(scoredCodeOwners::get).reversed());
+  @VisibleForTesting
+  static ImmutableList<CodeOwner> sortAndLimit(
+      Optional<Long> seed, ImmutableMap<CodeOwner, Double> scoredCodeOwners, int limit) {
+    List<CodeOwner> randomlyOrderedCodeOwners = randomizeOrder(seed, scoredCodeOwners.keySet());
+    double[] scores =
+        randomlyOrderedCodeOwners.stream().mapToDouble(scoredCodeOwners::get).toArray();
+
+    // Compares the indexes of code owners in randomlyOrderedCodeOwners so that the better code
+    // owner comes first: code owners with higher score are better, for code owners with the same
+    // score the code owner that comes first in the random order is better.
+    Comparator<Integer> betterFirst =
+        (index1, index2) -> {
+          int scoreComparison = Double.compare(scores[index2], scores[index1]);
+          return scoreComparison != 0 ? scoreComparison : Integer.compare(index1, index2);
+        };
+
+    // Heap with the best code owners that were found so far, the worst of them is at the head.
+    PriorityQueue<Integer> bestCodeOwners =
+        new PriorityQueue<>(
+            Math.max(1, Math.min(limit, randomlyOrderedCodeOwners.size())),
+            betterFirst.reversed());
+    for (int index = 0; index < randomlyOrderedCodeOwners.size(); index++) {
+      if (bestCodeOwners.size() < limit) {
+        bestCodeOwners.add(index);
+      } else if (betterFirst.compare(index, bestCodeOwners.peek()) < 0) {
+        bestCodeOwners.poll();
+        bestCodeOwners.add(index);
+      }
+    }
+
+    return bestCodeOwners.stream()
+        .sorted(betterFirst)
+        .map(randomlyOrderedCodeOwners::get)
+        .collect(toImmutableList());
   }
 
   /**
@@ -510,11 +894,11 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
    * @param set the set for which the entries should be returned in a random order
    * @return the entries from the given set in a random order
    */
-  private static <T> Stream<T> randomizeOrder(Optional<Long> seed, Set<T> set) {
-    List<T> randomlyOrderedCodeOwners = new ArrayList<>(set);
+  private static <T> List<T> randomizeOrder(Optional<Long> seed, Set<T> set) {
+    List<T> randomlyOrderedEntries = new ArrayList<>(set);
     Collections.shuffle(
-        randomlyOrderedCodeOwners, seed.isPresent() ? new Random(seed.get()) : new Random());
-    return randomlyOrderedCodeOwners.stream();
+        randomlyOrderedEntries, seed.isPresent() ? new Random(seed.get()) : new Random());
+    return randomlyOrderedEntries;
   }
 
   /**
@@ -552,8 +936,8 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
    * Returns random visible users, at most as many as specified by the limit.
    *
    * <p>It's possible that this method returns less users than the limit although further visible
-   * users exist. This is because we may inspect only a random set of users, instead of all users,
-   * for performance reasons.
+   * users exist. This is because we only inspect a random sample of users (see {@link
+   * RandomAccountPool}), instead of all users, for performance reasons.
    *
    * @param limit the max number of users that should be returned
    * @return random visible users
@@ -579,17 +963,45 @@ public abstract class AbstractGetCodeOwnersForPath<R extends AbstractPathResourc
       }
 
       throw new IllegalStateException("unknown account visibility setting: " + accountVisibility);
-    } catch (IOException | PermissionBackendException e) {
+    } catch (PermissionBackendException e) {
       throw new CodeOwnersInternalServerErrorException("failed to get visible users", e);
     }
   }
 
   /**
-   * Returns random users, at most as many as specified by the limit.
+   * Returns random active users, at most as many as specified by the limit.
+   *
+   * <p>The users are sampled from the {@link RandomAccountPool}, hence this is O(limit) and doesn't
+   * depend on the number of accounts.
    *
    * <p>No visibility check is performed.
    */
-  private Stream<Account.Id> getRandomUsers(int limit) throws IOException {
-    return randomizeOrder(seed, accounts.allIds()).limit(limit);
+  private Stream<Account.Id> getRandomUsers(int limit) {
+    return randomAccountPool.sample(seed, limit).stream();
+  }
+
+  /** The code owners that are suggested for a path. */
+  @AutoValue
+  abstract static class SuggestedCodeOwners {
+    /** The suggested code owners, sorted by score and limited. */
+    abstract ImmutableList<CodeOwner> codeOwners();
+
+    /** The scores of the suggested code owners. */
+    abstract ImmutableMap<CodeOwner, Double> scores();
+
+    /** Whether the path is owned by all users. */
+    abstract boolean ownedByAllUsers();
+
+    /** The debug logs that were collected while computing the suggestion. */
+    abstract ImmutableList<String> debugLogs();
+
+    static SuggestedCodeOwners create(
+        ImmutableList<CodeOwner> codeOwners,
+        ImmutableMap<CodeOwner, Double> scores,
+        boolean ownedByAllUsers,
+        ImmutableList<String> debugLogs) {
+      return new AutoValue_AbstractGetCodeOwnersForPath_SuggestedCodeOwners(
+          codeOwners, scores, ownedByAllUsers, debugLogs);
+    }
   }
 }
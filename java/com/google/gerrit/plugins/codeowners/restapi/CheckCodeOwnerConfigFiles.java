@@ -16,7 +16,9 @@ package com.google.gerrit.plugins.codeowners.restapi;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -24,6 +26,9 @@ import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.flogger.FluentLogger;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.BranchNameKey;
 import com.google.gerrit.entities.Project;
@@ -37,8 +42,12 @@ import com.google.gerrit.extensions.restapi.UnprocessableEntityException;
 import com.google.gerrit.plugins.codeowners.api.CheckCodeOwnerConfigFilesInput;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerBackend;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerConfig;
+import com.google.gerrit.plugins.codeowners.backend.CodeOwnerConfigCheckExecutor;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerConfigScanner;
+import com.google.gerrit.plugins.codeowners.backend.CodeOwnerConfigTreeWalk;
 import com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginConfiguration;
+import com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginProjectConfigSnapshot;
+import com.google.gerrit.plugins.codeowners.metrics.CodeOwnerMetrics;
 import com.google.gerrit.plugins.codeowners.validation.CodeOwnerConfigValidator;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.git.GitRepositoryManager;
@@ -52,9 +61,15 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevWalk;
 
@@ -80,6 +95,8 @@ public class CheckCodeOwnerConfigFiles
   private final CodeOwnersPluginConfiguration codeOwnersPluginConfiguration;
   private final CodeOwnerConfigScanner.Factory codeOwnerConfigScannerFactory;
   private final CodeOwnerConfigValidator codeOwnerConfigValidator;
+  private final CodeOwnerConfigCheckExecutor codeOwnerConfigCheckExecutor;
+  private final CodeOwnerMetrics codeOwnerMetrics;
 
   @Inject
   public CheckCodeOwnerConfigFiles(
@@ -89,7 +106,9 @@ public class CheckCodeOwnerConfigFiles
       Provider<ListBranches> listBranches,
       CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
       CodeOwnerConfigScanner.Factory codeOwnerConfigScannerFactory,
-      CodeOwnerConfigValidator codeOwnerConfigValidator) {
+      CodeOwnerConfigValidator codeOwnerConfigValidator,
+      CodeOwnerConfigCheckExecutor codeOwnerConfigCheckExecutor,
+      CodeOwnerMetrics codeOwnerMetrics) {
     this.currentUser = currentUser;
     this.permissionBackend = permissionBackend;
     this.repoManager = repoManager;
@@ -97,6 +116,8 @@ public class CheckCodeOwnerConfigFiles
     this.codeOwnersPluginConfiguration = codeOwnersPluginConfiguration;
     this.codeOwnerConfigScannerFactory = codeOwnerConfigScannerFactory;
     this.codeOwnerConfigValidator = codeOwnerConfigValidator;
+    this.codeOwnerConfigCheckExecutor = codeOwnerConfigCheckExecutor;
+    this.codeOwnerMetrics = codeOwnerMetrics;
   }
 
   @Override
@@ -126,23 +147,26 @@ public class CheckCodeOwnerConfigFiles
 
     validateInput(projectResource.getNameKey(), branches, input);
 
-    try (Repository repo = repoManager.openRepository(projectResource.getNameKey());
-        RevWalk revWalk = new RevWalk(repo)) {
+    ImmutableList<BranchNameKey> branchesToCheck =
+        branches.stream()
+            .filter(branchNameKey -> shouldValidateBranch(input, branchNameKey))
+            .filter(
+                branchNameKey ->
+                    validateDisabledBranches(input)
+                        || !codeOwnersPluginConfiguration
+                            .getProjectConfig(branchNameKey.project())
+                            .isDisabled(branchNameKey.branch()))
+            .collect(toImmutableList());
+
+    try (Repository repo = repoManager.openRepository(projectResource.getNameKey())) {
+      Map<BranchNameKey, Map<String, List<ConsistencyProblemInfo>>> resultsByBranch =
+          checkBranches(repo, branchesToCheck, input.path, input.verbosity);
       ImmutableMap.Builder<String, Map<String, List<ConsistencyProblemInfo>>>
           resultsByBranchBuilder = ImmutableMap.builder();
-      branches.stream()
-          .filter(branchNameKey -> shouldValidateBranch(input, branchNameKey))
-          .filter(
-              branchNameKey ->
-                  validateDisabledBranches(input)
-                      || !codeOwnersPluginConfiguration
-                          .getProjectConfig(branchNameKey.project())
-                          .isDisabled(branchNameKey.branch()))
-          .forEach(
-              branchNameKey ->
-                  resultsByBranchBuilder.put(
-                      branchNameKey.branch(),
-                      checkBranch(revWalk, input.path, branchNameKey, input.verbosity)));
+      branchesToCheck.forEach(
+          branchNameKey ->
+              resultsByBranchBuilder.put(
+                  branchNameKey.branch(), resultsByBranch.get(branchNameKey)));
       return Response.ok(resultsByBranchBuilder.build());
     }
   }
@@ -155,9 +179,185 @@ public class CheckCodeOwnerConfigFiles
         .collect(toImmutableSet());
   }
 
-  private Map<String, List<ConsistencyProblemInfo>> checkBranch(
+  /**
+   * Checks the code owner config files in the given branches.
+   *
+   * <p>Branches that contain the same code owner config files (e.g. release branches that didn't
+   * diverge, or that only diverged in files that are not code owner config files) and that have the
+   * same code owner settings have the same problems, hence only one of them needs to be checked.
+   * The problems that were found for this branch are reused for the other branches, unless a
+   * problem message mentions the checked branch.
+   *
+   * @param repo the repository that contains the branches
+   * @param branches the branches that should be checked
+   * @param pathGlob optional glob to restrict which code owner config files should be checked
+   * @param verbosity the minimal status of problems that should be returned
+   * @return the found problems by branch
+   */
+  private Map<BranchNameKey, Map<String, List<ConsistencyProblemInfo>>> checkBranches(
+      Repository repo,
+      ImmutableList<BranchNameKey> branches,
+      @Nullable String pathGlob,
+      @Nullable ConsistencyProblemInfo.Status verbosity)
+      throws IOException {
+    ListMultimap<BranchCheckKey, BranchNameKey> branchesByCheckKey = LinkedListMultimap.create();
+    List<BranchNameKey> branchesToCheck = new ArrayList<>();
+    Map<ObjectId, HashCode> codeOwnerConfigFilesDigestsByTree = new HashMap<>();
+    try (RevWalk revWalk = new RevWalk(repo)) {
+      for (BranchNameKey branchNameKey : branches) {
+        Optional<BranchCheckKey> branchCheckKey =
+            getBranchCheckKey(
+                repo, revWalk, branchNameKey, pathGlob, codeOwnerConfigFilesDigestsByTree);
+        if (!branchCheckKey.isPresent()) {
+          branchesToCheck.add(branchNameKey);
+          continue;
+        }
+        if (!branchesByCheckKey.containsKey(branchCheckKey.get())) {
+          branchesToCheck.add(branchNameKey);
+        }
+        branchesByCheckKey.put(branchCheckKey.get(), branchNameKey);
+      }
+    }
+
+    Map<BranchNameKey, Map<String, List<ConsistencyProblemInfo>>> resultsByBranch =
+        new HashMap<>();
+    resultsByBranch.putAll(checkBranchesInParallel(repo, branchesToCheck, pathGlob, verbosity));
+
+    branchesToCheck = new ArrayList<>();
+    for (List<BranchNameKey> branchesWithSameCheckKey :
+        Multimaps.asMap(branchesByCheckKey).values()) {
+      BranchNameKey checkedBranch = branchesWithSameCheckKey.get(0);
+      Map<String, List<ConsistencyProblemInfo>> result = resultsByBranch.get(checkedBranch);
+      boolean canReuseResult = !mentionsBranch(result, checkedBranch);
+      for (BranchNameKey branchNameKey :
+          branchesWithSameCheckKey.subList(1, branchesWithSameCheckKey.size())) {
+        if (canReuseResult) {
+          logger.atFine().log(
+              "skip validation for branch %s, it has the same code owner config files as branch %s",
+              branchNameKey.branch(), checkedBranch.branch());
+          codeOwnerMetrics.countSkippedBranchChecks.increment();
+          resultsByBranch.put(branchNameKey, result);
+        } else {
+          branchesToCheck.add(branchNameKey);
+        }
+      }
+    }
+    resultsByBranch.putAll(checkBranchesInParallel(repo, branchesToCheck, pathGlob, verbosity));
+
+    return resultsByBranch;
+  }
+
+  /**
+   * Whether any of the given problems mentions the given branch, in which case the problems cannot
+   * be reused for other branches.
+   */
+  private static boolean mentionsBranch(
+      Map<String, List<ConsistencyProblemInfo>> problemsByPath, BranchNameKey branchNameKey) {
+    return problemsByPath.values().stream()
+        .flatMap(List::stream)
+        .anyMatch(
+            problem ->
+                problem.message.contains(branchNameKey.branch())
+                    || problem.message.contains(branchNameKey.shortName()));
+  }
+
+  /**
+   * Gets the key that identifies the code owner config files and the code owner settings that are
+   * relevant for checking the given branch.
+   *
+   * @param codeOwnerConfigFilesDigestsByTree the digests of the code owner config files that have
+   *     already been computed, by tree ID, so that the tree of branches that point to the same tree
+   *     is walked only once
+   * @return the check key, {@link Optional#empty()} if the branch doesn't exist
+   */
+  private Optional<BranchCheckKey> getBranchCheckKey(
+      Repository repo,
       RevWalk revWalk,
-      String pathGlob,
+      BranchNameKey branchNameKey,
+      @Nullable String pathGlob,
+      Map<ObjectId, HashCode> codeOwnerConfigFilesDigestsByTree)
+      throws IOException {
+    Ref ref = repo.exactRef(branchNameKey.branch());
+    if (ref == null) {
+      return Optional.empty();
+    }
+
+    CodeOwnersPluginProjectConfigSnapshot codeOwnersConfig =
+        codeOwnersPluginConfiguration.getProjectConfig(branchNameKey.project());
+    CodeOwnerBackend codeOwnerBackend = codeOwnersConfig.getBackend(branchNameKey.branch());
+    ObjectId treeId = revWalk.parseCommit(ref.getObjectId()).getTree().copy();
+    HashCode codeOwnerConfigFilesDigest = codeOwnerConfigFilesDigestsByTree.get(treeId);
+    if (codeOwnerConfigFilesDigest == null) {
+      codeOwnerConfigFilesDigest =
+          getCodeOwnerConfigFilesDigest(repo, revWalk, codeOwnerBackend, branchNameKey, pathGlob);
+      codeOwnerConfigFilesDigestsByTree.put(treeId, codeOwnerConfigFilesDigest);
+    }
+    return Optional.of(
+        BranchCheckKey.create(
+            codeOwnerConfigFilesDigest,
+            codeOwnerBackend,
+            codeOwnersConfig.rejectNonResolvableCodeOwners(branchNameKey.branch()),
+            codeOwnersConfig.rejectNonResolvableImports(branchNameKey.branch())));
+  }
+
+  /**
+   * Computes a digest over the paths and blob IDs of the code owner config files in the given
+   * branch that should be checked.
+   *
+   * <p>Branches with the same digest contain the same code owner config files, even if they differ
+   * in other files.
+   */
+  private static HashCode getCodeOwnerConfigFilesDigest(
+      Repository repo,
+      RevWalk revWalk,
+      CodeOwnerBackend codeOwnerBackend,
+      BranchNameKey branchNameKey,
+      @Nullable String pathGlob)
+      throws IOException {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    try (CodeOwnerConfigTreeWalk treeWalk =
+        new CodeOwnerConfigTreeWalk(codeOwnerBackend, branchNameKey, repo, revWalk, pathGlob)) {
+      while (treeWalk.next()) {
+        hasher.putString(treeWalk.getPathString(), UTF_8);
+        hasher.putBytes(treeWalk.getObjectId(0).name().getBytes(UTF_8));
+      }
+    }
+    return hasher.hash();
+  }
+
+  /**
+   * Checks the code owner config files in the given branches.
+   *
+   * <p>If parallel computation is enabled (see {@link CodeOwnerConfigCheckExecutor}), the branches
+   * are checked in parallel.
+   */
+  private Map<BranchNameKey, Map<String, List<ConsistencyProblemInfo>>> checkBranchesInParallel(
+      Repository repo,
+      List<BranchNameKey> branches,
+      @Nullable String pathGlob,
+      @Nullable ConsistencyProblemInfo.Status verbosity) {
+    Map<BranchNameKey, Map<String, List<ConsistencyProblemInfo>>> resultsByBranch =
+        new HashMap<>();
+    try (Stream<Map<String, List<ConsistencyProblemInfo>>> results =
+        codeOwnerConfigCheckExecutor.map(
+            branches, branchNameKey -> checkBranch(repo, pathGlob, branchNameKey, verbosity))) {
+      Iterator<Map<String, List<ConsistencyProblemInfo>>> resultIterator = results.iterator();
+      for (BranchNameKey branchNameKey : branches) {
+        resultsByBranch.put(branchNameKey, resultIterator.next());
+        logger.atFine().log("checked branch %s", branchNameKey.branch());
+      }
+    }
+    return resultsByBranch;
+  }
+
+  /**
+   * Checks the code owner config files in the given branch.
+   *
+   * <p>Uses an own {@link RevWalk} so that branches can be checked in parallel.
+   */
+  private Map<String, List<ConsistencyProblemInfo>> checkBranch(
+      Repository repo,
+      @Nullable String pathGlob,
       BranchNameKey branchNameKey,
       @Nullable ConsistencyProblemInfo.Status verbosity) {
     ListMultimap<String, ConsistencyProblemInfo> problemsByPath = LinkedListMultimap.create();
@@ -165,28 +365,30 @@ public class CheckCodeOwnerConfigFiles
         codeOwnersPluginConfiguration
             .getProjectConfig(branchNameKey.project())
             .getBackend(branchNameKey.branch());
-    codeOwnerConfigScannerFactory
-        .create()
-        // Do not check the default code owner config file in refs/meta/config, as this config is
-        // stored in another branch. If it should be checked users must check the code owner config
-        // files in refs/meta/config explicitly.
-        .includeDefaultCodeOwnerConfig(false)
-        .visit(
-            branchNameKey,
-            codeOwnerConfig -> {
-              problemsByPath.putAll(
-                  codeOwnerBackend.getFilePath(codeOwnerConfig.key()).toString(),
-                  checkCodeOwnerConfig(
-                      branchNameKey, revWalk, codeOwnerBackend, codeOwnerConfig, verbosity));
-              return true;
-            },
-            (codeOwnerConfigFilePath, configInvalidException) -> {
-              problemsByPath.put(
-                  codeOwnerConfigFilePath.toString(),
-                  new ConsistencyProblemInfo(
-                      ConsistencyProblemInfo.Status.FATAL, configInvalidException.getMessage()));
-            },
-            pathGlob);
+    try (RevWalk revWalk = new RevWalk(repo)) {
+      codeOwnerConfigScannerFactory
+          .create()
+          // Do not check the default code owner config file in refs/meta/config, as this config is
+          // stored in another branch. If it should be checked users must check the code owner
+          // config files in refs/meta/config explicitly.
+          .includeDefaultCodeOwnerConfig(false)
+          .visit(
+              branchNameKey,
+              codeOwnerConfig -> {
+                problemsByPath.putAll(
+                    codeOwnerBackend.getFilePath(codeOwnerConfig.key()).toString(),
+                    checkCodeOwnerConfig(
+                        branchNameKey, revWalk, codeOwnerBackend, codeOwnerConfig, verbosity));
+                return true;
+              },
+              (codeOwnerConfigFilePath, configInvalidException) -> {
+                problemsByPath.put(
+                    codeOwnerConfigFilePath.toString(),
+                    new ConsistencyProblemInfo(
+                        ConsistencyProblemInfo.Status.FATAL, configInvalidException.getMessage()));
+              },
+              pathGlob);
+    }
 
     return Multimaps.asMap(problemsByPath);
   }
@@ -288,4 +490,33 @@ public class CheckCodeOwnerConfigFiles
   private static boolean validateDisabledBranches(CheckCodeOwnerConfigFilesInput input) {
     return input.validateDisabledBranches != null && input.validateDisabledBranches;
   }
+
+  /**
+   * Key that identifies the code owner config files and the code owner settings that are relevant
+   * for checking a branch. Branches with the same key have the same check result, except for the
+   * problem messages which may mention the branch.
+   */
+  @AutoValue
+  abstract static class BranchCheckKey {
+    /** Digest over the paths and blob IDs of the code owner config files in the branch. */
+    abstract HashCode codeOwnerConfigFilesDigest();
+
+    abstract CodeOwnerBackend codeOwnerBackend();
+
+    abstract boolean rejectNonResolvableCodeOwners();
+
+    abstract boolean rejectNonResolvableImports();
+
+    static BranchCheckKey create(
+        HashCode codeOwnerConfigFilesDigest,
+        CodeOwnerBackend codeOwnerBackend,
+        boolean rejectNonResolvableCodeOwners,
+        boolean rejectNonResolvableImports) {
+      return new AutoValue_CheckCodeOwnerConfigFiles_BranchCheckKey(
+          codeOwnerConfigFilesDigest,
+          codeOwnerBackend,
+          rejectNonResolvableCodeOwners,
+          rejectNonResolvableImports);
+    }
+  }
 }
@@ -16,9 +16,11 @@ package com.google.gerrit.plugins.codeowners.restapi;
 
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static java.util.Objects.requireNonNull;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.plugins.codeowners.api.CodeOwnerInfo;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwner;
 import com.google.gerrit.server.account.AccountDirectory.FillOptions;
@@ -26,6 +28,7 @@ import com.google.gerrit.server.account.AccountLoader;
 import com.google.gerrit.server.permissions.PermissionBackendException;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
+import java.util.Map;
 import java.util.Set;
 
 /** Collection of routines to populate {@link CodeOwnerInfo}s. */
@@ -71,6 +74,33 @@ class CodeOwnerJson {
     return codeOwnerInfos;
   }
 
+  /**
+   * Formats the provided lists of {@link CodeOwner}s as lists of {@link CodeOwnerInfo}s.
+   *
+   * <p>Same as invoking {@link #format(ImmutableList)} for each list, but the accounts of the code
+   * owners in all lists are loaded at once.
+   *
+   * @param codeOwnersByKey the lists of code owners that should be formatted as {@link
+   *     CodeOwnerInfo}s
+   * @return the provided lists of code owners as lists of {@link CodeOwnerInfo}s, with the same
+   *     keys as the provided lists
+   */
+  <K> ImmutableMap<K, ImmutableList<CodeOwnerInfo>> format(
+      Map<K, ImmutableList<CodeOwner>> codeOwnersByKey) throws PermissionBackendException {
+    AccountLoader accountLoader = accountLoaderFactory.create(accountOptions);
+    ImmutableMap<K, ImmutableList<CodeOwnerInfo>> codeOwnerInfosByKey =
+        requireNonNull(codeOwnersByKey, "codeOwnersByKey").entrySet().stream()
+            .collect(
+                toImmutableMap(
+                    Map.Entry::getKey,
+                    e ->
+                        e.getValue().stream()
+                            .map(codeOwner -> format(accountLoader, codeOwner))
+                            .collect(toImmutableList())));
+    accountLoader.fill();
+    return codeOwnerInfosByKey;
+  }
+
   /**
    * Formats the provided {@link CodeOwner} as {@link CodeOwnerInfo}.
    *
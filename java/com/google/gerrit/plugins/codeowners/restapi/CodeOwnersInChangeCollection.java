@@ -16,6 +16,9 @@ package com.google.gerrit.plugins.codeowners.restapi;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.extensions.registration.DynamicMap;
 import com.google.gerrit.extensions.restapi.BadRequestException;
@@ -25,6 +28,7 @@ import com.google.gerrit.extensions.restapi.ResourceNotFoundException;
 import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.extensions.restapi.RestView;
 import com.google.gerrit.plugins.codeowners.backend.ChangedFiles;
+import com.google.gerrit.plugins.codeowners.common.ChangedFile;
 import com.google.gerrit.plugins.codeowners.restapi.CodeOwnersInChangeCollection.PathResource;
 import com.google.gerrit.server.change.RevisionResource;
 import com.google.gerrit.server.git.GitRepositoryManager;
@@ -34,6 +38,9 @@ import com.google.inject.Singleton;
 import com.google.inject.TypeLiteral;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
@@ -79,6 +86,51 @@ public class CodeOwnersInChangeCollection
     return pathResource;
   }
 
+  /**
+   * Parses the given paths as path resources.
+   *
+   * <p>Same as invoking {@link #parse(RevisionResource, IdString)} for each path, but the
+   * destination branch revision and the files in the revision are only computed once.
+   *
+   * @param revisionResource the revision in which the files with the given paths are touched
+   * <p>At most {@link GetCodeOwnersForPathsInChange#MAX_PATHS} paths can be parsed at once.
+   *
+   * @param paths the paths that should be parsed
+   * @return the path resources, keyed by the given paths, in the order of the given paths
+   * @throws BadRequestException thrown if any of the given paths is invalid or if too many paths
+   *     are given
+   * @throws ResourceNotFoundException thrown if any of the given paths is not touched in the
+   *     revision
+   */
+  ImmutableMap<String, PathResource> parse(RevisionResource revisionResource, List<String> paths)
+      throws RestApiException, IOException, PatchListNotAvailableException {
+    if (paths.size() > GetCodeOwnersForPathsInChange.MAX_PATHS) {
+      throw new BadRequestException(
+          String.format(
+              "too many paths (%d), at most %d paths are allowed",
+              paths.size(), GetCodeOwnersForPathsInChange.MAX_PATHS));
+    }
+
+    ObjectId branchRevision = getDestBranchRevision(revisionResource.getChange());
+    ImmutableSet<Path> requestablePaths =
+        getRequestablePaths(this.changedFiles.compute(revisionResource));
+
+    Map<String, PathResource> pathResources = new LinkedHashMap<>();
+    for (String path : paths) {
+      if (pathResources.containsKey(path)) {
+        continue;
+      }
+
+      PathResource pathResource =
+          PathResource.parse(revisionResource, branchRevision, IdString.fromDecoded(path));
+      if (!requestablePaths.contains(pathResource.getPath())) {
+        throw new ResourceNotFoundException(String.format("file %s not found in revision", path));
+      }
+      pathResources.put(path, pathResource);
+    }
+    return ImmutableMap.copyOf(pathResources);
+  }
+
   /**
    * Gets the current revision of the destination branch of the given change.
    *
@@ -101,11 +153,18 @@ public class CodeOwnersInChangeCollection
   private void checkThatFileExists(
       RevisionResource revisionResource, PathResource pathResource, IdString id)
       throws RestApiException, IOException, PatchListNotAvailableException {
-    if (!changedFiles.compute(revisionResource).stream()
+    if (!containsFile(changedFiles.compute(revisionResource), pathResource.getPath())) {
+      // Throw the exception with the path we got as input.
+      throw new ResourceNotFoundException(id);
+    }
+  }
+
+  private static boolean containsFile(ImmutableList<ChangedFile> changedFiles, Path path) {
+    return changedFiles.stream()
         .anyMatch(
             changedFile ->
                 // Check whether the path matches any file in the change.
-                changedFile.hasNewPath(pathResource.getPath())
+                changedFile.hasNewPath(path)
                     // For renamed and deleted files we also accept requests for the old path.
                     // Listing code owners for the old path of renamed/deleted files should be
                     // possible because these files require a code owner approval on the old path
@@ -114,10 +173,26 @@ public class CodeOwnersInChangeCollection
                     // approval for the old path is required. This is why users do not need to get
                     // code owners for the old path in case of copy.
                     || ((changedFile.isRename() || changedFile.isDeletion())
-                        && changedFile.hasOldPath(pathResource.getPath())))) {
-      // Throw the exception with the path we got as input.
-      throw new ResourceNotFoundException(id);
+                        && changedFile.hasOldPath(path)));
+  }
+
+  /**
+   * Gets the paths of the given changed files for which code owners can be requested, as a set so
+   * that many requested paths can be looked up without iterating over all changed files for each
+   * path.
+   *
+   * <p>Same as {@link #containsFile(ImmutableList, Path)}: these are the new paths of all files and
+   * the old paths of renamed and deleted files.
+   */
+  private static ImmutableSet<Path> getRequestablePaths(ImmutableList<ChangedFile> changedFiles) {
+    ImmutableSet.Builder<Path> requestablePaths = ImmutableSet.builder();
+    for (ChangedFile changedFile : changedFiles) {
+      changedFile.newPath().ifPresent(requestablePaths::add);
+      if (changedFile.isRename() || changedFile.isDeletion()) {
+        changedFile.oldPath().ifPresent(requestablePaths::add);
+      }
     }
+    return requestablePaths.build();
   }
 
   @Override
@@ -25,10 +25,11 @@ import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.plugins.codeowners.api.CodeOwnersInfo;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerConfigHierarchy;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerResolver;
+import com.google.gerrit.plugins.codeowners.backend.PathCodeOwnersCache;
+import com.google.gerrit.plugins.codeowners.backend.RandomAccountPool;
 import com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginConfiguration;
 import com.google.gerrit.plugins.codeowners.metrics.CodeOwnerMetrics;
 import com.google.gerrit.server.account.AccountControl;
-import com.google.gerrit.server.account.Accounts;
 import com.google.gerrit.server.change.IncludedInResolver;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.permissions.PermissionBackend;
@@ -72,7 +73,7 @@ public class GetCodeOwnersForPathInBranch
   @Inject
   GetCodeOwnersForPathInBranch(
       AccountVisibility accountVisibility,
-      Accounts accounts,
+      RandomAccountPool randomAccountPool,
       AccountControl.Factory accountControlFactory,
       PermissionBackend permissionBackend,
       CheckCodeOwnerCapability checkCodeOwnerCapability,
@@ -80,11 +81,12 @@ public class GetCodeOwnersForPathInBranch
       CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
       CodeOwnerConfigHierarchy codeOwnerConfigHierarchy,
       Provider<CodeOwnerResolver> codeOwnerResolver,
+      PathCodeOwnersCache pathCodeOwnersCache,
       CodeOwnerJson.Factory codeOwnerJsonFactory,
       GitRepositoryManager repoManager) {
     super(
         accountVisibility,
-        accounts,
+        randomAccountPool,
         accountControlFactory,
         permissionBackend,
         checkCodeOwnerCapability,
@@ -92,6 +94,7 @@ public class GetCodeOwnersForPathInBranch
         codeOwnersPluginConfiguration,
         codeOwnerConfigHierarchy,
         codeOwnerResolver,
+        pathCodeOwnersCache,
         codeOwnerJsonFactory);
     this.repoManager = repoManager;
   }
@@ -33,10 +33,11 @@ import com.google.gerrit.plugins.codeowners.backend.CodeOwnerConfigHierarchy;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerResolver;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerScore;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerScoring;
+import com.google.gerrit.plugins.codeowners.backend.PathCodeOwnersCache;
+import com.google.gerrit.plugins.codeowners.backend.RandomAccountPool;
 import com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginConfiguration;
 import com.google.gerrit.plugins.codeowners.metrics.CodeOwnerMetrics;
 import com.google.gerrit.server.account.AccountControl;
-import com.google.gerrit.server.account.Accounts;
 import com.google.gerrit.server.account.ServiceUserClassifier;
 import com.google.gerrit.server.notedb.ReviewerStateInternal;
 import com.google.gerrit.server.permissions.PermissionBackend;
@@ -63,7 +64,7 @@ public class GetCodeOwnersForPathInChange
   @Inject
   GetCodeOwnersForPathInChange(
       AccountVisibility accountVisibility,
-      Accounts accounts,
+      RandomAccountPool randomAccountPool,
       AccountControl.Factory accountControlFactory,
       PermissionBackend permissionBackend,
       CheckCodeOwnerCapability checkCodeOwnerCapability,
@@ -71,11 +72,12 @@ public class GetCodeOwnersForPathInChange
       CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
       CodeOwnerConfigHierarchy codeOwnerConfigHierarchy,
       Provider<CodeOwnerResolver> codeOwnerResolver,
+      PathCodeOwnersCache pathCodeOwnersCache,
       ServiceUserClassifier serviceUserClassifier,
       CodeOwnerJson.Factory codeOwnerJsonFactory) {
     super(
         accountVisibility,
-        accounts,
+        randomAccountPool,
         accountControlFactory,
         permissionBackend,
         checkCodeOwnerCapability,
@@ -83,6 +85,7 @@ public class GetCodeOwnersForPathInChange
         codeOwnersPluginConfiguration,
         codeOwnerConfigHierarchy,
         codeOwnerResolver,
+        pathCodeOwnersCache,
         codeOwnerJsonFactory);
     this.serviceUserClassifier = serviceUserClassifier;
   }
@@ -0,0 +1,107 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.restapi;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.extensions.common.AccountVisibility;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.extensions.restapi.RestCollectionModifyView;
+import com.google.gerrit.plugins.codeowners.api.CodeOwnersInfo;
+import com.google.gerrit.plugins.codeowners.api.GetCodeOwnersForPathsInChangeInput;
+import com.google.gerrit.plugins.codeowners.backend.CodeOwnerConfigHierarchy;
+import com.google.gerrit.plugins.codeowners.backend.CodeOwnerResolver;
+import com.google.gerrit.plugins.codeowners.backend.PathCodeOwnersCache;
+import com.google.gerrit.plugins.codeowners.backend.RandomAccountPool;
+import com.google.gerrit.plugins.codeowners.backend.config.CodeOwnersPluginConfiguration;
+import com.google.gerrit.plugins.codeowners.metrics.CodeOwnerMetrics;
+import com.google.gerrit.server.account.AccountControl;
+import com.google.gerrit.server.account.ServiceUserClassifier;
+import com.google.gerrit.server.change.RevisionResource;
+import com.google.gerrit.server.patch.PatchListNotAvailableException;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import java.io.IOException;
+
+/**
+ * REST endpoint that gets the code owners for multiple files in a revision of a change.
+ *
+ * <p>This REST endpoint handles {@code POST
+ * /changes/<change-id>/revisions/<revision-id>/code_owners} requests.
+ *
+ * <p>Returns the same code owners for each file as the {@link GetCodeOwnersForPathInChange} REST
+ * endpoint, but the code owner configs, the code owners and the accounts are loaded only once for
+ * all files (see {@link AbstractGetCodeOwnersForPath#applyImpl(ImmutableMap)}).
+ *
+ * <p>The files are specified in the request body, since there may be too many of them to specify
+ * them as request parameters. The number of files per request is limited (see {@link #MAX_PATHS}),
+ * so that a single request cannot keep a server thread busy for too long.
+ */
+public class GetCodeOwnersForPathsInChange extends GetCodeOwnersForPathInChange
+    implements RestCollectionModifyView<
+        RevisionResource,
+        CodeOwnersInChangeCollection.PathResource,
+        GetCodeOwnersForPathsInChangeInput> {
+  /** The maximum number of paths for which code owners can be requested at once. */
+  @VisibleForTesting public static final int MAX_PATHS = 1000;
+
+  private final CodeOwnersInChangeCollection codeOwnersInChangeCollection;
+
+  @Inject
+  GetCodeOwnersForPathsInChange(
+      AccountVisibility accountVisibility,
+      RandomAccountPool randomAccountPool,
+      AccountControl.Factory accountControlFactory,
+      PermissionBackend permissionBackend,
+      CheckCodeOwnerCapability checkCodeOwnerCapability,
+      CodeOwnerMetrics codeOwnerMetrics,
+      CodeOwnersPluginConfiguration codeOwnersPluginConfiguration,
+      CodeOwnerConfigHierarchy codeOwnerConfigHierarchy,
+      Provider<CodeOwnerResolver> codeOwnerResolver,
+      PathCodeOwnersCache pathCodeOwnersCache,
+      ServiceUserClassifier serviceUserClassifier,
+      CodeOwnerJson.Factory codeOwnerJsonFactory,
+      CodeOwnersInChangeCollection codeOwnersInChangeCollection) {
+    super(
+        accountVisibility,
+        randomAccountPool,
+        accountControlFactory,
+        permissionBackend,
+        checkCodeOwnerCapability,
+        codeOwnerMetrics,
+        codeOwnersPluginConfiguration,
+        codeOwnerConfigHierarchy,
+        codeOwnerResolver,
+        pathCodeOwnersCache,
+        serviceUserClassifier,
+        codeOwnerJsonFactory);
+    this.codeOwnersInChangeCollection = codeOwnersInChangeCollection;
+  }
+
+  @Override
+  public Response<ImmutableMap<String, CodeOwnersInfo>> apply(
+      RevisionResource revisionResource, GetCodeOwnersForPathsInChangeInput input)
+      throws RestApiException, IOException, PatchListNotAvailableException,
+          PermissionBackendException {
+    if (input == null || input.paths == null || input.paths.isEmpty()) {
+      throw new BadRequestException("paths are required");
+    }
+    return super.applyImpl(codeOwnersInChangeCollection.parse(revisionResource, input.paths));
+  }
+}
@@ -48,8 +48,11 @@ public class RestApiModule extends com.google.gerrit.extensions.restapi.RestApiM
     DynamicMap.mapOf(binder(), CodeOwnersInChangeCollection.PathResource.PATH_KIND);
     child(REVISION_KIND, "code_owners").to(CodeOwnersInChangeCollection.class);
     get(CodeOwnersInChangeCollection.PathResource.PATH_KIND).to(GetCodeOwnersForPathInChange.class);
+    postOnCollection(CodeOwnersInChangeCollection.PathResource.PATH_KIND)
+        .to(GetCodeOwnersForPathsInChange.class);
 
     get(CHANGE_KIND, "code_owners.status").to(GetCodeOwnerStatus.class);
+    get(CHANGE_KIND, "code_owners.suggested_reviewers").to(SuggestCodeOwnerReviewers.class);
 
     get(REVISION_KIND, "owned_paths").to(GetOwnedPaths.class);
     post(REVISION_KIND, "code_owners.check_config").to(CheckCodeOwnerConfigFilesInRevision.class);
@@ -0,0 +1,268 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.restapi;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.IdString;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.extensions.restapi.RestReadView;
+import com.google.gerrit.plugins.codeowners.api.CodeOwnerReviewersInfo;
+import com.google.gerrit.plugins.codeowners.backend.CodeOwner;
+import com.google.gerrit.plugins.codeowners.backend.CodeOwnerApprovalCheck;
+import com.google.gerrit.plugins.codeowners.backend.FileCodeOwnerStatus;
+import com.google.gerrit.plugins.codeowners.backend.PathCodeOwnerStatus;
+import com.google.gerrit.plugins.codeowners.backend.ResolvedPathCodeOwners;
+import com.google.gerrit.plugins.codeowners.common.CodeOwnerStatus;
+import com.google.gerrit.server.account.AccountLoader;
+import com.google.gerrit.server.change.ChangeResource;
+import com.google.gerrit.server.change.RevisionResource;
+import com.google.gerrit.server.patch.DiffNotAvailableException;
+import com.google.gerrit.server.patch.PatchListNotAvailableException;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import com.google.gerrit.server.restapi.change.Revisions;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.kohsuke.args4j.Option;
+
+/**
+ * REST endpoint that suggests a small set of code owners as reviewers for a change, so that all
+ * files in the change that still require a code owner approval are covered.
+ *
+ * <p>This REST endpoint handles {@code GET /changes/<change-id>/code_owners.suggested_reviewers}
+ * requests.
+ *
+ * <p>The files that still require a code owner approval are the files in the current revision of
+ * the change which are not {@link CodeOwnerStatus#APPROVED} (see {@link
+ * CodeOwnerApprovalCheck#getFileStatusesAsSet}). For each of these files the code owners are
+ * suggested the same way as by the {@link GetCodeOwnersForPathsInChange} REST endpoint, including
+ * their scores. The code owners that were resolved when computing the code owner statuses are
+ * reused for this. The number of files and the number of code owners per file that are considered
+ * are limited (see {@link #MAX_PATHS} and {@link #MAX_CANDIDATES_PER_PATH}), files that are not
+ * considered are returned as uncovered paths.
+ *
+ * <p>The reviewers are selected by a greedy weighted set cover: In each step the code owner that
+ * covers the most not yet covered files is selected, where each covered file counts as {@code 1}
+ * plus the score of the code owner for this file. This means code owners that own many of the
+ * files are preferred, and among code owners that own the same number of files the ones with the
+ * better scores (e.g. code owners that are closer to the files or that are already reviewers) are
+ * preferred. The selection stops when all files are covered or when the limit is reached.
+ */
+public class SuggestCodeOwnerReviewers implements RestReadView<ChangeResource> {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  @VisibleForTesting public static final int DEFAULT_LIMIT = 5;
+
+  /**
+   * The maximum number of files that are considered. If more files require a code owner approval,
+   * the remaining files are returned as uncovered paths.
+   */
+  @VisibleForTesting static final int MAX_PATHS = GetCodeOwnersForPathsInChange.MAX_PATHS;
+
+  /** The maximum number of code owners that are considered as reviewers for each file. */
+  @VisibleForTesting static final int MAX_CANDIDATES_PER_PATH = 50;
+
+  private final CodeOwnerApprovalCheck codeOwnerApprovalCheck;
+  private final Revisions revisions;
+  private final CodeOwnersInChangeCollection codeOwnersInChangeCollection;
+  private final Provider<GetCodeOwnersForPathInChange> getCodeOwnersForPathInChangeProvider;
+  private final CodeOwnerJson.Factory codeOwnerJsonFactory;
+
+  private int limit = DEFAULT_LIMIT;
+
+  @Option(
+      name = "--limit",
+      aliases = {"-n"},
+      metaVar = "CNT",
+      usage = "maximum number of reviewers to suggest (default = " + DEFAULT_LIMIT + ")")
+  public void setLimit(int limit) {
+    this.limit = limit;
+  }
+
+  @Inject
+  SuggestCodeOwnerReviewers(
+      CodeOwnerApprovalCheck codeOwnerApprovalCheck,
+      Revisions revisions,
+      CodeOwnersInChangeCollection codeOwnersInChangeCollection,
+      Provider<GetCodeOwnersForPathInChange> getCodeOwnersForPathInChangeProvider,
+      CodeOwnerJson.Factory codeOwnerJsonFactory) {
+    this.codeOwnerApprovalCheck = codeOwnerApprovalCheck;
+    this.revisions = revisions;
+    this.codeOwnersInChangeCollection = codeOwnersInChangeCollection;
+    this.getCodeOwnersForPathInChangeProvider = getCodeOwnersForPathInChangeProvider;
+    this.codeOwnerJsonFactory = codeOwnerJsonFactory;
+  }
+
+  @Override
+  public Response<CodeOwnerReviewersInfo> apply(ChangeResource changeResource)
+      throws RestApiException, IOException, PermissionBackendException,
+          PatchListNotAvailableException, DiffNotAvailableException {
+    if (limit <= 0) {
+      throw new BadRequestException("limit must be positive");
+    }
+
+    ImmutableList<String> unapprovedPaths =
+        codeOwnerApprovalCheck
+            .getFileStatusesAsSet(changeResource.getNotes(), /* start= */ 0, /* limit= */ 0)
+            .stream()
+            .flatMap(SuggestCodeOwnerReviewers::getUnapprovedPaths)
+            .map(Path::toString)
+            .distinct()
+            .collect(toImmutableList());
+
+    // Paths that exceed the limit are not considered and are returned as uncovered paths.
+    ImmutableList<String> consideredPaths =
+        unapprovedPaths.subList(0, Math.min(unapprovedPaths.size(), MAX_PATHS));
+    ImmutableMap<String, ImmutableMap<CodeOwner, Double>> scoredCandidatesByPath =
+        getScoredCandidatesByPath(changeResource, consideredPaths);
+    ImmutableList<CodeOwner> reviewers = selectReviewers(scoredCandidatesByPath, limit);
+
+    CodeOwnerReviewersInfo codeOwnerReviewersInfo = new CodeOwnerReviewersInfo();
+    codeOwnerReviewersInfo.reviewers =
+        codeOwnerJsonFactory.create(AccountLoader.DETAILED_OPTIONS).format(reviewers);
+    ImmutableList<String> uncoveredPaths =
+        unapprovedPaths.stream()
+            .filter(
+                path ->
+                    !scoredCandidatesByPath.containsKey(path)
+                        || reviewers.stream()
+                            .noneMatch(
+                                reviewer -> scoredCandidatesByPath.get(path).containsKey(reviewer)))
+            .collect(toImmutableList());
+    codeOwnerReviewersInfo.uncoveredPaths = !uncoveredPaths.isEmpty() ? uncoveredPaths : null;
+    return Response.ok(codeOwnerReviewersInfo);
+  }
+
+  /**
+   * Gets the code owners that can be suggested for the given paths, with their scores.
+   *
+   * <p>The code owners that have been resolved when computing the code owner statuses of the change
+   * are reused (see {@link CodeOwnerApprovalCheck#getCachedResolvedPathCodeOwners}). Only the code
+   * owners of paths for which no resolved code owners are cached are resolved, for all these paths
+   * at once (see {@link AbstractGetCodeOwnersForPath#suggestCodeOwners(ImmutableMap,
+   * ImmutableMap)}).
+   */
+  private ImmutableMap<String, ImmutableMap<CodeOwner, Double>> getScoredCandidatesByPath(
+      ChangeResource changeResource, ImmutableList<String> paths)
+      throws RestApiException, IOException, PermissionBackendException,
+          PatchListNotAvailableException {
+    if (paths.isEmpty()) {
+      return ImmutableMap.of();
+    }
+
+    ImmutableSet<String> requestedPaths = ImmutableSet.copyOf(paths);
+    ImmutableMap<Path, ResolvedPathCodeOwners> cachedResolvedPathCodeOwners =
+        codeOwnerApprovalCheck.getCachedResolvedPathCodeOwners(changeResource.getNotes());
+    ImmutableMap<String, ResolvedPathCodeOwners> resolvedPathCodeOwnersByPath =
+        cachedResolvedPathCodeOwners.entrySet().stream()
+            .filter(e -> requestedPaths.contains(e.getKey().toString()))
+            .collect(toImmutableMap(e -> e.getKey().toString(), Map.Entry::getValue));
+    logger.atFine().log(
+        "resolved code owners of %d out of %d paths found in cache",
+        resolvedPathCodeOwnersByPath.size(), paths.size());
+
+    RevisionResource currentRevision =
+        revisions.parse(changeResource, IdString.fromDecoded("current"));
+    GetCodeOwnersForPathInChange getCodeOwnersForPathInChange =
+        getCodeOwnersForPathInChangeProvider.get();
+    getCodeOwnersForPathInChange.setLimit(MAX_CANDIDATES_PER_PATH);
+    return ImmutableMap.copyOf(
+        Maps.transformValues(
+            getCodeOwnersForPathInChange.suggestCodeOwners(
+                codeOwnersInChangeCollection.parse(currentRevision, paths),
+                resolvedPathCodeOwnersByPath),
+            AbstractGetCodeOwnersForPath.SuggestedCodeOwners::scores));
+  }
+
+  /** Returns the paths of the given file status that are not approved yet. */
+  private static Stream<Path> getUnapprovedPaths(FileCodeOwnerStatus fileStatus) {
+    return Stream.of(fileStatus.newPathStatus(), fileStatus.oldPathStatus())
+        .filter(Optional::isPresent)
+        .map(Optional::get)
+        .filter(pathStatus -> pathStatus.status() != CodeOwnerStatus.APPROVED)
+        .map(PathCodeOwnerStatus::path);
+  }
+
+  /**
+   * Selects the code owners that should be suggested as reviewers by a greedy weighted set cover.
+   *
+   * <p>In each step the code owner with the highest gain is selected, where the gain of a code
+   * owner is the sum of {@code 1 + score} over the paths that are owned by the code owner and that
+   * are not covered by the code owners that were selected so far. If several code owners have the
+   * same gain, the code owner that is suggested first (for the first path) is selected.
+   *
+   * @param scoredCandidatesByPath the code owners that can be suggested for each path, with their
+   *     scores for the path
+   * @param limit the max number of code owners that should be selected
+   * @return the selected code owners, in the order in which they were selected
+   */
+  @VisibleForTesting
+  static ImmutableList<CodeOwner> selectReviewers(
+      ImmutableMap<String, ImmutableMap<CodeOwner, Double>> scoredCandidatesByPath, int limit) {
+    // The paths of each code owner with the score of the code owner for the path.
+    Map<CodeOwner, Map<String, Double>> scoredPathsByCandidate = new LinkedHashMap<>();
+    scoredCandidatesByPath.forEach(
+        (path, scoredCandidates) ->
+            scoredCandidates.forEach(
+                (candidate, score) ->
+                    scoredPathsByCandidate
+                        .computeIfAbsent(candidate, k -> new LinkedHashMap<>())
+                        .put(path, score)));
+
+    Set<String> uncoveredPaths = new HashSet<>(scoredCandidatesByPath.keySet());
+    ImmutableList.Builder<CodeOwner> reviewers = ImmutableList.builder();
+    for (int i = 0; i < limit && !uncoveredPaths.isEmpty(); i++) {
+      CodeOwner bestCandidate = null;
+      double bestGain = 0;
+      for (Map.Entry<CodeOwner, Map<String, Double>> e : scoredPathsByCandidate.entrySet()) {
+        double gain =
+            e.getValue().entrySet().stream()
+                .filter(scoredPath -> uncoveredPaths.contains(scoredPath.getKey()))
+                .mapToDouble(scoredPath -> 1 + scoredPath.getValue())
+                .sum();
+        if (gain > bestGain) {
+          bestCandidate = e.getKey();
+          bestGain = gain;
+        }
+      }
+
+      if (bestCandidate == null) {
+        // None of the remaining code owners owns any of the uncovered paths.
+        break;
+      }
+
+      reviewers.add(bestCandidate);
+      uncoveredPaths.removeAll(scoredPathsByCandidate.remove(bestCandidate).keySet());
+    }
+    return reviewers.build();
+  }
+}
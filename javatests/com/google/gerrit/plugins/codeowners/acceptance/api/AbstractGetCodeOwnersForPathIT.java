@@ -26,6 +26,7 @@ import static java.util.stream.Collectors.toList;
 
 import com.google.common.collect.ImmutableList;
 import com.google.gerrit.acceptance.TestAccount;
+import com.google.gerrit.acceptance.TestMetricMaker;
 import com.google.gerrit.acceptance.config.GerritConfig;
 import com.google.gerrit.acceptance.testsuite.account.AccountOperations;
 import com.google.gerrit.acceptance.testsuite.group.GroupOperations;
@@ -64,6 +65,11 @@ import org.junit.Test;
  * com.google.gerrit.plugins.codeowners.restapi.AbstractGetCodeOwnersForPath}.
  */
 public abstract class AbstractGetCodeOwnersForPathIT extends AbstractCodeOwnersIT {
+  private static final String PATH_CODE_OWNERS_CACHE_HITS =
+      "plugins/code-owners/count_path_code_owners_cache_hits";
+  private static final String PATH_CODE_OWNERS_CACHE_MISSES =
+      "plugins/code-owners/count_path_code_owners_cache_misses";
+
   /**
    * List of all file paths that are used by the tests. Subclasses can use this list to create these
    * files in the test setup in case they test functionality that requires the files to exist.
@@ -76,6 +82,7 @@ public abstract class AbstractGetCodeOwnersForPathIT extends AbstractCodeOwnersI
   @Inject private AccountOperations accountOperations;
   @Inject private GroupOperations groupOperations;
   @Inject private ProjectOperations projectOperations;
+  @Inject private TestMetricMaker testMetricMaker;
 
   protected TestPathExpressions testPathExpressions;
 
@@ -451,6 +458,96 @@ public abstract class AbstractGetCodeOwnersForPathIT extends AbstractCodeOwnersI
         .containsExactly(user2.id(), user3.id());
   }
 
+  @Test
+  @GerritConfig(name = "accounts.visibility", value = "SAME_GROUP")
+  public void cachedPathCodeOwnersAreReusedForOtherUsers() throws Exception {
+    // Create 2 accounts that share a group.
+    TestAccount user2 = accountCreator.user2();
+    TestAccount user3 = accountCreator.create("user3", "user3@example.com", "User3", null);
+    groupOperations.newGroup().addMember(user2.id()).addMember(user3.id()).create();
+
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/foo/")
+        .addCodeOwnerEmail(admin.email())
+        .addCodeOwnerEmail(user3.email())
+        .create();
+
+    // Make the request as admin who can see all accounts.
+    testMetricMaker.reset();
+    assertThat(queryCodeOwners("/foo/bar/baz.md"))
+        .hasCodeOwnersThat()
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(admin.id(), user3.id());
+    assertThat(testMetricMaker.getCount(PATH_CODE_OWNERS_CACHE_HITS)).isEqualTo(0);
+    assertThat(testMetricMaker.getCount(PATH_CODE_OWNERS_CACHE_MISSES)).isEqualTo(1);
+
+    // Make the request as user2 who can only see user3's account. The cached path code owners are
+    // reused, but the code owners are still filtered by visibility.
+    requestScopeOperations.setApiUser(user2.id());
+    testMetricMaker.reset();
+    assertThat(queryCodeOwners("/foo/bar/baz.md"))
+        .hasCodeOwnersThat()
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(user3.id());
+    assertThat(testMetricMaker.getCount(PATH_CODE_OWNERS_CACHE_HITS)).isEqualTo(1);
+    assertThat(testMetricMaker.getCount(PATH_CODE_OWNERS_CACHE_MISSES)).isEqualTo(0);
+  }
+
+  @Test
+  public void pathCodeOwnersAreRecomputedWhenCodeOwnerConfigIsUpdated() throws Exception {
+    CodeOwnerConfig.Key codeOwnerConfigKey =
+        codeOwnerConfigOperations
+            .newCodeOwnerConfig()
+            .project(project)
+            .branch("master")
+            .folderPath("/foo/")
+            .addCodeOwnerEmail(admin.email())
+            .create();
+    assertThat(queryCodeOwners("/foo/bar/baz.md"))
+        .hasCodeOwnersThat()
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(admin.id());
+
+    codeOwnerConfigOperations
+        .codeOwnerConfig(codeOwnerConfigKey)
+        .forUpdate()
+        .clearCodeOwnerSets()
+        .addCodeOwnerSet(CodeOwnerSet.createWithoutPathExpressions(user.email()))
+        .update();
+    assertThat(queryCodeOwners("/foo/bar/baz.md"))
+        .hasCodeOwnersThat()
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(user.id());
+  }
+
+  @Test
+  public void cachedPathCodeOwnersAreNotInvalidatedOnAccountReindex() throws Exception {
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/foo/")
+        .addCodeOwnerEmail(admin.email())
+        .create();
+    assertThat(queryCodeOwners("/foo/bar/baz.md"))
+        .hasCodeOwnersThat()
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(admin.id());
+
+    gApi.accounts().id(admin.id().get()).index();
+
+    testMetricMaker.reset();
+    assertThat(queryCodeOwners("/foo/bar/baz.md"))
+        .hasCodeOwnersThat()
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(admin.id());
+    assertThat(testMetricMaker.getCount(PATH_CODE_OWNERS_CACHE_HITS)).isEqualTo(1);
+    assertThat(testMetricMaker.getCount(PATH_CODE_OWNERS_CACHE_MISSES)).isEqualTo(0);
+  }
+
   @Test
   public void codeOwnersThatCannotSeeTheBranchAreFilteredOut() throws Exception {
     // Create a code owner config with 2 code owners.
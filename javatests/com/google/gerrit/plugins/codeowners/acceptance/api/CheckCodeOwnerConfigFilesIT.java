@@ -21,6 +21,7 @@ import static com.google.gerrit.testing.GerritJUnit.assertThrows;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.acceptance.TestMetricMaker;
 import com.google.gerrit.acceptance.config.GerritConfig;
 import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
 import com.google.gerrit.acceptance.testsuite.request.RequestScopeOperations;
@@ -42,6 +43,8 @@ import com.google.inject.Inject;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Repository;
 import org.junit.Test;
 
 /**
@@ -56,6 +59,7 @@ import org.junit.Test;
 public class CheckCodeOwnerConfigFilesIT extends AbstractCodeOwnersIT {
   @Inject private RequestScopeOperations requestScopeOperations;
   @Inject private ProjectOperations projectOperations;
+  @Inject private TestMetricMaker testMetricMaker;
 
   @Test
   public void requiresAuthenticatedUser() throws Exception {
@@ -372,6 +376,137 @@ public class CheckCodeOwnerConfigFilesIT extends AbstractCodeOwnersIT {
         .containsExactly("refs/meta/config", ImmutableMap.of());
   }
 
+  @Test
+  public void branchesWithSameTreeAndNoIssues() throws Exception {
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/foo/")
+        .addCodeOwnerEmail(user.email())
+        .create();
+    createBranch(BranchNameKey.create(project, "stable-1.0"));
+    createBranch(BranchNameKey.create(project, "stable-1.1"));
+
+    testMetricMaker.reset();
+    assertThat(checkCodeOwnerConfigFilesIn(project))
+        .containsExactly(
+            "refs/heads/master", ImmutableMap.of(),
+            "refs/heads/stable-1.0", ImmutableMap.of(),
+            "refs/heads/stable-1.1", ImmutableMap.of(),
+            "refs/meta/config", ImmutableMap.of());
+
+    // Only one of the branches with the same tree was checked, the others were skipped.
+    assertThat(testMetricMaker.getCount("plugins/code-owners/count_skipped_branch_checks"))
+        .isEqualTo(2);
+  }
+
+  @Test
+  public void branchesThatOnlyDifferInOtherFiles() throws Exception {
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/foo/")
+        .addCodeOwnerEmail(user.email())
+        .create();
+    createBranch(BranchNameKey.create(project, "stable-1.0"));
+    try (Repository repo = repoManager.openRepository(project);
+        TestRepository<Repository> tr = new TestRepository<>(repo)) {
+      tr.branch("refs/heads/stable-1.0").commit().add("README.md", "content").create();
+    }
+
+    testMetricMaker.reset();
+    assertThat(checkCodeOwnerConfigFilesIn(project))
+        .containsExactly(
+            "refs/heads/master", ImmutableMap.of(),
+            "refs/heads/stable-1.0", ImmutableMap.of(),
+            "refs/meta/config", ImmutableMap.of());
+
+    // The branches have different trees, but the same code owner config files, hence one of them
+    // was skipped.
+    assertThat(testMetricMaker.getCount("plugins/code-owners/count_skipped_branch_checks"))
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void branchesWithDifferentCodeOwnerConfigFiles() throws Exception {
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/foo/")
+        .addCodeOwnerEmail(user.email())
+        .create();
+    createBranch(BranchNameKey.create(project, "stable-1.0"));
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("stable-1.0")
+        .folderPath("/bar/")
+        .addCodeOwnerEmail(user.email())
+        .create();
+
+    testMetricMaker.reset();
+    assertThat(checkCodeOwnerConfigFilesIn(project))
+        .containsExactly(
+            "refs/heads/master", ImmutableMap.of(),
+            "refs/heads/stable-1.0", ImmutableMap.of(),
+            "refs/meta/config", ImmutableMap.of());
+
+    // All branches were checked.
+    assertThat(testMetricMaker.getCount("plugins/code-owners/count_skipped_branch_checks"))
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void issuesInBranchesWithSameTree() throws Exception {
+    testIssuesInBranchesWithSameTree();
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.code-owners.maxThreadsForCodeOwnerConfigCheck", value = "1")
+  public void issuesInBranchesWithSameTree_branchesAreCheckedSequentially() throws Exception {
+    testIssuesInBranchesWithSameTree();
+  }
+
+  private void testIssuesInBranchesWithSameTree() throws Exception {
+    CodeOwnerConfig.Key keyOfInvalidConfig =
+        codeOwnerConfigOperations
+            .newCodeOwnerConfig()
+            .project(project)
+            .branch("master")
+            .folderPath("/foo/")
+            .addCodeOwnerEmail("unknown@example.com")
+            .create();
+    String pathOfInvalidConfig =
+        codeOwnerConfigOperations.codeOwnerConfig(keyOfInvalidConfig).getFilePath();
+    createBranch(BranchNameKey.create(project, "stable-1.0"));
+    createBranch(BranchNameKey.create(project, "stable-1.1"));
+
+    ImmutableMap<String, List<ConsistencyProblemInfo>> expectedIssues =
+        ImmutableMap.of(
+            pathOfInvalidConfig,
+            ImmutableList.of(
+                error(
+                    String.format(
+                        "code owner email 'unknown@example.com' in '%s' cannot be"
+                            + " resolved for admin",
+                        pathOfInvalidConfig))));
+    testMetricMaker.reset();
+    assertThat(checkCodeOwnerConfigFilesIn(project))
+        .containsExactly(
+            "refs/heads/master", expectedIssues,
+            "refs/heads/stable-1.0", expectedIssues,
+            "refs/heads/stable-1.1", expectedIssues,
+            "refs/meta/config", ImmutableMap.of());
+
+    // The found issues don't mention the branch, hence they were reused for the branches with the
+    // same tree.
+    assertThat(testMetricMaker.getCount("plugins/code-owners/count_skipped_branch_checks"))
+        .isEqualTo(2);
+  }
+
   @Test
   public void validateExactFile() throws Exception {
     skipTestIfImportsNotSupportedByCodeOwnersBackend();
@@ -14,6 +14,7 @@
 
 package com.google.gerrit.plugins.codeowners.acceptance.api;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
 import static com.google.gerrit.plugins.codeowners.testing.CodeOwnerInfoSubject.hasAccountId;
@@ -23,6 +24,7 @@ import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static org.junit.Assert.fail;
 
+import com.google.common.collect.ImmutableList;
 import com.google.gerrit.acceptance.PushOneCommit;
 import com.google.gerrit.acceptance.TestAccount;
 import com.google.gerrit.acceptance.config.GerritConfig;
@@ -40,9 +42,12 @@ import com.google.gerrit.plugins.codeowners.backend.CodeOwner;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerAnnotations;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerResolver;
 import com.google.gerrit.plugins.codeowners.backend.CodeOwnerSet;
+import com.google.gerrit.plugins.codeowners.restapi.GetCodeOwnersForPathsInChange;
 import com.google.gerrit.plugins.codeowners.util.JgitPath;
 import com.google.inject.Inject;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
 import org.eclipse.jgit.junit.TestRepository;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -787,4 +792,154 @@ public class GetCodeOwnersForPathInChangeIT extends AbstractGetCodeOwnersForPath
                 CodeOwner.create(admin.id()),
                 CodeOwnerAnnotations.LAST_RESORT_SUGGESTION_ANNOTATION.key()));
   }
+
+  @Test
+  public void getCodeOwnersForMultipleFiles() throws Exception {
+    TestAccount user2 = accountCreator.user2();
+
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/")
+        .addCodeOwnerEmail(admin.email())
+        .addCodeOwnerEmail(user2.email())
+        .create();
+
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/foo/bar/")
+        .addCodeOwnerEmail(user.email())
+        .create();
+
+    Map<String, CodeOwnersInfo> codeOwnersInfos =
+        getCodeOwnersApi()
+            .query()
+            .get(ImmutableList.of("/foo/bar.md", "foo/bar/baz.md", "/foo/bar/config.txt"));
+    assertThat(codeOwnersInfos.keySet())
+        .containsExactly("/foo/bar.md", "foo/bar/baz.md", "/foo/bar/config.txt")
+        .inOrder();
+    assertThat(codeOwnersInfos.get("/foo/bar.md"))
+        .hasCodeOwnersThat()
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(admin.id(), user2.id());
+    assertThat(codeOwnersInfos.get("foo/bar/baz.md"))
+        .hasCodeOwnersThat()
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(user.id(), admin.id(), user2.id());
+
+    // For each file the same code owners in the same order are returned as when code owners are
+    // requested for the file individually.
+    for (Map.Entry<String, CodeOwnersInfo> e : codeOwnersInfos.entrySet()) {
+      assertThat(getAccountIds(e.getValue()))
+          .containsExactlyElementsIn(getAccountIds(queryCodeOwners(e.getKey())))
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void getCodeOwnersForMultipleFiles_duplicatePathsAreIgnored() throws Exception {
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/")
+        .addCodeOwnerEmail(user.email())
+        .create();
+
+    Map<String, CodeOwnersInfo> codeOwnersInfos =
+        getCodeOwnersApi().query().get(ImmutableList.of("/foo/bar.md", "/foo/bar.md"));
+    assertThat(codeOwnersInfos.keySet()).containsExactly("/foo/bar.md");
+    assertThat(codeOwnersInfos.get("/foo/bar.md"))
+        .hasCodeOwnersThat()
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(user.id());
+  }
+
+  @Test
+  public void getCodeOwnersForMultipleFiles_renamedFile() throws Exception {
+    TestAccount user2 = accountCreator.user2();
+
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/foo/new/")
+        .addCodeOwnerEmail(user.email())
+        .create();
+
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/foo/old/")
+        .addCodeOwnerEmail(user2.email())
+        .create();
+
+    String oldPath = "/foo/old/bar.txt";
+    String newPath = "/foo/new/bar.txt";
+    String changeId = createChangeWithFileRename(oldPath, newPath);
+
+    Map<String, CodeOwnersInfo> codeOwnersInfos =
+        codeOwnersApiFactory
+            .change(changeId, "current")
+            .query()
+            .get(ImmutableList.of(newPath, oldPath));
+    assertThat(codeOwnersInfos.get(newPath))
+        .hasCodeOwnersThat()
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(user.id());
+    assertThat(codeOwnersInfos.get(oldPath))
+        .hasCodeOwnersThat()
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(user2.id());
+  }
+
+  @Test
+  public void cannotGetCodeOwnersForMultipleFilesIfAFileIsNotTouchedInTheChange()
+      throws Exception {
+    ResourceNotFoundException exception =
+        assertThrows(
+            ResourceNotFoundException.class,
+            () ->
+                getCodeOwnersApi()
+                    .query()
+                    .get(ImmutableList.of("/foo/bar.md", "/foo/non-existing.md")));
+    assertThat(exception)
+        .hasMessageThat()
+        .isEqualTo("file /foo/non-existing.md not found in revision");
+  }
+
+  @Test
+  public void cannotGetCodeOwnersForMultipleFilesWithoutPaths() throws Exception {
+    BadRequestException exception =
+        assertThrows(
+            BadRequestException.class, () -> getCodeOwnersApi().query().get(ImmutableList.of()));
+    assertThat(exception).hasMessageThat().isEqualTo("paths are required");
+  }
+
+  @Test
+  public void cannotGetCodeOwnersForTooManyFiles() throws Exception {
+    ImmutableList<String> paths =
+        IntStream.rangeClosed(0, GetCodeOwnersForPathsInChange.MAX_PATHS)
+            .mapToObj(i -> "/foo/bar.md")
+            .collect(toImmutableList());
+    BadRequestException exception =
+        assertThrows(BadRequestException.class, () -> getCodeOwnersApi().query().get(paths));
+    assertThat(exception)
+        .hasMessageThat()
+        .isEqualTo(
+            String.format(
+                "too many paths (%d), at most %d paths are allowed",
+                GetCodeOwnersForPathsInChange.MAX_PATHS + 1,
+                GetCodeOwnersForPathsInChange.MAX_PATHS));
+  }
+
+  private static ImmutableList<Account.Id> getAccountIds(CodeOwnersInfo codeOwnersInfo) {
+    return codeOwnersInfo.codeOwners.stream()
+        .map(info -> Account.id(info.account._accountId))
+        .collect(toImmutableList());
+  }
 }
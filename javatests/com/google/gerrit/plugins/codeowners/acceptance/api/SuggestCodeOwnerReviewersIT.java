@@ -0,0 +1,187 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.acceptance.api;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.plugins.codeowners.testing.CodeOwnerInfoSubject.hasAccountId;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.acceptance.TestAccount;
+import com.google.gerrit.acceptance.config.GerritConfig;
+import com.google.gerrit.acceptance.testsuite.group.GroupOperations;
+import com.google.gerrit.acceptance.testsuite.request.RequestScopeOperations;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersIT;
+import com.google.gerrit.plugins.codeowners.api.CodeOwnerReviewersInfo;
+import com.google.gerrit.plugins.codeowners.util.JgitPath;
+import com.google.inject.Inject;
+import org.junit.Test;
+
+/**
+ * Acceptance test for the {@link
+ * com.google.gerrit.plugins.codeowners.restapi.SuggestCodeOwnerReviewers} REST endpoint.
+ */
+public class SuggestCodeOwnerReviewersIT extends AbstractCodeOwnersIT {
+  private static final String FOO_PATH = "/foo/a.md";
+  private static final String BAR_PATH = "/bar/b.md";
+
+  @Inject private RequestScopeOperations requestScopeOperations;
+  @Inject private GroupOperations groupOperations;
+
+  @Test
+  public void noReviewersSuggestedIfAllFilesAreApproved() throws Exception {
+    setAsCodeOwners("/foo/", user);
+    String changeId = createChange("Change Adding A File", FOO_PATH);
+
+    requestScopeOperations.setApiUser(user.id());
+    recommend(changeId);
+
+    requestScopeOperations.setApiUser(admin.id());
+    CodeOwnerReviewersInfo codeOwnerReviewersInfo =
+        changeCodeOwnersApiFactory.change(changeId).suggestReviewers().get();
+    assertThat(codeOwnerReviewersInfo.reviewers).isEmpty();
+    assertThat(codeOwnerReviewersInfo.uncoveredPaths).isNull();
+  }
+
+  @Test
+  public void codeOwnerThatOwnsAllFilesIsSuggested() throws Exception {
+    TestAccount user2 = accountCreator.user2();
+    TestAccount user3 = accountCreator.create("user3", "user3@example.com", "User3", null);
+    setAsCodeOwners("/foo/", user);
+    setAsCodeOwners("/bar/", user2);
+    setAsRootCodeOwners(user3);
+    String changeId = createChange("Change Adding Files", FOO_PATH, BAR_PATH);
+
+    CodeOwnerReviewersInfo codeOwnerReviewersInfo =
+        changeCodeOwnersApiFactory.change(changeId).suggestReviewers().get();
+    assertThat(codeOwnerReviewersInfo.reviewers)
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(user3.id());
+    assertThat(codeOwnerReviewersInfo.uncoveredPaths).isNull();
+  }
+
+  @Test
+  public void codeOwnersOfAllFilesAreSuggested() throws Exception {
+    TestAccount user2 = accountCreator.user2();
+    setAsCodeOwners("/foo/", user);
+    setAsCodeOwners("/bar/", user2);
+    String changeId = createChange("Change Adding Files", FOO_PATH, BAR_PATH);
+
+    CodeOwnerReviewersInfo codeOwnerReviewersInfo =
+        changeCodeOwnersApiFactory.change(changeId).suggestReviewers().get();
+    assertThat(codeOwnerReviewersInfo.reviewers)
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(user.id(), user2.id());
+    assertThat(codeOwnerReviewersInfo.uncoveredPaths).isNull();
+  }
+
+  @Test
+  public void approvedFilesAreNotCovered() throws Exception {
+    TestAccount user2 = accountCreator.user2();
+    setAsCodeOwners("/foo/", user);
+    setAsCodeOwners("/bar/", user2);
+    String changeId = createChange("Change Adding Files", FOO_PATH, BAR_PATH);
+
+    requestScopeOperations.setApiUser(user.id());
+    recommend(changeId);
+
+    requestScopeOperations.setApiUser(admin.id());
+    CodeOwnerReviewersInfo codeOwnerReviewersInfo =
+        changeCodeOwnersApiFactory.change(changeId).suggestReviewers().get();
+    assertThat(codeOwnerReviewersInfo.reviewers)
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(user2.id());
+    assertThat(codeOwnerReviewersInfo.uncoveredPaths).isNull();
+  }
+
+  @Test
+  public void filesWithoutSuggestableCodeOwnersAreUncovered() throws Exception {
+    setAsCodeOwners("/foo/", user);
+    String changeId = createChange("Change Adding Files", FOO_PATH, BAR_PATH);
+
+    CodeOwnerReviewersInfo codeOwnerReviewersInfo =
+        changeCodeOwnersApiFactory.change(changeId).suggestReviewers().get();
+    assertThat(codeOwnerReviewersInfo.reviewers)
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(user.id());
+    assertThat(codeOwnerReviewersInfo.uncoveredPaths).containsExactly(BAR_PATH);
+  }
+
+  @Test
+  @GerritConfig(name = "accounts.visibility", value = "SAME_GROUP")
+  public void nonVisibleCodeOwnersAreNotSuggested() throws Exception {
+    // Create 2 accounts that share a group.
+    TestAccount user2 = accountCreator.user2();
+    TestAccount user3 = accountCreator.create("user3", "user3@example.com", "User3", null);
+    groupOperations.newGroup().addMember(user2.id()).addMember(user3.id()).create();
+
+    setAsCodeOwners("/foo/", user, user3);
+    String changeId = createChange("Change Adding A File", FOO_PATH);
+
+    // Compute the code owner statuses, so that the code owners that are resolved without checking
+    // their visibility are cached.
+    assertThat(
+            changeCodeOwnersApiFactory
+                .change(changeId)
+                .getCodeOwnerStatus()
+                .get()
+                .fileCodeOwnerStatuses)
+        .hasSize(1);
+
+    // user2 can only see user3's account (besides the own account).
+    requestScopeOperations.setApiUser(user2.id());
+    CodeOwnerReviewersInfo codeOwnerReviewersInfo =
+        changeCodeOwnersApiFactory.change(changeId).suggestReviewers().get();
+    assertThat(codeOwnerReviewersInfo.reviewers)
+        .comparingElementsUsing(hasAccountId())
+        .containsExactly(user3.id());
+    assertThat(codeOwnerReviewersInfo.uncoveredPaths).isNull();
+  }
+
+  @Test
+  public void suggestReviewersWithLimit() throws Exception {
+    TestAccount user2 = accountCreator.user2();
+    setAsCodeOwners("/foo/", user);
+    setAsCodeOwners("/bar/", user2);
+    String changeId = createChange("Change Adding Files", FOO_PATH, BAR_PATH);
+
+    CodeOwnerReviewersInfo codeOwnerReviewersInfo =
+        changeCodeOwnersApiFactory.change(changeId).suggestReviewers().withLimit(1).get();
+    assertThat(codeOwnerReviewersInfo.reviewers).hasSize(1);
+    assertThat(codeOwnerReviewersInfo.uncoveredPaths).hasSize(1);
+  }
+
+  @Test
+  public void cannotSuggestReviewersWithInvalidLimit() throws Exception {
+    setAsCodeOwners("/foo/", user);
+    String changeId = createChange("Change Adding A File", FOO_PATH);
+
+    BadRequestException exception =
+        assertThrows(
+            BadRequestException.class,
+            () ->
+                changeCodeOwnersApiFactory.change(changeId).suggestReviewers().withLimit(0).get());
+    assertThat(exception).hasMessageThat().isEqualTo("limit must be positive");
+  }
+
+  private String createChange(String subject, String... paths) throws Exception {
+    ImmutableMap.Builder<String, String> files = ImmutableMap.builder();
+    for (String path : paths) {
+      files.put(JgitPath.of(path).get(), "file content");
+    }
+    return createChange(subject, files.build()).getChangeId();
+  }
+}
@@ -38,12 +38,15 @@ import org.junit.Test;
  */
 public class CodeOwnersRestApiBindingsIT extends AbstractCodeOwnersTest {
   private static final ImmutableList<RestCall> CHANGE_ENDPOINTS =
-      ImmutableList.of(RestCall.get("/changes/%s/code-owners~code_owners.status"));
+      ImmutableList.of(
+          RestCall.get("/changes/%s/code-owners~code_owners.status"),
+          RestCall.get("/changes/%s/code-owners~code_owners.suggested_reviewers"));
 
   private static final ImmutableList<RestCall> REVISION_ENDPOINTS =
       ImmutableList.of(
           RestCall.post("/changes/%s/revisions/current/code-owners~code_owners.check_config"),
-          RestCall.get("/changes/%s/revisions/current/code-owners~owned_paths"));
+          RestCall.get("/changes/%s/revisions/current/code-owners~owned_paths"),
+          RestCall.post("/changes/%s/revisions/current/code-owners~code_owners"));
 
   private static final ImmutableList<RestCall> PROJECT_ENDPOINTS =
       ImmutableList.of(
@@ -0,0 +1,84 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.acceptance.testsuite.account.AccountOperations;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersTest;
+import com.google.inject.Inject;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for {@link AccountIdsByEmailCache}. */
+public class AccountIdsByEmailCacheTest extends AbstractCodeOwnersTest {
+  @Inject private AccountOperations accountOperations;
+
+  private AccountIdsByEmailCache accountIdsByEmailCache;
+
+  @Before
+  public void setUpCodeOwnersPlugin() throws Exception {
+    accountIdsByEmailCache = plugin.getSysInjector().getInstance(AccountIdsByEmailCache.class);
+  }
+
+  @Test
+  public void getAccountIds() throws Exception {
+    String nonExistingEmail = "non-existing@example.com";
+    ImmutableMap<String, ImmutableSet<Account.Id>> accountIdsByEmail =
+        accountIdsByEmailCache.get(ImmutableSet.of(admin.email(), user.email(), nonExistingEmail));
+    assertThat(accountIdsByEmail)
+        .containsExactly(
+            admin.email(),
+            ImmutableSet.of(admin.id()),
+            user.email(),
+            ImmutableSet.of(user.id()),
+            nonExistingEmail,
+            ImmutableSet.of());
+
+    // Get the account IDs again, now they are returned from the cache.
+    assertThat(
+            accountIdsByEmailCache.get(
+                ImmutableSet.of(admin.email(), user.email(), nonExistingEmail)))
+        .isEqualTo(accountIdsByEmail);
+  }
+
+  @Test
+  public void cachedEmailIsInvalidatedWhenEmailIsAddedToAccount() throws Exception {
+    String secondaryEmail = "user-secondary@example.com";
+    assertThat(accountIdsByEmailCache.get(ImmutableSet.of(secondaryEmail)))
+        .containsExactly(secondaryEmail, ImmutableSet.of());
+
+    accountOperations.account(user.id()).forUpdate().addSecondaryEmail(secondaryEmail).update();
+
+    assertThat(accountIdsByEmailCache.get(ImmutableSet.of(secondaryEmail)))
+        .containsExactly(secondaryEmail, ImmutableSet.of(user.id()));
+  }
+
+  @Test
+  public void cachedEmailIsInvalidatedWhenEmailIsRemovedFromAccount() throws Exception {
+    String secondaryEmail = "user-secondary@example.com";
+    accountOperations.account(user.id()).forUpdate().addSecondaryEmail(secondaryEmail).update();
+    assertThat(accountIdsByEmailCache.get(ImmutableSet.of(secondaryEmail)))
+        .containsExactly(secondaryEmail, ImmutableSet.of(user.id()));
+
+    gApi.accounts().id(user.id().get()).deleteEmail(secondaryEmail);
+
+    assertThat(accountIdsByEmailCache.get(ImmutableSet.of(secondaryEmail)))
+        .containsExactly(secondaryEmail, ImmutableSet.of());
+  }
+}
@@ -15,6 +15,7 @@
 package com.google.gerrit.plugins.codeowners.backend;
 
 import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
 import static com.google.gerrit.acceptance.testsuite.project.TestProjectUpdate.allow;
 import static com.google.gerrit.acceptance.testsuite.project.TestProjectUpdate.allowLabel;
 import static com.google.gerrit.plugins.codeowners.testing.FileCodeOwnerStatusSubject.assertThatCollection;
@@ -26,8 +27,10 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.gerrit.acceptance.GitUtil;
 import com.google.gerrit.acceptance.TestAccount;
+import com.google.gerrit.acceptance.TestMetricMaker;
 import com.google.gerrit.acceptance.TestProjectInput;
 import com.google.gerrit.acceptance.config.GerritConfig;
+import com.google.gerrit.acceptance.testsuite.account.AccountOperations;
 import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
 import com.google.gerrit.acceptance.testsuite.project.TestProjectUpdate;
 import com.google.gerrit.acceptance.testsuite.request.RequestScopeOperations;
@@ -35,6 +38,7 @@ import com.google.gerrit.entities.BranchNameKey;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.entities.Permission;
+import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.extensions.api.changes.ReviewInput;
 import com.google.gerrit.extensions.api.projects.DeleteBranchesInput;
@@ -52,6 +56,7 @@ import com.google.gerrit.server.notedb.ChangeNotes;
 import com.google.inject.Inject;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -65,18 +70,31 @@ import org.junit.Test;
  * CodeOwnerApprovalCheckForAccountTest}.
  */
 public class CodeOwnerApprovalCheckTest extends AbstractCodeOwnersTest {
+  private static final String FILE_STATUS_CACHE_HITS =
+      "plugins/code-owners/count_file_code_owner_status_cache_hits";
+  private static final String FILE_STATUS_CACHE_MISSES =
+      "plugins/code-owners/count_file_code_owner_status_cache_misses";
+  private static final String SUBMITTABILITY_CACHE_HITS =
+      "plugins/code-owners/count_submittability_cache_hits";
+  private static final String SUBMITTABILITY_CACHE_MISSES =
+      "plugins/code-owners/count_submittability_cache_misses";
+
+  @Inject private AccountOperations accountOperations;
   @Inject private ChangeNotes.Factory changeNotesFactory;
   @Inject private RequestScopeOperations requestScopeOperations;
   @Inject private ProjectOperations projectOperations;
+  @Inject private TestMetricMaker testMetricMaker;
 
   private CodeOwnerApprovalCheck codeOwnerApprovalCheck;
   private CodeOwnerConfigOperations codeOwnerConfigOperations;
+  private FileCodeOwnerStatusCache fileCodeOwnerStatusCache;
 
   @Before
   public void setUpCodeOwnersPlugin() throws Exception {
     codeOwnerApprovalCheck = plugin.getSysInjector().getInstance(CodeOwnerApprovalCheck.class);
     codeOwnerConfigOperations =
         plugin.getSysInjector().getInstance(CodeOwnerConfigOperations.class);
+    fileCodeOwnerStatusCache = plugin.getSysInjector().getInstance(FileCodeOwnerStatusCache.class);
   }
 
   @Test
@@ -1657,6 +1675,284 @@ public class CodeOwnerApprovalCheckTest extends AbstractCodeOwnersTest {
     assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isTrue();
   }
 
+  @Test
+  @GerritConfig(name = "plugin.code-owners.maxThreadsForFileStatusComputation", value = "4")
+  public void isSubmittable_parallelFileStatusComputation() throws Exception {
+    TestAccount user2 = accountCreator.user2();
+
+    setAsCodeOwners("/foo/", user);
+    setAsCodeOwners("/bar/", user2);
+
+    ImmutableMap.Builder<String, String> files = ImmutableMap.builder();
+    for (int i = 0; i < 10; i++) {
+      files.put(String.format("foo/file%d.config", i), "content");
+      files.put(String.format("bar/file%d.config", i), "other content");
+    }
+    String changeId =
+        pushFactory
+            .create(admin.newIdent(), testRepo, "Test Change", files.build())
+            .to("refs/for/master")
+            .getChangeId();
+
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+
+    // Add a Code-Review+1 from a code owner that approves the files in the first folder.
+    requestScopeOperations.setApiUser(user.id());
+    recommend(changeId);
+
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+    assertThat(
+            getFileCodeOwnerStatuses(changeId).stream()
+                .filter(
+                    fileStatus ->
+                        fileStatus.newPathStatus().get().status() == CodeOwnerStatus.APPROVED)
+                .count())
+        .isEqualTo(10);
+
+    // Add a Code-Review+1 from a code owner that approves the files in the second folder.
+    requestScopeOperations.setApiUser(user2.id());
+    recommend(changeId);
+
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isTrue();
+  }
+
+  @Test
+  public void fileStatusesAreCached() throws Exception {
+    setAsCodeOwners("/foo/", user);
+
+    String changeId = createChange("Test Change", "foo/bar.baz", "file content").getChangeId();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+
+    testMetricMaker.reset();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+    assertThatCollection(getFileCodeOwnerStatuses(changeId))
+        .containsExactly(
+            FileCodeOwnerStatus.addition("foo/bar.baz", CodeOwnerStatus.INSUFFICIENT_REVIEWERS));
+    assertThat(testMetricMaker.getCount(SUBMITTABILITY_CACHE_HITS)).isEqualTo(1);
+    assertThat(testMetricMaker.getCount(SUBMITTABILITY_CACHE_MISSES)).isEqualTo(0);
+    assertThat(testMetricMaker.getCount(FILE_STATUS_CACHE_HITS)).isEqualTo(1);
+    assertThat(testMetricMaker.getCount(FILE_STATUS_CACHE_MISSES)).isEqualTo(0);
+
+    // Votes are part of the cache key.
+    requestScopeOperations.setApiUser(user.id());
+    recommend(changeId);
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isTrue();
+  }
+
+  @Test
+  public void submittabilityIsCachedIfNotAllFileStatusesAreComputed() throws Exception {
+    setAsCodeOwners("/foo/", user);
+
+    String changeId =
+        pushFactory
+            .create(
+                admin.newIdent(),
+                testRepo,
+                "Test Change",
+                ImmutableMap.of("foo/bar.baz", "content", "foo/baz.bar", "other content"))
+            .to("refs/for/master")
+            .getChangeId();
+
+    // The first file that is not approved makes the change non-submittable, the file status of the
+    // other file is not computed and hence the file statuses are not cached.
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+
+    testMetricMaker.reset();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+    assertThat(testMetricMaker.getCount(SUBMITTABILITY_CACHE_HITS)).isEqualTo(1);
+    assertThat(testMetricMaker.getCount(SUBMITTABILITY_CACHE_MISSES)).isEqualTo(0);
+    assertThat(testMetricMaker.getCount(FILE_STATUS_CACHE_HITS)).isEqualTo(0);
+    assertThat(testMetricMaker.getCount(FILE_STATUS_CACHE_MISSES)).isEqualTo(0);
+
+    // The resolved code owners of the file for which the file status was computed are cached.
+    ChangeNotes changeNotes = getChangeNotes(changeId);
+    FileCodeOwnerStatusCache.RevisionKey revisionKey =
+        FileCodeOwnerStatusCache.RevisionKey.create(
+            project,
+            fileCodeOwnerStatusCache.getGeneration(project),
+            changeNotes.getCurrentPatchSet(),
+            projectOperations.project(project).getHead("master"));
+    assertThat(fileCodeOwnerStatusCache.getResolvedPathCodeOwners(revisionKey)).isPresent();
+  }
+
+  @Test
+  public void resolvedCodeOwnersAreReusedIfOnlyVotesChange() throws Exception {
+    setAsCodeOwners("/foo/", user);
+
+    String changeId = createChange("Test Change", "foo/bar.baz", "file content").getChangeId();
+    ChangeNotes changeNotes = getChangeNotes(changeId);
+    FileCodeOwnerStatusCache.RevisionKey revisionKey =
+        FileCodeOwnerStatusCache.RevisionKey.create(
+            project,
+            fileCodeOwnerStatusCache.getGeneration(project),
+            changeNotes.getCurrentPatchSet(),
+            projectOperations.project(project).getHead("master"));
+    assertThat(fileCodeOwnerStatusCache.getResolvedPathCodeOwners(revisionKey)).isEmpty();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(changeNotes)).isFalse();
+    Optional<ImmutableMap<Path, ResolvedPathCodeOwners>> resolvedPathCodeOwners =
+        fileCodeOwnerStatusCache.getResolvedPathCodeOwners(revisionKey);
+    assertThat(resolvedPathCodeOwners).isPresent();
+    assertThat(resolvedPathCodeOwners.get()).containsKey(Paths.get("/foo/bar.baz"));
+
+    // The file statuses are recomputed from the cached resolved code owners.
+    requestScopeOperations.setApiUser(user.id());
+    recommend(changeId);
+    testMetricMaker.reset();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isTrue();
+    assertThat(testMetricMaker.getCount(FILE_STATUS_CACHE_MISSES)).isEqualTo(1);
+    assertThat(fileCodeOwnerStatusCache.getResolvedPathCodeOwners(revisionKey).get())
+        .isSameInstanceAs(resolvedPathCodeOwners.get());
+  }
+
+  @Test
+  public void resolvedCodeOwnersAreNotCachedForPathsThatAreApprovedByNearerCodeOwners()
+      throws Exception {
+    TestAccount user2 = accountCreator.user2();
+    setAsRootCodeOwners(user2);
+    setAsCodeOwners("/foo/", user);
+
+    String changeId =
+        pushFactory
+            .create(
+                admin.newIdent(),
+                testRepo,
+                "Test Change",
+                ImmutableMap.of("foo/bar.baz", "content", "baz.txt", "other content"))
+            .to("refs/for/master")
+            .getChangeId();
+
+    // Add a Code-Review+1 from the code owner of the foo folder, so that the code owners of the root
+    // code owner config need not be resolved for the file in the foo folder.
+    requestScopeOperations.setApiUser(user.id());
+    recommend(changeId);
+    getFileCodeOwnerStatuses(changeId);
+
+    ChangeNotes changeNotes = getChangeNotes(changeId);
+    FileCodeOwnerStatusCache.RevisionKey revisionKey =
+        FileCodeOwnerStatusCache.RevisionKey.create(
+            project,
+            fileCodeOwnerStatusCache.getGeneration(project),
+            changeNotes.getCurrentPatchSet(),
+            projectOperations.project(project).getHead("master"));
+    Optional<ImmutableMap<Path, ResolvedPathCodeOwners>> resolvedPathCodeOwners =
+        fileCodeOwnerStatusCache.getResolvedPathCodeOwners(revisionKey);
+    assertThat(resolvedPathCodeOwners).isPresent();
+    assertThat(resolvedPathCodeOwners.get()).containsKey(Paths.get("/baz.txt"));
+    assertThat(resolvedPathCodeOwners.get()).doesNotContainKey(Paths.get("/foo/bar.baz"));
+  }
+
+  @Test
+  public void cachedFileStatusesAreInvalidatedOnProjectConfigUpdate() throws Exception {
+    String changeId = createChange("Test Change", "foo/bar.baz", "file content").getChangeId();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+
+    projectOperations
+        .project(project)
+        .forUpdate()
+        .add(allow(Permission.READ).ref("refs/heads/*").group(REGISTERED_USERS))
+        .update();
+
+    testMetricMaker.reset();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+    assertThat(testMetricMaker.getCount(FILE_STATUS_CACHE_HITS)).isEqualTo(0);
+    assertThat(testMetricMaker.getCount(FILE_STATUS_CACHE_MISSES)).isEqualTo(1);
+  }
+
+  @Test
+  public void cachedFileStatusesAreNotInvalidatedOnProjectConfigUpdateOfOtherProject()
+      throws Exception {
+    Project.NameKey otherProject = projectOperations.newProject().create();
+
+    String changeId = createChange("Test Change", "foo/bar.baz", "file content").getChangeId();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+
+    projectOperations
+        .project(otherProject)
+        .forUpdate()
+        .add(allow(Permission.READ).ref("refs/heads/*").group(REGISTERED_USERS))
+        .update();
+
+    testMetricMaker.reset();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+    assertThat(testMetricMaker.getCount(SUBMITTABILITY_CACHE_HITS)).isEqualTo(1);
+    assertThat(testMetricMaker.getCount(SUBMITTABILITY_CACHE_MISSES)).isEqualTo(0);
+  }
+
+  @Test
+  public void cachedFileStatusesAreNotInvalidatedOnIrrelevantAccountReindex() throws Exception {
+    // Reindex the account once, so that the fingerprint of its state is known (whether this
+    // reindexing invalidates cached file statuses depends on whether code owners have been resolved
+    // from the previous state of the account, e.g. by other tests).
+    gApi.accounts().id(user.id().get()).index();
+
+    String changeId = createChange("Test Change", "foo/bar.baz", "file content").getChangeId();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+
+    // Reindexing the account without changing its emails or its active state.
+    gApi.accounts().id(user.id().get()).index();
+
+    testMetricMaker.reset();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+    assertThat(testMetricMaker.getCount(SUBMITTABILITY_CACHE_HITS)).isEqualTo(1);
+    assertThat(testMetricMaker.getCount(SUBMITTABILITY_CACHE_MISSES)).isEqualTo(0);
+  }
+
+  @Test
+  public void cachedFileStatusesAreNotInvalidatedOnReindexOfAccountThatWasNotResolved()
+      throws Exception {
+    String changeId = createChange("Test Change", "foo/bar.baz", "file content").getChangeId();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+
+    // Creating an account reindexes it. The previous state of the account is not known, but no code
+    // owners have been resolved from it.
+    accountOperations.newAccount().preferredEmail("new-user@example.com").create();
+
+    testMetricMaker.reset();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+    assertThat(testMetricMaker.getCount(SUBMITTABILITY_CACHE_HITS)).isEqualTo(1);
+    assertThat(testMetricMaker.getCount(SUBMITTABILITY_CACHE_MISSES)).isEqualTo(0);
+  }
+
+  @Test
+  public void cachedFileStatusesAreInvalidatedWhenNonResolvableCodeOwnerEmailIsClaimed()
+      throws Exception {
+    String email = "new-code-owner@example.com";
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/foo/")
+        .addCodeOwnerEmail(email)
+        .create();
+
+    String changeId = createChange("Test Change", "foo/bar.baz", "file content").getChangeId();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+
+    // Creating an account reindexes it. The previous state of the account is not known and the
+    // code owner email was resolved to no account before.
+    accountOperations.newAccount().preferredEmail(email).create();
+
+    testMetricMaker.reset();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+    assertThat(testMetricMaker.getCount(SUBMITTABILITY_CACHE_HITS)).isEqualTo(0);
+    assertThat(testMetricMaker.getCount(SUBMITTABILITY_CACHE_MISSES)).isEqualTo(1);
+  }
+
+  @Test
+  public void cachedFileStatusesAreInvalidatedOnAccountDeactivation() throws Exception {
+    gApi.accounts().id(user.id().get()).index();
+
+    String changeId = createChange("Test Change", "foo/bar.baz", "file content").getChangeId();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+
+    accountOperations.account(user.id()).forUpdate().inactive().update();
+
+    testMetricMaker.reset();
+    assertThat(codeOwnerApprovalCheck.isSubmittable(getChangeNotes(changeId))).isFalse();
+    assertThat(testMetricMaker.getCount(FILE_STATUS_CACHE_HITS)).isEqualTo(0);
+    assertThat(testMetricMaker.getCount(FILE_STATUS_CACHE_MISSES)).isEqualTo(1);
+  }
+
   @Test
   @GerritConfig(name = "plugin.code-owners.overrideApproval", value = "Owners-Override+1")
   public void isSubmittableIfOverrideIsPresent() throws Exception {
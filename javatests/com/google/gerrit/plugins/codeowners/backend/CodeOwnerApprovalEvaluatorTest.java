@@ -0,0 +1,141 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersTest;
+import java.util.Arrays;
+import java.util.BitSet;
+import org.junit.Test;
+
+/** Tests for {@link CodeOwnerApprovalEvaluator}. */
+public class CodeOwnerApprovalEvaluatorTest extends AbstractCodeOwnersTest {
+  private static final Account.Id ACCOUNT_1 = Account.id(1001);
+  private static final Account.Id ACCOUNT_2 = Account.id(1002);
+  private static final Account.Id ACCOUNT_3 = Account.id(1003);
+  private static final Account.Id ACCOUNT_4 = Account.id(1004);
+
+  @Test
+  public void noRelevantAccounts() throws Exception {
+    CodeOwnerApprovalEvaluator approvalEvaluator =
+        new CodeOwnerApprovalEvaluator(
+            /* implicitApprover= */ null,
+            /* reviewerAccountIds= */ ImmutableSet.of(),
+            /* approverAccountIds= */ ImmutableSet.of());
+    BitSet codeOwners = approvalEvaluator.toBitSet(codeOwners(ACCOUNT_1, ACCOUNT_2));
+    assertThat(codeOwners.isEmpty()).isTrue();
+    assertThat(approvalEvaluator.isImplicitApprover(codeOwners)).isFalse();
+    assertThat(approvalEvaluator.getApprover(codeOwners)).isEmpty();
+    assertThat(approvalEvaluator.getAnyApprover()).isEmpty();
+    assertThat(approvalEvaluator.getReviewer(codeOwners)).isEmpty();
+    assertThat(approvalEvaluator.getAnyReviewer()).isEmpty();
+  }
+
+  @Test
+  public void getApprover() throws Exception {
+    CodeOwnerApprovalEvaluator approvalEvaluator =
+        new CodeOwnerApprovalEvaluator(
+            /* implicitApprover= */ null,
+            /* reviewerAccountIds= */ ImmutableSet.of(ACCOUNT_1, ACCOUNT_2, ACCOUNT_3),
+            /* approverAccountIds= */ ImmutableSet.of(ACCOUNT_3, ACCOUNT_2));
+    assertThat(approvalEvaluator.getApprover(approvalEvaluator.toBitSet(codeOwners(ACCOUNT_1))))
+        .isEmpty();
+    assertThat(
+            approvalEvaluator.getApprover(
+                approvalEvaluator.toBitSet(codeOwners(ACCOUNT_1, ACCOUNT_2))))
+        .hasValue(ACCOUNT_2);
+
+    // If several approvers are code owners, the first approver is returned.
+    assertThat(
+            approvalEvaluator.getApprover(
+                approvalEvaluator.toBitSet(codeOwners(ACCOUNT_2, ACCOUNT_3))))
+        .hasValue(ACCOUNT_3);
+    assertThat(approvalEvaluator.getAnyApprover()).hasValue(ACCOUNT_3);
+  }
+
+  @Test
+  public void getReviewer() throws Exception {
+    CodeOwnerApprovalEvaluator approvalEvaluator =
+        new CodeOwnerApprovalEvaluator(
+            /* implicitApprover= */ null,
+            /* reviewerAccountIds= */ ImmutableSet.of(ACCOUNT_3, ACCOUNT_1, ACCOUNT_2),
+            /* approverAccountIds= */ ImmutableSet.of(ACCOUNT_2));
+    assertThat(approvalEvaluator.getReviewer(approvalEvaluator.toBitSet(codeOwners(ACCOUNT_4))))
+        .isEmpty();
+    assertThat(approvalEvaluator.getReviewer(approvalEvaluator.toBitSet(codeOwners(ACCOUNT_2))))
+        .hasValue(ACCOUNT_2);
+
+    // If several reviewers are code owners, the first reviewer is returned.
+    assertThat(
+            approvalEvaluator.getReviewer(
+                approvalEvaluator.toBitSet(codeOwners(ACCOUNT_1, ACCOUNT_2, ACCOUNT_3))))
+        .hasValue(ACCOUNT_3);
+    assertThat(approvalEvaluator.getAnyReviewer()).hasValue(ACCOUNT_3);
+  }
+
+  @Test
+  public void isImplicitApprover() throws Exception {
+    CodeOwnerApprovalEvaluator approvalEvaluator =
+        new CodeOwnerApprovalEvaluator(
+            ACCOUNT_4,
+            /* reviewerAccountIds= */ ImmutableSet.of(ACCOUNT_1),
+            /* approverAccountIds= */ ImmutableSet.of(ACCOUNT_2));
+    assertThat(
+            approvalEvaluator.isImplicitApprover(approvalEvaluator.toBitSet(codeOwners(ACCOUNT_4))))
+        .isTrue();
+    assertThat(
+            approvalEvaluator.isImplicitApprover(
+                approvalEvaluator.toBitSet(codeOwners(ACCOUNT_1, ACCOUNT_2))))
+        .isFalse();
+  }
+
+  @Test
+  public void codeOwnersOfCodeOwnerConfigAreConvertedToSameBitSetAsCodeOwners() throws Exception {
+    CodeOwnerApprovalEvaluator approvalEvaluator =
+        new CodeOwnerApprovalEvaluator(
+            ACCOUNT_4,
+            /* reviewerAccountIds= */ ImmutableSet.of(ACCOUNT_3, ACCOUNT_1),
+            /* approverAccountIds= */ ImmutableSet.of(ACCOUNT_2));
+    CodeOwnerResolverResult codeOwners =
+        codeOwners(Account.id(1000), ACCOUNT_4, ACCOUNT_1, ACCOUNT_2, Account.id(2000));
+    ResolvedPathCodeOwners.ResolvedCodeOwnerConfig resolvedCodeOwnerConfig =
+        ResolvedPathCodeOwners.ResolvedCodeOwnerConfig.create(
+            CodeOwnerConfig.Key.create(project, "master", "/"),
+            CodeOwnerKind.REGULAR_CODE_OWNER,
+            codeOwners);
+    BitSet codeOwnersBitSet = approvalEvaluator.toBitSet(resolvedCodeOwnerConfig);
+    assertThat(codeOwnersBitSet).isEqualTo(approvalEvaluator.toBitSet(codeOwners));
+    assertThat(approvalEvaluator.isImplicitApprover(codeOwnersBitSet)).isTrue();
+    assertThat(approvalEvaluator.getApprover(codeOwnersBitSet)).hasValue(ACCOUNT_2);
+    assertThat(approvalEvaluator.getReviewer(codeOwnersBitSet)).hasValue(ACCOUNT_1);
+  }
+
+  private static CodeOwnerResolverResult codeOwners(Account.Id... accountIds) {
+    return CodeOwnerResolverResult.create(
+        Arrays.stream(accountIds).map(CodeOwner::create).collect(toImmutableSet()),
+        /* annotations= */ ImmutableMultimap.of(),
+        /* ownedByAllUsers= */ false,
+        /* hasUnresolvedCodeOwners= */ false,
+        /* hasUnresolvedImports= */ false,
+        /* messages= */ ImmutableList.of());
+  }
+}
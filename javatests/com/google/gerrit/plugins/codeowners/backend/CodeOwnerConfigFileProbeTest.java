@@ -0,0 +1,118 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersTest;
+import com.google.gerrit.plugins.codeowners.acceptance.testsuite.CodeOwnerConfigOperations;
+import com.google.inject.Inject;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for {@link CodeOwnerConfigFileProbe}. */
+public class CodeOwnerConfigFileProbeTest extends AbstractCodeOwnersTest {
+  @Inject private ProjectOperations projectOperations;
+
+  private CodeOwnerConfigOperations codeOwnerConfigOperations;
+  private CodeOwnerConfigFileProbe codeOwnerConfigFileProbe;
+
+  @Before
+  public void setUpCodeOwnersPlugin() throws Exception {
+    codeOwnerConfigOperations =
+        plugin.getSysInjector().getInstance(CodeOwnerConfigOperations.class);
+    codeOwnerConfigFileProbe = plugin.getSysInjector().getInstance(CodeOwnerConfigFileProbe.class);
+  }
+
+  @Test
+  public void existingCodeOwnerConfigFiles() throws Exception {
+    CodeOwnerConfig.Key rootCodeOwnerConfigKey = createCodeOwnerConfig("/");
+    CodeOwnerConfig.Key fooBarCodeOwnerConfigKey = createCodeOwnerConfig("/foo/bar/");
+
+    assertThat(exists(getFilePath(rootCodeOwnerConfigKey))).isTrue();
+    assertThat(exists(getFilePath(fooBarCodeOwnerConfigKey))).isTrue();
+  }
+
+  @Test
+  public void nonExistingCodeOwnerConfigFiles() throws Exception {
+    CodeOwnerConfig.Key fooBarCodeOwnerConfigKey = createCodeOwnerConfig("/foo/bar/");
+    String fileName = getFilePath(fooBarCodeOwnerConfigKey).getFileName().toString();
+
+    // code owner config file in the root folder doesn't exist
+    assertThat(exists(Paths.get("/" + fileName))).isFalse();
+
+    // code owner config file in an existing folder doesn't exist
+    assertThat(exists(Paths.get("/foo/" + fileName))).isFalse();
+
+    // folder doesn't exist
+    assertThat(exists(Paths.get("/baz/" + fileName))).isFalse();
+
+    // parent folder is a file
+    assertThat(exists(Paths.get("/foo/bar/" + fileName + "/" + fileName))).isFalse();
+  }
+
+  @Test
+  public void negativeResultIsNotReusedAfterCodeOwnerConfigFileWasAdded() throws Exception {
+    CodeOwnerConfig.Key rootCodeOwnerConfigKey = createCodeOwnerConfig("/");
+    Path fooFilePath =
+        Paths.get("/foo/", getFilePath(rootCodeOwnerConfigKey).getFileName().toString());
+    createCodeOwnerConfig("/foo/bar/");
+    assertThat(exists(fooFilePath)).isFalse();
+
+    createCodeOwnerConfig("/foo/");
+    assertThat(exists(fooFilePath)).isTrue();
+  }
+
+  @Test
+  public void repeatedLookupsOfNonExistingCodeOwnerConfigFiles() throws Exception {
+    CodeOwnerConfig.Key fooBarCodeOwnerConfigKey = createCodeOwnerConfig("/foo/bar/");
+    String fileName = getFilePath(fooBarCodeOwnerConfigKey).getFileName().toString();
+
+    // the second lookups are answered from the negative results that are cached by revision
+    for (int i = 0; i < 2; i++) {
+      assertThat(exists(Paths.get("/foo/" + fileName))).isFalse();
+      assertThat(exists(Paths.get("/baz/" + fileName))).isFalse();
+      assertThat(exists(getFilePath(fooBarCodeOwnerConfigKey))).isTrue();
+    }
+  }
+
+  private CodeOwnerConfig.Key createCodeOwnerConfig(String folderPath) {
+    return codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath(folderPath)
+        .addCodeOwnerEmail(admin.email())
+        .create();
+  }
+
+  private Path getFilePath(CodeOwnerConfig.Key codeOwnerConfigKey) {
+    return Paths.get(codeOwnerConfigOperations.codeOwnerConfig(codeOwnerConfigKey).getFilePath());
+  }
+
+  private boolean exists(Path absoluteFilePath) throws Exception {
+    ObjectId revision = projectOperations.project(project).getHead("master");
+    try (Repository repository = repoManager.openRepository(project);
+        RevWalk revWalk = new RevWalk(repository)) {
+      return codeOwnerConfigFileProbe.exists(revWalk, revision, absoluteFilePath);
+    }
+  }
+}
@@ -140,6 +140,48 @@ public class CodeOwnerConfigFileTest extends AbstractCodeOwnersTest {
     codeOwnerConfigSubject.hasRevisionThat().isEqualTo(revision1);
   }
 
+  @Test
+  public void loadUnchangedCodeOwnerConfigFileFromNewRevision() throws Exception {
+    CodeOwnerConfig.Key codeOwnerConfigKey = CodeOwnerConfig.Key.create(project, "master", "/");
+    ObjectId revision1 =
+        testCodeOwnerConfigStorage
+            .writeCodeOwnerConfig(
+                codeOwnerConfigKey,
+                b ->
+                    b.setIgnoreParentCodeOwners()
+                        .addCodeOwnerSet(CodeOwnerSet.createWithoutPathExpressions(admin.email())))
+            .revision();
+    CodeOwnerConfigFile codeOwnerConfigFile1 = loadCodeOwnerConfig(codeOwnerConfigKey, revision1);
+    assertThatOptional(codeOwnerConfigFile1.getLoadedCodeOwnerConfig())
+        .value()
+        .hasRevisionThat()
+        .isEqualTo(revision1);
+
+    // create another code owner config, which creates a new revision in which the root code owner
+    // config is unchanged
+    ObjectId revision2 =
+        testCodeOwnerConfigStorage
+            .writeCodeOwnerConfig(
+                CodeOwnerConfig.Key.create(project, "master", "/foo/"),
+                b -> b.addCodeOwnerSet(CodeOwnerSet.createWithoutPathExpressions(user.email())))
+            .revision();
+    assertThat(revision1).isNotEqualTo(revision2);
+
+    // the parsed code owner config is taken from the cache, but it must have the new revision set
+    CodeOwnerConfigFile codeOwnerConfigFile2 = loadCodeOwnerConfig(codeOwnerConfigKey, revision2);
+    CodeOwnerConfigSubject codeOwnerConfigSubject =
+        assertThatOptional(codeOwnerConfigFile2.getLoadedCodeOwnerConfig()).value();
+    codeOwnerConfigSubject.hasIgnoreParentCodeOwnersThat().isTrue();
+    codeOwnerConfigSubject
+        .hasCodeOwnerSetsThat()
+        .onlyElement()
+        .hasCodeOwnersEmailsThat()
+        .containsExactly(admin.email());
+    codeOwnerConfigSubject.hasRevisionThat().isEqualTo(revision2);
+    assertThat(codeOwnerConfigFile2.getLoadedCodeOwnerConfig().get().key())
+        .isEqualTo(codeOwnerConfigKey);
+  }
+
   @Test
   public void cannotLoadCodeOwnerConfigFileFromNonExistingRevision() throws Exception {
     CodeOwnerConfig.Key codeOwnerConfigKey = CodeOwnerConfig.Key.create(project, "master", "/");
@@ -0,0 +1,176 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
+import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersTest;
+import com.google.gerrit.plugins.codeowners.acceptance.testsuite.CodeOwnerConfigOperations;
+import com.google.inject.Inject;
+import java.nio.file.Paths;
+import java.util.Optional;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for {@link CodeOwnerConfigFolderIndexUpdater}. */
+public class CodeOwnerConfigFolderIndexUpdaterTest extends AbstractCodeOwnersTest {
+  @Inject private ProjectOperations projectOperations;
+
+  private CodeOwnerConfigOperations codeOwnerConfigOperations;
+  private CodeOwnerConfigFolderIndexCache codeOwnerConfigFolderIndexCache;
+  private CodeOwnerConfigFolderIndexUpdater codeOwnerConfigFolderIndexUpdater;
+  private CodeOwnerConfigGenerations codeOwnerConfigGenerations;
+
+  @Before
+  public void setUpCodeOwnersPlugin() throws Exception {
+    codeOwnerConfigOperations =
+        plugin.getSysInjector().getInstance(CodeOwnerConfigOperations.class);
+    codeOwnerConfigFolderIndexCache =
+        plugin.getSysInjector().getInstance(CodeOwnerConfigFolderIndexCache.class);
+    codeOwnerConfigFolderIndexUpdater =
+        plugin.getSysInjector().getInstance(CodeOwnerConfigFolderIndexUpdater.class);
+    codeOwnerConfigGenerations =
+        plugin.getSysInjector().getInstance(CodeOwnerConfigGenerations.class);
+  }
+
+  @Test
+  public void indexForNewRevisionIsDerivedFromIndexOfOldRevision() throws Exception {
+    CodeOwnerConfig.Key rootCodeOwnerConfigKey =
+        codeOwnerConfigOperations
+            .newCodeOwnerConfig()
+            .project(project)
+            .branch("master")
+            .folderPath("/")
+            .addCodeOwnerEmail(admin.email())
+            .create();
+    String fileName = getFileName(rootCodeOwnerConfigKey);
+    ObjectId oldRevision = projectOperations.project(project).getHead("master");
+    Optional<CodeOwnerConfigFolderIndex> oldIndex =
+        codeOwnerConfigFolderIndexCache.get(project, oldRevision, fileName);
+    assertThat(oldIndex).isPresent();
+    assertThat(oldIndex.get().folders()).containsExactly(Paths.get("/"));
+
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/foo/bar/")
+        .addCodeOwnerEmail(admin.email())
+        .create();
+    ObjectId newRevision = projectOperations.project(project).getHead("master");
+
+    codeOwnerConfigFolderIndexUpdater.onGitReferenceUpdated(
+        createEvent("refs/heads/master", oldRevision, newRevision));
+
+    Optional<CodeOwnerConfigFolderIndex> newIndex =
+        codeOwnerConfigFolderIndexCache.getIfPresent(project, newRevision, fileName);
+    assertThat(newIndex).isPresent();
+    assertThat(newIndex.get().folders()).containsExactly(Paths.get("/"), Paths.get("/foo/bar"));
+  }
+
+  @Test
+  public void indexIsNotUpdatedIfIndexOfOldRevisionIsNotCached() throws Exception {
+    CodeOwnerConfig.Key rootCodeOwnerConfigKey =
+        codeOwnerConfigOperations
+            .newCodeOwnerConfig()
+            .project(project)
+            .branch("master")
+            .folderPath("/")
+            .addCodeOwnerEmail(admin.email())
+            .create();
+    String fileName = getFileName(rootCodeOwnerConfigKey);
+    ObjectId oldRevision = projectOperations.project(project).getHead("master");
+
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/foo/")
+        .addCodeOwnerEmail(admin.email())
+        .create();
+    ObjectId newRevision = projectOperations.project(project).getHead("master");
+
+    codeOwnerConfigFolderIndexUpdater.onGitReferenceUpdated(
+        createEvent("refs/heads/master", oldRevision, newRevision));
+
+    assertThat(codeOwnerConfigFolderIndexCache.getIfPresent(project, newRevision, fileName))
+        .isEmpty();
+  }
+
+  @Test
+  public void codeOwnerConfigIsInvalidatedIfCodeOwnerConfigFileIsUpdated() throws Exception {
+    ObjectId oldRevision = projectOperations.project(project).getHead("master");
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/foo/")
+        .addCodeOwnerEmail(admin.email())
+        .create();
+    ObjectId newRevision = projectOperations.project(project).getHead("master");
+    long generation = codeOwnerConfigGenerations.get(project);
+
+    codeOwnerConfigFolderIndexUpdater.onGitReferenceUpdated(
+        createEvent("refs/heads/master", oldRevision, newRevision));
+
+    assertThat(codeOwnerConfigGenerations.get(project)).isNotEqualTo(generation);
+  }
+
+  @Test
+  public void codeOwnerConfigIsNotInvalidatedIfNoCodeOwnerConfigFileIsUpdated() throws Exception {
+    ObjectId oldRevision = projectOperations.project(project).getHead("master");
+    RevCommit newRevision;
+    try (Repository repo = repoManager.openRepository(project);
+        TestRepository<Repository> testRepository = new TestRepository<>(repo)) {
+      newRevision =
+          testRepository
+              .branch("refs/heads/master")
+              .commit()
+              .add("foo/bar.txt", "content")
+              .create();
+    }
+    long generation = codeOwnerConfigGenerations.get(project);
+
+    codeOwnerConfigFolderIndexUpdater.onGitReferenceUpdated(
+        createEvent("refs/heads/master", oldRevision, newRevision));
+
+    assertThat(codeOwnerConfigGenerations.get(project)).isEqualTo(generation);
+  }
+
+  private String getFileName(CodeOwnerConfig.Key codeOwnerConfigKey) {
+    return Paths.get(codeOwnerConfigOperations.codeOwnerConfig(codeOwnerConfigKey).getFilePath())
+        .getFileName()
+        .toString();
+  }
+
+  private GitReferenceUpdatedListener.Event createEvent(
+      String refName, ObjectId oldRevision, ObjectId newRevision) {
+    GitReferenceUpdatedListener.Event event = mock(GitReferenceUpdatedListener.Event.class);
+    when(event.getProjectName()).thenReturn(project.get());
+    when(event.getRefName()).thenReturn(refName);
+    when(event.getOldObjectId()).thenReturn(oldRevision.name());
+    when(event.getNewObjectId()).thenReturn(newRevision.name());
+    return event;
+  }
+}
@@ -0,0 +1,106 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.acceptance.testsuite.project.TestProjectUpdate.allow;
+import static com.google.gerrit.server.group.SystemGroupBackend.REGISTERED_USERS;
+
+import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Permission;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersTest;
+import com.google.inject.Inject;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for {@link CodeOwnerConfigGenerations}. */
+public class CodeOwnerConfigGenerationsTest extends AbstractCodeOwnersTest {
+  @Inject private ProjectOperations projectOperations;
+
+  private CodeOwnerConfigGenerations codeOwnerConfigGenerations;
+
+  @Before
+  public void setUpCodeOwnersPlugin() throws Exception {
+    codeOwnerConfigGenerations =
+        plugin.getSysInjector().getInstance(CodeOwnerConfigGenerations.class);
+  }
+
+  @Test
+  public void generationChangesOnProjectConfigUpdate() throws Exception {
+    long generation = codeOwnerConfigGenerations.get(project);
+
+    projectOperations
+        .project(project)
+        .forUpdate()
+        .add(allow(Permission.READ).ref("refs/heads/*").group(REGISTERED_USERS))
+        .update();
+
+    assertThat(codeOwnerConfigGenerations.get(project)).isNotEqualTo(generation);
+  }
+
+  @Test
+  public void generationChangesOnBranchCreation() throws Exception {
+    long generation = codeOwnerConfigGenerations.get(project);
+
+    createBranch(BranchNameKey.create(project, "stable"));
+
+    assertThat(codeOwnerConfigGenerations.get(project)).isNotEqualTo(generation);
+  }
+
+  @Test
+  public void generationOfOtherProjectDoesNotChangeOnInvalidation() throws Exception {
+    Project.NameKey otherProject = projectOperations.newProject().create();
+    long generation = codeOwnerConfigGenerations.get(otherProject);
+
+    codeOwnerConfigGenerations.invalidate(project);
+
+    assertThat(codeOwnerConfigGenerations.get(otherProject)).isEqualTo(generation);
+  }
+
+  @Test
+  public void generationOfChildProjectChangesOnInvalidationOfParentProject() throws Exception {
+    Project.NameKey childProject = projectOperations.newProject().parent(project).create();
+    long generation = codeOwnerConfigGenerations.get(childProject);
+
+    codeOwnerConfigGenerations.invalidate(project);
+
+    assertThat(codeOwnerConfigGenerations.get(childProject)).isNotEqualTo(generation);
+  }
+
+  @Test
+  public void generationOfAllProjectsChangesOnInvalidationOfImportedProject() throws Exception {
+    Project.NameKey otherProject = projectOperations.newProject().create();
+    long generation = codeOwnerConfigGenerations.get(otherProject);
+
+    codeOwnerConfigGenerations.recordImportFromOtherProject(project);
+    codeOwnerConfigGenerations.invalidate(project);
+
+    assertThat(codeOwnerConfigGenerations.get(otherProject)).isNotEqualTo(generation);
+  }
+
+  @Test
+  public void generationIsNeverReused() throws Exception {
+    Project.NameKey childProject = projectOperations.newProject().parent(project).create();
+    codeOwnerConfigGenerations.invalidate(childProject);
+    long generation = codeOwnerConfigGenerations.get(childProject);
+
+    // Invalidating the parent project must not result in a generation of the child project that
+    // was returned before.
+    codeOwnerConfigGenerations.invalidate(project);
+    assertThat(codeOwnerConfigGenerations.get(childProject)).isGreaterThan(generation);
+  }
+}
@@ -15,6 +15,7 @@
 package com.google.gerrit.plugins.codeowners.backend;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.gerrit.server.project.ProjectCache.illegalState;
 import static com.google.gerrit.testing.GerritJUnit.assertThrows;
@@ -36,6 +37,7 @@ import com.google.gerrit.server.restapi.project.DeleteRef;
 import com.google.inject.Inject;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.function.Consumer;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
@@ -758,6 +760,204 @@ public class CodeOwnerConfigHierarchyTest extends AbstractCodeOwnersTest {
     verifyNoInteractions(visitor);
   }
 
+  @Test
+  public void onlyFoldersThatContainCodeOwnerConfigFilesAreInspected() throws Exception {
+    String branch = "master";
+
+    CodeOwnerConfig.Key rootCodeOwnerConfigKey =
+        codeOwnerConfigOperations
+            .newCodeOwnerConfig()
+            .project(project)
+            .branch(branch)
+            .folderPath("/")
+            .addCodeOwnerEmail(admin.email())
+            .create();
+
+    CodeOwnerConfig.Key fooBarCodeOwnerConfigKey =
+        codeOwnerConfigOperations
+            .newCodeOwnerConfig()
+            .project(project)
+            .branch(branch)
+            .folderPath("/foo/bar/")
+            .addCodeOwnerEmail(admin.email())
+            .create();
+
+    when(visitor.visit(any(CodeOwnerConfig.class))).thenReturn(true);
+    visit(branch, "/foo/bar/baz/qux/file.md");
+
+    InOrder orderVerifier = Mockito.inOrder(visitor);
+    orderVerifier
+        .verify(visitor)
+        .visit(codeOwnerConfigOperations.codeOwnerConfig(fooBarCodeOwnerConfigKey).get());
+    orderVerifier
+        .verify(visitor)
+        .visit(codeOwnerConfigOperations.codeOwnerConfig(rootCodeOwnerConfigKey).get());
+    verifyNoMoreInteractions(visitor);
+
+    // Only '/foo/bar/', '/' and the default code owner config in refs/meta/config have been read
+    // from the backend. The folders '/foo/bar/baz/qux/', '/foo/bar/baz/' and '/foo/' have been
+    // skipped since they do not contain a code owner config file.
+    assertThat(codeOwnerConfigHierarchy.getCodeOwnerConfigCounters().getBackendReadCount())
+        .isEqualTo(3);
+  }
+
+  @Test
+  public void visitPreparedFiles() throws Exception {
+    String branch = "master";
+
+    CodeOwnerConfig.Key rootCodeOwnerConfigKey = createCodeOwnerConfig(branch, "/");
+    CodeOwnerConfig.Key fooCodeOwnerConfigKey = createCodeOwnerConfig(branch, "/foo/");
+    CodeOwnerConfig.Key fooBarCodeOwnerConfigKey = createCodeOwnerConfig(branch, "/foo/bar/");
+
+    prepareForFiles(branch, "/foo/bar/baz.md", "/foo/qux.md", "/README.md");
+
+    when(visitor.visit(any(CodeOwnerConfig.class))).thenReturn(true);
+    visitForFile(branch, "/foo/bar/baz.md");
+
+    // Verify that we received the callbacks in the right order, starting from the folder of the
+    // given path up to the root folder.
+    InOrder orderVerifier = Mockito.inOrder(visitor);
+    orderVerifier
+        .verify(visitor)
+        .visit(codeOwnerConfigOperations.codeOwnerConfig(fooBarCodeOwnerConfigKey).get());
+    orderVerifier
+        .verify(visitor)
+        .visit(codeOwnerConfigOperations.codeOwnerConfig(fooCodeOwnerConfigKey).get());
+    orderVerifier
+        .verify(visitor)
+        .visit(codeOwnerConfigOperations.codeOwnerConfig(rootCodeOwnerConfigKey).get());
+    verifyNoMoreInteractions(visitor);
+    verifyNoInteractions(parentCodeOwnersIgnoredCallback);
+  }
+
+  @Test
+  public void visitPreparedFilesWhenParentCodeOwnersAreIgnored() throws Exception {
+    String branch = "master";
+
+    createCodeOwnerConfig(branch, "/");
+    CodeOwnerConfig.Key fooCodeOwnerConfigKey =
+        codeOwnerConfigOperations
+            .newCodeOwnerConfig()
+            .project(project)
+            .branch(branch)
+            .folderPath("/foo/")
+            .ignoreParentCodeOwners()
+            .addCodeOwnerEmail(admin.email())
+            .create();
+
+    prepareForFiles(branch, "/foo/bar/baz.md");
+
+    when(visitor.visit(any(CodeOwnerConfig.class))).thenReturn(true);
+    visitForFile(branch, "/foo/bar/baz.md");
+
+    // Verify that we received only the callback for the code owner config that ignores parent code
+    // owners.
+    verify(visitor).visit(codeOwnerConfigOperations.codeOwnerConfig(fooCodeOwnerConfigKey).get());
+    verifyNoMoreInteractions(visitor);
+    verify(parentCodeOwnersIgnoredCallback).accept(fooCodeOwnerConfigKey);
+  }
+
+  @Test
+  public void visitorCanStopTheIterationOverCodeOwnerConfigsOfPreparedFiles() throws Exception {
+    String branch = "master";
+
+    createCodeOwnerConfig(branch, "/");
+    CodeOwnerConfig.Key fooCodeOwnerConfigKey = createCodeOwnerConfig(branch, "/foo/");
+
+    prepareForFiles(branch, "/foo/bar/baz.md");
+
+    when(visitor.visit(any(CodeOwnerConfig.class))).thenReturn(false);
+    visitForFile(branch, "/foo/bar/baz.md");
+
+    verify(visitor).visit(codeOwnerConfigOperations.codeOwnerConfig(fooCodeOwnerConfigKey).get());
+    verifyNoMoreInteractions(visitor);
+  }
+
+  @Test
+  public void foldersOfPreparedFilesAreInspectedOnlyOnce() throws Exception {
+    String branch = "master";
+
+    createCodeOwnerConfig(branch, "/");
+    createCodeOwnerConfig(branch, "/foo/bar/");
+
+    String[] files = {"/foo/bar/a.md", "/foo/bar/b.md", "/foo/bar/baz/c.md", "/foo/qux/d.md"};
+    prepareForFiles(branch, files);
+
+    when(visitor.visit(any(CodeOwnerConfig.class))).thenReturn(true);
+    for (String file : files) {
+      visitForFile(branch, file);
+    }
+
+    // Only '/foo/bar/', '/' and the default code owner config in refs/meta/config have been read
+    // from the backend, each of them only once.
+    assertThat(codeOwnerConfigHierarchy.getCodeOwnerConfigCounters().getBackendReadCount())
+        .isEqualTo(3);
+  }
+
+  @Test
+  public void getPreparedCodeOwnerReferences() throws Exception {
+    String branch = "master";
+
+    createCodeOwnerConfig(branch, "/");
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch(branch)
+        .folderPath("/foo/")
+        .addCodeOwnerEmail(user.email())
+        .create();
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch(branch)
+        .folderPath("/bar/")
+        .addCodeOwnerEmail("bar-owner@example.com")
+        .create();
+
+    // Without preparation there are no code owner references.
+    assertThat(codeOwnerConfigHierarchy.getPreparedCodeOwnerReferences()).isEmpty();
+
+    prepareForFiles(branch, "/foo/a.md", "/foo/b.md", "/README.md");
+
+    // The code owner config in '/bar/' doesn't apply to any of the prepared files.
+    assertThat(codeOwnerConfigHierarchy.getPreparedCodeOwnerReferences())
+        .containsExactly(
+            CodeOwnerReference.create(admin.email()), CodeOwnerReference.create(user.email()));
+
+    // Only '/foo/', '/' and the default code owner config in refs/meta/config have been read from
+    // the backend. The code owner configs of the prepared folders were not read again.
+    assertThat(codeOwnerConfigHierarchy.getCodeOwnerConfigCounters().getBackendReadCount())
+        .isEqualTo(3);
+  }
+
+  private CodeOwnerConfig.Key createCodeOwnerConfig(String branchName, String folderPath) {
+    return codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch(branchName)
+        .folderPath(folderPath)
+        .addCodeOwnerEmail(admin.email())
+        .create();
+  }
+
+  private void prepareForFiles(String branchName, String... paths) throws IOException {
+    BranchNameKey branchNameKey = BranchNameKey.create(project, branchName);
+    codeOwnerConfigHierarchy.prepareForFiles(
+        branchNameKey,
+        getCurrentRevision(branchNameKey),
+        Arrays.stream(paths).map(Paths::get).collect(toImmutableList()));
+  }
+
+  private void visitForFile(String branchName, String path) throws IOException {
+    BranchNameKey branchNameKey = BranchNameKey.create(project, branchName);
+    codeOwnerConfigHierarchy.visitForFile(
+        branchNameKey,
+        getCurrentRevision(branchNameKey),
+        Paths.get(path),
+        pathCodeOwners -> visitor.visit(pathCodeOwners.getCodeOwnerConfig()),
+        parentCodeOwnersIgnoredCallback);
+  }
+
   private void visit(String branchName, String path)
       throws InvalidPluginConfigurationException, IOException {
     BranchNameKey branchNameKey = BranchNameKey.create(project, branchName);
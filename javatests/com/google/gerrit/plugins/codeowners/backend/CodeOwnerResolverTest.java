@@ -19,6 +19,7 @@ import static com.google.gerrit.plugins.codeowners.testing.CodeOwnerSubject.asse
 import static com.google.gerrit.plugins.codeowners.testing.OptionalResultWithMessagesSubject.assertThat;
 import static com.google.gerrit.testing.GerritJUnit.assertThrows;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.gerrit.acceptance.TestAccount;
 import com.google.gerrit.acceptance.TestMetricMaker;
@@ -425,6 +426,65 @@ public class CodeOwnerResolverTest extends AbstractCodeOwnersTest {
     assertThat(result.hasUnresolvedCodeOwners()).isTrue();
   }
 
+  @Test
+  public void resolvePathCodeOwnersForMultiplePathCodeOwners() throws Exception {
+    CodeOwnerConfig rootCodeOwnerConfig =
+        CodeOwnerConfig.builder(CodeOwnerConfig.Key.create(project, "master", "/"), TEST_REVISION)
+            .addCodeOwnerSet(CodeOwnerSet.createWithoutPathExpressions(admin.email(), user.email()))
+            .build();
+    CodeOwnerConfig fooCodeOwnerConfig =
+        CodeOwnerConfig.builder(
+                CodeOwnerConfig.Key.create(project, "master", "/foo/"), TEST_REVISION)
+            .addCodeOwnerSet(
+                CodeOwnerSet.createWithoutPathExpressions(
+                    admin.email(), "non-existing@example.com"))
+            .build();
+
+    PathCodeOwners.Factory pathCodeOwnersFactory =
+        plugin.getSysInjector().getInstance(PathCodeOwners.Factory.class);
+    CodeOwnerResolver codeOwnerResolver = codeOwnerResolverProvider.get();
+    ImmutableList<CodeOwnerResolverResult> results =
+        codeOwnerResolver.resolvePathCodeOwners(
+            ImmutableList.of(
+                pathCodeOwnersFactory.createWithoutCache(
+                    fooCodeOwnerConfig, Paths.get("/foo/bar.md")),
+                pathCodeOwnersFactory.createWithoutCache(
+                    rootCodeOwnerConfig, Paths.get("/foo/bar.md"))));
+    assertThat(results).hasSize(2);
+    assertThat(results.get(0).codeOwnersAccountIds()).containsExactly(admin.id());
+    assertThat(results.get(0).hasUnresolvedCodeOwners()).isTrue();
+    assertThat(results.get(1).codeOwnersAccountIds()).containsExactly(admin.id(), user.id());
+    assertThat(results.get(1).hasUnresolvedCodeOwners()).isFalse();
+
+    // Each email was looked up only once.
+    assertThat(codeOwnerResolver.getCodeOwnerCounters().getCacheMissCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void resolvePathCodeOwnersWithoutDebugMessages() throws Exception {
+    CodeOwnerConfig codeOwnerConfig =
+        CodeOwnerConfig.builder(CodeOwnerConfig.Key.create(project, "master", "/"), TEST_REVISION)
+            .addCodeOwnerSet(
+                CodeOwnerSet.createWithoutPathExpressions(
+                    admin.email(), "non-existing@example.com"))
+            .build();
+
+    CodeOwnerResolverResult result =
+        codeOwnerResolverProvider
+            .get()
+            .resolvePathCodeOwners(codeOwnerConfig, Paths.get("/README.md"));
+    assertThat(result.messages()).isNotEmpty();
+
+    CodeOwnerResolverResult resultWithoutDebugMessages =
+        codeOwnerResolverProvider
+            .get()
+            .collectDebugMessages(false)
+            .resolvePathCodeOwners(codeOwnerConfig, Paths.get("/README.md"));
+    assertThat(resultWithoutDebugMessages.codeOwnersAccountIds()).containsExactly(admin.id());
+    assertThat(resultWithoutDebugMessages.hasUnresolvedCodeOwners()).isTrue();
+    assertThat(resultWithoutDebugMessages.messages()).isEmpty();
+  }
+
   @Test
   public void resolvePathCodeOwnersWithAnnotations() throws Exception {
     TestAccount user2 = accountCreator.user2();
@@ -617,6 +677,56 @@ public class CodeOwnerResolverTest extends AbstractCodeOwnersTest {
         .isEmpty();
   }
 
+  @Test
+  @GerritConfig(name = "accounts.visibility", value = "SAME_GROUP")
+  public void codeOwnerVisibilityIsCheckedAgainIfUserIsChanged() throws Exception {
+    // Create a new user that is not a member of any group. This means 'user' and 'admin' are not
+    // visible to this user since they do not share any group.
+    TestAccount user2 = accountCreator.user2();
+
+    CodeOwnerResolver codeOwnerResolver = codeOwnerResolverProvider.get();
+
+    // admin can see the account
+    assertThat(
+            codeOwnerResolver
+                .forUser(identifiedUserFactory.create(admin.id()))
+                .resolve(CodeOwnerReference.create(user.email())))
+        .isPresent();
+
+    // user2 cannot see the account, the visibility that was memoized for admin is not reused
+    assertThat(
+            codeOwnerResolver
+                .forUser(identifiedUserFactory.create(user2.id()))
+                .resolve(CodeOwnerReference.create(user.email())))
+        .isEmpty();
+  }
+
+  @Test
+  public void canSeeSecondaryEmailsIsCheckedAgainIfUserIsChanged() throws Exception {
+    // add secondary email to admin account
+    String secondaryEmail = "admin@foo.bar";
+    accountOperations.account(admin.id()).forUpdate().addSecondaryEmail(secondaryEmail).update();
+    TestAccount user2 = accountCreator.user2();
+
+    CodeOwnerResolver codeOwnerResolver = codeOwnerResolverProvider.get();
+
+    // user2 doesn't have the "Modify Account" global capability and hence cannot see the secondary
+    // email of the admin account
+    assertThat(
+            codeOwnerResolver
+                .forUser(identifiedUserFactory.create(user2.id()))
+                .resolve(CodeOwnerReference.create(secondaryEmail)))
+        .isEmpty();
+
+    // admin has the "Modify Account" global capability and hence can see the secondary email of the
+    // admin account
+    assertThat(
+            codeOwnerResolver
+                .forUser(identifiedUserFactory.create(admin.id()))
+                .resolve(CodeOwnerReference.create(secondaryEmail)))
+        .isPresent();
+  }
+
   @Test
   @GerritConfig(name = "plugin.code-owners.allowedEmailDomain", value = "example.net")
   public void resolveCodeOwnerReferenceForEmailWithNonAllowedEmailDomain() throws Exception {
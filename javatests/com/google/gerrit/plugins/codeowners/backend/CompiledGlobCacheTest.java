@@ -0,0 +1,71 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersTest;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/** Tests for {@link CompiledGlobCache}. */
+public class CompiledGlobCacheTest extends AbstractCodeOwnersTest {
+  @Test
+  public void globIsConvertedAndCompiledOnlyOnce() throws Exception {
+    AtomicInteger conversions = new AtomicInteger();
+    CompiledGlobCache compiledGlobCache =
+        new CompiledGlobCache(
+            pathExpression -> {
+              conversions.incrementAndGet();
+              return "{**/,}" + pathExpression;
+            });
+
+    Optional<PathMatcher> pathMatcher = compiledGlobCache.get("*.md");
+    assertThat(pathMatcher).isPresent();
+    assertThat(pathMatcher.get().matches(Paths.get("foo/README.md"))).isTrue();
+    assertThat(pathMatcher.get().matches(Paths.get("README.txt"))).isFalse();
+
+    assertThat(compiledGlobCache.get("*.md")).isSameInstanceAs(pathMatcher);
+    assertThat(conversions.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void invalidGlobIsCachedAsEmpty() throws Exception {
+    AtomicInteger conversions = new AtomicInteger();
+    CompiledGlobCache compiledGlobCache =
+        new CompiledGlobCache(
+            pathExpression -> {
+              conversions.incrementAndGet();
+              return pathExpression;
+            });
+
+    // the glob is invalid because '{' is not closed
+    assertThat(compiledGlobCache.get("{foo-[1-4].txt")).isEmpty();
+    assertThat(compiledGlobCache.get("{foo-[1-4].txt")).isEmpty();
+    assertThat(conversions.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void differentPathExpressionsAreCachedSeparately() throws Exception {
+    CompiledGlobCache compiledGlobCache = new CompiledGlobCache(pathExpression -> pathExpression);
+
+    assertThat(compiledGlobCache.get("*.md").get().matches(Paths.get("README.md"))).isTrue();
+    assertThat(compiledGlobCache.get("*.txt").get().matches(Paths.get("README.md"))).isFalse();
+  }
+}
@@ -0,0 +1,146 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.gerrit.acceptance.TestMetricMaker;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersTest;
+import com.google.inject.Inject;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for {@link ComputationCoalescer}. */
+public class ComputationCoalescerTest extends AbstractCodeOwnersTest {
+  private static final String COALESCED_CALLERS = "test_coalesced_callers";
+
+  @Inject private TestMetricMaker testMetricMaker;
+
+  private ComputationCoalescer<String, String> computationCoalescer;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    computationCoalescer =
+        new ComputationCoalescer<>(
+            testMetricMaker.newCounter(COALESCED_CALLERS, new Description("test").setRate()));
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void valueIsComputedIfNoComputationIsInFlight() throws Exception {
+    assertThat(computationCoalescer.get("key", () -> "value")).isEqualTo("value");
+    assertThat(computationCoalescer.join("key")).isEmpty();
+    assertThat(testMetricMaker.getCount(COALESCED_CALLERS)).isEqualTo(0);
+  }
+
+  @Test
+  public void concurrentCallerGetsValueOfInFlightComputation() throws Exception {
+    try (ComputationCoalescer.InFlightComputation<String, String> inFlightComputation =
+        computationCoalescer.start("key")) {
+      Future<String> concurrentCaller =
+          executor.submit(
+              () ->
+                  computationCoalescer.get(
+                      "key",
+                      () -> {
+                        throw new IllegalStateException("unexpected computation");
+                      }));
+      inFlightComputation.complete("value");
+      assertThat(concurrentCaller.get()).isEqualTo("value");
+    }
+    assertThat(testMetricMaker.getCount(COALESCED_CALLERS)).isEqualTo(1);
+
+    // The value is not retained after the computation was closed.
+    assertThat(computationCoalescer.join("key")).isEmpty();
+  }
+
+  @Test
+  public void concurrentCallerComputesValueIfInFlightComputationIsAbandoned() throws Exception {
+    ComputationCoalescer.InFlightComputation<String, String> inFlightComputation =
+        computationCoalescer.start("key");
+    Future<Optional<String>> concurrentCaller =
+        executor.submit(() -> computationCoalescer.join("key"));
+    inFlightComputation.close();
+    assertThat(concurrentCaller.get()).isEmpty();
+    assertThat(computationCoalescer.get("key", () -> "value")).isEqualTo("value");
+    assertThat(testMetricMaker.getCount(COALESCED_CALLERS)).isEqualTo(0);
+  }
+
+  @Test
+  public void concurrentCallerComputesValueIfInFlightComputationDoesNotFinishInTime()
+      throws Exception {
+    ComputationCoalescer<String, String> computationCoalescerWithShortMaxWaitTime =
+        new ComputationCoalescer<>(
+            testMetricMaker.newCounter(
+                COALESCED_CALLERS + "_short_max_wait_time", new Description("test").setRate()),
+            Duration.ofMillis(10));
+    try (ComputationCoalescer.InFlightComputation<String, String> inFlightComputation =
+        computationCoalescerWithShortMaxWaitTime.start("key")) {
+      assertThat(
+              executor
+                  .submit(() -> computationCoalescerWithShortMaxWaitTime.get("key", () -> "other"))
+                  .get())
+          .isEqualTo("other");
+      inFlightComputation.complete("value");
+    }
+    assertThat(testMetricMaker.getCount(COALESCED_CALLERS + "_short_max_wait_time")).isEqualTo(0);
+  }
+
+  @Test
+  public void computationsForDifferentKeysAreNotCoalesced() throws Exception {
+    try (ComputationCoalescer.InFlightComputation<String, String> inFlightComputation =
+        computationCoalescer.start("key")) {
+      inFlightComputation.complete("value");
+      assertThat(executor.submit(() -> computationCoalescer.get("other", () -> "other")).get())
+          .isEqualTo("other");
+    }
+    assertThat(testMetricMaker.getCount(COALESCED_CALLERS)).isEqualTo(0);
+  }
+
+  @Test
+  public void joiningOwnInFlightComputationDoesNotWait() throws Exception {
+    ComputationCoalescer.InFlightComputation<String, String> inFlightComputation =
+        computationCoalescer.start("key");
+    assertThat(computationCoalescer.join("key")).isEmpty();
+    inFlightComputation.close();
+  }
+
+  @Test
+  public void closingComputationThatWasStartedConcurrentlyDoesNotUnregisterInFlightComputation()
+      throws Exception {
+    try (ComputationCoalescer.InFlightComputation<String, String> inFlightComputation =
+        computationCoalescer.start("key")) {
+      executor.submit(() -> computationCoalescer.start("key").close()).get();
+      Future<Optional<String>> concurrentCaller =
+          executor.submit(() -> computationCoalescer.join("key"));
+      inFlightComputation.complete("value");
+      assertThat(concurrentCaller.get()).hasValue("value");
+    }
+  }
+}
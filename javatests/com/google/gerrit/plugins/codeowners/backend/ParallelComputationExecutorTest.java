@@ -0,0 +1,114 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ForwardingExecutorService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for {@link ParallelComputationExecutor}. */
+public class ParallelComputationExecutorTest {
+  private static final int MAX_IN_FLIGHT_TASKS = 3;
+  private static final int NUMBER_OF_INPUTS = 10;
+
+  private final AtomicInteger submittedTasks = new AtomicInteger();
+
+  private ExecutorService delegate;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    delegate = Executors.newFixedThreadPool(MAX_IN_FLIGHT_TASKS);
+    executor =
+        new ForwardingExecutorService() {
+          @Override
+          protected ExecutorService delegate() {
+            return delegate;
+          }
+
+          @Override
+          public <T> Future<T> submit(Callable<T> task) {
+            submittedTasks.incrementAndGet();
+            return super.submit(task);
+          }
+        };
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    delegate.shutdownNow();
+  }
+
+  @Test
+  public void atMostMaxInFlightTasksAreOutstanding() throws Exception {
+    ParallelComputationExecutor.WindowedComputation<Integer, Integer> computation =
+        createComputation();
+
+    // The first tasks are submitted right away.
+    assertThat(submittedTasks.get()).isEqualTo(MAX_IN_FLIGHT_TASKS);
+
+    List<Integer> outputs = new ArrayList<>();
+    while (computation.hasNext()) {
+      outputs.add(computation.next());
+
+      // Each consumed output frees a slot for the task of the next input.
+      assertThat(submittedTasks.get())
+          .isEqualTo(Math.min(outputs.size() + MAX_IN_FLIGHT_TASKS, NUMBER_OF_INPUTS));
+    }
+
+    // The outputs are returned in the order of the inputs.
+    assertThat(outputs)
+        .containsExactlyElementsIn(
+            IntStream.range(0, NUMBER_OF_INPUTS).map(i -> i * 2).boxed().collect(toImmutableList()))
+        .inOrder();
+  }
+
+  @Test
+  public void closingTheStreamStopsFurtherSubmissions() throws Exception {
+    ParallelComputationExecutor.WindowedComputation<Integer, Integer> computation =
+        createComputation();
+    try (Stream<Integer> outputs = computation.stream()) {
+      assertThat(outputs.limit(2).collect(toImmutableList())).containsExactly(0, 2).inOrder();
+    }
+    int submittedTasksOnClose = submittedTasks.get();
+    assertThat(submittedTasksOnClose).isEqualTo(2 + MAX_IN_FLIGHT_TASKS);
+
+    // No further tasks are submitted after the stream was closed.
+    assertThat(computation.hasNext()).isFalse();
+    assertThat(submittedTasks.get()).isEqualTo(submittedTasksOnClose);
+  }
+
+  private ParallelComputationExecutor.WindowedComputation<Integer, Integer> createComputation() {
+    ImmutableList<Integer> inputs =
+        IntStream.range(0, NUMBER_OF_INPUTS).boxed().collect(toImmutableList());
+    return new ParallelComputationExecutor.WindowedComputation<>(
+        executor, MAX_IN_FLIGHT_TASKS, inputs.iterator(), input -> () -> input * 2);
+  }
+}
@@ -638,6 +638,148 @@ public class PathCodeOwnersTest extends AbstractCodeOwnersTest {
         .isFalse();
   }
 
+  @Test
+  public void resolvedCodeOwnerConfigIsReusedForPathsWithSameMatchingPerFileCodeOwnerSets()
+      throws Exception {
+    CodeOwnerConfig.Key rootCodeOwnerConfigKey =
+        codeOwnerConfigOperations
+            .newCodeOwnerConfig()
+            .project(project)
+            .branch("master")
+            .folderPath("/")
+            .addCodeOwnerEmail(admin.email())
+            .addCodeOwnerSet(
+                CodeOwnerSet.builder()
+                    .addPathExpression("*.md")
+                    .addCodeOwnerEmail(user.email())
+                    .build())
+            .create();
+
+    TransientCodeOwnerConfigCache transientCodeOwnerConfigCache =
+        transientCodeOwnerConfigCacheProvider.get();
+    TransientPathCodeOwnersResultCache transientPathCodeOwnersResultCache =
+        new TransientPathCodeOwnersResultCache();
+    ObjectId revision = projectOperations.project(project).getHead("master");
+
+    OptionalResultWithMessages<PathCodeOwnersResult> fooResult =
+        pathCodeOwnersFactory
+            .create(
+                transientCodeOwnerConfigCache,
+                transientPathCodeOwnersResultCache,
+                rootCodeOwnerConfigKey,
+                revision,
+                Paths.get("/foo.txt"))
+            .get()
+            .resolveCodeOwnerConfig();
+    OptionalResultWithMessages<PathCodeOwnersResult> barResult =
+        pathCodeOwnersFactory
+            .create(
+                transientCodeOwnerConfigCache,
+                transientPathCodeOwnersResultCache,
+                rootCodeOwnerConfigKey,
+                revision,
+                Paths.get("/bar.txt"))
+            .get()
+            .resolveCodeOwnerConfig();
+    OptionalResultWithMessages<PathCodeOwnersResult> readmeResult =
+        pathCodeOwnersFactory
+            .create(
+                transientCodeOwnerConfigCache,
+                transientPathCodeOwnersResultCache,
+                rootCodeOwnerConfigKey,
+                revision,
+                Paths.get("/README.md"))
+            .get()
+            .resolveCodeOwnerConfig();
+
+    // Expectation: the resolved code owner config for /foo.txt is reused for /bar.txt, but the
+    // path and the messages refer to /bar.txt
+    assertThat(barResult.get().codeOwnerConfig())
+        .isSameInstanceAs(fooResult.get().codeOwnerConfig());
+    assertThat(barResult.get().path()).isEqualTo(Paths.get("/bar.txt"));
+    assertThat(barResult.get().getPathCodeOwners())
+        .comparingElementsUsing(hasEmail())
+        .containsExactly(admin.email());
+    assertThat(barResult.messages())
+        .containsExactly(
+            String.format(
+                "resolve code owners for /bar.txt from code owner config %s",
+                rootCodeOwnerConfigKey));
+
+    // Expectation: the resolved code owner config for /foo.txt is not reused for /README.md since
+    // for /README.md the per-file code owner set matches
+    assertThat(readmeResult.get().getPathCodeOwners())
+        .comparingElementsUsing(hasEmail())
+        .containsExactly(admin.email(), user.email());
+  }
+
+  @Test
+  public void resolvedCodeOwnerConfigIsNotReusedIfImportedPerFileCodeOwnerSetsWereMatched()
+      throws Exception {
+    CodeOwnerConfig.Key rootCodeOwnerConfigKey =
+        codeOwnerConfigOperations
+            .newCodeOwnerConfig()
+            .project(project)
+            .branch("master")
+            .folderPath("/")
+            .addCodeOwnerEmail(admin.email())
+            .addImport(
+                CodeOwnerConfigReference.create(CodeOwnerConfigImportMode.ALL, "/bar/OWNERS"))
+            .create();
+
+    // create imported config with per-file code owner
+    codeOwnerConfigOperations
+        .newCodeOwnerConfig()
+        .project(project)
+        .branch("master")
+        .folderPath("/bar/")
+        .addCodeOwnerSet(
+            CodeOwnerSet.builder()
+                .addPathExpression("*.md")
+                .addCodeOwnerEmail(user.email())
+                .build())
+        .create();
+
+    TransientCodeOwnerConfigCache transientCodeOwnerConfigCache =
+        transientCodeOwnerConfigCacheProvider.get();
+    TransientPathCodeOwnersResultCache transientPathCodeOwnersResultCache =
+        new TransientPathCodeOwnersResultCache();
+    ObjectId revision = projectOperations.project(project).getHead("master");
+
+    PathCodeOwnersResult fooResult =
+        pathCodeOwnersFactory
+            .create(
+                transientCodeOwnerConfigCache,
+                transientPathCodeOwnersResultCache,
+                rootCodeOwnerConfigKey,
+                revision,
+                Paths.get("/foo.txt"))
+            .get()
+            .resolveCodeOwnerConfig()
+            .get();
+    PathCodeOwnersResult readmeResult =
+        pathCodeOwnersFactory
+            .create(
+                transientCodeOwnerConfigCache,
+                transientPathCodeOwnersResultCache,
+                rootCodeOwnerConfigKey,
+                revision,
+                Paths.get("/README.md"))
+            .get()
+            .resolveCodeOwnerConfig()
+            .get();
+
+    // Expectation: the matching per-file code owner set of the imported code owner config is
+    // considered for /README.md, although the same per-file code owner sets (none) of the
+    // importing code owner config match /foo.txt and /README.md
+    assertThat(fooResult.getPathCodeOwners())
+        .comparingElementsUsing(hasEmail())
+        .containsExactly(admin.email());
+    assertThat(readmeResult.getPathCodeOwners())
+        .comparingElementsUsing(hasEmail())
+        .containsExactly(admin.email(), user.email());
+  }
+
   @Test
   public void nonMatchingPerFileCodeOwnersAreNotImported_importModeAll() throws Exception {
     // create importing config with matching per-file code owner and import
@@ -0,0 +1,174 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersTest;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+/** Tests for {@link PerFileCodeOwnerSetIndex}. */
+public class PerFileCodeOwnerSetIndexTest extends AbstractCodeOwnersTest {
+  private static final ObjectId TEST_REVISION =
+      ObjectId.fromString("deadbeefdeadbeefdeadbeefdeadbeefdeadbeef");
+
+  private static final ImmutableList<String> PATH_EXPRESSIONS =
+      ImmutableList.of(
+          "BUILD",
+          "foo/BUILD",
+          "foo/bar/config.txt",
+          "*",
+          "*.md",
+          "*.txt",
+          "*.t",
+          ".md",
+          "*/BUILD",
+          "**.md",
+          "foo/**",
+          "foo/bar/**",
+          "foo/...",
+          "foo/*.md",
+          "foo/bar.../*.md",
+          "...",
+          "....md",
+          "{**/,}BUILD",
+          "[a-c].txt",
+          "{foo-[1-4].txt",
+          "foo-?.txt",
+          "foo\\*.txt",
+          "foo{1}.txt",
+          "foo,bar");
+
+  private static final ImmutableList<String> PATHS =
+      ImmutableList.of(
+          "BUILD",
+          "BUILD2",
+          "foo/BUILD",
+          "bar/foo/BUILD",
+          "foo/bar/BUILD",
+          "foo/bar/config.txt",
+          "baz/foo/bar/config.txt",
+          "README.md",
+          "foo/README.md",
+          "foo/bar/README.md",
+          ".md",
+          "foo/.md",
+          "a.txt",
+          "foo/a.txt",
+          "a.t",
+          "foo-1.txt",
+          "foo*.txt",
+          "foo{1}.txt",
+          "foo,bar",
+          "foo",
+          "foobar/baz",
+          "bar.../README.md",
+          "foo/bar.../README.md");
+
+  @Test
+  public void indexForGlobMatcherMatchesSameCodeOwnerSetsAsMatcher() throws Exception {
+    assertIndexMatchesSameCodeOwnerSetsAsMatcher(GlobMatcher.INSTANCE);
+  }
+
+  @Test
+  public void indexForFindOwnersGlobMatcherMatchesSameCodeOwnerSetsAsMatcher() throws Exception {
+    assertIndexMatchesSameCodeOwnerSetsAsMatcher(FindOwnersGlobMatcher.INSTANCE);
+  }
+
+  @Test
+  public void indexForSimplePathExpressionMatcherMatchesSameCodeOwnerSetsAsMatcher()
+      throws Exception {
+    assertIndexMatchesSameCodeOwnerSetsAsMatcher(SimplePathExpressionMatcher.INSTANCE);
+  }
+
+  @Test
+  public void indexForMatcherWithoutClassificationMatchesSameCodeOwnerSetsAsMatcher()
+      throws Exception {
+    assertIndexMatchesSameCodeOwnerSetsAsMatcher(
+        (pathExpression, relativePath) -> relativePath.toString().startsWith(pathExpression));
+  }
+
+  @Test
+  public void matchingCodeOwnerSetsAreReturnedInOrder() throws Exception {
+    CodeOwnerSet codeOwnerSet1 = createCodeOwnerSet("foo/**", "*.md");
+    CodeOwnerSet codeOwnerSet2 = createCodeOwnerSet("*.txt");
+    CodeOwnerSet codeOwnerSet3 = createCodeOwnerSet("**.md");
+    CodeOwnerSet codeOwnerSet4 = createCodeOwnerSet("README.md");
+    PerFileCodeOwnerSetIndex index =
+        new PerFileCodeOwnerSetIndex(
+            ImmutableSet.of(
+                codeOwnerSet1,
+                CodeOwnerSet.createWithoutPathExpressions(admin.email()),
+                codeOwnerSet2,
+                codeOwnerSet3,
+                codeOwnerSet4),
+            GlobMatcher.INSTANCE);
+    assertThat(index.getMatchingCodeOwnerSets(Paths.get("README.md")))
+        .containsExactly(codeOwnerSet1, codeOwnerSet3, codeOwnerSet4)
+        .inOrder();
+    assertThat(index.getMatchingCodeOwnerSets(Paths.get("foo/README.md")))
+        .containsExactly(codeOwnerSet1, codeOwnerSet3)
+        .inOrder();
+    assertThat(index.getMatchingCodeOwnerSets(Paths.get("bar/README.txt"))).isEmpty();
+  }
+
+  @Test
+  public void indexIsSharedByCodeOwnerConfigsWithSameCodeOwnerSets() throws Exception {
+    CodeOwnerConfig codeOwnerConfig =
+        CodeOwnerConfig.builder(CodeOwnerConfig.Key.create(project, "master", "/"), TEST_REVISION)
+            .addCodeOwnerSet(createCodeOwnerSet("*.md"))
+            .build();
+    CodeOwnerConfig rekeyedCodeOwnerConfig =
+        codeOwnerConfig.toBuilder()
+            .setKey(CodeOwnerConfig.Key.create(project, "master", "/foo/"))
+            .build();
+    assertThat(PerFileCodeOwnerSetIndex.get(rekeyedCodeOwnerConfig, GlobMatcher.INSTANCE))
+        .isSameInstanceAs(PerFileCodeOwnerSetIndex.get(codeOwnerConfig, GlobMatcher.INSTANCE));
+  }
+
+  private void assertIndexMatchesSameCodeOwnerSetsAsMatcher(PathExpressionMatcher matcher) {
+    ImmutableSet<CodeOwnerSet> codeOwnerSets =
+        PATH_EXPRESSIONS.stream()
+            .map(PerFileCodeOwnerSetIndexTest::createCodeOwnerSet)
+            .collect(ImmutableSet.toImmutableSet());
+    PerFileCodeOwnerSetIndex index = new PerFileCodeOwnerSetIndex(codeOwnerSets, matcher);
+
+    for (String path : PATHS) {
+      Path relativePath = Paths.get(path);
+      ImmutableList<CodeOwnerSet> expectedCodeOwnerSets =
+          codeOwnerSets.stream()
+              .filter(codeOwnerSet -> PathCodeOwners.matches(codeOwnerSet, relativePath, matcher))
+              .collect(toImmutableList());
+      assertWithMessage("matching code owner sets for path %s", path)
+          .that(index.getMatchingCodeOwnerSets(relativePath))
+          .containsExactlyElementsIn(expectedCodeOwnerSets)
+          .inOrder();
+    }
+  }
+
+  private static CodeOwnerSet createCodeOwnerSet(String... pathExpressions) {
+    return CodeOwnerSet.builder()
+        .setPathExpressions(ImmutableSet.copyOf(pathExpressions))
+        .addCodeOwnerEmail("admin@example.com")
+        .build();
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.acceptance.testsuite.account.AccountOperations;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersTest;
+import com.google.inject.Inject;
+import java.util.Optional;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for {@link RandomAccountPool}. */
+public class RandomAccountPoolTest extends AbstractCodeOwnersTest {
+  @Inject private AccountOperations accountOperations;
+
+  private RandomAccountPool randomAccountPool;
+
+  @Before
+  public void setUpCodeOwnersPlugin() throws Exception {
+    randomAccountPool = plugin.getSysInjector().getInstance(RandomAccountPool.class);
+  }
+
+  @Test
+  public void activeAccountsAreSampled() throws Exception {
+    assertThat(randomAccountPool.sample(Optional.empty(), RandomAccountPool.MAX_POOL_SIZE))
+        .containsAtLeast(admin.id(), user.id());
+  }
+
+  @Test
+  public void sampleIsLimited() throws Exception {
+    accountOperations.newAccount().create();
+    assertThat(randomAccountPool.sample(Optional.empty(), 1)).hasSize(1);
+  }
+
+  @Test
+  public void noAccountsAreSampledIfLimitIsZero() throws Exception {
+    assertThat(randomAccountPool.sample(Optional.empty(), 0)).isEmpty();
+  }
+
+  @Test
+  public void sampleDoesNotContainDuplicates() throws Exception {
+    accountOperations.newAccount().create();
+    assertThat(randomAccountPool.sample(Optional.empty(), RandomAccountPool.MAX_POOL_SIZE))
+        .containsNoDuplicates();
+  }
+
+  @Test
+  public void samplingWithSeedIsStable() throws Exception {
+    accountOperations.newAccount().create();
+    long seed = new Random().nextLong();
+    assertThat(randomAccountPool.sample(Optional.of(seed), 1))
+        .isEqualTo(randomAccountPool.sample(Optional.of(seed), 1));
+  }
+
+  @Test
+  public void newAccountIsSampledAfterPoolWasLoaded() throws Exception {
+    // Load the pool.
+    randomAccountPool.sample(Optional.empty(), 1);
+
+    Account.Id accountId = accountOperations.newAccount().create();
+    assertThat(randomAccountPool.sample(Optional.empty(), RandomAccountPool.MAX_POOL_SIZE))
+        .contains(accountId);
+  }
+
+  @Test
+  public void inactiveAccountIsNotSampled() throws Exception {
+    Account.Id accountId = accountOperations.newAccount().create();
+    accountOperations.account(accountId).forUpdate().inactive().update();
+    assertThat(randomAccountPool.sample(Optional.empty(), RandomAccountPool.MAX_POOL_SIZE))
+        .doesNotContain(accountId);
+  }
+
+  @Test
+  public void accountThatGotInactiveAfterPoolWasLoadedIsNotSampled() throws Exception {
+    Account.Id accountId = accountOperations.newAccount().create();
+    assertThat(randomAccountPool.sample(Optional.empty(), RandomAccountPool.MAX_POOL_SIZE))
+        .contains(accountId);
+
+    accountOperations.account(accountId).forUpdate().inactive().update();
+    assertThat(randomAccountPool.sample(Optional.empty(), RandomAccountPool.MAX_POOL_SIZE))
+        .doesNotContain(accountId);
+  }
+
+  @Test
+  public void accountThatGotActiveAgainIsSampled() throws Exception {
+    Account.Id accountId = accountOperations.newAccount().create();
+    accountOperations.account(accountId).forUpdate().inactive().update();
+    assertThat(randomAccountPool.sample(Optional.empty(), RandomAccountPool.MAX_POOL_SIZE))
+        .doesNotContain(accountId);
+
+    accountOperations.account(accountId).forUpdate().active().update();
+    assertThat(randomAccountPool.sample(Optional.empty(), RandomAccountPool.MAX_POOL_SIZE))
+        .contains(accountId);
+  }
+}
@@ -0,0 +1,70 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.acceptance.config.GerritConfig;
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersTest;
+import java.util.Optional;
+import org.junit.Test;
+
+/** Tests for {@link TransientCodeOwnerCache}. */
+public class TransientCodeOwnerCacheTest extends AbstractCodeOwnersTest {
+  @Test
+  public void getCachedCodeOwners() throws Exception {
+    TransientCodeOwnerCache transientCodeOwnerCache = createTransientCodeOwnerCache();
+    transientCodeOwnerCache.cache(admin.email(), CodeOwner.create(admin.id()));
+    transientCodeOwnerCache.cacheNonResolvable("non-existing@example.com");
+    transientCodeOwnerCache.cache(user.email(), CodeOwner.create(user.id()));
+
+    assertThat(
+            transientCodeOwnerCache.get(
+                ImmutableSet.of(admin.email(), "non-existing@example.com", "other@example.com")))
+        .containsExactly(
+            admin.email(),
+            Optional.of(CodeOwner.create(admin.id())),
+            "non-existing@example.com",
+            Optional.empty());
+    assertThat(transientCodeOwnerCache.getCounters().getCacheReadCount()).isEqualTo(1);
+    assertThat(transientCodeOwnerCache.getCounters().getCacheMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.code-owners.maxCodeOwnerCacheSize", value = "2")
+  public void leastRecentlyUsedCodeOwnerIsEvicted() throws Exception {
+    TransientCodeOwnerCache transientCodeOwnerCache = createTransientCodeOwnerCache();
+    transientCodeOwnerCache.cache(admin.email(), CodeOwner.create(admin.id()));
+    transientCodeOwnerCache.cache(user.email(), CodeOwner.create(user.id()));
+
+    // Use the code owner for the admin email, so that the code owner for the user email becomes the
+    // least recently used one.
+    assertThat(transientCodeOwnerCache.get(ImmutableSet.of(admin.email()))).hasSize(1);
+
+    transientCodeOwnerCache.cacheNonResolvable("non-existing@example.com");
+
+    assertThat(
+            transientCodeOwnerCache
+                .get(ImmutableSet.of(admin.email(), user.email(), "non-existing@example.com"))
+                .keySet())
+        .containsExactly(admin.email(), "non-existing@example.com");
+    assertThat(transientCodeOwnerCache.getCounters().getEvictionCount()).isEqualTo(1);
+  }
+
+  private TransientCodeOwnerCache createTransientCodeOwnerCache() {
+    return plugin.getSysInjector().getInstance(TransientCodeOwnerCache.class);
+  }
+}
@@ -0,0 +1,69 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.backend;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersTest;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Test;
+
+/** Tests for {@link TransientGitContext}. */
+public class TransientGitContextTest extends AbstractCodeOwnersTest {
+  @Test
+  public void repositoryIsOpenedOnlyOnce() throws Exception {
+    try (TransientGitContext gitContext = createGitContext()) {
+      Repository repository = gitContext.getRepository(project);
+      assertThat(gitContext.getRepository(project)).isSameInstanceAs(repository);
+      assertThat(gitContext.getRepository(allProjects)).isNotSameInstanceAs(repository);
+    }
+  }
+
+  @Test
+  public void revWalkIsReused() throws Exception {
+    try (TransientGitContext gitContext = createGitContext()) {
+      RevWalk revWalk = gitContext.withRevWalk(project, rw -> rw);
+      assertThat(gitContext.withRevWalk(project, rw -> rw)).isSameInstanceAs(revWalk);
+    }
+  }
+
+  @Test
+  public void revWalkIsNotSharedWhileInUse() throws Exception {
+    try (TransientGitContext gitContext = createGitContext()) {
+      gitContext.withRevWalk(
+          project,
+          outerRevWalk -> {
+            assertThat(gitContext.withRevWalk(project, rw -> rw))
+                .isNotSameInstanceAs(outerRevWalk);
+            return null;
+          });
+    }
+  }
+
+  @Test
+  public void cannotOpenRepositoryAfterClose() throws Exception {
+    TransientGitContext gitContext = createGitContext();
+    gitContext.close();
+    IllegalStateException exception =
+        assertThrows(IllegalStateException.class, () -> gitContext.getRepository(project));
+    assertThat(exception).hasMessageThat().isEqualTo("git context is closed");
+  }
+
+  private TransientGitContext createGitContext() {
+    return plugin.getSysInjector().getInstance(TransientGitContext.class);
+  }
+}
@@ -117,6 +117,69 @@ public class CodeOwnersPluginGlobalConfigSnapshotTest extends AbstractCodeOwners
         .isEqualTo(CodeOwnersPluginGlobalConfigSnapshot.DEFAULT_MAX_CODE_OWNER_CACHE_SIZE);
   }
 
+  @Test
+  @GerritConfig(name = "plugin.code-owners.maxCodeOwnerConfigCacheSize", value = "10")
+  @GerritConfig(name = "plugin.code-owners.maxCodeOwnerCacheSize", value = "20")
+  public void codeOwnerCacheSizeAndCodeOwnerConfigCacheSizeAreIndependent() throws Exception {
+    CodeOwnersPluginGlobalConfigSnapshot cfgSnapshot = cfgSnapshot();
+    assertThat(cfgSnapshot.getMaxCodeOwnerConfigCacheSize()).value().isEqualTo(10);
+    assertThat(cfgSnapshot.getMaxCodeOwnerCacheSize()).value().isEqualTo(20);
+  }
+
+  @Test
+  public void fileStatusesAreComputedSequentiallyByDefault() throws Exception {
+    assertThat(cfgSnapshot().getMaxThreadsForFileStatusComputation())
+        .isEqualTo(
+            CodeOwnersPluginGlobalConfigSnapshot.DEFAULT_MAX_THREADS_FOR_FILE_STATUS_COMPUTATION);
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.code-owners.maxThreadsForFileStatusComputation", value = "4")
+  public void maxThreadsForFileStatusComputationIsConfigured() throws Exception {
+    assertThat(cfgSnapshot().getMaxThreadsForFileStatusComputation()).isEqualTo(4);
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.code-owners.maxThreadsForFileStatusComputation", value = "0")
+  public void maxThreadsForFileStatusComputationIsAtLeastOne() throws Exception {
+    assertThat(cfgSnapshot().getMaxThreadsForFileStatusComputation()).isEqualTo(1);
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.code-owners.maxThreadsForFileStatusComputation", value = "invalid")
+  public void maxThreadsForFileStatusComputation_invalidConfig() throws Exception {
+    assertThat(cfgSnapshot().getMaxThreadsForFileStatusComputation())
+        .isEqualTo(
+            CodeOwnersPluginGlobalConfigSnapshot.DEFAULT_MAX_THREADS_FOR_FILE_STATUS_COMPUTATION);
+  }
+
+  @Test
+  public void branchesAreCheckedWithTwoThreadsByDefault() throws Exception {
+    assertThat(cfgSnapshot().getMaxThreadsForCodeOwnerConfigCheck())
+        .isEqualTo(
+            CodeOwnersPluginGlobalConfigSnapshot.DEFAULT_MAX_THREADS_FOR_CODE_OWNER_CONFIG_CHECK);
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.code-owners.maxThreadsForCodeOwnerConfigCheck", value = "4")
+  public void maxThreadsForCodeOwnerConfigCheckIsConfigured() throws Exception {
+    assertThat(cfgSnapshot().getMaxThreadsForCodeOwnerConfigCheck()).isEqualTo(4);
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.code-owners.maxThreadsForCodeOwnerConfigCheck", value = "0")
+  public void maxThreadsForCodeOwnerConfigCheckIsAtLeastOne() throws Exception {
+    assertThat(cfgSnapshot().getMaxThreadsForCodeOwnerConfigCheck()).isEqualTo(1);
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.code-owners.maxThreadsForCodeOwnerConfigCheck", value = "invalid")
+  public void maxThreadsForCodeOwnerConfigCheck_invalidConfig() throws Exception {
+    assertThat(cfgSnapshot().getMaxThreadsForCodeOwnerConfigCheck())
+        .isEqualTo(
+            CodeOwnersPluginGlobalConfigSnapshot.DEFAULT_MAX_THREADS_FOR_CODE_OWNER_CONFIG_CHECK);
+  }
+
   private CodeOwnersPluginGlobalConfigSnapshot cfgSnapshot() {
     return codeOwnersPluginGlobalConfigSnapshotFactory.create();
   }
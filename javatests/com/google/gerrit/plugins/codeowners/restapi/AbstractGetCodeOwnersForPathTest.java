@@ -0,0 +1,97 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.restapi;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.plugins.codeowners.backend.CodeOwner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import org.junit.Test;
+
+/** Tests for {@link AbstractGetCodeOwnersForPath}. */
+public class AbstractGetCodeOwnersForPathTest {
+  @Test
+  public void sortAndLimitEmptyCodeOwners() throws Exception {
+    assertThat(
+            AbstractGetCodeOwnersForPath.sortAndLimit(
+                Optional.of(1L), ImmutableMap.of(), /* limit= */ 10))
+        .isEmpty();
+  }
+
+  @Test
+  public void codeOwnersAreSortedByScore() throws Exception {
+    CodeOwner codeOwner1 = CodeOwner.create(Account.id(1));
+    CodeOwner codeOwner2 = CodeOwner.create(Account.id(2));
+    CodeOwner codeOwner3 = CodeOwner.create(Account.id(3));
+    CodeOwner codeOwner4 = CodeOwner.create(Account.id(4));
+    ImmutableMap<CodeOwner, Double> scoredCodeOwners =
+        ImmutableMap.of(codeOwner1, 0.5, codeOwner2, 1.0, codeOwner3, 0.25, codeOwner4, 0.75);
+
+    assertThat(
+            AbstractGetCodeOwnersForPath.sortAndLimit(
+                Optional.empty(), scoredCodeOwners, /* limit= */ 10))
+        .containsExactly(codeOwner2, codeOwner4, codeOwner1, codeOwner3)
+        .inOrder();
+    assertThat(
+            AbstractGetCodeOwnersForPath.sortAndLimit(
+                Optional.empty(), scoredCodeOwners, /* limit= */ 2))
+        .containsExactly(codeOwner2, codeOwner4)
+        .inOrder();
+  }
+
+  @Test
+  public void resultIsTheSameAsForSortingAllCodeOwners() throws Exception {
+    // Use fixed seeds so that failures are reproducible.
+    for (long seed : new long[] {0L, 1L, 42L, -7L, 123456789L}) {
+      assertResultIsTheSameAsForSortingAllCodeOwners(seed);
+    }
+  }
+
+  private static void assertResultIsTheSameAsForSortingAllCodeOwners(long seed) {
+    Random random = new Random(seed);
+    ImmutableMap.Builder<CodeOwner, Double> scoredCodeOwnersBuilder = ImmutableMap.builder();
+    for (int i = 1; i <= 1000; i++) {
+      // Use few distinct scores so that there are many code owners with the same score.
+      scoredCodeOwnersBuilder.put(CodeOwner.create(Account.id(i)), (double) random.nextInt(5));
+    }
+    ImmutableMap<CodeOwner, Double> scoredCodeOwners = scoredCodeOwnersBuilder.build();
+
+    // Sort all code owners: shuffle them with the seed and then sort them by score with a stable
+    // sort, so that code owners with the same score stay in the shuffled order.
+    List<CodeOwner> allCodeOwnersSorted = new ArrayList<>(scoredCodeOwners.keySet());
+    Collections.shuffle(allCodeOwnersSorted, new Random(seed));
+    ImmutableList<CodeOwner> expectedCodeOwners =
+        allCodeOwnersSorted.stream()
+            .sorted(Comparator.comparingDouble(scoredCodeOwners::get).reversed())
+            .collect(toImmutableList());
+
+    for (int limit : new int[] {1, 10, 999, 1000, 1001}) {
+      assertThat(
+              AbstractGetCodeOwnersForPath.sortAndLimit(Optional.of(seed), scoredCodeOwners, limit))
+          .containsExactlyElementsIn(
+              expectedCodeOwners.subList(0, Math.min(limit, expectedCodeOwners.size())))
+          .inOrder();
+    }
+  }
+}
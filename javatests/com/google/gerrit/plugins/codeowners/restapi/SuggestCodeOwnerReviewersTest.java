@@ -0,0 +1,113 @@
+// Copyright (C) 2021 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.codeowners.restapi;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.plugins.codeowners.acceptance.AbstractCodeOwnersTest;
+import com.google.gerrit.plugins.codeowners.backend.CodeOwner;
+import org.junit.Test;
+
+/** Tests for {@link SuggestCodeOwnerReviewers}. */
+public class SuggestCodeOwnerReviewersTest extends AbstractCodeOwnersTest {
+  private static final CodeOwner CODE_OWNER_1 = CodeOwner.create(Account.id(1));
+  private static final CodeOwner CODE_OWNER_2 = CodeOwner.create(Account.id(2));
+  private static final CodeOwner CODE_OWNER_3 = CodeOwner.create(Account.id(3));
+
+  @Test
+  public void noReviewersSelectedIfThereAreNoPaths() throws Exception {
+    assertThat(SuggestCodeOwnerReviewers.selectReviewers(ImmutableMap.of(), /* limit= */ 5))
+        .isEmpty();
+  }
+
+  @Test
+  public void noReviewersSelectedIfPathsHaveNoCodeOwners() throws Exception {
+    assertThat(
+            SuggestCodeOwnerReviewers.selectReviewers(
+                ImmutableMap.of("/foo.md", ImmutableMap.of(), "/bar.md", ImmutableMap.of()),
+                /* limit= */ 5))
+        .isEmpty();
+  }
+
+  @Test
+  public void codeOwnerThatOwnsMostPathsIsSelectedFirst() throws Exception {
+    assertThat(
+            SuggestCodeOwnerReviewers.selectReviewers(
+                ImmutableMap.of(
+                    "/foo/a.md",
+                    ImmutableMap.of(CODE_OWNER_1, 1.5, CODE_OWNER_3, 0.5),
+                    "/bar/b.md",
+                    ImmutableMap.of(CODE_OWNER_2, 1.5, CODE_OWNER_3, 0.5),
+                    "/baz/c.md",
+                    ImmutableMap.of(CODE_OWNER_3, 0.5)),
+                /* limit= */ 5))
+        .containsExactly(CODE_OWNER_3);
+  }
+
+  @Test
+  public void codeOwnersThatCoverRemainingPathsAreSelected() throws Exception {
+    assertThat(
+            SuggestCodeOwnerReviewers.selectReviewers(
+                ImmutableMap.of(
+                    "/foo/a.md",
+                    ImmutableMap.of(CODE_OWNER_1, 0.5),
+                    "/foo/b.md",
+                    ImmutableMap.of(CODE_OWNER_1, 0.5),
+                    "/bar/c.md",
+                    ImmutableMap.of(CODE_OWNER_2, 0.5)),
+                /* limit= */ 5))
+        .containsExactly(CODE_OWNER_1, CODE_OWNER_2)
+        .inOrder();
+  }
+
+  @Test
+  public void codeOwnerWithHigherScoreIsSelectedIfSameNumberOfPathsIsOwned() throws Exception {
+    assertThat(
+            SuggestCodeOwnerReviewers.selectReviewers(
+                ImmutableMap.of(
+                    "/foo/a.md",
+                    ImmutableMap.of(CODE_OWNER_1, 0.5, CODE_OWNER_2, 1.0),
+                    "/foo/b.md",
+                    ImmutableMap.of(CODE_OWNER_1, 0.5, CODE_OWNER_2, 1.0)),
+                /* limit= */ 5))
+        .containsExactly(CODE_OWNER_2);
+  }
+
+  @Test
+  public void codeOwnerThatIsSuggestedFirstIsSelectedIfGainIsTheSame() throws Exception {
+    assertThat(
+            SuggestCodeOwnerReviewers.selectReviewers(
+                ImmutableMap.of("/foo/a.md", ImmutableMap.of(CODE_OWNER_2, 1.0, CODE_OWNER_1, 1.0)),
+                /* limit= */ 5))
+        .containsExactly(CODE_OWNER_2);
+  }
+
+  @Test
+  public void selectedReviewersAreLimited() throws Exception {
+    assertThat(
+            SuggestCodeOwnerReviewers.selectReviewers(
+                ImmutableMap.of(
+                    "/foo/a.md",
+                    ImmutableMap.of(CODE_OWNER_1, 0.5),
+                    "/foo/b.md",
+                    ImmutableMap.of(CODE_OWNER_1, 0.5),
+                    "/bar/c.md",
+                    ImmutableMap.of(CODE_OWNER_2, 0.5)),
+                /* limit= */ 1))
+        .containsExactly(CODE_OWNER_1);
+  }
+}